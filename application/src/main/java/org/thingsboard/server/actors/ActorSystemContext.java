@@ -59,6 +59,7 @@ import org.thingsboard.server.dao.dashboard.DashboardService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.entityview.EntityViewService;
 import org.thingsboard.server.dao.event.EventService;
+import org.thingsboard.server.dao.exception.BufferLimitException;
 import org.thingsboard.server.dao.nosql.CassandraBufferedRateExecutor;
 import org.thingsboard.server.dao.relation.RelationService;
 import org.thingsboard.server.dao.rule.RuleChainService;
@@ -375,7 +376,26 @@ public class ActorSystemContext {
     }
 
     private void persistEvent(Event event) {
-        eventService.save(event);
+        persistEventAsync(event, "Could not save Event");
+    }
+
+    private void persistEventAsync(Event event, String errorMessage) {
+        ListenableFuture<Event> future = eventService.saveAsync(event);
+        Futures.addCallback(future, new FutureCallback<Event>() {
+            @Override
+            public void onSuccess(@Nullable Event event) {
+
+            }
+
+            @Override
+            public void onFailure(Throwable th) {
+                if (th instanceof BufferLimitException) {
+                    log.trace("Event queue is full, event is dropped: {}", event);
+                } else {
+                    log.error(errorMessage, th);
+                }
+            }
+        }, MoreExecutors.directExecutor());
     }
 
     private String toString(Throwable e) {
@@ -455,18 +475,7 @@ public class ActorSystemContext {
                 }
 
                 event.setBody(node);
-                ListenableFuture<Event> future = eventService.saveAsync(event);
-                Futures.addCallback(future, new FutureCallback<Event>() {
-                    @Override
-                    public void onSuccess(@Nullable Event event) {
-
-                    }
-
-                    @Override
-                    public void onFailure(Throwable th) {
-                        log.error("Could not save debug Event for Node", th);
-                    }
-                }, MoreExecutors.directExecutor());
+                persistEventAsync(event, "Could not save debug Event for Node");
             } catch (IOException ex) {
                 log.warn("Failed to persist rule node debug message", ex);
             }
@@ -508,18 +517,7 @@ public class ActorSystemContext {
         }
 
         event.setBody(node);
-        ListenableFuture<Event> future = eventService.saveAsync(event);
-        Futures.addCallback(future, new FutureCallback<Event>() {
-            @Override
-            public void onSuccess(@Nullable Event event) {
-
-            }
-
-            @Override
-            public void onFailure(Throwable th) {
-                log.error("Could not save debug Event for Rule Chain", th);
-            }
-        }, MoreExecutors.directExecutor());
+        persistEventAsync(event, "Could not save debug Event for Rule Chain");
     }
 
     public static Exception toException(Throwable error) {
@@ -85,6 +85,10 @@ class DefaultTbContext implements TbContext {
         this.nodeCtx = nodeCtx;
     }
 
+    RuleNodeCtx getNodeCtx() {
+        return nodeCtx;
+    }
+
     @Override
     public void tellSuccess(TbMsg msg) {
         tellNext(msg, Collections.singleton(TbRelationTypes.SUCCESS), null);
@@ -48,8 +48,6 @@ import org.thingsboard.server.queue.common.MultipleTbQueueTbMsgCallbackWrapper;
 import org.thingsboard.server.queue.common.TbQueueTbMsgCallbackWrapper;
 import org.thingsboard.server.service.queue.TbClusterService;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,13 +63,14 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     private final ActorRef parent;
     private final ActorRef self;
     private final Map<RuleNodeId, RuleNodeCtx> nodeActors;
-    private final Map<RuleNodeId, List<RuleNodeRelation>> nodeRoutes;
+    private RuleChainRoutingTable routingTable;
     private final RuleChainService service;
     private final TbClusterService clusterService;
     private String ruleChainName;
 
     private RuleNodeId firstId;
     private RuleNodeCtx firstNode;
+    private DefaultTbContext firstNodeCtx;
     private boolean started;
 
     RuleChainActorMessageProcessor(TenantId tenantId, RuleChain ruleChain, ActorSystemContext systemContext
@@ -81,7 +80,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         this.parent = parent;
         this.self = self;
         this.nodeActors = new HashMap<>();
-        this.nodeRoutes = new HashMap<>();
+        this.routingTable = RuleChainRoutingTable.EMPTY;
         this.service = systemContext.getRuleChainService();
         this.clusterService = systemContext.getClusterService();
     }
@@ -149,7 +148,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         log.trace("[{}][{}] Stopping rule chain with {} nodes", tenantId, entityId, nodeActors.size());
         nodeActors.values().stream().map(RuleNodeCtx::getSelfActor).forEach(context::stop);
         nodeActors.clear();
-        nodeRoutes.clear();
+        routingTable = RuleChainRoutingTable.EMPTY;
         context.stop(self);
         started = false;
     }
@@ -168,30 +167,27 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     }
 
     private void initRoutes(RuleChain ruleChain, List<RuleNode> ruleNodeList) {
-        nodeRoutes.clear();
+        Map<RuleNodeId, List<EntityRelation>> nodeRelations = new HashMap<>();
         // Populating the routes map;
         for (RuleNode ruleNode : ruleNodeList) {
             List<EntityRelation> relations = service.getRuleNodeRelations(TenantId.SYS_TENANT_ID, ruleNode.getId());
             log.trace("[{}][{}][{}] Processing rule node relations [{}]", tenantId, entityId, ruleNode.getId(), relations.size());
-            if (relations.size() == 0) {
-                nodeRoutes.put(ruleNode.getId(), Collections.emptyList());
-            } else {
-                for (EntityRelation relation : relations) {
-                    log.trace("[{}][{}][{}] Processing rule node relation [{}]", tenantId, entityId, ruleNode.getId(), relation.getTo());
-                    if (relation.getTo().getEntityType() == EntityType.RULE_NODE) {
-                        RuleNodeCtx ruleNodeCtx = nodeActors.get(new RuleNodeId(relation.getTo().getId()));
-                        if (ruleNodeCtx == null) {
-                            throw new IllegalArgumentException("Rule Node [" + relation.getFrom() + "] has invalid relation to Rule node [" + relation.getTo() + "]");
-                        }
+            for (EntityRelation relation : relations) {
+                log.trace("[{}][{}][{}] Processing rule node relation [{}]", tenantId, entityId, ruleNode.getId(), relation.getTo());
+                if (relation.getTo().getEntityType() == EntityType.RULE_NODE) {
+                    RuleNodeCtx ruleNodeCtx = nodeActors.get(new RuleNodeId(relation.getTo().getId()));
+                    if (ruleNodeCtx == null) {
+                        throw new IllegalArgumentException("Rule Node [" + relation.getFrom() + "] has invalid relation to Rule node [" + relation.getTo() + "]");
                     }
-                    nodeRoutes.computeIfAbsent(ruleNode.getId(), k -> new ArrayList<>())
-                            .add(new RuleNodeRelation(ruleNode.getId(), relation.getTo(), relation.getType()));
                 }
             }
+            nodeRelations.put(ruleNode.getId(), relations);
         }
+        routingTable = new RuleChainRoutingTable(systemContext, nodeActors, nodeRelations);
 
         firstId = ruleChain.getFirstRuleNodeId();
         firstNode = nodeActors.get(firstId);
+        firstNodeCtx = routingTable.getNodeContext(firstId);
         state = ComponentLifecycleState.ACTIVE;
     }
 
@@ -202,12 +198,12 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
             try {
                 checkActive(envelope.getTbMsg());
                 RuleNodeId targetId = msg.getRuleNodeId();
-                RuleNodeCtx targetCtx;
+                DefaultTbContext targetCtx;
                 if (targetId == null) {
-                    targetCtx = firstNode;
+                    targetCtx = firstNodeCtx;
                     msg = msg.copyWithRuleChainId(entityId);
                 } else {
-                    targetCtx = nodeActors.get(targetId);
+                    targetCtx = routingTable.getNodeContext(targetId);
                 }
                 if (targetCtx != null) {
                     log.trace("[{}][{}] Pushing message to target rule node", entityId, targetId);
@@ -229,8 +225,8 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     void onRuleChainToRuleChainMsg(RuleChainToRuleChainMsg envelope) {
         try {
             checkActive(envelope.getMsg());
-            if (firstNode != null) {
-                pushMsgToNode(firstNode, envelope.getMsg(), envelope.getFromRelationType());
+            if (firstNodeCtx != null) {
+                pushMsgToNode(firstNodeCtx, envelope.getMsg(), envelope.getFromRelationType());
             } else {
                 envelope.getMsg().getCallback().onSuccess();
             }
@@ -248,10 +244,11 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
             checkActive(msg);
             EntityId entityId = msg.getOriginator();
             TopicPartitionInfo tpi = systemContext.resolve(ServiceType.TB_RULE_ENGINE, tenantId, entityId);
-            List<RuleNodeRelation> relations = nodeRoutes.get(originatorNodeId).stream()
-                    .filter(r -> contains(relationTypes, r.getType()))
-                    .collect(Collectors.toList());
-            int relationsCount = relations.size();
+            RuleNodeRelation[] relations = routingTable.getRelations(originatorNodeId, relationTypes);
+            if (relations == null) {
+                throw new IllegalStateException("Rule node [" + originatorNodeId + "] is not found");
+            }
+            int relationsCount = relations.length;
             if (relationsCount == 0) {
                 log.trace("[{}][{}][{}] No outbound relations to process", tenantId, entityId, msg.getId());
                 if (relationTypes.contains(TbRelationTypes.FAILURE)) {
@@ -266,16 +263,14 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                     msg.getCallback().onSuccess();
                 }
             } else if (relationsCount == 1) {
-                for (RuleNodeRelation relation : relations) {
-                    log.trace("[{}][{}][{}] Pushing message to single target: [{}]", tenantId, entityId, msg.getId(), relation.getOut());
-                    pushToTarget(tpi, msg, relation.getOut(), relation.getType());
-                }
+                RuleNodeRelation relation = relations[0];
+                log.trace("[{}][{}][{}] Pushing message to single target: [{}]", tenantId, entityId, msg.getId(), relation.getOut());
+                pushToTarget(tpi, msg, relation);
             } else {
                 MultipleTbQueueTbMsgCallbackWrapper callbackWrapper = new MultipleTbQueueTbMsgCallbackWrapper(relationsCount, msg.getCallback());
                 log.trace("[{}][{}][{}] Pushing message to multiple targets: [{}]", tenantId, entityId, msg.getId(), relations);
                 for (RuleNodeRelation relation : relations) {
-                    EntityId target = relation.getOut();
-                    putToQueue(tpi, msg, callbackWrapper, target);
+                    putToQueue(tpi, msg, callbackWrapper, relation.getOut());
                 }
             }
         } catch (RuleNodeException rne) {
@@ -288,22 +283,23 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     private void putToQueue(TopicPartitionInfo tpi, TbMsg msg, TbQueueCallback callbackWrapper, EntityId target) {
         switch (target.getEntityType()) {
             case RULE_NODE:
-                putToQueue(tpi, msg.copyWithRuleNodeId(entityId, new RuleNodeId(target.getId())), callbackWrapper);
+                putToQueue(tpi, msg.copyWithRuleNodeId(entityId, (RuleNodeId) target), callbackWrapper);
                 break;
             case RULE_CHAIN:
-                putToQueue(tpi, msg.copyWithRuleChainId(new RuleChainId(target.getId())), callbackWrapper);
+                putToQueue(tpi, msg.copyWithRuleChainId((RuleChainId) target), callbackWrapper);
                 break;
         }
     }
 
-    private void pushToTarget(TopicPartitionInfo tpi, TbMsg msg, EntityId target, String fromRelationType) {
+    private void pushToTarget(TopicPartitionInfo tpi, TbMsg msg, RuleNodeRelation relation) {
+        EntityId target = relation.getOut();
         if (tpi.isMyPartition()) {
             switch (target.getEntityType()) {
                 case RULE_NODE:
-                    pushMsgToNode(nodeActors.get(new RuleNodeId(target.getId())), msg, fromRelationType);
+                    pushMsgToNode(relation.getOutCtx(), msg, relation.getType());
                     break;
                 case RULE_CHAIN:
-                    parent.tell(new RuleChainToRuleChainMsg(new RuleChainId(target.getId()), entityId, msg, fromRelationType), self);
+                    parent.tell(new RuleChainToRuleChainMsg((RuleChainId) target, entityId, msg, relation.getType()), self);
                     break;
             }
         } else {
@@ -320,21 +316,9 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         clusterService.pushMsgToRuleEngine(tpi, newMsg.getId(), toQueueMsg, callbackWrapper);
     }
 
-    private boolean contains(Set<String> relationTypes, String type) {
-        if (relationTypes == null) {
-            return true;
-        }
-        for (String relationType : relationTypes) {
-            if (relationType.equalsIgnoreCase(type)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private void pushMsgToNode(RuleNodeCtx nodeCtx, TbMsg msg, String fromRelationType) {
+    private void pushMsgToNode(DefaultTbContext nodeCtx, TbMsg msg, String fromRelationType) {
         if (nodeCtx != null) {
-            nodeCtx.getSelfActor().tell(new RuleChainToRuleNodeMsg(new DefaultTbContext(systemContext, nodeCtx), msg, fromRelationType), self);
+            nodeCtx.getNodeCtx().getSelfActor().tell(new RuleChainToRuleNodeMsg(nodeCtx, msg, fromRelationType), self);
         } else {
             log.error("[{}][{}] RuleNodeCtx is empty", entityId, ruleChainName);
             msg.getCallback().onFailure(new RuleEngineException("Rule Node CTX is empty"));
@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable routes of the rule chain, compiled on the start and on the update of the rule chain.
+ * Relation types are interned to indexes, so the targets of the rule node for the relation type
+ * are taken from the precomputed arrays instead of filtering of all the rule node relations.
+ */
+final class RuleChainRoutingTable {
+
+    static final RuleNodeRelation[] NO_RELATIONS = new RuleNodeRelation[0];
+    static final RuleChainRoutingTable EMPTY = new RuleChainRoutingTable(null, Collections.emptyMap(), Collections.emptyMap());
+
+    // Relation types are matched ignoring case, so both the original and the lower case types are mapped to the index
+    private final Map<String, Integer> relationTypeIdxs;
+    private final Map<RuleNodeId, DefaultTbContext> nodeContexts;
+    private final Map<RuleNodeId, NodeRoutes> nodeRoutes;
+
+    RuleChainRoutingTable(ActorSystemContext systemContext, Map<RuleNodeId, RuleNodeCtx> nodeActors, Map<RuleNodeId, List<EntityRelation>> relations) {
+        this.relationTypeIdxs = new HashMap<>();
+        this.nodeContexts = new HashMap<>();
+        this.nodeRoutes = new HashMap<>();
+        nodeActors.forEach((ruleNodeId, ruleNodeCtx) -> nodeContexts.put(ruleNodeId, new DefaultTbContext(systemContext, ruleNodeCtx)));
+        int relationTypesCount = 0;
+        for (List<EntityRelation> nodeRelations : relations.values()) {
+            for (EntityRelation relation : nodeRelations) {
+                Integer idx = relationTypeIdxs.get(relation.getType().toLowerCase());
+                if (idx == null) {
+                    idx = relationTypesCount++;
+                    relationTypeIdxs.put(relation.getType().toLowerCase(), idx);
+                }
+                relationTypeIdxs.put(relation.getType(), idx);
+            }
+        }
+        int typesCount = relationTypesCount;
+        relations.forEach((ruleNodeId, nodeRelations) -> {
+            List<List<RuleNodeRelation>> relationsByType = new ArrayList<>(typesCount);
+            for (int i = 0; i < typesCount; i++) {
+                relationsByType.add(new ArrayList<>());
+            }
+            RuleNodeRelation[] allRelations = new RuleNodeRelation[nodeRelations.size()];
+            for (int i = 0; i < nodeRelations.size(); i++) {
+                EntityRelation relation = nodeRelations.get(i);
+                RuleNodeRelation ruleNodeRelation = toRuleNodeRelation(ruleNodeId, relation);
+                allRelations[i] = ruleNodeRelation;
+                relationsByType.get(relationTypeIdxs.get(relation.getType())).add(ruleNodeRelation);
+            }
+            RuleNodeRelation[][] relationsByTypeArray = new RuleNodeRelation[typesCount][];
+            for (int i = 0; i < typesCount; i++) {
+                List<RuleNodeRelation> typeRelations = relationsByType.get(i);
+                relationsByTypeArray[i] = typeRelations.isEmpty() ? NO_RELATIONS : typeRelations.toArray(NO_RELATIONS);
+            }
+            nodeRoutes.put(ruleNodeId, new NodeRoutes(allRelations, relationsByTypeArray));
+        });
+    }
+
+    DefaultTbContext getNodeContext(RuleNodeId ruleNodeId) {
+        return nodeContexts.get(ruleNodeId);
+    }
+
+    /**
+     * Returns the outbound relations of the rule node with one of the relation types, or all outbound relations if relation types are null.
+     * Returns null if the rule node is not a part of the rule chain.
+     */
+    RuleNodeRelation[] getRelations(RuleNodeId ruleNodeId, Set<String> relationTypes) {
+        NodeRoutes routes = nodeRoutes.get(ruleNodeId);
+        if (routes == null) {
+            return null;
+        }
+        if (relationTypes == null) {
+            return routes.allRelations;
+        }
+        if (relationTypes.size() == 1) {
+            return routes.getRelations(getRelationTypeIdx(relationTypes.iterator().next()));
+        }
+        RuleNodeRelation[] result = NO_RELATIONS;
+        int[] matchedIdxs = new int[relationTypes.size()];
+        int matchedCount = 0;
+        for (String relationType : relationTypes) {
+            int idx = getRelationTypeIdx(relationType);
+            if (idx < 0 || contains(matchedIdxs, matchedCount, idx)) {
+                continue;
+            }
+            matchedIdxs[matchedCount++] = idx;
+            RuleNodeRelation[] typeRelations = routes.getRelations(idx);
+            if (typeRelations.length > 0) {
+                if (result.length == 0) {
+                    result = typeRelations;
+                } else {
+                    RuleNodeRelation[] merged = new RuleNodeRelation[result.length + typeRelations.length];
+                    System.arraycopy(result, 0, merged, 0, result.length);
+                    System.arraycopy(typeRelations, 0, merged, result.length, typeRelations.length);
+                    result = merged;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int getRelationTypeIdx(String relationType) {
+        Integer idx = relationTypeIdxs.get(relationType);
+        if (idx == null) {
+            idx = relationTypeIdxs.get(relationType.toLowerCase());
+        }
+        return idx != null ? idx : -1;
+    }
+
+    private RuleNodeRelation toRuleNodeRelation(RuleNodeId ruleNodeId, EntityRelation relation) {
+        EntityId out;
+        DefaultTbContext outCtx = null;
+        if (relation.getTo().getEntityType() == EntityType.RULE_NODE) {
+            RuleNodeId outNodeId = new RuleNodeId(relation.getTo().getId());
+            out = outNodeId;
+            outCtx = nodeContexts.get(outNodeId);
+        } else if (relation.getTo().getEntityType() == EntityType.RULE_CHAIN) {
+            out = new RuleChainId(relation.getTo().getId());
+        } else {
+            out = relation.getTo();
+        }
+        return new RuleNodeRelation(ruleNodeId, out, relation.getType(), outCtx);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class NodeRoutes {
+
+        private final RuleNodeRelation[] allRelations;
+        private final RuleNodeRelation[][] relationsByType;
+
+        NodeRoutes(RuleNodeRelation[] allRelations, RuleNodeRelation[][] relationsByType) {
+            this.allRelations = allRelations;
+            this.relationsByType = relationsByType;
+        }
+
+        RuleNodeRelation[] getRelations(int relationTypeIdx) {
+            return relationTypeIdx >= 0 ? relationsByType[relationTypeIdx] : NO_RELATIONS;
+        }
+    }
+}
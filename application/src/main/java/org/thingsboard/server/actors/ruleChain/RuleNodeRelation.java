@@ -28,5 +28,7 @@ final class RuleNodeRelation {
     private final EntityId in;
     private final EntityId out;
     private final String type;
+    // Reused context of the target rule node, null if the target is the rule chain
+    private final DefaultTbContext outCtx;
 
 }
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.controller.plugin;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.BeanCreationNotAllowedException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,11 +42,17 @@ import org.thingsboard.server.service.telemetry.SessionEvent;
 import org.thingsboard.server.service.telemetry.TelemetryWebSocketMsgEndpoint;
 import org.thingsboard.server.service.telemetry.TelemetryWebSocketService;
 import org.thingsboard.server.service.telemetry.TelemetryWebSocketSessionRef;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
 
+import javax.annotation.PostConstruct;
 import javax.websocket.*;
 import java.io.IOException;
 import java.net.URI;
 import java.security.InvalidParameterException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
@@ -59,6 +67,7 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
 
     private static final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
 
     @Autowired
     private TelemetryWebSocketService webSocketService;
@@ -79,6 +88,11 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
     @Value("${server.ws.limits.max_updates_per_session:}")
     private String perSessionUpdatesConfiguration;
 
+    @Value("${server.ws.conflation.enabled:false}")
+    private boolean conflationEnabled;
+    @Value("${server.ws.conflation.max_values_per_key:1}")
+    private int conflationMaxValuesPerKey;
+
     private ConcurrentMap<String, TelemetryWebSocketSessionRef> blacklistedSessions = new ConcurrentHashMap<>();
     private ConcurrentMap<String, TbRateLimits> perSessionUpdateLimits = new ConcurrentHashMap<>();
 
@@ -87,6 +101,13 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
     private ConcurrentMap<UserId, Set<String>> regularUserSessionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<UserId, Set<String>> publicUserSessionsMap = new ConcurrentHashMap<>();
 
+    @PostConstruct
+    public void init() {
+        if (conflationEnabled && conflationMaxValuesPerKey < 1) {
+            throw new IllegalArgumentException("server.ws.conflation.max_values_per_key must be positive, but is " + conflationMaxValuesPerKey);
+        }
+    }
+
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
@@ -181,13 +202,17 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
         }
     }
 
-    private class SessionMetaData implements SendHandler {
+    class SessionMetaData implements SendHandler {
         private final WebSocketSession session;
         private final RemoteEndpoint.Async asyncRemote;
         private final TelemetryWebSocketSessionRef sessionRef;
 
         private volatile boolean isSending = false;
         private final Queue<String> msgQueue;
+        // Data updates received while a message is sent, merged per subscription. Used in the conflation mode only
+        private final Map<Integer, SubscriptionUpdate> pendingUpdates = new LinkedHashMap<>();
+        // Subscriptions that already got their first update. Used in the conflation mode only
+        private final Set<Integer> updatedSubscriptionIds = new HashSet<>();
 
         SessionMetaData(WebSocketSession session, TelemetryWebSocketSessionRef sessionRef, int maxMsgQueuePerSession) {
             super();
@@ -220,6 +245,58 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
             }
         }
 
+        /**
+         * Merges the update with the pending update of the same subscription while a message is sent,
+         * so the session gets one message per subscription with the latest values instead of the queue overflow.
+         * The first update of a subscription carries its initial data, e.g. the requested time series history,
+         * so it is queued as is and never truncated to the latest values.
+         */
+        synchronized void sendUpdate(SubscriptionUpdate update) {
+            if (updatedSubscriptionIds.add(update.getSubscriptionId())) {
+                String msg;
+                try {
+                    msg = jsonMapper.writeValueAsString(update);
+                } catch (JsonProcessingException e) {
+                    log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
+                    return;
+                }
+                sendMsg(msg);
+            } else if (isSending) {
+                pendingUpdates.merge(update.getSubscriptionId(), update, (pending, newer) -> pending.merge(newer, conflationMaxValuesPerKey));
+            } else {
+                isSending = true;
+                sendUpdateInternal(update);
+            }
+        }
+
+        private void sendUpdateInternal(SubscriptionUpdate update) {
+            String msg;
+            try {
+                msg = jsonMapper.writeValueAsString(update);
+            } catch (JsonProcessingException e) {
+                log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
+                sendNext();
+                return;
+            }
+            sendMsgInternal(msg);
+        }
+
+        private void sendNext() {
+            String msg = msgQueue.poll();
+            if (msg != null) {
+                sendMsgInternal(msg);
+                return;
+            }
+            Iterator<SubscriptionUpdate> pendingIterator = pendingUpdates.values().iterator();
+            if (pendingIterator.hasNext()) {
+                SubscriptionUpdate update = pendingIterator.next();
+                pendingIterator.remove();
+                sendUpdateInternal(update);
+            } else {
+                isSending = false;
+            }
+        }
+
         private void sendMsgInternal(String msg) {
             try {
                 this.asyncRemote.sendText(msg, this);
@@ -243,11 +320,8 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
                     log.trace("[{}] Session transport error", session.getId(), ioe);
                 }
             } else {
-                String msg = msgQueue.poll();
-                if (msg != null) {
-                    sendMsgInternal(msg);
-                } else {
-                    isSending = false;
+                synchronized (this) {
+                    sendNext();
                 }
             }
         }
@@ -255,8 +329,31 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
 
     @Override
     public void send(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
+        log.debug("[{}] Processing {}", sessionRef.getSessionId(), msg);
+        SessionMetaData sessionMd = getSessionToSend(sessionRef, subscriptionId);
+        if (sessionMd != null) {
+            sessionMd.sendMsg(msg);
+        }
+    }
+
+    @Override
+    public void send(TelemetryWebSocketSessionRef sessionRef, SubscriptionUpdate update) throws IOException {
+        if (!conflationEnabled || update.getErrorCode() != 0 || update.getData() == null) {
+            send(sessionRef, update.getSubscriptionId(), jsonMapper.writeValueAsString(update));
+        } else {
+            log.debug("[{}] Processing {}", sessionRef.getSessionId(), update);
+            SessionMetaData sessionMd = getSessionToSend(sessionRef, update.getSubscriptionId());
+            if (sessionMd != null) {
+                sessionMd.sendUpdate(update);
+            }
+        }
+    }
+
+    /**
+     * Returns null if the session is not found or the max session updates limit is reached.
+     */
+    private SessionMetaData getSessionToSend(TelemetryWebSocketSessionRef sessionRef, int subscriptionId) {
         String externalId = sessionRef.getSessionId();
-        log.debug("[{}] Processing {}", externalId, msg);
         String internalId = externalSessionMap.get(externalId);
         if (internalId != null) {
             SessionMetaData sessionMd = internalSessionMap.get(internalId);
@@ -269,19 +366,20 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
                                     , sessionRef.getSecurityCtx().getTenantId(), sessionRef.getSecurityCtx().getId(), externalId);
                             sessionMd.sendMsg("{\"subscriptionId\":" + subscriptionId + ", \"errorCode\":" + ThingsboardErrorCode.TOO_MANY_UPDATES.getErrorCode() + ", \"errorMsg\":\"Too many updates!\"}");
                         }
-                        return;
+                        return null;
                     } else {
                         log.debug("[{}][{}][{}] Session is no longer blacklisted.", sessionRef.getSecurityCtx().getTenantId(), sessionRef.getSecurityCtx().getId(), externalId);
                         blacklistedSessions.remove(externalId);
                     }
                 }
-                sessionMd.sendMsg(msg);
+                return sessionMd;
             } else {
                 log.warn("[{}][{}] Failed to find session by internal id", externalId, internalId);
             }
         } else {
             log.warn("[{}] Failed to find session by external id", externalId);
         }
+        return null;
     }
 
     @Override
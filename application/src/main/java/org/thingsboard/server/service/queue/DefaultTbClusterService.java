@@ -18,10 +18,12 @@ package org.thingsboard.server.service.queue;
 import com.google.protobuf.ByteString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.rule.engine.api.msg.ToDeviceActorNotificationMsg;
 import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
@@ -29,6 +31,10 @@ import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.dao.attributes.AttributesCacheEvictEvent;
+import org.thingsboard.server.dao.device.DeviceCacheEvictEvent;
+import org.thingsboard.server.gen.transport.TransportProtos.AttributesCacheEvictMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceCacheEvictMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.FromDeviceRPCResponseProto;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
@@ -39,6 +45,7 @@ import org.thingsboard.server.queue.TbQueueCallback;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
 import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
 import org.thingsboard.server.service.encoding.DataDecodingEncodingService;
 import org.thingsboard.server.service.rpc.FromDeviceRpcResponse;
@@ -55,6 +62,9 @@ public class DefaultTbClusterService implements TbClusterService {
     @Value("${cluster.stats.enabled:false}")
     private boolean statsEnabled;
 
+    @Value("${cache.type:caffeine}")
+    private String cacheType;
+
     private final AtomicInteger toCoreMsgs = new AtomicInteger(0);
     private final AtomicInteger toCoreNfs = new AtomicInteger(0);
     private final AtomicInteger toRuleEngineMsgs = new AtomicInteger(0);
@@ -64,11 +74,14 @@ public class DefaultTbClusterService implements TbClusterService {
     private final TbQueueProducerProvider producerProvider;
     private final PartitionService partitionService;
     private final DataDecodingEncodingService encodingService;
+    private final TbServiceInfoProvider serviceInfoProvider;
 
-    public DefaultTbClusterService(TbQueueProducerProvider producerProvider, PartitionService partitionService, DataDecodingEncodingService encodingService) {
+    public DefaultTbClusterService(TbQueueProducerProvider producerProvider, PartitionService partitionService,
+                                   DataDecodingEncodingService encodingService, TbServiceInfoProvider serviceInfoProvider) {
         this.producerProvider = producerProvider;
         this.partitionService = partitionService;
         this.encodingService = encodingService;
+        this.serviceInfoProvider = serviceInfoProvider;
     }
 
     @Override
@@ -187,6 +200,58 @@ public class DefaultTbClusterService implements TbClusterService {
         }
     }
 
+    @EventListener
+    public void onAttributesCacheEvict(AttributesCacheEvictEvent event) {
+        if (!"caffeine".equals(cacheType)) {
+            // Redis cache is shared by all nodes and is already up to date
+            return;
+        }
+        EntityId entityId = event.getEntityId();
+        AttributesCacheEvictMsgProto proto = AttributesCacheEvictMsgProto.newBuilder()
+                .setEntityType(entityId.getEntityType().name())
+                .setEntityIdMSB(entityId.getId().getMostSignificantBits())
+                .setEntityIdLSB(entityId.getId().getLeastSignificantBits())
+                .setScope(event.getScope())
+                .addAllKeys(event.getKeys())
+                .build();
+        String currentServiceId = serviceInfoProvider.getServiceId();
+        TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toCoreNfProducer = producerProvider.getTbCoreNotificationsMsgProducer();
+        Set<String> tbCoreServices = partitionService.getAllServiceIds(ServiceType.TB_CORE);
+        for (String serviceId : tbCoreServices) {
+            if (!serviceId.equals(currentServiceId)) {
+                TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
+                ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setAttributesCacheEvictMsg(proto).build();
+                toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(entityId.getId(), toCoreMsg), null);
+                toCoreNfs.incrementAndGet();
+            }
+        }
+        Set<String> tbRuleEngineServices = new HashSet<>(partitionService.getAllServiceIds(ServiceType.TB_RULE_ENGINE));
+        // No need to push notifications twice
+        tbRuleEngineServices.removeAll(tbCoreServices);
+        tbRuleEngineServices.remove(currentServiceId);
+        TbQueueProducer<TbProtoQueueMsg<ToRuleEngineNotificationMsg>> toRuleEngineProducer = producerProvider.getRuleEngineNotificationsMsgProducer();
+        for (String serviceId : tbRuleEngineServices) {
+            TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceId);
+            ToRuleEngineNotificationMsg toRuleEngineMsg = ToRuleEngineNotificationMsg.newBuilder().setAttributesCacheEvictMsg(proto).build();
+            toRuleEngineProducer.send(tpi, new TbProtoQueueMsg<>(entityId.getId(), toRuleEngineMsg), null);
+            toRuleEngineNfs.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onDeviceCacheEvict(DeviceCacheEvictEvent event) {
+        DeviceId deviceId = event.getDeviceId();
+        ToTransportMsg msg = ToTransportMsg.newBuilder().setDeviceCacheEvictMsg(DeviceCacheEvictMsgProto.newBuilder()
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())).build();
+        TbQueueProducer<TbProtoQueueMsg<ToTransportMsg>> toTransportNfProducer = producerProvider.getTransportNotificationsMsgProducer();
+        for (String serviceId : partitionService.getAllServiceIds(ServiceType.TB_TRANSPORT)) {
+            TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_TRANSPORT, serviceId);
+            toTransportNfProducer.send(tpi, new TbProtoQueueMsg<>(deviceId.getId(), msg), null);
+            toTransportNfs.incrementAndGet();
+        }
+    }
+
     @Scheduled(fixedDelayString = "${cluster.stats.print_interval_ms}")
     public void printStats() {
         if (statsEnabled) {
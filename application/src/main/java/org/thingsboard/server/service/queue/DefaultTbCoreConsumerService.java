@@ -20,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.rule.engine.api.RpcError;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -29,14 +30,17 @@ import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.gen.transport.TransportProtos.DeviceStateServiceMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.FromDeviceRPCResponseProto;
 import org.thingsboard.server.gen.transport.TransportProtos.LocalSubscriptionServiceMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
 import org.thingsboard.server.gen.transport.TransportProtos.SubscriptionMgrMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbAttributeUpdateProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionCloseProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesUpdateProto;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.TransportToDeviceActorMsg;
 import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueuePosition;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
 import org.thingsboard.server.queue.provider.TbCoreQueueFactory;
@@ -53,15 +57,19 @@ import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWra
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 @Service
 @TbCoreComponent
@@ -74,6 +82,10 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     private long packProcessingTimeout;
     @Value("${queue.core.stats.enabled:false}")
     private boolean statsEnabled;
+    @Value("${queue.core.max-in-flight-packs:1}")
+    private int maxInFlightPacks;
+    @Value("${queue.core.stripes:8}")
+    private int stripesCount;
 
     private final TbQueueConsumer<TbProtoQueueMsg<ToCoreMsg>> mainConsumer;
     private final DeviceStateService stateService;
@@ -81,6 +93,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     private final SubscriptionManagerService subscriptionManagerService;
     private final TbCoreDeviceRpcService tbCoreDeviceRpcService;
     private final TbCoreConsumerStats stats = new TbCoreConsumerStats();
+    private final TbPackCommitWatermark commitWatermark = new TbPackCommitWatermark();
+    private volatile TbStripedExecutor stripedExecutor;
+    private volatile ExecutorService packExecutor;
 
     public DefaultTbCoreConsumerService(TbCoreQueueFactory tbCoreQueueFactory, ActorSystemContext actorContext,
                                         DeviceStateService stateService, TbLocalSubscriptionService localSubscriptionService,
@@ -102,6 +117,12 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     @PreDestroy
     public void destroy(){
         super.destroy();
+        if (stripedExecutor != null) {
+            stripedExecutor.shutdownNow();
+        }
+        if (packExecutor != null) {
+            packExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -114,6 +135,13 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
 
     @Override
     protected void launchMainConsumers() {
+        if (maxInFlightPacks > 1) {
+            if (mainConsumer.getPosition() != null) {
+                launchPipelinedConsumer();
+                return;
+            }
+            log.warn("Queue consumer doesn't support commit of the position, max-in-flight-packs is ignored");
+        }
         consumersExecutor.submit(() -> {
             while (!stopped) {
                 try {
@@ -121,43 +149,73 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                     if (msgs.isEmpty()) {
                         continue;
                     }
-                    ConcurrentMap<UUID, TbProtoQueueMsg<ToCoreMsg>> pendingMap = msgs.stream().collect(
-                            Collectors.toConcurrentMap(s -> UUID.randomUUID(), Function.identity()));
-                    CountDownLatch processingTimeoutLatch = new CountDownLatch(1);
-                    TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> ctx = new TbPackProcessingContext<>(
-                            processingTimeoutLatch, pendingMap, new ConcurrentHashMap<>());
-                    pendingMap.forEach((id, msg) -> {
-                        log.trace("[{}] Creating main callback for message: {}", id, msg.getValue());
-                        TbCallback callback = new TbPackCallback<>(id, ctx);
+                    TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> ctx = submitPack(msgs, (msg, task) -> task.run());
+                    awaitPack(ctx);
+                    mainConsumer.commit();
+                } catch (Exception e) {
+                    if (!stopped) {
+                        log.warn("Failed to obtain messages from queue.", e);
                         try {
-                            ToCoreMsg toCoreMsg = msg.getValue();
-                            if (toCoreMsg.hasToSubscriptionMgrMsg()) {
-                                log.trace("[{}] Forwarding message to subscription manager service {}", id, toCoreMsg.getToSubscriptionMgrMsg());
-                                forwardToSubMgrService(toCoreMsg.getToSubscriptionMgrMsg(), callback);
-                            } else if (toCoreMsg.hasToDeviceActorMsg()) {
-                                log.trace("[{}] Forwarding message to device actor {}", id, toCoreMsg.getToDeviceActorMsg());
-                                forwardToDeviceActor(toCoreMsg.getToDeviceActorMsg(), callback);
-                            } else if (toCoreMsg.hasDeviceStateServiceMsg()) {
-                                log.trace("[{}] Forwarding message to state service {}", id, toCoreMsg.getDeviceStateServiceMsg());
-                                forwardToStateService(toCoreMsg.getDeviceStateServiceMsg(), callback);
-                            } else if (toCoreMsg.getToDeviceActorNotificationMsg() != null && !toCoreMsg.getToDeviceActorNotificationMsg().isEmpty()) {
-                                Optional<TbActorMsg> actorMsg = encodingService.decode(toCoreMsg.getToDeviceActorNotificationMsg().toByteArray());
-                                if (actorMsg.isPresent()) {
-                                    log.trace("[{}] Forwarding message to App Actor {}", id, actorMsg.get());
-                                    actorContext.tell(actorMsg.get(), ActorRef.noSender());
-                                }
-                                callback.onSuccess();
-                            }
-                        } catch (Throwable e) {
-                            log.warn("[{}] Failed to process message: {}", id, msg, e);
-                            callback.onFailure(e);
+                            Thread.sleep(pollDuration);
+                        } catch (InterruptedException e2) {
+                            log.trace("Failed to wait until the server has capacity to handle new requests", e2);
                         }
-                    });
-                    if (!processingTimeoutLatch.await(packProcessingTimeout, TimeUnit.MILLISECONDS)) {
-                        ctx.getAckMap().forEach((id, msg) -> log.warn("[{}] Timeout to process message: {}", id, msg.getValue()));
-                        ctx.getFailedMap().forEach((id, msg) -> log.warn("[{}] Failed to process message: {}", id, msg.getValue()));
                     }
-                    mainConsumer.commit();
+                }
+            }
+            log.info("TB Core Consumer stopped.");
+        });
+    }
+
+    /**
+     * Keeps polling while up to max-in-flight-packs earlier packs are processed.
+     * Messages are dispatched by the stripe of their device, session or entity, so messages of one entity are handled in the poll order
+     * even if they belong to different packs, and the consumer commits only the position of the last pack that has no older packs in progress.
+     */
+    private void launchPipelinedConsumer() {
+        log.info("Launching pipelined consumer with {} packs in flight and {} stripes", maxInFlightPacks, stripesCount);
+        stripedExecutor = new TbStripedExecutor("tb-core-stripe", stripesCount);
+        packExecutor = Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName("tb-core-pack"));
+        Semaphore window = new Semaphore(maxInFlightPacks);
+        consumersExecutor.submit(() -> {
+            while (!stopped) {
+                try {
+                    TbQueuePosition commitPosition = commitWatermark.pollCommitPosition();
+                    if (commitPosition != null) {
+                        mainConsumer.commit(commitPosition);
+                    }
+                    if (!window.tryAcquire(pollDuration, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    List<TbProtoQueueMsg<ToCoreMsg>> msgs;
+                    try {
+                        msgs = mainConsumer.poll(pollDuration);
+                    } catch (Exception e) {
+                        window.release();
+                        throw e;
+                    }
+                    if (msgs.isEmpty()) {
+                        window.release();
+                        continue;
+                    }
+                    TbPackCommitWatermark.Pack pack = commitWatermark.add(mainConsumer.getPosition(), msgs.size());
+                    try {
+                        TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> ctx = submitPack(msgs, (msg, task) -> stripedExecutor.execute(getOrderingKey(msg), task));
+                        packExecutor.execute(() -> {
+                            try {
+                                awaitPack(ctx);
+                            } catch (InterruptedException e) {
+                                log.trace("Failed to await pack processing", e);
+                            } finally {
+                                commitWatermark.complete(pack);
+                                window.release();
+                            }
+                        });
+                    } catch (Exception e) {
+                        commitWatermark.complete(pack);
+                        window.release();
+                        throw e;
+                    }
                 } catch (Exception e) {
                     if (!stopped) {
                         log.warn("Failed to obtain messages from queue.", e);
@@ -173,6 +231,86 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         });
     }
 
+    private TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> submitPack(List<TbProtoQueueMsg<ToCoreMsg>> msgs,
+                                                                           BiConsumer<TbProtoQueueMsg<ToCoreMsg>, Runnable> dispatcher) {
+        Map<UUID, TbProtoQueueMsg<ToCoreMsg>> orderedMsgs = new LinkedHashMap<>();
+        msgs.forEach(msg -> orderedMsgs.put(UUID.randomUUID(), msg));
+        ConcurrentMap<UUID, TbProtoQueueMsg<ToCoreMsg>> pendingMap = new ConcurrentHashMap<>(orderedMsgs);
+        CountDownLatch processingTimeoutLatch = new CountDownLatch(1);
+        TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> ctx = new TbPackProcessingContext<>(
+                processingTimeoutLatch, pendingMap, new ConcurrentHashMap<>());
+        orderedMsgs.forEach((id, msg) -> {
+            log.trace("[{}] Creating main callback for message: {}", id, msg.getValue());
+            TbCallback callback = new TbPackCallback<>(id, ctx);
+            dispatcher.accept(msg, () -> handleMsg(id, msg, callback));
+        });
+        return ctx;
+    }
+
+    private void awaitPack(TbPackProcessingContext<TbProtoQueueMsg<ToCoreMsg>> ctx) throws InterruptedException {
+        if (!ctx.await(packProcessingTimeout, TimeUnit.MILLISECONDS)) {
+            ctx.getAckMap().forEach((id, msg) -> log.warn("[{}] Timeout to process message: {}", id, msg.getValue()));
+            ctx.getFailedMap().forEach((id, msg) -> log.warn("[{}] Failed to process message: {}", id, msg.getValue()));
+        }
+    }
+
+    private void handleMsg(UUID id, TbProtoQueueMsg<ToCoreMsg> msg, TbCallback callback) {
+        try {
+            ToCoreMsg toCoreMsg = msg.getValue();
+            if (toCoreMsg.hasToSubscriptionMgrMsg()) {
+                log.trace("[{}] Forwarding message to subscription manager service {}", id, toCoreMsg.getToSubscriptionMgrMsg());
+                forwardToSubMgrService(toCoreMsg.getToSubscriptionMgrMsg(), callback);
+            } else if (toCoreMsg.hasToDeviceActorMsg()) {
+                log.trace("[{}] Forwarding message to device actor {}", id, toCoreMsg.getToDeviceActorMsg());
+                forwardToDeviceActor(toCoreMsg.getToDeviceActorMsg(), callback);
+            } else if (toCoreMsg.hasDeviceStateServiceMsg()) {
+                log.trace("[{}] Forwarding message to state service {}", id, toCoreMsg.getDeviceStateServiceMsg());
+                forwardToStateService(toCoreMsg.getDeviceStateServiceMsg(), callback);
+            } else if (toCoreMsg.getToDeviceActorNotificationMsg() != null && !toCoreMsg.getToDeviceActorNotificationMsg().isEmpty()) {
+                Optional<TbActorMsg> actorMsg = encodingService.decode(toCoreMsg.getToDeviceActorNotificationMsg().toByteArray());
+                if (actorMsg.isPresent()) {
+                    log.trace("[{}] Forwarding message to App Actor {}", id, actorMsg.get());
+                    actorContext.tell(actorMsg.get(), ActorRef.noSender());
+                }
+                callback.onSuccess();
+            }
+        } catch (Throwable e) {
+            log.warn("[{}] Failed to process message: {}", id, msg, e);
+            callback.onFailure(e);
+        }
+    }
+
+    /**
+     * Messages of one device are ordered by the device id. Subscription commands and entity updates are both ordered
+     * by the entity id, so an update is never processed before the subscription to its entity that was queued earlier.
+     * Subscription close commands don't carry the entity id and rely on the queue msg key, which is the entity id
+     * of the subscription on the producer side. Device actor notifications are keyed by the device id on the producer side.
+     */
+    static Object getOrderingKey(TbProtoQueueMsg<ToCoreMsg> msg) {
+        ToCoreMsg toCoreMsg = msg.getValue();
+        if (toCoreMsg.hasToDeviceActorMsg()) {
+            SessionInfoProto sessionInfo = toCoreMsg.getToDeviceActorMsg().getSessionInfo();
+            return new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB());
+        } else if (toCoreMsg.hasDeviceStateServiceMsg()) {
+            DeviceStateServiceMsgProto stateMsg = toCoreMsg.getDeviceStateServiceMsg();
+            return new UUID(stateMsg.getDeviceIdMSB(), stateMsg.getDeviceIdLSB());
+        } else if (toCoreMsg.hasToSubscriptionMgrMsg()) {
+            SubscriptionMgrMsgProto subMsg = toCoreMsg.getToSubscriptionMgrMsg();
+            if (subMsg.hasAttributeSub()) {
+                TbSubscriptionProto sub = subMsg.getAttributeSub().getSub();
+                return new UUID(sub.getEntityIdMSB(), sub.getEntityIdLSB());
+            } else if (subMsg.hasTelemetrySub()) {
+                TbSubscriptionProto sub = subMsg.getTelemetrySub().getSub();
+                return new UUID(sub.getEntityIdMSB(), sub.getEntityIdLSB());
+            } else if (subMsg.hasTsUpdate()) {
+                return new UUID(subMsg.getTsUpdate().getEntityIdMSB(), subMsg.getTsUpdate().getEntityIdLSB());
+            } else if (subMsg.hasAttrUpdate()) {
+                return new UUID(subMsg.getAttrUpdate().getEntityIdMSB(), subMsg.getAttrUpdate().getEntityIdLSB());
+            }
+        }
+        return msg.getKey();
+    }
+
     @Override
     protected ServiceType getServiceType() {
         return ServiceType.TB_CORE;
@@ -204,6 +342,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                 actorContext.tell(actorMsg.get(), ActorRef.noSender());
             }
             callback.onSuccess();
+        } else if (toCoreNotification.hasAttributesCacheEvictMsg()) {
+            log.trace("[{}] Evicting attributes from cache {}", id, toCoreNotification.getAttributesCacheEvictMsg());
+            evictAttributesFromCache(toCoreNotification.getAttributesCacheEvictMsg(), callback);
         }
         if (statsEnabled) {
             stats.log(toCoreNotification);
@@ -222,6 +363,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     public void printStats() {
         if (statsEnabled) {
             stats.printStats();
+            if (stripedExecutor != null && commitWatermark.hasStats()) {
+                log.info("Pipeline stats: {}", commitWatermark.getStatsAndReset());
+            }
         }
     }
 
@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.TbActorMsg;
@@ -34,6 +35,7 @@ import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineNotificationMsg;
 import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueuePosition;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
 import org.thingsboard.server.queue.provider.TbRuleEngineQueueFactory;
@@ -62,6 +64,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -85,6 +88,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private final ConcurrentMap<String, TbRuleEngineQueueConfiguration> consumerConfigurations = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, TbRuleEngineConsumerStats> consumerStats = new ConcurrentHashMap<>();
     private ExecutorService submitExecutor;
+    private ExecutorService packExecutor;
 
     public DefaultTbRuleEngineConsumerService(TbRuleEngineProcessingStrategyFactory processingStrategyFactory,
                                               TbRuleEngineSubmitStrategyFactory submitStrategyFactory,
@@ -108,6 +112,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
             consumerStats.put(configuration.getName(), new TbRuleEngineConsumerStats(configuration.getName()));
         }
         submitExecutor = Executors.newSingleThreadExecutor();
+        packExecutor = Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName("tb-rule-engine-pack"));
     }
 
     @PreDestroy
@@ -116,6 +121,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         if (submitExecutor != null) {
             submitExecutor.shutdownNow();
         }
+        if (packExecutor != null) {
+            packExecutor.shutdownNow();
+        }
         ruleEngineSettings.getQueues().forEach(config -> consumerConfigurations.put(config.getName(), config));
     }
 
@@ -139,6 +147,13 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     }
 
     private void launchConsumer(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats) {
+        if (configuration.getMaxInFlightPacks() > 1) {
+            if (consumer.getPosition() != null) {
+                launchPipelinedConsumer(consumer, configuration, stats);
+                return;
+            }
+            log.warn("[{}] Queue consumer doesn't support commit of the position, max-in-flight-packs is ignored", configuration.getName());
+        }
         consumersExecutor.execute(() -> {
             while (!stopped) {
                 try {
@@ -146,47 +161,78 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                     if (msgs.isEmpty()) {
                         continue;
                     }
-                    TbRuleEngineSubmitStrategy submitStrategy = submitStrategyFactory.newInstance(configuration.getName(), configuration.getSubmitStrategy());
-                    TbRuleEngineProcessingStrategy ackStrategy = processingStrategyFactory.newInstance(configuration.getName(), configuration.getProcessingStrategy());
-
-                    submitStrategy.init(msgs);
+                    processPack(msgs, configuration, stats);
+                    consumer.commit();
+                } catch (Exception e) {
+                    if (!stopped) {
+                        log.warn("Failed to process messages from queue.", e);
+                        try {
+                            Thread.sleep(pollDuration);
+                        } catch (InterruptedException e2) {
+                            log.trace("Failed to wait until the server has capacity to handle new requests", e2);
+                        }
+                    }
+                }
+            }
+            log.info("TB Rule Engine Consumer stopped.");
+        });
+    }
 
-                    while (!stopped) {
-                        TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(submitStrategy);
-                        submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> {
-                            log.trace("[{}] Creating callback for message: {}", id, msg.getValue());
-                            ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
-                            TenantId tenantId = new TenantId(new UUID(toRuleEngineMsg.getTenantIdMSB(), toRuleEngineMsg.getTenantIdLSB()));
-                            TbMsgCallback callback = new TbMsgPackCallback(id, tenantId, ctx);
+    /**
+     * Keeps polling while up to max-in-flight-packs earlier packs are processed.
+     * Each pack is processed with its own submit and processing strategies, so retries stay within the pack,
+     * and the consumer commits only the position of the last pack that has no older packs in progress.
+     */
+    private void launchPipelinedConsumer(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats) {
+        int maxInFlightPacks = configuration.getMaxInFlightPacks();
+        if (configuration.getSubmitStrategy().getType().startsWith("SEQUENTIAL")) {
+            log.warn("[{}] Messages from different packs may be processed out of order with {} submit strategy and {} packs in flight",
+                    configuration.getName(), configuration.getSubmitStrategy().getType(), maxInFlightPacks);
+        }
+        log.info("[{}] Launching pipelined consumer with {} packs in flight", configuration.getName(), maxInFlightPacks);
+        TbPackCommitWatermark watermark = new TbPackCommitWatermark();
+        stats.setCommitWatermark(watermark);
+        Semaphore window = new Semaphore(maxInFlightPacks);
+        consumersExecutor.execute(() -> {
+            while (!stopped) {
+                try {
+                    TbQueuePosition commitPosition = watermark.pollCommitPosition();
+                    if (commitPosition != null) {
+                        consumer.commit(commitPosition);
+                    }
+                    if (!window.tryAcquire(pollDuration, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs;
+                    try {
+                        msgs = consumer.poll(pollDuration);
+                    } catch (Exception e) {
+                        window.release();
+                        throw e;
+                    }
+                    if (msgs.isEmpty()) {
+                        window.release();
+                        continue;
+                    }
+                    TbPackCommitWatermark.Pack pack = watermark.add(consumer.getPosition(), msgs.size());
+                    try {
+                        packExecutor.execute(() -> {
                             try {
-                                if (toRuleEngineMsg.getTbMsg() != null && !toRuleEngineMsg.getTbMsg().isEmpty()) {
-                                    forwardToRuleEngineActor(tenantId, toRuleEngineMsg, callback);
-                                } else {
-                                    callback.onSuccess();
-                                }
+                                processPack(msgs, configuration, stats);
                             } catch (Exception e) {
-                                callback.onFailure(new RuleEngineException(e.getMessage()));
+                                if (!stopped) {
+                                    log.warn("Failed to process messages from queue.", e);
+                                }
+                            } finally {
+                                watermark.complete(pack);
+                                window.release();
                             }
-                        }));
-
-                        boolean timeout = false;
-                        if (!ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS)) {
-                            timeout = true;
-                        }
-
-                        TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(timeout, ctx);
-                        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-                        if (statsEnabled) {
-                            stats.log(result, decision.isCommit());
-                        }
-                        if (decision.isCommit()) {
-                            submitStrategy.stop();
-                            break;
-                        } else {
-                            submitStrategy.update(decision.getReprocessMap());
-                        }
+                        });
+                    } catch (Exception e) {
+                        watermark.complete(pack);
+                        window.release();
+                        throw e;
                     }
-                    consumer.commit();
                 } catch (Exception e) {
                     if (!stopped) {
                         log.warn("Failed to process messages from queue.", e);
@@ -202,6 +248,49 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         });
     }
 
+    private void processPack(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs, TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats) throws InterruptedException {
+        TbRuleEngineSubmitStrategy submitStrategy = submitStrategyFactory.newInstance(configuration.getName(), configuration.getSubmitStrategy());
+        TbRuleEngineProcessingStrategy ackStrategy = processingStrategyFactory.newInstance(configuration.getName(), configuration.getProcessingStrategy());
+
+        submitStrategy.init(msgs);
+
+        while (!stopped) {
+            TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(submitStrategy);
+            submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> {
+                log.trace("[{}] Creating callback for message: {}", id, msg.getValue());
+                ToRuleEngineMsg toRuleEngineMsg = msg.getValue();
+                TenantId tenantId = new TenantId(new UUID(toRuleEngineMsg.getTenantIdMSB(), toRuleEngineMsg.getTenantIdLSB()));
+                TbMsgCallback callback = new TbMsgPackCallback(id, tenantId, ctx);
+                try {
+                    if (toRuleEngineMsg.getTbMsg() != null && !toRuleEngineMsg.getTbMsg().isEmpty()) {
+                        forwardToRuleEngineActor(tenantId, toRuleEngineMsg, callback);
+                    } else {
+                        callback.onSuccess();
+                    }
+                } catch (Exception e) {
+                    callback.onFailure(new RuleEngineException(e.getMessage()));
+                }
+            }));
+
+            boolean timeout = false;
+            if (!ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS)) {
+                timeout = true;
+            }
+
+            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(timeout, ctx);
+            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+            if (statsEnabled) {
+                stats.log(result, decision.isCommit());
+            }
+            if (decision.isCommit()) {
+                submitStrategy.stop();
+                break;
+            } else {
+                submitStrategy.update(decision.getReprocessMap());
+            }
+        }
+    }
+
     @Override
     protected ServiceType getServiceType() {
         return ServiceType.TB_RULE_ENGINE;
@@ -227,6 +316,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 actorContext.tell(actorMsg.get(), ActorRef.noSender());
             }
             callback.onSuccess();
+        } else if (nfMsg.hasAttributesCacheEvictMsg()) {
+            log.trace("[{}] Evicting attributes from cache {}", id, nfMsg.getAttributesCacheEvictMsg());
+            evictAttributesFromCache(nfMsg.getAttributesCacheEvictMsg(), callback);
         } else {
             callback.onSuccess();
         }
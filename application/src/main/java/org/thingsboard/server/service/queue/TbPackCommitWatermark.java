@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.thingsboard.server.queue.TbQueuePosition;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks the packs polled by a pipelined consumer in the poll order.
+ * Packs may complete in any order, but the commit position only moves past the contiguous prefix of completed packs,
+ * so a message is never committed while the message polled before it is still in progress.
+ */
+class TbPackCommitWatermark {
+
+    private final Deque<Pack> packs = new ArrayDeque<>();
+    private int inFlightPacks;
+    private int uncommittedMsgs;
+    private int maxInFlightPacks;
+    private int maxUncommittedMsgs;
+
+    synchronized Pack add(TbQueuePosition position, int size) {
+        Pack pack = new Pack(position, size);
+        packs.add(pack);
+        inFlightPacks++;
+        uncommittedMsgs += size;
+        maxInFlightPacks = Math.max(maxInFlightPacks, inFlightPacks);
+        maxUncommittedMsgs = Math.max(maxUncommittedMsgs, uncommittedMsgs);
+        return pack;
+    }
+
+    synchronized void complete(Pack pack) {
+        if (!pack.completed) {
+            pack.completed = true;
+            inFlightPacks--;
+        }
+    }
+
+    /**
+     * Removes the leading completed packs and returns the position of the last of them,
+     * or null if the oldest pack is still in progress.
+     */
+    synchronized TbQueuePosition pollCommitPosition() {
+        TbQueuePosition position = null;
+        while (!packs.isEmpty() && packs.peekFirst().completed) {
+            Pack pack = packs.pollFirst();
+            uncommittedMsgs -= pack.size;
+            position = pack.position;
+        }
+        return position;
+    }
+
+    synchronized int getInFlightPacks() {
+        return inFlightPacks;
+    }
+
+    /**
+     * Number of polled messages that are not committed yet, including completed packs waiting for an older one.
+     */
+    synchronized int getCommitLag() {
+        return uncommittedMsgs;
+    }
+
+    /**
+     * Returns true if packs were polled since the last stats reset or some messages are still not committed.
+     */
+    synchronized boolean hasStats() {
+        return maxUncommittedMsgs > 0;
+    }
+
+    synchronized String getStatsAndReset() {
+        String stats = "inFlightPacks = [" + inFlightPacks + "] maxInFlightPacks = [" + maxInFlightPacks + "] " +
+                "commitLag = [" + uncommittedMsgs + "] maxCommitLag = [" + maxUncommittedMsgs + "]";
+        maxInFlightPacks = inFlightPacks;
+        maxUncommittedMsgs = uncommittedMsgs;
+        return stats;
+    }
+
+    static final class Pack {
+        private final TbQueuePosition position;
+        private final int size;
+        private boolean completed;
+
+        private Pack(TbQueuePosition position, int size) {
+            this.position = position;
+            this.size = size;
+        }
+    }
+}
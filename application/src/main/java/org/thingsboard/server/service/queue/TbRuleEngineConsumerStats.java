@@ -59,6 +59,7 @@ public class TbRuleEngineConsumerStats {
     private final ConcurrentMap<TenantId, RuleEngineException> tenantExceptions = new ConcurrentHashMap<>();
 
     private final String queueName;
+    private volatile TbPackCommitWatermark commitWatermark;
 
     public TbRuleEngineConsumerStats(String queueName) {
         this.queueName = queueName;
@@ -122,6 +123,10 @@ public class TbRuleEngineConsumerStats {
             });
             log.info("[{}] Stats: {}", queueName, stats);
         }
+        TbPackCommitWatermark watermark = commitWatermark;
+        if (watermark != null && watermark.hasStats()) {
+            log.info("[{}] Pipeline stats: {}", queueName, watermark.getStatsAndReset());
+        }
     }
 
     public void reset() {
@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executes tasks with the same key one by one in the submission order,
+ * while tasks with different keys may run in parallel on different stripes.
+ */
+class TbStripedExecutor {
+
+    private final ExecutorService[] stripes;
+
+    TbStripedExecutor(String name, int stripesCount) {
+        this.stripes = new ExecutorService[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(name + "-" + i));
+        }
+    }
+
+    void execute(Object key, Runnable task) {
+        stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length].execute(task);
+    }
+
+    void shutdownNow() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdownNow();
+        }
+    }
+}
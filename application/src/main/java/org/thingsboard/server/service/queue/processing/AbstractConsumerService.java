@@ -21,6 +21,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.EventListener;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.gen.transport.TransportProtos;
@@ -129,6 +131,12 @@ public abstract class AbstractConsumerService<N extends com.google.protobuf.Gene
 
     protected abstract void handleNotification(UUID id, TbProtoQueueMsg<N> msg, TbCallback callback) throws Exception;
 
+    protected void evictAttributesFromCache(TransportProtos.AttributesCacheEvictMsgProto proto, TbCallback callback) {
+        EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+        actorContext.getAttributesService().evictFromCache(entityId, proto.getScope(), proto.getKeysList());
+        callback.onSuccess();
+    }
+
     @PreDestroy
     public void destroy() {
         stopped = true;
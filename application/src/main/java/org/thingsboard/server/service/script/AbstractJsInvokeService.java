@@ -78,7 +78,7 @@ public abstract class AbstractJsInvokeService implements JsInvokeService {
             try {
                 scriptIdToNameMap.remove(scriptId);
                 blackListedFunctions.remove(scriptId);
-                doRelease(scriptId, functionName);
+                return doRelease(scriptId, functionName);
             } catch (Exception e) {
                 return Futures.immediateFailedFuture(e);
             }
@@ -90,7 +90,7 @@ public abstract class AbstractJsInvokeService implements JsInvokeService {
 
     protected abstract ListenableFuture<Object> doInvokeFunction(UUID scriptId, String functionName, Object[] args);
 
-    protected abstract void doRelease(UUID scriptId, String functionName) throws Exception;
+    protected abstract ListenableFuture<Void> doRelease(UUID scriptId, String functionName) throws Exception;
 
     protected abstract int getMaxErrors();
 
@@ -102,7 +102,7 @@ public abstract class AbstractJsInvokeService implements JsInvokeService {
 
     private String generateJsScript(JsScriptType scriptType, String functionName, String scriptBody, String... argNames) {
         if (scriptType == JsScriptType.RULE_NODE_SCRIPT) {
-            return RuleNodeScriptFactory.generateRuleNodeScript(functionName, scriptBody, argNames);
+            return RuleNodeScriptFactory.generateRuleNodeScript(functionName, scriptBody, isNativeObjectsEnabled(), argNames);
         }
         throw new RuntimeException("No script factory implemented for scriptType: " + scriptType);
     }
@@ -18,10 +18,8 @@ package org.thingsboard.server.service.script;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
-import delight.nashornsandbox.NashornSandbox;
-import delight.nashornsandbox.NashornSandboxes;
-import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,22 +29,20 @@ import org.thingsboard.common.util.ThingsBoardThreadFactory;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public abstract class AbstractNashornJsInvokeService extends AbstractJsInvokeService {
 
-    private NashornSandbox sandbox;
-    private ScriptEngine engine;
+    private List<NashornJsEngine> engines;
     private ExecutorService monitorExecutorService;
 
     private final AtomicInteger jsPushedMsgs = new AtomicInteger(0);
@@ -78,6 +74,7 @@ public abstract class AbstractNashornJsInvokeService extends AbstractJsInvokeSer
             if (pushedMsgs > 0 || invokeMsgs > 0 || evalMsgs > 0 || failed > 0 || timedOut > 0) {
                 log.info("Nashorn JS Invoke Stats: pushed [{}] received [{}] invoke [{}] eval [{}] failed [{}] timedOut [{}]",
                         pushedMsgs, invokeMsgs + evalMsgs, invokeMsgs, evalMsgs, failed, timedOut);
+                engines.forEach(engine -> log.info(engine.getStats()));
             }
         }
     }
@@ -86,22 +83,28 @@ public abstract class AbstractNashornJsInvokeService extends AbstractJsInvokeSer
     public void init() {
         super.init(maxRequestsTimeout);
         if (useJsSandbox()) {
-            sandbox = NashornSandboxes.create();
             monitorExecutorService = Executors.newWorkStealingPool(getMonitorThreadPoolSize());
-            sandbox.setExecutor(monitorExecutorService);
-            sandbox.setMaxCPUTime(getMaxCpuTime());
-            sandbox.allowNoBraces(false);
-            sandbox.allowLoadFunctions(true);
-            sandbox.setMaxPreparedStatements(30);
+        }
+        int enginesPoolSize = getEnginesPoolSize();
+        if (enginesPoolSize > 0) {
+            // Each engine of the pool is used by its own thread only, so the engines do not share the global scope and the locks
+            engines = new ArrayList<>(enginesPoolSize);
+            for (int i = 0; i < enginesPoolSize; i++) {
+                ListeningExecutorService engineExecutor = MoreExecutors.listeningDecorator(
+                        Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("nashorn-js-engine-" + i)));
+                engines.add(new NashornJsEngine(i, useJsSandbox(), monitorExecutorService, getMaxCpuTime(), engineExecutor, true));
+            }
         } else {
-            NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
-            engine = factory.getScriptEngine(new String[]{"--no-java"});
+            engines = Collections.singletonList(new NashornJsEngine(0, useJsSandbox(), monitorExecutorService, getMaxCpuTime(), jsExecutor.executor(), false));
         }
     }
 
     @PreDestroy
     public void stop() {
         super.stop();
+        if (engines != null) {
+            engines.forEach(NashornJsEngine::stop);
+        }
         if (monitorExecutorService != null) {
             monitorExecutorService.shutdownNow();
         }
@@ -113,23 +116,21 @@ public abstract class AbstractNashornJsInvokeService extends AbstractJsInvokeSer
 
     protected abstract long getMaxCpuTime();
 
+    /**
+     * Number of the independent engines with a thread per engine. The scripts are distributed over the engines by the script id.
+     * 0 means the single engine shared by the threads of the JS executor.
+     */
+    protected int getEnginesPoolSize() {
+        return 0;
+    }
+
     @Override
     protected ListenableFuture<UUID> doEval(UUID scriptId, String functionName, String jsScript) {
         jsPushedMsgs.incrementAndGet();
-        ListenableFuture<UUID> result = jsExecutor.executeAsync(() -> {
-            try {
-                if (useJsSandbox()) {
-                    sandbox.eval(jsScript);
-                } else {
-                    engine.eval(jsScript);
-                }
-                scriptIdToNameMap.put(scriptId, functionName);
-                return scriptId;
-            } catch (Exception e) {
-                log.warn("Failed to compile JS script: {}", e.getMessage(), e);
-                throw new ExecutionException(e);
-            }
-        });
+        ListenableFuture<UUID> result = Futures.transform(getEngine(scriptId).eval(scriptId, jsScript), id -> {
+            scriptIdToNameMap.put(scriptId, functionName);
+            return id;
+        }, MoreExecutors.directExecutor());
         if (maxRequestsTimeout > 0) {
             result = Futures.withTimeout(result, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
         }
@@ -140,18 +141,10 @@ public abstract class AbstractNashornJsInvokeService extends AbstractJsInvokeSer
     @Override
     protected ListenableFuture<Object> doInvokeFunction(UUID scriptId, String functionName, Object[] args) {
         jsPushedMsgs.incrementAndGet();
-        ListenableFuture<Object> result = jsExecutor.executeAsync(() -> {
-            try {
-                if (useJsSandbox()) {
-                    return sandbox.getSandboxedInvocable().invokeFunction(functionName, args);
-                } else {
-                    return ((Invocable) engine).invokeFunction(functionName, args);
-                }
-            } catch (Exception e) {
-                onScriptExecutionError(scriptId);
-                throw new ExecutionException(e);
-            }
-        });
+        ListenableFuture<Object> result = Futures.catchingAsync(getEngine(scriptId).invokeFunction(functionName, args), ExecutionException.class, e -> {
+            onScriptExecutionError(scriptId);
+            return Futures.immediateFailedFuture(e);
+        }, MoreExecutors.directExecutor());
 
         if (maxRequestsTimeout > 0) {
             result = Futures.withTimeout(result, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
@@ -160,12 +153,13 @@ public abstract class AbstractNashornJsInvokeService extends AbstractJsInvokeSer
         return result;
     }
 
-    protected void doRelease(UUID scriptId, String functionName) throws ScriptException {
-        if (useJsSandbox()) {
-            sandbox.eval(functionName + " = undefined;");
-        } else {
-            engine.eval(functionName + " = undefined;");
-        }
+    @Override
+    protected ListenableFuture<Void> doRelease(UUID scriptId, String functionName) {
+        return getEngine(scriptId).release(scriptId, functionName);
+    }
+
+    private NashornJsEngine getEngine(UUID scriptId) {
+        return engines.size() == 1 ? engines.get(0) : engines.get(Math.floorMod(scriptId.hashCode(), engines.size()));
     }
 
 }
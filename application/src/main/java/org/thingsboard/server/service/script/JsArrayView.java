@@ -0,0 +1,246 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import jdk.nashorn.api.scripting.AbstractJSObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Script array backed by the Jackson array node. The elements are copied to the list only when the script
+ * modifies the array or reads the nested objects. Supports length and the most used array functions:
+ * push, pop, indexOf, join, forEach, map, filter, some and every.
+ */
+class JsArrayView extends AbstractJSObject {
+
+    private final ArrayNode node;
+    private List<Object> elements;
+
+    JsArrayView(ArrayNode node) {
+        this.node = node;
+    }
+
+    private JsArrayView(List<Object> elements) {
+        this.node = null;
+        this.elements = elements;
+    }
+
+    @Override
+    public Object getSlot(int index) {
+        if (elements == null) {
+            JsonNode value = node.get(index);
+            if (value == null || value.isValueNode()) {
+                return JsObjectBridge.toScriptValue(value);
+            }
+            materialize();
+        }
+        return index >= 0 && index < elements.size() ? elements.get(index) : null;
+    }
+
+    @Override
+    public boolean hasSlot(int index) {
+        return index >= 0 && index < size();
+    }
+
+    @Override
+    public void setSlot(int index, Object value) {
+        materialize();
+        while (elements.size() <= index) {
+            elements.add(null);
+        }
+        elements.set(index, value);
+    }
+
+    @Override
+    public Object getMember(String name) {
+        switch (name) {
+            case "length":
+                return size();
+            case "push":
+                return JsObjectBridge.function(args -> {
+                    materialize();
+                    for (Object arg : args) {
+                        elements.add(arg);
+                    }
+                    return elements.size();
+                });
+            case "pop":
+                return JsObjectBridge.function(args -> {
+                    materialize();
+                    return elements.isEmpty() ? null : elements.remove(elements.size() - 1);
+                });
+            case "indexOf":
+                return JsObjectBridge.function(args -> {
+                    int size = size();
+                    for (int i = 0; i < size; i++) {
+                        if (args.length > 0 && JsObjectBridge.strictEquals(getSlot(i), args[0])) {
+                            return i;
+                        }
+                    }
+                    return -1;
+                });
+            case "join":
+                return JsObjectBridge.function(args -> {
+                    String separator = args.length > 0 && args[0] != null ? args[0].toString() : ",";
+                    StringBuilder result = new StringBuilder();
+                    int size = size();
+                    for (int i = 0; i < size; i++) {
+                        if (i > 0) {
+                            result.append(separator);
+                        }
+                        Object element = getSlot(i);
+                        if (element != null) {
+                            result.append(element);
+                        }
+                    }
+                    return result.toString();
+                });
+            case "forEach":
+                return JsObjectBridge.function(args -> {
+                    int size = size();
+                    for (int i = 0; i < size; i++) {
+                        JsObjectBridge.callFunction(callback(args), getSlot(i), i, this);
+                    }
+                    return null;
+                });
+            case "map":
+                return JsObjectBridge.function(args -> {
+                    int size = size();
+                    List<Object> result = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        result.add(JsObjectBridge.callFunction(callback(args), getSlot(i), i, this));
+                    }
+                    return new JsArrayView(result);
+                });
+            case "filter":
+                return JsObjectBridge.function(args -> {
+                    int size = size();
+                    List<Object> result = new ArrayList<>();
+                    for (int i = 0; i < size; i++) {
+                        Object element = getSlot(i);
+                        if (JsObjectBridge.isTruthy(JsObjectBridge.callFunction(callback(args), element, i, this))) {
+                            result.add(element);
+                        }
+                    }
+                    return new JsArrayView(result);
+                });
+            case "some":
+                return JsObjectBridge.function(args -> {
+                    int size = size();
+                    for (int i = 0; i < size; i++) {
+                        if (JsObjectBridge.isTruthy(JsObjectBridge.callFunction(callback(args), getSlot(i), i, this))) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+            case "every":
+                return JsObjectBridge.function(args -> {
+                    int size = size();
+                    for (int i = 0; i < size; i++) {
+                        if (!JsObjectBridge.isTruthy(JsObjectBridge.callFunction(callback(args), getSlot(i), i, this))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean hasMember(String name) {
+        return "length".equals(name);
+    }
+
+    @Override
+    public void setMember(String name, Object value) {
+        if ("length".equals(name) && value instanceof Number) {
+            materialize();
+            int length = ((Number) value).intValue();
+            while (elements.size() > length) {
+                elements.remove(elements.size() - 1);
+            }
+            while (elements.size() < length) {
+                elements.add(null);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> keys = new LinkedHashSet<>();
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            keys.add(Integer.toString(i));
+        }
+        return keys;
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return elements;
+    }
+
+    @Override
+    public boolean isArray() {
+        return true;
+    }
+
+    @Override
+    public String getClassName() {
+        return "Array";
+    }
+
+    JsonNode toJsonNode() {
+        if (elements == null) {
+            return node;
+        }
+        ArrayNode result = JsonNodeFactory.instance.arrayNode();
+        for (Object element : elements) {
+            JsonNode value = JsObjectBridge.toJsonNode(element);
+            result.add(value != null ? value : NullNode.getInstance());
+        }
+        return result;
+    }
+
+    private int size() {
+        return elements != null ? elements.size() : node.size();
+    }
+
+    private static Object callback(Object[] args) {
+        return args.length > 0 ? args[0] : null;
+    }
+
+    private void materialize() {
+        if (elements == null) {
+            elements = new ArrayList<>(node.size());
+            for (JsonNode element : node) {
+                elements.add(JsObjectBridge.toScriptValue(element));
+            }
+        }
+    }
+}
@@ -28,4 +28,12 @@ public interface JsInvokeService {
 
     ListenableFuture<Void> release(UUID scriptId);
 
+    /**
+     * If enabled, the rule node scripts take the payload and metadata as script objects instead of JSON strings,
+     * and return the result as is instead of the JSON string.
+     */
+    default boolean isNativeObjectsEnabled() {
+        return false;
+    }
+
 }
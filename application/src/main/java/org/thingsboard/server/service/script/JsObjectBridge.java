@@ -0,0 +1,185 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jdk.nashorn.api.scripting.AbstractJSObject;
+import jdk.nashorn.api.scripting.JSObject;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+
+import java.util.function.Function;
+
+/**
+ * Converts the values between Jackson nodes and the objects passed to the local JS engine,
+ * so the message payload and metadata are passed to the script and read back without JSON strings.
+ */
+final class JsObjectBridge {
+
+    private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+    private JsObjectBridge() {
+    }
+
+    static Object toScriptValue(JsonNode node) {
+        if (node == null) {
+            return null;
+        }
+        switch (node.getNodeType()) {
+            case OBJECT:
+                return new JsObjectView((ObjectNode) node);
+            case ARRAY:
+                return new JsArrayView((ArrayNode) node);
+            case STRING:
+                return node.textValue();
+            case BOOLEAN:
+                return node.booleanValue();
+            case NUMBER:
+                // Nashorn treats only Integer and Double as JS numbers
+                if (node.isIntegralNumber() && node.canConvertToInt()) {
+                    return node.intValue();
+                } else {
+                    return node.doubleValue();
+                }
+            case NULL:
+            case MISSING:
+                return null;
+            default:
+                return node.asText();
+        }
+    }
+
+    /**
+     * Returns null for the values that are skipped by JSON.stringify: undefined and functions.
+     */
+    static JsonNode toJsonNode(Object value) {
+        if (value == null) {
+            return NullNode.getInstance();
+        } else if (ScriptObjectMirror.isUndefined(value)) {
+            return null;
+        } else if (value instanceof JsObjectView) {
+            return ((JsObjectView) value).toJsonNode();
+        } else if (value instanceof JsArrayView) {
+            return ((JsArrayView) value).toJsonNode();
+        } else if (value instanceof JSObject) {
+            return toJsonNode((JSObject) value);
+        } else if (value instanceof Boolean) {
+            return JsonNodeFactory.instance.booleanNode((Boolean) value);
+        } else if (value instanceof CharSequence) {
+            return JsonNodeFactory.instance.textNode(value.toString());
+        } else if (value instanceof Number) {
+            return toNumberNode((Number) value);
+        } else {
+            return JsonNodeFactory.instance.textNode(value.toString());
+        }
+    }
+
+    static boolean isTruthy(Object value) {
+        if (value == null || ScriptObjectMirror.isUndefined(value)) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number != 0 && !Double.isNaN(number);
+        } else if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() > 0;
+        } else {
+            return true;
+        }
+    }
+
+    static boolean strictEquals(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        } else if (a instanceof CharSequence && b instanceof CharSequence) {
+            return a.toString().equals(b.toString());
+        } else {
+            return a == b || (a instanceof Boolean && a.equals(b));
+        }
+    }
+
+    static Object callFunction(Object function, Object... args) {
+        if (!(function instanceof JSObject) || !((JSObject) function).isFunction()) {
+            throw new IllegalArgumentException(function + " is not a function");
+        }
+        return ((JSObject) function).call(null, args);
+    }
+
+    static JSObject function(Function<Object[], Object> body) {
+        return new AbstractJSObject() {
+            @Override
+            public Object call(Object thiz, Object... args) {
+                return body.apply(args);
+            }
+
+            @Override
+            public boolean isFunction() {
+                return true;
+            }
+        };
+    }
+
+    private static JsonNode toJsonNode(JSObject object) {
+        if (object.isFunction()) {
+            return null;
+        }
+        Object toJson = object.getMember("toJSON");
+        if (toJson instanceof JSObject && ((JSObject) toJson).isFunction()) {
+            return toJsonNode(((JSObject) toJson).call(object));
+        }
+        if (object.isArray()) {
+            ArrayNode array = JsonNodeFactory.instance.arrayNode();
+            int length = ((Number) object.getMember("length")).intValue();
+            for (int i = 0; i < length; i++) {
+                JsonNode element = toJsonNode(object.getSlot(i));
+                array.add(element != null ? element : NullNode.getInstance());
+            }
+            return array;
+        }
+        ObjectNode result = JsonNodeFactory.instance.objectNode();
+        for (String key : object.keySet()) {
+            JsonNode element = toJsonNode(object.getMember(key));
+            if (element != null) {
+                result.set(key, element);
+            }
+        }
+        return result;
+    }
+
+    private static JsonNode toNumberNode(Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            return JsonNodeFactory.instance.numberNode(number.intValue());
+        }
+        if (number instanceof Long) {
+            long longValue = number.longValue();
+            return longValue == (int) longValue ? JsonNodeFactory.instance.numberNode((int) longValue) : JsonNodeFactory.instance.numberNode(longValue);
+        }
+        double value = number.doubleValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // JSON.stringify writes NaN and Infinity as null
+            return NullNode.getInstance();
+        }
+        if (value == Math.rint(value) && Math.abs(value) <= MAX_SAFE_INTEGER) {
+            long longValue = (long) value;
+            return longValue == (int) longValue ? JsonNodeFactory.instance.numberNode((int) longValue) : JsonNodeFactory.instance.numberNode(longValue);
+        }
+        return JsonNodeFactory.instance.numberNode(value);
+    }
+}
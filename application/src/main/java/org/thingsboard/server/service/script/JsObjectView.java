@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jdk.nashorn.api.scripting.AbstractJSObject;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Script object backed by the Jackson object node or the metadata map.
+ * The fields are copied to the members map only when the script modifies the object or reads the nested objects,
+ * and the unmodified object is returned as the original node.
+ * Missing fields are read as null, and the only function of the object is hasOwnProperty.
+ */
+class JsObjectView extends AbstractJSObject {
+
+    private static final String HAS_OWN_PROPERTY = "hasOwnProperty";
+
+    private final ObjectNode node;
+    private final Map<String, String> source;
+    private Map<String, Object> members;
+
+    JsObjectView(ObjectNode node) {
+        this.node = node;
+        this.source = null;
+    }
+
+    JsObjectView(Map<String, String> source) {
+        this.node = null;
+        this.source = source;
+    }
+
+    @Override
+    public Object getMember(String name) {
+        if (members == null) {
+            if (node != null) {
+                JsonNode value = node.get(name);
+                if (value == null) {
+                    return missingMember(name);
+                } else if (value.isValueNode()) {
+                    return JsObjectBridge.toScriptValue(value);
+                }
+                materialize();
+            } else {
+                String value = source.get(name);
+                return value != null ? value : missingMember(name);
+            }
+        }
+        Object value = members.get(name);
+        return value != null || members.containsKey(name) ? value : missingMember(name);
+    }
+
+    @Override
+    public boolean hasMember(String name) {
+        if (members != null) {
+            return members.containsKey(name);
+        }
+        return node != null ? node.has(name) : source.containsKey(name);
+    }
+
+    @Override
+    public void setMember(String name, Object value) {
+        materialize();
+        members.put(name, value);
+    }
+
+    @Override
+    public void removeMember(String name) {
+        materialize();
+        members.remove(name);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        materialize();
+        return members.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return members.values();
+    }
+
+    @Override
+    public String getClassName() {
+        return "Object";
+    }
+
+    JsonNode toJsonNode() {
+        if (members == null && node != null) {
+            return node;
+        }
+        ObjectNode result = JsonNodeFactory.instance.objectNode();
+        if (members == null) {
+            source.forEach(result::put);
+        } else {
+            for (Map.Entry<String, Object> member : members.entrySet()) {
+                JsonNode value = JsObjectBridge.toJsonNode(member.getValue());
+                if (value != null) {
+                    result.set(member.getKey(), value);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Object missingMember(String name) {
+        if (HAS_OWN_PROPERTY.equals(name)) {
+            return JsObjectBridge.function(args -> args.length > 0 && hasMember(String.valueOf(args[0])));
+        }
+        return null;
+    }
+
+    private void materialize() {
+        if (members == null) {
+            members = new LinkedHashMap<>();
+            if (node != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    members.put(field.getKey(), JsObjectBridge.toScriptValue(field.getValue()));
+                }
+            } else {
+                members.putAll(source);
+            }
+        }
+    }
+}
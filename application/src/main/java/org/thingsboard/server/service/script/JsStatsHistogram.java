@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with the power of two buckets. Percentiles are reported as the upper bound of the bucket,
+ * so they are accurate to a factor of two, which is enough to see the queue build up and the latency tail.
+ */
+class JsStatsHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long value) {
+        int bucket = value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * Returns the count, p50, p90, p99 and max of the values recorded since the previous snapshot.
+     */
+    long[] snapshotAndReset() {
+        long[] bucketCounts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.getAndSet(i, 0);
+            total += bucketCounts[i];
+        }
+        return new long[]{total, percentile(bucketCounts, total, 0.5), percentile(bucketCounts, total, 0.9),
+                percentile(bucketCounts, total, 0.99), percentile(bucketCounts, total, 1.0)};
+    }
+
+    static String format(long[] snapshot) {
+        return String.format("count [%d] p50 [%d] p90 [%d] p99 [%d] max [%d]", snapshot[0], snapshot[1], snapshot[2], snapshot[3], snapshot[4]);
+    }
+
+    private static long percentile(long[] bucketCounts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += bucketCounts[i];
+            if (count >= threshold) {
+                return i == 0 ? 0 : 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import delight.nashornsandbox.NashornSandbox;
+import delight.nashornsandbox.NashornSandboxes;
+import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.script.Compilable;
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nashorn engine (or sandbox) with the scripts evaluated in it and the executor that runs the evaluations, invocations and releases.
+ * The scripts are compiled once with {@link Compilable} (the sandbox evaluates the script source).
+ */
+@Slf4j
+class NashornJsEngine {
+
+    @Getter
+    private final int id;
+    private final NashornSandbox sandbox;
+    private final ScriptEngine engine;
+    private final ListeningExecutorService executor;
+    private final boolean ownExecutor;
+    private final Set<UUID> scriptIds = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final JsStatsHistogram queueSizeHistogram = new JsStatsHistogram();
+    private final JsStatsHistogram invokeLatencyHistogram = new JsStatsHistogram();
+
+    NashornJsEngine(int id, boolean useJsSandbox, ExecutorService monitorExecutorService, long maxCpuTime,
+                    ListeningExecutorService executor, boolean ownExecutor) {
+        this.id = id;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        if (useJsSandbox) {
+            sandbox = NashornSandboxes.create();
+            sandbox.setExecutor(monitorExecutorService);
+            sandbox.setMaxCPUTime(maxCpuTime);
+            sandbox.allowNoBraces(false);
+            sandbox.allowLoadFunctions(true);
+            sandbox.setMaxPreparedStatements(30);
+            engine = null;
+        } else {
+            sandbox = null;
+            NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
+            engine = factory.getScriptEngine(new String[]{"--no-java"});
+        }
+    }
+
+    ListenableFuture<UUID> eval(UUID scriptId, String jsScript) {
+        return submit(() -> {
+            try {
+                if (sandbox != null) {
+                    sandbox.eval(jsScript);
+                } else {
+                    ((Compilable) engine).compile(jsScript).eval();
+                }
+                scriptIds.add(scriptId);
+                return scriptId;
+            } catch (Exception e) {
+                log.warn("Failed to compile JS script: {}", e.getMessage(), e);
+                throw new ExecutionException(e);
+            }
+        }, false);
+    }
+
+    ListenableFuture<Object> invokeFunction(String functionName, Object[] args) {
+        return submit(() -> {
+            try {
+                if (sandbox != null) {
+                    return sandbox.getSandboxedInvocable().invokeFunction(functionName, args);
+                } else {
+                    return ((Invocable) engine).invokeFunction(functionName, args);
+                }
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }, true);
+    }
+
+    ListenableFuture<Void> release(UUID scriptId, String functionName) {
+        return submit(() -> {
+            scriptIds.remove(scriptId);
+            try {
+                if (sandbox != null) {
+                    sandbox.eval(functionName + " = undefined;");
+                } else {
+                    engine.eval(functionName + " = undefined;");
+                }
+                return null;
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+        }, false);
+    }
+
+    String getStats() {
+        return String.format("JS engine [%d]: scripts [%d] queue size %s invoke latency (us) %s", id, scriptIds.size(),
+                JsStatsHistogram.format(queueSizeHistogram.snapshotAndReset()), JsStatsHistogram.format(invokeLatencyHistogram.snapshotAndReset()));
+    }
+
+    void stop() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> task, boolean invoke) {
+        queueSizeHistogram.record(queueSize.incrementAndGet());
+        long submitTs = System.nanoTime();
+        return executor.submit(() -> {
+            queueSize.decrementAndGet();
+            try {
+                return task.call();
+            } finally {
+                if (invoke) {
+                    invokeLatencyHistogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submitTs));
+                }
+            }
+        });
+    }
+}
@@ -42,6 +42,12 @@ public class NashornJsInvokeService extends AbstractNashornJsInvokeService {
     @Value("${js.local.max_black_list_duration_sec:60}")
     private int maxBlackListDurationSec;
 
+    @Value("${js.local.engines_pool_size:0}")
+    private int enginesPoolSize;
+
+    @Value("${js.local.use_native_objects:false}")
+    private boolean useNativeObjects;
+
     @Override
     protected boolean useJsSandbox() {
         return useJsSandbox;
@@ -66,4 +72,14 @@ public class NashornJsInvokeService extends AbstractNashornJsInvokeService {
     protected long getMaxBlacklistDuration() {
         return TimeUnit.SECONDS.toMillis(maxBlackListDurationSec);
     }
+
+    @Override
+    protected int getEnginesPoolSize() {
+        return enginesPoolSize;
+    }
+
+    @Override
+    public boolean isNativeObjectsEnabled() {
+        return useNativeObjects;
+    }
 }
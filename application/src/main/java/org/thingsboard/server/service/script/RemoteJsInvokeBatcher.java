@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.gen.js.JsInvokeProtos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups the invoke requests into batches of up to maxBatchSize requests.
+ * Incomplete batch is sent when lingerMs is passed since the first request of the batch was added.
+ * Responses of the batch are matched with the requests by position.
+ */
+@Slf4j
+class RemoteJsInvokeBatcher {
+
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final ScheduledExecutorService scheduler;
+    private final Function<List<JsInvokeProtos.JsInvokeRequest>, ListenableFuture<List<JsInvokeProtos.JsInvokeResponse>>> sender;
+
+    private final Object lock = new Object();
+    private List<PendingInvoke> batch;
+
+    RemoteJsInvokeBatcher(int maxBatchSize, long lingerMs, ScheduledExecutorService scheduler,
+                          Function<List<JsInvokeProtos.JsInvokeRequest>, ListenableFuture<List<JsInvokeProtos.JsInvokeResponse>>> sender) {
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.scheduler = scheduler;
+        this.sender = sender;
+    }
+
+    ListenableFuture<JsInvokeProtos.JsInvokeResponse> invoke(JsInvokeProtos.JsInvokeRequest request) {
+        PendingInvoke pendingInvoke = new PendingInvoke(request);
+        List<PendingInvoke> fullBatch = null;
+        List<PendingInvoke> newBatch = null;
+        synchronized (lock) {
+            if (batch == null) {
+                batch = new ArrayList<>(maxBatchSize);
+                newBatch = batch;
+            }
+            batch.add(pendingInvoke);
+            if (batch.size() >= maxBatchSize) {
+                fullBatch = batch;
+                batch = null;
+            }
+        }
+        if (fullBatch != null) {
+            send(fullBatch);
+        } else if (newBatch != null) {
+            List<PendingInvoke> lingerBatch = newBatch;
+            scheduler.schedule(() -> flush(lingerBatch), lingerMs, TimeUnit.MILLISECONDS);
+        }
+        return pendingInvoke.future;
+    }
+
+    private void flush(List<PendingInvoke> expectedBatch) {
+        synchronized (lock) {
+            if (batch != expectedBatch) {
+                return;
+            }
+            batch = null;
+        }
+        send(expectedBatch);
+    }
+
+    private void send(List<PendingInvoke> invokes) {
+        List<JsInvokeProtos.JsInvokeRequest> requests = new ArrayList<>(invokes.size());
+        invokes.forEach(invoke -> requests.add(invoke.request));
+        ListenableFuture<List<JsInvokeProtos.JsInvokeResponse>> future;
+        try {
+            future = sender.apply(requests);
+        } catch (Throwable t) {
+            future = Futures.immediateFailedFuture(t);
+        }
+        Futures.addCallback(future, new FutureCallback<List<JsInvokeProtos.JsInvokeResponse>>() {
+            @Override
+            public void onSuccess(List<JsInvokeProtos.JsInvokeResponse> responses) {
+                for (int i = 0; i < invokes.size(); i++) {
+                    if (i < responses.size()) {
+                        invokes.get(i).future.set(responses.get(i));
+                    } else {
+                        invokes.get(i).future.setException(new RuntimeException("No response for the request in the batch!"));
+                    }
+                }
+                if (responses.size() > invokes.size()) {
+                    log.debug("Batch of [{}] requests received [{}] responses", invokes.size(), responses.size());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                invokes.forEach(invoke -> invoke.future.setException(t));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static class PendingInvoke {
+        private final JsInvokeProtos.JsInvokeRequest request;
+        private final SettableFuture<JsInvokeProtos.JsInvokeResponse> future = SettableFuture.create();
+
+        PendingInvoke(JsInvokeProtos.JsInvokeRequest request) {
+            this.request = request;
+        }
+    }
+}
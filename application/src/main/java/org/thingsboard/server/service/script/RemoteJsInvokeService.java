@@ -26,6 +26,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.gen.js.JsInvokeProtos;
 import org.thingsboard.server.queue.TbQueueRequestTemplate;
 import org.thingsboard.server.queue.common.TbProtoJsQueueMsg;
@@ -34,9 +35,13 @@ import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,11 +64,18 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     @Value("${js.remote.stats.enabled:false}")
     private boolean statsEnabled;
 
+    @Value("${queue.js.invoke_batch_size:1}")
+    private int invokeBatchSize;
+
+    @Value("${queue.js.invoke_batch_linger_ms:5}")
+    private long invokeBatchLingerMs;
+
     private final AtomicInteger kafkaPushedMsgs = new AtomicInteger(0);
     private final AtomicInteger kafkaInvokeMsgs = new AtomicInteger(0);
     private final AtomicInteger kafkaEvalMsgs = new AtomicInteger(0);
     private final AtomicInteger kafkaFailedMsgs = new AtomicInteger(0);
     private final AtomicInteger kafkaTimeoutMsgs = new AtomicInteger(0);
+    private final AtomicInteger kafkaBatchMsgs = new AtomicInteger(0);
 
     @Scheduled(fixedDelayString = "${js.remote.stats.print_interval_ms}")
     public void printStats() {
@@ -73,9 +85,10 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
             int evalMsgs = kafkaEvalMsgs.getAndSet(0);
             int failed = kafkaFailedMsgs.getAndSet(0);
             int timedOut = kafkaTimeoutMsgs.getAndSet(0);
+            int batches = kafkaBatchMsgs.getAndSet(0);
             if (pushedMsgs > 0 || invokeMsgs > 0 || evalMsgs > 0 || failed > 0 || timedOut > 0) {
-                log.info("Kafka JS Invoke Stats: pushed [{}] received [{}] invoke [{}] eval [{}] failed [{}] timedOut [{}]",
-                        pushedMsgs, invokeMsgs + evalMsgs, invokeMsgs, evalMsgs, failed, timedOut);
+                log.info("Kafka JS Invoke Stats: pushed [{}] received [{}] invoke [{}] eval [{}] failed [{}] timedOut [{}] batches [{}]",
+                        pushedMsgs, invokeMsgs + evalMsgs, invokeMsgs, evalMsgs, failed, timedOut, batches);
             }
         }
     }
@@ -85,15 +98,25 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
 
     private Map<UUID, String> scriptIdToBodysMap = new ConcurrentHashMap<>();
 
+    private ScheduledExecutorService batchExecutorService;
+    private RemoteJsInvokeBatcher invokeBatcher;
+
     @PostConstruct
     public void init() {
         super.init(maxRequestsTimeout);
         requestTemplate.init();
+        if (invokeBatchSize > 1) {
+            batchExecutorService = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("remote-js-invoke-batch"));
+            invokeBatcher = new RemoteJsInvokeBatcher(invokeBatchSize, invokeBatchLingerMs, batchExecutorService, this::sendInvokeRequests);
+        }
     }
 
     @PreDestroy
     public void destroy() {
         super.stop();
+        if (batchExecutorService != null) {
+            batchExecutorService.shutdownNow();
+        }
         if (requestTemplate != null) {
             requestTemplate.stop();
         }
@@ -162,18 +185,20 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
             jsRequestBuilder.addArgs(arg.toString());
         }
 
-        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
-                .setInvokeRequest(jsRequestBuilder.build())
-                .build();
-
-        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper));
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> future;
+        if (invokeBatcher != null) {
+            future = invokeBatcher.invoke(jsRequestBuilder.build());
+        } else {
+            future = Futures.transform(sendInvokeRequests(Collections.singletonList(jsRequestBuilder.build())),
+                    responses -> responses.get(0), MoreExecutors.directExecutor());
+        }
         if (maxRequestsTimeout > 0) {
             future = Futures.withTimeout(future, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
         }
         kafkaPushedMsgs.incrementAndGet();
-        Futures.addCallback(future, new FutureCallback<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>>() {
+        Futures.addCallback(future, new FutureCallback<JsInvokeProtos.JsInvokeResponse>() {
             @Override
-            public void onSuccess(@Nullable TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse> result) {
+            public void onSuccess(@Nullable JsInvokeProtos.JsInvokeResponse result) {
                 kafkaInvokeMsgs.incrementAndGet();
             }
 
@@ -186,8 +211,7 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
                 kafkaFailedMsgs.incrementAndGet();
             }
         }, MoreExecutors.directExecutor());
-        return Futures.transform(future, response -> {
-            JsInvokeProtos.JsInvokeResponse invokeResult = response.getValue().getInvokeResponse();
+        return Futures.transform(future, invokeResult -> {
             if (invokeResult.getSuccess()) {
                 return invokeResult.getResult();
             } else {
@@ -198,8 +222,24 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         }, MoreExecutors.directExecutor());
     }
 
+    private ListenableFuture<List<JsInvokeProtos.JsInvokeResponse>> sendInvokeRequests(List<JsInvokeProtos.JsInvokeRequest> requests) {
+        JsInvokeProtos.RemoteJsRequest.Builder jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder();
+        boolean batch = requests.size() > 1;
+        if (batch) {
+            jsRequestWrapper.setInvokeBatchRequest(JsInvokeProtos.JsInvokeBatchRequest.newBuilder().addAllInvokeRequests(requests));
+            kafkaBatchMsgs.incrementAndGet();
+        } else {
+            jsRequestWrapper.setInvokeRequest(requests.get(0));
+        }
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper.build()));
+        return Futures.transform(future, response -> batch ?
+                        response.getValue().getInvokeBatchResponse().getInvokeResponsesList() :
+                        Collections.singletonList(response.getValue().getInvokeResponse()),
+                MoreExecutors.directExecutor());
+    }
+
     @Override
-    protected void doRelease(UUID scriptId, String functionName) throws Exception {
+    protected ListenableFuture<Void> doRelease(UUID scriptId, String functionName) throws Exception {
         JsInvokeProtos.JsReleaseRequest jsRequest = JsInvokeProtos.JsReleaseRequest.newBuilder()
                 .setScriptIdMSB(scriptId.getMostSignificantBits())
                 .setScriptIdLSB(scriptId.getLeastSignificantBits())
@@ -222,6 +262,7 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         } else {
             log.debug("[{}] Failed to release script due", compiledScriptId);
         }
+        return Futures.immediateFuture(null);
     }
 
     @Override
@@ -18,6 +18,7 @@ package org.thingsboard.server.service.script;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -29,6 +30,7 @@ import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 
 import javax.script.ScriptException;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
@@ -44,10 +46,12 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
 
     private final UUID scriptId;
     private final EntityId entityId;
+    private final boolean nativeObjects;
 
     public RuleNodeJsScriptEngine(JsInvokeService sandboxService, EntityId entityId, String script, String... argNames) {
         this.sandboxService = sandboxService;
         this.entityId = entityId;
+        this.nativeObjects = sandboxService.isNativeObjectsEnabled();
         try {
             this.scriptId = this.sandboxService.eval(JsScriptType.RULE_NODE_SCRIPT, script, argNames).get();
         } catch (Exception e) {
@@ -59,7 +63,10 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
         }
     }
 
-    private static String[] prepareArgs(TbMsg msg) {
+    private Object[] prepareArgs(TbMsg msg) {
+        if (nativeObjects) {
+            return prepareNativeArgs(msg);
+        }
         try {
             String[] args = new String[3];
             if (msg.getData() != null) {
@@ -75,6 +82,26 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
         }
     }
 
+    private static Object[] prepareNativeArgs(TbMsg msg) {
+        try {
+            Object[] args = new Object[3];
+            args[0] = StringUtils.isEmpty(msg.getData()) ? "" : JsObjectBridge.toScriptValue(mapper.readTree(msg.getData()));
+            args[1] = new JsObjectView(msg.getMetaData().getData());
+            args[2] = msg.getType();
+            return args;
+        } catch (Throwable th) {
+            throw new IllegalArgumentException("Cannot bind js args", th);
+        }
+    }
+
+    private JsonNode readResult(Object result) throws IOException {
+        if (nativeObjects) {
+            JsonNode json = JsObjectBridge.toJsonNode(result);
+            return json != null ? json : MissingNode.getInstance();
+        }
+        return mapper.readTree(result.toString());
+    }
+
     private static TbMsg unbindMsg(JsonNode msgData, TbMsg msg) {
         try {
             String data = null;
@@ -202,9 +229,9 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
 
     private JsonNode executeScript(TbMsg msg) throws ScriptException {
         try {
-            String[] inArgs = prepareArgs(msg);
-            String eval = sandboxService.invokeFunction(this.scriptId, inArgs[0], inArgs[1], inArgs[2]).get().toString();
-            return mapper.readTree(eval);
+            Object[] inArgs = prepareArgs(msg);
+            Object eval = sandboxService.invokeFunction(this.scriptId, inArgs[0], inArgs[1], inArgs[2]).get();
+            return readResult(eval);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof ScriptException) {
                 throw (ScriptException) e.getCause();
@@ -219,11 +246,11 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
     }
 
     private ListenableFuture<JsonNode> executeScriptAsync(TbMsg msg) {
-        String[] inArgs = prepareArgs(msg);
+        Object[] inArgs = prepareArgs(msg);
         return Futures.transformAsync(sandboxService.invokeFunction(this.scriptId, inArgs[0], inArgs[1], inArgs[2]),
                 o -> {
                     try {
-                        return Futures.immediateFuture(mapper.readTree(o.toString()));
+                        return Futures.immediateFuture(readResult(o));
                     } catch (Exception e) {
                         if (e.getCause() instanceof ScriptException) {
                             return Futures.immediateFailedFuture(e.getCause());
@@ -27,11 +27,18 @@ public class RuleNodeScriptFactory {
             "    var metadata = JSON.parse(metadataStr); " +
             "    return JSON.stringify(%s(msg, metadata, msgType));" +
             "    function %s(%s, %s, %s) {";
+    private static final String JS_NATIVE_WRAPPER_PREFIX_TEMPLATE = "function %s(msg, metadata, msgType) { " +
+            "    return %s(msg, metadata, msgType);" +
+            "    function %s(%s, %s, %s) {";
     private static final String JS_WRAPPER_SUFFIX = "\n}" +
             "\n}";
 
 
     public static String generateRuleNodeScript(String functionName, String scriptBody, String... argNames) {
+        return generateRuleNodeScript(functionName, scriptBody, false, argNames);
+    }
+
+    public static String generateRuleNodeScript(String functionName, String scriptBody, boolean nativeObjects, String... argNames) {
         String msgArg;
         String metadataArg;
         String msgTypeArg;
@@ -44,7 +51,7 @@ public class RuleNodeScriptFactory {
             metadataArg = METADATA;
             msgTypeArg = MSG_TYPE;
         }
-        String jsWrapperPrefix = String.format(JS_WRAPPER_PREFIX_TEMPLATE, functionName,
+        String jsWrapperPrefix = String.format(nativeObjects ? JS_NATIVE_WRAPPER_PREFIX_TEMPLATE : JS_WRAPPER_PREFIX_TEMPLATE, functionName,
                 RULE_NODE_FUNCTION_NAME, RULE_NODE_FUNCTION_NAME, msgArg, metadataArg, msgTypeArg);
         return jsWrapperPrefix + scriptBody + JS_WRAPPER_SUFFIX;
     }
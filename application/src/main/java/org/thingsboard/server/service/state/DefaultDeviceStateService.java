@@ -26,6 +26,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
@@ -35,6 +36,7 @@ import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.BooleanDataEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
@@ -66,7 +68,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
@@ -74,7 +78,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.thingsboard.server.common.data.DataConstants.ACTIVITY_EVENT;
 import static org.thingsboard.server.common.data.DataConstants.CONNECT_EVENT;
@@ -98,6 +104,8 @@ public class DefaultDeviceStateService implements DeviceStateService {
     public static final String INACTIVITY_ALARM_TIME = "inactivityAlarmTime";
     public static final String INACTIVITY_TIMEOUT = "inactivityTimeout";
 
+    private static final int INACTIVITY_WHEEL_SIZE = 512;
+
     public static final List<String> PERSISTENT_ATTRIBUTES = Arrays.asList(ACTIVITY_STATE, LAST_CONNECT_TIME,
             LAST_DISCONNECT_TIME, LAST_ACTIVITY_TIME, INACTIVITY_ALARM_TIME, INACTIVITY_TIMEOUT);
 
@@ -126,13 +134,24 @@ public class DefaultDeviceStateService implements DeviceStateService {
     @Getter
     private int initFetchPackSize;
 
+    @Value("${state.persistCoalescingWindowInMs:0}")
+    @Getter
+    private long persistCoalescingWindowInMs;
+
+    @Value("${cluster.stats.enabled:false}")
+    private boolean statsEnabled;
+
     private volatile boolean clusterUpdatePending = false;
 
     private ListeningScheduledExecutorService queueExecutor;
     private final ConcurrentMap<TopicPartitionInfo, Set<DeviceId>> partitionedDevices = new ConcurrentHashMap<>();
     private final ConcurrentMap<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
-    private final ConcurrentMap<DeviceId, Long> deviceLastReportedActivity = new ConcurrentHashMap<>();
-    private final ConcurrentMap<DeviceId, Long> deviceLastSavedActivity = new ConcurrentHashMap<>();
+    private DeviceStateTimingWheel inactivityWheel;
+
+    private ScheduledExecutorService persistExecutor;
+    private final ConcurrentMap<DeviceId, Map<String, TsKvEntry>> pendingStateUpdates = new ConcurrentHashMap<>();
+    private final AtomicInteger stateUpdates = new AtomicInteger(0);
+    private final AtomicInteger stateWrites = new AtomicInteger(0);
 
     public DefaultDeviceStateService(TenantService tenantService, DeviceService deviceService,
                                      AttributesService attributesService, TimeseriesService tsService,
@@ -154,7 +173,14 @@ public class DefaultDeviceStateService implements DeviceStateService {
     public void init() {
         // Should be always single threaded due to absence of locks.
         queueExecutor = MoreExecutors.listeningDecorator(Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("device-state")));
+        inactivityWheel = new DeviceStateTimingWheel(TimeUnit.SECONDS.toMillis(defaultStateCheckIntervalInSec), INACTIVITY_WHEEL_SIZE,
+                System.currentTimeMillis(), stateData -> deviceStates.get(stateData.getDeviceId()) == stateData,
+                stateData -> stateData.getState().getLastActivityTime() + stateData.getState().getInactivityTimeout());
         queueExecutor.scheduleAtFixedRate(this::updateState, new Random().nextInt(defaultStateCheckIntervalInSec), defaultStateCheckIntervalInSec, TimeUnit.SECONDS);
+        if (persistCoalescingWindowInMs > 0) {
+            persistExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("device-state-persist"));
+            persistExecutor.scheduleWithFixedDelay(this::flushPendingStateUpdates, persistCoalescingWindowInMs, persistCoalescingWindowInMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
@@ -162,6 +188,22 @@ public class DefaultDeviceStateService implements DeviceStateService {
         if (queueExecutor != null) {
             queueExecutor.shutdownNow();
         }
+        if (persistExecutor != null) {
+            persistExecutor.shutdownNow();
+        }
+        flushPendingStateUpdates();
+    }
+
+    @Scheduled(fixedDelayString = "${cluster.stats.print_interval_ms}")
+    public void printStats() {
+        if (statsEnabled) {
+            int updatesCnt = stateUpdates.getAndSet(0);
+            int writesCnt = stateWrites.getAndSet(0);
+            if (updatesCnt > 0) {
+                log.info("Device state: [{}] updates [{}] writes, coalescing ratio [{}]", updatesCnt, writesCnt,
+                        writesCnt > 0 ? String.format("%.2f", (double) updatesCnt / writesCnt) : "n/a");
+            }
+        }
     }
 
     @Override
@@ -192,20 +234,19 @@ public class DefaultDeviceStateService implements DeviceStateService {
 
     @Override
     public void onDeviceActivity(DeviceId deviceId, long lastReportedActivity) {
-        deviceLastReportedActivity.put(deviceId, lastReportedActivity);
-        long lastSavedActivity = deviceLastSavedActivity.getOrDefault(deviceId, 0L);
-        if (lastReportedActivity > 0 && lastReportedActivity > lastSavedActivity) {
+        if (lastReportedActivity > 0) {
             DeviceStateData stateData = getOrFetchDeviceStateData(deviceId);
-            if (stateData != null) {
+            if (stateData != null && lastReportedActivity > stateData.getLastSavedActivityTime()) {
                 DeviceState state = stateData.getState();
                 stateData.getState().setLastActivityTime(lastReportedActivity);
                 stateData.getMetaData().putValue("scope", SERVER_SCOPE);
                 pushRuleEngineMessage(stateData, ACTIVITY_EVENT);
                 save(deviceId, LAST_ACTIVITY_TIME, lastReportedActivity);
-                deviceLastSavedActivity.put(deviceId, lastReportedActivity);
+                stateData.setLastSavedActivityTime(lastReportedActivity);
                 if (!state.isActive()) {
                     state.setActive(true);
                     save(deviceId, ACTIVITY_STATE, state.isActive());
+                    inactivityWheel.schedule(stateData);
                 }
             }
         }
@@ -237,6 +278,7 @@ public class DefaultDeviceStateService implements DeviceStateService {
             if (!oldActive && state.isActive() || oldActive && !state.isActive()) {
                 save(deviceId, ACTIVITY_STATE, state.isActive());
             }
+            inactivityWheel.schedule(stateData);
         }
     }
 
@@ -295,6 +337,7 @@ public class DefaultDeviceStateService implements DeviceStateService {
     @Override
     public void onApplicationEvent(PartitionChangeEvent partitionChangeEvent) {
         if (ServiceType.TB_CORE.equals(partitionChangeEvent.getServiceType())) {
+            flushPendingStateUpdates();
             synchronized (this) {
                 if (!clusterUpdatePending) {
                     clusterUpdatePending = true;
@@ -318,11 +361,7 @@ public class DefaultDeviceStateService implements DeviceStateService {
             // We no longer manage current partition of devices;
             removedPartitions.forEach(partition -> {
                 Set<DeviceId> devices = partitionedDevices.remove(partition);
-                devices.forEach(deviceId -> {
-                    deviceStates.remove(deviceId);
-                    deviceLastReportedActivity.remove(deviceId);
-                    deviceLastSavedActivity.remove(deviceId);
-                });
+                devices.forEach(deviceStates::remove);
             });
 
             addedPartitions.forEach(tpi -> partitionedDevices.computeIfAbsent(tpi, key -> ConcurrentHashMap.newKeySet()));
@@ -371,30 +410,26 @@ public class DefaultDeviceStateService implements DeviceStateService {
     private void addDeviceUsingState(TopicPartitionInfo tpi, DeviceStateData state) {
         partitionedDevices.computeIfAbsent(tpi, id -> ConcurrentHashMap.newKeySet()).add(state.getDeviceId());
         deviceStates.put(state.getDeviceId(), state);
+        inactivityWheel.schedule(state);
     }
 
     private void updateState() {
         long ts = System.currentTimeMillis();
-        Set<DeviceId> deviceIds = new HashSet<>(deviceStates.keySet());
-        log.debug("Calculating state updates for {} devices", deviceStates.size());
-        for (DeviceId deviceId : deviceIds) {
-            DeviceStateData stateData = getOrFetchDeviceStateData(deviceId);
-            if (stateData != null) {
-                DeviceState state = stateData.getState();
-                state.setActive(ts < state.getLastActivityTime() + state.getInactivityTimeout());
-                if (!state.isActive() && (state.getLastInactivityAlarmTime() == 0L || state.getLastInactivityAlarmTime() < state.getLastActivityTime())) {
-                    state.setLastInactivityAlarmTime(ts);
-                    pushRuleEngineMessage(stateData, INACTIVITY_EVENT);
-                    save(deviceId, INACTIVITY_ALARM_TIME, ts);
-                    save(deviceId, ACTIVITY_STATE, state.isActive());
-                }
-            } else {
-                log.debug("[{}] Device that belongs to other server is detected and removed.", deviceId);
-                deviceStates.remove(deviceId);
-                deviceLastReportedActivity.remove(deviceId);
-                deviceLastSavedActivity.remove(deviceId);
+        inactivityWheel.advance(ts, stateData -> {
+            DeviceState state = stateData.getState();
+            state.setActive(false);
+            if (ts < state.getLastActivityTime() + state.getInactivityTimeout()) {
+                // activity was reported while the deadline was evaluated
+                state.setActive(true);
+                inactivityWheel.schedule(stateData);
+            } else if (state.getLastInactivityAlarmTime() == 0L || state.getLastInactivityAlarmTime() < state.getLastActivityTime()) {
+                state.setLastInactivityAlarmTime(ts);
+                pushRuleEngineMessage(stateData, INACTIVITY_EVENT);
+                save(stateData.getDeviceId(), INACTIVITY_ALARM_TIME, ts);
+                save(stateData.getDeviceId(), ACTIVITY_STATE, state.isActive());
             }
-        }
+        });
+        log.debug("Tracking inactivity of {} out of {} devices", inactivityWheel.size(), deviceStates.size());
     }
 
     private DeviceStateData getOrFetchDeviceStateData(DeviceId deviceId) {
@@ -404,7 +439,12 @@ public class DefaultDeviceStateService implements DeviceStateService {
             if (device != null) {
                 try {
                     deviceStateData = fetchDeviceState(device).get();
-                    deviceStates.putIfAbsent(deviceId, deviceStateData);
+                    DeviceStateData existingStateData = deviceStates.putIfAbsent(deviceId, deviceStateData);
+                    if (existingStateData != null) {
+                        deviceStateData = existingStateData;
+                    } else {
+                        inactivityWheel.schedule(deviceStateData);
+                    }
                 } catch (InterruptedException | ExecutionException e) {
                     log.debug("[{}] Failed to fetch device state!", deviceId, e);
                 }
@@ -428,8 +468,6 @@ public class DefaultDeviceStateService implements DeviceStateService {
 
     private void onDeviceDeleted(TenantId tenantId, DeviceId deviceId) {
         deviceStates.remove(deviceId);
-        deviceLastReportedActivity.remove(deviceId);
-        deviceLastSavedActivity.remove(deviceId);
         TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenantId, deviceId);
         Set<DeviceId> deviceIdSet = partitionedDevices.get(tpi);
         deviceIdSet.remove(deviceId);
@@ -502,46 +540,70 @@ public class DefaultDeviceStateService implements DeviceStateService {
     }
 
     private void save(DeviceId deviceId, String key, long value) {
-        if (persistToTelemetry) {
-            tsSubService.saveAndNotify(
-                    TenantId.SYS_TENANT_ID, deviceId,
-                    Collections.singletonList(new BasicTsKvEntry(System.currentTimeMillis(), new LongDataEntry(key, value))),
-                    new AttributeSaveCallback(deviceId, key, value));
+        save(deviceId, new LongDataEntry(key, value));
+    }
+
+    private void save(DeviceId deviceId, String key, boolean value) {
+        save(deviceId, new BooleanDataEntry(key, value));
+    }
+
+    private void save(DeviceId deviceId, KvEntry kvEntry) {
+        TsKvEntry entry = new BasicTsKvEntry(System.currentTimeMillis(), kvEntry);
+        stateUpdates.incrementAndGet();
+        if (persistCoalescingWindowInMs > 0) {
+            pendingStateUpdates.compute(deviceId, (id, entries) -> {
+                if (entries == null) {
+                    entries = new LinkedHashMap<>();
+                }
+                entries.put(entry.getKey(), entry);
+                return entries;
+            });
         } else {
-            tsSubService.saveAttrAndNotify(TenantId.SYS_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, key, value, new AttributeSaveCallback(deviceId, key, value));
+            persist(deviceId, Collections.singletonList(entry));
         }
     }
 
-    private void save(DeviceId deviceId, String key, boolean value) {
+    private void flushPendingStateUpdates() {
+        try {
+            for (DeviceId deviceId : pendingStateUpdates.keySet()) {
+                Map<String, TsKvEntry> entries = pendingStateUpdates.remove(deviceId);
+                if (entries != null) {
+                    persist(deviceId, new ArrayList<>(entries.values()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to flush device state updates", e);
+        }
+    }
+
+    private void persist(DeviceId deviceId, List<TsKvEntry> entries) {
+        stateWrites.incrementAndGet();
         if (persistToTelemetry) {
-            tsSubService.saveAndNotify(
-                    TenantId.SYS_TENANT_ID, deviceId,
-                    Collections.singletonList(new BasicTsKvEntry(System.currentTimeMillis(), new BooleanDataEntry(key, value))),
-                    new AttributeSaveCallback(deviceId, key, value));
+            tsSubService.saveAndNotify(TenantId.SYS_TENANT_ID, deviceId, entries, new AttributeSaveCallback(deviceId, entries));
         } else {
-            tsSubService.saveAttrAndNotify(TenantId.SYS_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, key, value, new AttributeSaveCallback(deviceId, key, value));
+            List<AttributeKvEntry> attributes = new ArrayList<>(entries.size());
+            entries.forEach(entry -> attributes.add(new BaseAttributeKvEntry(entry, entry.getTs())));
+            tsSubService.saveAndNotify(TenantId.SYS_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, attributes, new AttributeSaveCallback(deviceId, entries));
         }
     }
 
     private static class AttributeSaveCallback implements FutureCallback<Void> {
         private final DeviceId deviceId;
-        private final String key;
-        private final Object value;
+        private final List<TsKvEntry> entries;
 
-        AttributeSaveCallback(DeviceId deviceId, String key, Object value) {
+        AttributeSaveCallback(DeviceId deviceId, List<TsKvEntry> entries) {
             this.deviceId = deviceId;
-            this.key = key;
-            this.value = value;
+            this.entries = entries;
         }
 
         @Override
         public void onSuccess(@Nullable Void result) {
-            log.trace("[{}] Successfully updated attribute [{}] with value [{}]", deviceId, key, value);
+            log.trace("[{}] Successfully updated attributes {}", deviceId, entries);
         }
 
         @Override
         public void onFailure(Throwable t) {
-            log.warn("[{}] Failed to update attribute [{}] with value [{}]", deviceId, key, value, t);
+            log.warn("[{}] Failed to update attributes {}", deviceId, entries, t);
         }
     }
 }
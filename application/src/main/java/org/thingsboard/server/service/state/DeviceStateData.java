@@ -34,4 +34,8 @@ class DeviceStateData {
     private TbMsgMetaData metaData;
     private final DeviceState state;
 
+    private long lastSavedActivityTime;
+    // accessed by the device state thread only
+    private long scheduledTick;
+
 }
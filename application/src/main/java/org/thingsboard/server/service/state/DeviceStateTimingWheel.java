@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hashed timing wheel of device inactivity deadlines.
+ * Each tick only visits the devices scheduled to the expired buckets instead of all devices.
+ * Deadlines are re-evaluated lazily: when the bucket expires, a device with a later deadline
+ * (because of new activity) is moved forward instead of being rescheduled on every activity event.
+ * <p>
+ * {@link #schedule(DeviceStateData)} may be called from any thread, all other methods from the single state thread only.
+ */
+class DeviceStateTimingWheel {
+
+    static final long UNSCHEDULED = 0L;
+
+    private final long tickMs;
+    private final List<DeviceStateData>[] buckets;
+    private final Queue<DeviceStateData> pending = new ConcurrentLinkedQueue<>();
+    private final Predicate<DeviceStateData> tracked;
+    private final ToLongFunction<DeviceStateData> deadline;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    DeviceStateTimingWheel(long tickMs, int wheelSize, long ts,
+                           Predicate<DeviceStateData> tracked, ToLongFunction<DeviceStateData> deadline) {
+        this.tickMs = tickMs;
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.tracked = tracked;
+        this.deadline = deadline;
+        this.currentTick = ts / tickMs;
+    }
+
+    void schedule(DeviceStateData stateData) {
+        pending.add(stateData);
+    }
+
+    /**
+     * Passes every tracked device whose deadline is not after the given timestamp to the consumer and forgets it.
+     * Expired devices are scheduled again on the next {@link #schedule(DeviceStateData)} call.
+     */
+    void advance(long ts, Consumer<DeviceStateData> expired) {
+        DeviceStateData stateData;
+        while ((stateData = pending.poll()) != null) {
+            if (tracked.test(stateData)) {
+                place(stateData, deadline.applyAsLong(stateData));
+            }
+        }
+        long targetTick = ts / tickMs;
+        long lastTick = Math.min(targetTick, currentTick + buckets.length);
+        for (long tick = currentTick + 1; tick <= lastTick; tick++) {
+            int idx = (int) (tick % buckets.length);
+            List<DeviceStateData> bucket = buckets[idx];
+            buckets[idx] = new ArrayList<>();
+            size -= bucket.size();
+            for (DeviceStateData data : bucket) {
+                long scheduledTick = data.getScheduledTick();
+                if (scheduledTick == UNSCHEDULED || scheduledTick % buckets.length != idx || !tracked.test(data)) {
+                    // removed device or stale copy of a rescheduled one
+                    continue;
+                }
+                if (scheduledTick > targetTick) {
+                    buckets[idx].add(data);
+                    size++;
+                    continue;
+                }
+                long deviceDeadline = deadline.applyAsLong(data);
+                if (deviceDeadline > ts) {
+                    place(data, deviceDeadline);
+                } else {
+                    data.setScheduledTick(UNSCHEDULED);
+                    expired.accept(data);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(DeviceStateData stateData, long deadlineTs) {
+        long tick = Math.max((deadlineTs + tickMs - 1) / tickMs, currentTick + 1);
+        if (stateData.getScheduledTick() == tick) {
+            return;
+        }
+        stateData.setScheduledTick(tick);
+        buckets[(int) (tick % buckets.length)].add(stateData);
+        size++;
+    }
+}
@@ -15,7 +15,6 @@
  */
 package org.thingsboard.server.service.telemetry;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.FutureCallback;
@@ -622,9 +621,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     private void sendWsMsg(TelemetryWebSocketSessionRef sessionRef, SubscriptionUpdate update) {
         executor.submit(() -> {
             try {
-                msgEndpoint.send(sessionRef, update.getSubscriptionId(), jsonMapper.writeValueAsString(update));
-            } catch (JsonProcessingException e) {
-                log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
+                msgEndpoint.send(sessionRef, update);
             } catch (IOException e) {
                 log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
             }
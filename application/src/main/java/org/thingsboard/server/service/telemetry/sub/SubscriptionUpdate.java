@@ -19,6 +19,7 @@ import org.thingsboard.server.common.data.kv.TsKvEntry;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -83,6 +84,27 @@ public class SubscriptionUpdate {
         }
     }
 
+    /**
+     * Returns the update with the values of this and the newer update ordered by ts.
+     * Only the latest maxValuesPerKey values of each key are kept if maxValuesPerKey is positive.
+     */
+    public SubscriptionUpdate merge(SubscriptionUpdate newer, int maxValuesPerKey) {
+        Map<String, List<Object>> mergedData = new TreeMap<>();
+        if (data != null) {
+            data.forEach((key, values) -> mergedData.put(key, new ArrayList<>(values)));
+        }
+        if (newer.data != null) {
+            newer.data.forEach((key, values) -> mergedData.computeIfAbsent(key, k -> new ArrayList<>()).addAll(values));
+        }
+        for (List<Object> values : mergedData.values()) {
+            values.sort(Comparator.comparingLong(value -> (long) ((Object[]) value)[0]));
+            if (maxValuesPerKey > 0 && values.size() > maxValuesPerKey) {
+                values.subList(0, values.size() - maxValuesPerKey).clear();
+            }
+        }
+        return new SubscriptionUpdate(subscriptionId, mergedData);
+    }
+
     public int getErrorCode() {
         return errorCode;
     }
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.rule.RuleNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RuleChainRoutingTableTest {
+
+    private final RuleNodeId filterNodeId = new RuleNodeId(UUID.randomUUID());
+    private final RuleNodeId saveNodeId = new RuleNodeId(UUID.randomUUID());
+    private final RuleNodeId alarmNodeId = new RuleNodeId(UUID.randomUUID());
+    private final RuleChainId otherChainId = new RuleChainId(UUID.randomUUID());
+
+    private RuleChainRoutingTable routingTable;
+
+    @Before
+    public void before() {
+        Map<RuleNodeId, RuleNodeCtx> nodeActors = new HashMap<>();
+        for (RuleNodeId ruleNodeId : Arrays.asList(filterNodeId, saveNodeId, alarmNodeId)) {
+            nodeActors.put(ruleNodeId, new RuleNodeCtx(TenantId.SYS_TENANT_ID, null, null, new RuleNode(ruleNodeId)));
+        }
+        Map<RuleNodeId, List<EntityRelation>> relations = new HashMap<>();
+        relations.put(filterNodeId, Arrays.asList(
+                new EntityRelation(filterNodeId, saveNodeId, "True"),
+                new EntityRelation(filterNodeId, alarmNodeId, "True"),
+                new EntityRelation(filterNodeId, otherChainId, "False"),
+                new EntityRelation(filterNodeId, alarmNodeId, "Failure")));
+        relations.put(saveNodeId, Collections.singletonList(new EntityRelation(saveNodeId, alarmNodeId, "Success")));
+        relations.put(alarmNodeId, Collections.emptyList());
+        routingTable = new RuleChainRoutingTable(null, nodeActors, relations);
+    }
+
+    @Test
+    public void testRelationsByType() {
+        RuleNodeRelation[] relations = routingTable.getRelations(filterNodeId, Collections.singleton("True"));
+        assertEquals(2, relations.length);
+        assertEquals(saveNodeId, relations[0].getOut());
+        assertSame(routingTable.getNodeContext(saveNodeId), relations[0].getOutCtx());
+        assertSame(routingTable.getNodeContext(alarmNodeId), relations[1].getOutCtx());
+
+        relations = routingTable.getRelations(filterNodeId, Collections.singleton("False"));
+        assertEquals(1, relations.length);
+        assertEquals(otherChainId, relations[0].getOut());
+        assertNull(relations[0].getOutCtx());
+
+        assertEquals(0, routingTable.getRelations(filterNodeId, Collections.singleton("Success")).length);
+        assertEquals(0, routingTable.getRelations(alarmNodeId, Collections.singleton("Success")).length);
+        assertEquals(0, routingTable.getRelations(filterNodeId, Collections.singleton("Unknown")).length);
+    }
+
+    @Test
+    public void testRelationTypesAreMatchedIgnoringCase() {
+        assertEquals(2, routingTable.getRelations(filterNodeId, Collections.singleton("TRUE")).length);
+        assertEquals(1, routingTable.getRelations(saveNodeId, Collections.singleton("success")).length);
+    }
+
+    @Test
+    public void testMultipleRelationTypes() {
+        assertEquals(3, routingTable.getRelations(filterNodeId, new HashSet<>(Arrays.asList("True", "Failure", "Other"))).length);
+        assertEquals(2, routingTable.getRelations(filterNodeId, new HashSet<>(Arrays.asList("True", "true"))).length);
+        assertEquals(4, routingTable.getRelations(filterNodeId, null).length);
+    }
+
+    @Test
+    public void testUnknownRuleNode() {
+        assertNull(routingTable.getRelations(new RuleNodeId(UUID.randomUUID()), Collections.singleton("Success")));
+        assertNull(RuleChainRoutingTable.EMPTY.getRelations(filterNodeId, Collections.singleton("Success")));
+    }
+}
@@ -36,6 +36,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 public abstract class BaseAuditLogControllerTest extends AbstractControllerTest {
 
+    private static final long AUDIT_LOGS_TIMEOUT_MS = 10000;
+
     private Tenant savedTenant;
     private User tenantAdmin;
 
@@ -75,47 +77,13 @@ public abstract class BaseAuditLogControllerTest extends AbstractControllerTest
             doPost("/api/device", device, Device.class);
         }
 
-        List<AuditLog> loadedAuditLogs = new ArrayList<>();
-        TimePageLink pageLink = new TimePageLink(23);
-        TimePageData<AuditLog> pageData;
-        do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs?",
-                    new TypeReference<TimePageData<AuditLog>>() {
-                    }, pageLink);
-            loadedAuditLogs.addAll(pageData.getData());
-            if (pageData.hasNext()) {
-                pageLink = pageData.getNextPageLink();
-            }
-        } while (pageData.hasNext());
-
+        List<AuditLog> loadedAuditLogs = awaitAuditLogs("/api/audit/logs?", 178);
         Assert.assertEquals(178, loadedAuditLogs.size());
 
-        loadedAuditLogs = new ArrayList<>();
-        pageLink = new TimePageLink(23);
-        do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs/customer/" + ModelConstants.NULL_UUID + "?",
-                    new TypeReference<TimePageData<AuditLog>>() {
-                    }, pageLink);
-            loadedAuditLogs.addAll(pageData.getData());
-            if (pageData.hasNext()) {
-                pageLink = pageData.getNextPageLink();
-            }
-        } while (pageData.hasNext());
-
+        loadedAuditLogs = awaitAuditLogs("/api/audit/logs/customer/" + ModelConstants.NULL_UUID + "?", 178);
         Assert.assertEquals(178, loadedAuditLogs.size());
 
-        loadedAuditLogs = new ArrayList<>();
-        pageLink = new TimePageLink(23);
-        do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs/user/" + tenantAdmin.getId().getId().toString() + "?",
-                    new TypeReference<TimePageData<AuditLog>>() {
-                    }, pageLink);
-            loadedAuditLogs.addAll(pageData.getData());
-            if (pageData.hasNext()) {
-                pageLink = pageData.getNextPageLink();
-            }
-        } while (pageData.hasNext());
-
+        loadedAuditLogs = awaitAuditLogs("/api/audit/logs/user/" + tenantAdmin.getId().getId().toString() + "?", 178);
         Assert.assertEquals(178, loadedAuditLogs.size());
     }
 
@@ -130,11 +98,29 @@ public abstract class BaseAuditLogControllerTest extends AbstractControllerTest
             doPost("/api/device", savedDevice, Device.class);
         }
 
+        List<AuditLog> loadedAuditLogs = awaitAuditLogs("/api/audit/logs/entity/DEVICE/" + savedDevice.getId().getId() + "?", 179);
+        Assert.assertEquals(179, loadedAuditLogs.size());
+    }
+
+    /**
+     * Audit logs are saved by the batched writer, so the endpoint is polled until the expected number of logs is saved or the timeout is reached.
+     */
+    private List<AuditLog> awaitAuditLogs(String urlTemplate, int expectedCount) throws Exception {
+        long deadline = System.currentTimeMillis() + AUDIT_LOGS_TIMEOUT_MS;
+        List<AuditLog> loadedAuditLogs = loadAuditLogs(urlTemplate);
+        while (loadedAuditLogs.size() < expectedCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            loadedAuditLogs = loadAuditLogs(urlTemplate);
+        }
+        return loadedAuditLogs;
+    }
+
+    private List<AuditLog> loadAuditLogs(String urlTemplate) throws Exception {
         List<AuditLog> loadedAuditLogs = new ArrayList<>();
         TimePageLink pageLink = new TimePageLink(23);
         TimePageData<AuditLog> pageData;
         do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs/entity/DEVICE/" + savedDevice.getId().getId() + "?",
+            pageData = doGetTypedWithTimePageLink(urlTemplate,
                     new TypeReference<TimePageData<AuditLog>>() {
                     }, pageLink);
             loadedAuditLogs.addAll(pageData.getData());
@@ -142,7 +128,6 @@ public abstract class BaseAuditLogControllerTest extends AbstractControllerTest
                 pageLink = pageData.getNextPageLink();
             }
         } while (pageData.hasNext());
-
-        Assert.assertEquals(179, loadedAuditLogs.size());
+        return loadedAuditLogs;
     }
 }
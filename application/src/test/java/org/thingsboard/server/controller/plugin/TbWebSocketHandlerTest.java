@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbWebSocketHandlerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private TbWebSocketHandler handler;
+    private RemoteEndpoint.Async asyncRemote;
+    private TbWebSocketHandler.SessionMetaData sessionMd;
+
+    @Before
+    public void before() {
+        handler = new TbWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "conflationEnabled", true);
+        ReflectionTestUtils.setField(handler, "conflationMaxValuesPerKey", 1);
+
+        asyncRemote = mock(RemoteEndpoint.Async.class);
+        Session nativeSession = mock(Session.class);
+        when(nativeSession.getAsyncRemote()).thenReturn(asyncRemote);
+        NativeWebSocketSession session = mock(NativeWebSocketSession.class);
+        when(session.getNativeSession(Session.class)).thenReturn(nativeSession);
+        sessionMd = handler.new SessionMetaData(session, null, 10);
+    }
+
+    @Test
+    public void testUpdatesReceivedWhileSendingAreMergedAndSentNext() throws Exception {
+        sessionMd.sendUpdate(update(1, "temperature", 1, 10.0));
+        sessionMd.sendUpdate(update(1, "temperature", 2, 20.0));
+        sessionMd.sendUpdate(update(1, "temperature", 3, 30.0));
+        sessionMd.sendUpdate(update(1, "humidity", 3, 50.0));
+
+        List<String> sent = captureSent(1);
+        Assert.assertEquals(10.0, value(sent.get(0), "temperature"), 0.0);
+
+        sessionMd.onResult(new SendResult());
+        sent = captureSent(2);
+        Assert.assertEquals(30.0, value(sent.get(1), "temperature"), 0.0);
+        Assert.assertEquals(50.0, value(sent.get(1), "humidity"), 0.0);
+        Assert.assertEquals(1, mapper.readTree(sent.get(1)).get("data").get("temperature").size());
+
+        // nothing is pending, so the next update is sent immediately once the merged update is delivered
+        sessionMd.onResult(new SendResult());
+        sessionMd.sendUpdate(update(1, "temperature", 4, 40.0));
+        sent = captureSent(3);
+        Assert.assertEquals(40.0, value(sent.get(2), "temperature"), 0.0);
+    }
+
+    @Test
+    public void testQueuedMessagesAreSentBeforePendingUpdates() throws Exception {
+        sessionMd.sendUpdate(update(1, "temperature", 1, 10.0));
+        sessionMd.sendUpdate(update(1, "temperature", 2, 20.0));
+        sessionMd.sendMsg("{\"subscriptionId\":2,\"errorCode\":1}");
+
+        sessionMd.onResult(new SendResult());
+        List<String> sent = captureSent(2);
+        Assert.assertEquals(2, mapper.readTree(sent.get(1)).get("subscriptionId").asInt());
+
+        sessionMd.onResult(new SendResult());
+        sent = captureSent(3);
+        Assert.assertEquals(20.0, value(sent.get(2), "temperature"), 0.0);
+    }
+
+    @Test
+    public void testFirstUpdateOfSubscriptionIsNotTruncated() throws Exception {
+        sessionMd.sendUpdate(update(2, "humidity", 1, 50.0));
+        SubscriptionUpdate history = new SubscriptionUpdate(1, Arrays.asList(
+                new BasicTsKvEntry(1, new DoubleDataEntry("temperature", 10.0)),
+                new BasicTsKvEntry(2, new DoubleDataEntry("temperature", 20.0)),
+                new BasicTsKvEntry(3, new DoubleDataEntry("temperature", 30.0))));
+        sessionMd.sendUpdate(history);
+        sessionMd.sendUpdate(update(1, "temperature", 4, 40.0));
+        sessionMd.sendUpdate(update(1, "temperature", 5, 50.0));
+
+        sessionMd.onResult(new SendResult());
+        List<String> sent = captureSent(2);
+        Assert.assertEquals(3, mapper.readTree(sent.get(1)).get("data").get("temperature").size());
+        Assert.assertEquals(30.0, value(sent.get(1), "temperature"), 0.0);
+
+        sessionMd.onResult(new SendResult());
+        sent = captureSent(3);
+        Assert.assertEquals(1, mapper.readTree(sent.get(2)).get("data").get("temperature").size());
+        Assert.assertEquals(50.0, value(sent.get(2), "temperature"), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroMaxValuesPerKeyIsRejected() {
+        ReflectionTestUtils.setField(handler, "conflationMaxValuesPerKey", 0);
+        handler.init();
+    }
+
+    private List<String> captureSent(int count) {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(asyncRemote, times(count)).sendText(captor.capture(), eq(sessionMd));
+        return captor.getAllValues();
+    }
+
+    private double value(String msg, String key) throws Exception {
+        JsonNode values = mapper.readTree(msg).get("data").get(key);
+        return values.get(values.size() - 1).get(1).asDouble();
+    }
+
+    private static SubscriptionUpdate update(int subscriptionId, String key, long ts, double value) {
+        return new SubscriptionUpdate(subscriptionId, Collections.singletonList(new BasicTsKvEntry(ts, new DoubleDataEntry(key, value))));
+    }
+}
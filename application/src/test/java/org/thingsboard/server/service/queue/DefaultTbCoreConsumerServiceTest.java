@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos.SubscriptionMgrMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbAttributeSubscriptionProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbAttributeUpdateProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionCloseProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesSubscriptionProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesUpdateProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.UUID;
+
+public class DefaultTbCoreConsumerServiceTest {
+
+    private final UUID entityId = UUID.randomUUID();
+    private final TbSubscriptionProto sub = TbSubscriptionProto.newBuilder()
+            .setSessionId(UUID.randomUUID().toString())
+            .setSubscriptionId(1)
+            .setEntityType("DEVICE")
+            .setEntityIdMSB(entityId.getMostSignificantBits())
+            .setEntityIdLSB(entityId.getLeastSignificantBits())
+            .build();
+
+    @Test
+    public void testSubscriptionCommandsAndUpdatesOfEntityShareOrderingKey() {
+        Assert.assertEquals(entityId, orderingKey(SubscriptionMgrMsgProto.newBuilder()
+                .setTelemetrySub(TbTimeSeriesSubscriptionProto.newBuilder().setSub(sub))));
+        Assert.assertEquals(entityId, orderingKey(SubscriptionMgrMsgProto.newBuilder()
+                .setAttributeSub(TbAttributeSubscriptionProto.newBuilder().setSub(sub))));
+        Assert.assertEquals(entityId, orderingKey(SubscriptionMgrMsgProto.newBuilder()
+                .setSubClose(TbSubscriptionCloseProto.newBuilder().setSessionId(sub.getSessionId()).setSubscriptionId(1))));
+        Assert.assertEquals(entityId, orderingKey(SubscriptionMgrMsgProto.newBuilder()
+                .setTsUpdate(TbTimeSeriesUpdateProto.newBuilder().setEntityType("DEVICE")
+                        .setEntityIdMSB(entityId.getMostSignificantBits()).setEntityIdLSB(entityId.getLeastSignificantBits()))));
+        Assert.assertEquals(entityId, orderingKey(SubscriptionMgrMsgProto.newBuilder()
+                .setAttrUpdate(TbAttributeUpdateProto.newBuilder().setEntityType("DEVICE")
+                        .setEntityIdMSB(entityId.getMostSignificantBits()).setEntityIdLSB(entityId.getLeastSignificantBits()))));
+    }
+
+    private Object orderingKey(SubscriptionMgrMsgProto.Builder subMsg) {
+        // subscription messages are keyed by the entity id of the subscription on the producer side
+        ToCoreMsg toCoreMsg = ToCoreMsg.newBuilder().setToSubscriptionMgrMsg(subMsg).build();
+        return DefaultTbCoreConsumerService.getOrderingKey(new TbProtoQueueMsg<>(entityId, toCoreMsg));
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.queue.TbQueuePosition;
+
+public class TbPackCommitWatermarkTest {
+
+    private final TbPackCommitWatermark watermark = new TbPackCommitWatermark();
+
+    @Test
+    public void testCommitPositionStopsAtOldestPackInProgress() {
+        TbQueuePosition p1 = new TestPosition();
+        TbQueuePosition p2 = new TestPosition();
+        TbQueuePosition p3 = new TestPosition();
+        TbPackCommitWatermark.Pack pack1 = watermark.add(p1, 10);
+        TbPackCommitWatermark.Pack pack2 = watermark.add(p2, 20);
+        TbPackCommitWatermark.Pack pack3 = watermark.add(p3, 30);
+        Assert.assertEquals(3, watermark.getInFlightPacks());
+
+        watermark.complete(pack2);
+        watermark.complete(pack3);
+        Assert.assertNull(watermark.pollCommitPosition());
+        Assert.assertEquals(1, watermark.getInFlightPacks());
+        Assert.assertEquals(60, watermark.getCommitLag());
+
+        watermark.complete(pack1);
+        Assert.assertSame(p3, watermark.pollCommitPosition());
+        Assert.assertNull(watermark.pollCommitPosition());
+        Assert.assertEquals(0, watermark.getInFlightPacks());
+        Assert.assertEquals(0, watermark.getCommitLag());
+    }
+
+    @Test
+    public void testCommitPositionMovesPackByPack() {
+        TbQueuePosition p1 = new TestPosition();
+        TbQueuePosition p2 = new TestPosition();
+        TbPackCommitWatermark.Pack pack1 = watermark.add(p1, 1);
+        TbPackCommitWatermark.Pack pack2 = watermark.add(p2, 1);
+
+        watermark.complete(pack1);
+        Assert.assertSame(p1, watermark.pollCommitPosition());
+        watermark.complete(pack2);
+        watermark.complete(pack2);
+        Assert.assertSame(p2, watermark.pollCommitPosition());
+        Assert.assertEquals(0, watermark.getInFlightPacks());
+    }
+
+    private static class TestPosition implements TbQueuePosition {
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TbStripedExecutorTest {
+
+    private static final int KEYS = 16;
+    private static final int TASKS_PER_KEY = 1000;
+
+    private final TbStripedExecutor executor = new TbStripedExecutor("test-stripe", 4);
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTasksWithSameKeyRunInSubmissionOrder() throws InterruptedException {
+        List<UUID> keys = new ArrayList<>();
+        List<List<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(UUID.randomUUID());
+            results.add(new ArrayList<>());
+        }
+        CountDownLatch completed = new CountDownLatch(KEYS * TASKS_PER_KEY);
+        for (int seq = 0; seq < TASKS_PER_KEY; seq++) {
+            for (int i = 0; i < KEYS; i++) {
+                List<Integer> result = results.get(i);
+                int value = seq;
+                executor.execute(keys.get(i), () -> {
+                    result.add(value);
+                    completed.countDown();
+                });
+            }
+        }
+        Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+        for (List<Integer> result : results) {
+            Assert.assertEquals(TASKS_PER_KEY, result.size());
+            for (int seq = 0; seq < TASKS_PER_KEY; seq++) {
+                Assert.assertEquals(seq, result.get(seq).intValue());
+            }
+        }
+    }
+}
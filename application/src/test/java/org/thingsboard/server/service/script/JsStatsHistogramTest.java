@@ -0,0 +1,45 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class JsStatsHistogramTest {
+
+    @Test
+    public void testPercentilesAreUpperBoundsOfBuckets() {
+        JsStatsHistogram histogram = new JsStatsHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        assertArrayEquals(new long[]{100, 4, 4, 128, 8192}, histogram.snapshotAndReset());
+        assertArrayEquals(new long[]{0, 0, 0, 0, 0}, histogram.snapshotAndReset());
+    }
+
+    @Test
+    public void testZeroAndHugeValues() {
+        JsStatsHistogram histogram = new JsStatsHistogram();
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        assertArrayEquals(new long[]{2, 0, 1L << 39, 1L << 39, 1L << 39}, histogram.snapshotAndReset());
+    }
+}
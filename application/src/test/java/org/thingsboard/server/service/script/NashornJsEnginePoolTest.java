@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class NashornJsEnginePoolTest {
+
+    private TestNashornJsInvokeService jsInvokeService;
+
+    @Before
+    public void beforeTest() {
+        jsInvokeService = new TestNashornJsInvokeService(false, 1, 100, 3) {
+            @Override
+            protected int getEnginesPoolSize() {
+                return 4;
+            }
+        };
+    }
+
+    @After
+    public void afterTest() {
+        jsInvokeService.stop();
+    }
+
+    @Test
+    public void testScriptsAreInvokedInTheirEngines() throws Exception {
+        List<UUID> scriptIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            scriptIds.add(jsInvokeService.eval(JsScriptType.RULE_NODE_SCRIPT, "return {msg: {value: msg.value + " + i + "}};").get());
+        }
+        List<ListenableFuture<Object>> results = new ArrayList<>();
+        for (int j = 0; j < 10; j++) {
+            for (UUID scriptId : scriptIds) {
+                results.add(jsInvokeService.invokeFunction(scriptId, "{\"value\":" + j + "}", "{}", "POST_TELEMETRY_REQUEST"));
+            }
+        }
+        List<Object> values = Futures.allAsList(results).get();
+        for (int j = 0; j < 10; j++) {
+            for (int i = 0; i < scriptIds.size(); i++) {
+                assertEquals("{\"msg\":{\"value\":" + (i + j) + "}}", values.get(j * scriptIds.size() + i));
+            }
+        }
+
+        UUID released = scriptIds.get(0);
+        jsInvokeService.release(released).get();
+        try {
+            jsInvokeService.invokeFunction(released, "{\"value\":1}", "{}", "POST_TELEMETRY_REQUEST").get();
+            fail("Released script is invoked");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        assertEquals("{\"msg\":{\"value\":2}}", jsInvokeService.invokeFunction(scriptIds.get(1), "{\"value\":1}", "{}", "POST_TELEMETRY_REQUEST").get());
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.gen.js.JsInvokeProtos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteJsInvokeBatcherTest {
+
+    private ScheduledExecutorService scheduler;
+    private List<List<JsInvokeProtos.JsInvokeRequest>> sentBatches;
+
+    @Before
+    public void beforeTest() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        sentBatches = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void afterTest() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFullBatchIsSentAndResponsesAreMatchedByPosition() throws Exception {
+        RemoteJsInvokeBatcher batcher = new RemoteJsInvokeBatcher(3, 60000, scheduler, this::echo);
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> first = batcher.invoke(request("a"));
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> second = batcher.invoke(request("b"));
+        assertTrue(sentBatches.isEmpty());
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> third = batcher.invoke(request("c"));
+
+        assertEquals(1, sentBatches.size());
+        assertEquals(3, sentBatches.get(0).size());
+        assertEquals("a", first.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals("b", second.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals("c", third.get(1, TimeUnit.SECONDS).getResult());
+
+        batcher.invoke(request("d"));
+        assertEquals(1, sentBatches.size());
+    }
+
+    @Test
+    public void testIncompleteBatchIsSentAfterLinger() throws Exception {
+        RemoteJsInvokeBatcher batcher = new RemoteJsInvokeBatcher(100, 200, scheduler, this::echo);
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> first = batcher.invoke(request("a"));
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> second = batcher.invoke(request("b"));
+        assertFalse(first.isDone());
+
+        assertEquals("a", first.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals("b", second.get(1, TimeUnit.SECONDS).getResult());
+        assertEquals(1, sentBatches.size());
+        assertEquals(2, sentBatches.get(0).size());
+    }
+
+    @Test
+    public void testBatchFailureAndMissingResponses() throws Exception {
+        SettableFuture<List<JsInvokeProtos.JsInvokeResponse>> response = SettableFuture.create();
+        RemoteJsInvokeBatcher failingBatcher = new RemoteJsInvokeBatcher(2, 60000, scheduler, requests -> response);
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> first = failingBatcher.invoke(request("a"));
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> second = failingBatcher.invoke(request("b"));
+        response.setException(new RuntimeException("failed"));
+        assertFailed(first);
+        assertFailed(second);
+
+        RemoteJsInvokeBatcher partialBatcher = new RemoteJsInvokeBatcher(2, 60000, scheduler,
+                requests -> Futures.immediateFuture(responses(requests.subList(0, 1))));
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> third = partialBatcher.invoke(request("c"));
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> fourth = partialBatcher.invoke(request("d"));
+        assertEquals("c", third.get(1, TimeUnit.SECONDS).getResult());
+        assertFailed(fourth);
+    }
+
+    private ListenableFuture<List<JsInvokeProtos.JsInvokeResponse>> echo(List<JsInvokeProtos.JsInvokeRequest> requests) {
+        sentBatches.add(requests);
+        return Futures.immediateFuture(responses(requests));
+    }
+
+    private static List<JsInvokeProtos.JsInvokeResponse> responses(List<JsInvokeProtos.JsInvokeRequest> requests) {
+        List<JsInvokeProtos.JsInvokeResponse> responses = new ArrayList<>();
+        for (JsInvokeProtos.JsInvokeRequest request : requests) {
+            responses.add(JsInvokeProtos.JsInvokeResponse.newBuilder().setSuccess(true).setResult(request.getArgs(0)).build());
+        }
+        return responses;
+    }
+
+    private static JsInvokeProtos.JsInvokeRequest request(String arg) {
+        return JsInvokeProtos.JsInvokeRequest.newBuilder().setFunctionName("f").addArgs(arg).build();
+    }
+
+    private static void assertFailed(ListenableFuture<?> future) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Future is not failed");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.rule.engine.api.ScriptEngine;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgDataType;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import javax.script.ScriptException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleNodeJsScriptEngineNativeObjectsTest {
+
+    private static final String RAW_JSON = "{\"name\":\"Vit\",\"passed\":5,\"bigObj\":{\"prop\":42},\"values\":[1,2,3]}";
+
+    private TestNashornJsInvokeService jsSandboxService;
+    private ScriptEngine scriptEngine;
+
+    private EntityId ruleNodeId = new RuleNodeId(UUIDs.timeBased());
+
+    @Before
+    public void beforeTest() {
+        jsSandboxService = new TestNashornJsInvokeService(false, 1, 100, 3, true);
+    }
+
+    @After
+    public void afterTest() {
+        if (scriptEngine != null) {
+            scriptEngine.destroy();
+        }
+        jsSandboxService.stop();
+    }
+
+    @Test
+    public void metadataCanBeUpdated() throws ScriptException {
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "metadata.temp = metadata.temp * 10; return {metadata: metadata};");
+        TbMsg actual = scriptEngine.executeUpdate(newMsg());
+        assertEquals("70", actual.getMetaData().getValue("temp"));
+        assertEquals("99", actual.getMetaData().getValue("humidity"));
+    }
+
+    @Test
+    public void payloadCanBeUpdated() throws ScriptException {
+        String function = "msg.passed = msg.passed * metadata.temp; msg.bigObj.newProp = 'Ukraine'; msg.values.push(4); delete msg.name; return {msg: msg};";
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, function);
+        TbMsg actual = scriptEngine.executeUpdate(newMsg());
+        assertEquals("{\"passed\":35,\"bigObj\":{\"prop\":42,\"newProp\":\"Ukraine\"},\"values\":[1,2,3,4]}", actual.getData());
+    }
+
+    @Test
+    public void newPayloadCanBeCreated() throws ScriptException {
+        String function = "var result = {temperature: msg.bigObj.prop / 2, items: msg.values.map(function(v) { return v * 2; })}; " +
+                "return {msg: result, msgType: 'CUSTOM'};";
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, function);
+        TbMsg actual = scriptEngine.executeUpdate(newMsg());
+        assertEquals("{\"temperature\":21,\"items\":[2,4,6]}", actual.getData());
+        assertEquals("CUSTOM", actual.getType());
+    }
+
+    @Test
+    public void unmodifiedPayloadIsNotMaterialized() throws ScriptException {
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "return {msg: msg, metadata: metadata};");
+        TbMsg msg = newMsg();
+        TbMsg actual = scriptEngine.executeUpdate(msg);
+        assertEquals(RAW_JSON, actual.getData());
+        assertEquals(msg.getMetaData().getData(), actual.getMetaData().getData());
+    }
+
+    @Test
+    public void filterAndSwitch() throws ScriptException {
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId,
+                "return msg.passed < 15 && msg.name === 'Vit' && metadata.temp == 7 && msg.bigObj.prop == 42 && msg.values.indexOf(2) === 1 && msg.hasOwnProperty('name');");
+        assertTrue(scriptEngine.executeFilter(newMsg()));
+        scriptEngine.destroy();
+
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "return msg.missing == null && !metadata.missing;");
+        assertTrue(scriptEngine.executeFilter(newMsg()));
+        scriptEngine.destroy();
+
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "return msg.passed > 10;");
+        assertFalse(scriptEngine.executeFilter(newMsg()));
+        scriptEngine.destroy();
+
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "return msg.passed < 10 ? ['one', 'three'] : 'two';");
+        assertEquals(Sets.newHashSet("one", "three"), scriptEngine.executeSwitch(newMsg()));
+    }
+
+    @Test
+    public void payloadCanBeStringified() throws ScriptException {
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "return JSON.stringify(msg.bigObj);");
+        assertEquals("{\"prop\":42}", scriptEngine.executeToString(newMsg()));
+    }
+
+    @Test
+    public void primitivePayload() throws ScriptException {
+        scriptEngine = new RuleNodeJsScriptEngine(jsSandboxService, ruleNodeId, "return {msg: msg + 1};");
+        TbMsg msg = TbMsg.newMsg("USER", null, new TbMsgMetaData(), TbMsgDataType.JSON, "41");
+        assertEquals("42", scriptEngine.executeUpdate(msg).getData());
+    }
+
+    @Test
+    public void nativeScriptIsUsedOnlyWhenEnabled() {
+        String nativeScript = RuleNodeScriptFactory.generateRuleNodeScript("f", "return true;", true);
+        String jsonScript = RuleNodeScriptFactory.generateRuleNodeScript("f", "return true;");
+        assertFalse(nativeScript.contains("JSON."));
+        assertTrue(jsonScript.contains("JSON.parse"));
+    }
+
+    private static TbMsg newMsg() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("temp", "7");
+        metaData.putValue("humidity", "99");
+        return TbMsg.newMsg("USER", null, metaData, TbMsgDataType.JSON, RAW_JSON);
+    }
+}
@@ -21,8 +21,14 @@ public class TestNashornJsInvokeService extends AbstractNashornJsInvokeService {
     private final int monitorThreadPoolSize;
     private final long maxCpuTime;
     private final int maxErrors;
+    private final boolean useNativeObjects;
 
     public TestNashornJsInvokeService(boolean useJsSandbox, int monitorThreadPoolSize, long maxCpuTime, int maxErrors) {
+        this(useJsSandbox, monitorThreadPoolSize, maxCpuTime, maxErrors, false);
+    }
+
+    public TestNashornJsInvokeService(boolean useJsSandbox, int monitorThreadPoolSize, long maxCpuTime, int maxErrors, boolean useNativeObjects) {
+        this.useNativeObjects = useNativeObjects;
         this.useJsSandbox = useJsSandbox;
         this.monitorThreadPoolSize = monitorThreadPoolSize;
         this.maxCpuTime = maxCpuTime;
@@ -54,4 +60,14 @@ public class TestNashornJsInvokeService extends AbstractNashornJsInvokeService {
     protected long getMaxBlacklistDuration() {
         return 100000;
     }
+
+    @Override
+    protected int getEnginesPoolSize() {
+        return 1;
+    }
+
+    @Override
+    public boolean isNativeObjectsEnabled() {
+        return useNativeObjects;
+    }
 }
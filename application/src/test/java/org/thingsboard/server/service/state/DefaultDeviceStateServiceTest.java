@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import com.google.common.util.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+import org.thingsboard.server.common.msg.queue.ServiceQueueKey;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.device.DeviceService;
+import org.thingsboard.server.dao.tenant.TenantService;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.service.queue.TbClusterService;
+import org.thingsboard.server.service.telemetry.TelemetrySubscriptionService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DefaultDeviceStateServiceTest {
+
+    private static final long COALESCING_WINDOW_MS = 60000;
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    private TelemetrySubscriptionService tsSubService;
+    private DefaultDeviceStateService service;
+    private DeviceStateData stateData;
+
+    @Before
+    public void before() {
+        tsSubService = mock(TelemetrySubscriptionService.class);
+        service = new DefaultDeviceStateService(mock(TenantService.class), mock(DeviceService.class), mock(AttributesService.class),
+                mock(TimeseriesService.class), mock(TbClusterService.class), mock(PartitionService.class));
+        service.setTsSubService(tsSubService);
+        ReflectionTestUtils.setField(service, "defaultInactivityTimeoutInSec", 600L);
+        ReflectionTestUtils.setField(service, "defaultStateCheckIntervalInSec", 60);
+        // long enough for the scheduled flush not to happen during the test
+        ReflectionTestUtils.setField(service, "persistCoalescingWindowInMs", COALESCING_WINDOW_MS);
+        service.init();
+
+        stateData = DeviceStateData.builder()
+                .tenantId(new TenantId(UUID.randomUUID()))
+                .deviceId(deviceId)
+                .metaData(new TbMsgMetaData())
+                .state(DeviceState.builder().inactivityTimeout(600000L).build())
+                .build();
+        Map<DeviceId, DeviceStateData> deviceStates = getDeviceStates();
+        deviceStates.put(deviceId, stateData);
+    }
+
+    @After
+    public void after() {
+        service.stop();
+    }
+
+    @Test
+    public void testUpdatesWithinWindowAreCoalesced() {
+        service.onDeviceConnect(deviceId);
+        service.onDeviceConnect(deviceId);
+        service.onDeviceConnect(deviceId);
+        service.onDeviceDisconnect(deviceId);
+        verify(tsSubService, never()).saveAndNotify(any(TenantId.class), eq(deviceId), eq(DataConstants.SERVER_SCOPE), any(List.class), any(FutureCallback.class));
+
+        service.stop();
+        Map<String, Long> saved = captureSaved(1);
+        Assert.assertEquals(2, saved.size());
+        Assert.assertEquals(stateData.getState().getLastConnectTime(), (long) saved.get(DefaultDeviceStateService.LAST_CONNECT_TIME));
+        Assert.assertEquals(stateData.getState().getLastDisconnectTime(), (long) saved.get(DefaultDeviceStateService.LAST_DISCONNECT_TIME));
+    }
+
+    @Test
+    public void testPendingUpdatesAreFlushedOnPartitionChange() {
+        service.onDeviceConnect(deviceId);
+        service.onDeviceConnect(deviceId);
+
+        service.onApplicationEvent(new PartitionChangeEvent(this, new ServiceQueueKey(new ServiceQueue(ServiceType.TB_CORE), null), Collections.emptySet()));
+        Map<String, Long> saved = captureSaved(1);
+        Assert.assertEquals(stateData.getState().getLastConnectTime(), (long) saved.get(DefaultDeviceStateService.LAST_CONNECT_TIME));
+
+        // nothing is left pending after the flush
+        service.stop();
+        captureSaved(1);
+    }
+
+    @Test
+    public void testPendingUpdatesAreFlushedOnStop() {
+        service.onDeviceConnect(deviceId);
+
+        service.stop();
+        Map<String, Long> saved = captureSaved(1);
+        Assert.assertEquals(stateData.getState().getLastConnectTime(), (long) saved.get(DefaultDeviceStateService.LAST_CONNECT_TIME));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<DeviceId, DeviceStateData> getDeviceStates() {
+        return (Map<DeviceId, DeviceStateData>) ReflectionTestUtils.getField(service, "deviceStates");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> captureSaved(int writes) {
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(tsSubService, times(writes)).saveAndNotify(any(TenantId.class), eq(deviceId), eq(DataConstants.SERVER_SCOPE), captor.capture(), any(FutureCallback.class));
+        List<AttributeKvEntry> entries = captor.getValue();
+        return entries.stream().collect(Collectors.toMap(AttributeKvEntry::getKey, entry -> entry.getLongValue().get()));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DeviceStateTimingWheelTest {
+
+    private static final long TICK_MS = 1000;
+    private static final long START_TS = 1_000_000L;
+
+    private final Map<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
+    private final List<DeviceStateData> expired = new ArrayList<>();
+    private DeviceStateTimingWheel wheel;
+
+    @Before
+    public void before() {
+        wheel = new DeviceStateTimingWheel(TICK_MS, 8, START_TS,
+                stateData -> deviceStates.get(stateData.getDeviceId()) == stateData,
+                stateData -> stateData.getState().getLastActivityTime() + stateData.getState().getInactivityTimeout());
+    }
+
+    @Test
+    public void testDeviceExpiresOnlyAfterDeadline() {
+        DeviceStateData device = addDevice(START_TS, 5000);
+        advance(START_TS + 4000);
+        Assert.assertTrue(expired.isEmpty());
+        advance(START_TS + 5000);
+        Assert.assertEquals(1, expired.size());
+        advance(START_TS + 20000);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals(device, expired.get(0));
+    }
+
+    @Test
+    public void testActivityMovesDeadlineLazily() {
+        DeviceStateData device = addDevice(START_TS, 5000);
+        device.getState().setLastActivityTime(START_TS + 4000);
+        advance(START_TS + 5000);
+        Assert.assertTrue(expired.isEmpty());
+        advance(START_TS + 9000);
+        Assert.assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testDeadlineBeyondWheelRound() {
+        addDevice(START_TS, 20000);
+        advance(START_TS + 10000);
+        advance(START_TS + 19000);
+        Assert.assertTrue(expired.isEmpty());
+        advance(START_TS + 20000);
+        Assert.assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testCatchUpAfterLongPause() {
+        addDevice(START_TS, 3000);
+        addDevice(START_TS, 30000);
+        addDevice(START_TS, 300000);
+        advance(START_TS + 100000);
+        Assert.assertEquals(2, expired.size());
+    }
+
+    @Test
+    public void testRemovedDeviceIsNotExpired() {
+        DeviceStateData device = addDevice(START_TS, 2000);
+        advance(START_TS + 1000);
+        deviceStates.remove(device.getDeviceId());
+        advance(START_TS + 3000);
+        Assert.assertTrue(expired.isEmpty());
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRescheduleDoesNotDuplicate() {
+        DeviceStateData device = addDevice(START_TS, 3000);
+        advance(START_TS + 1000);
+        device.getState().setInactivityTimeout(2000);
+        wheel.schedule(device);
+        wheel.schedule(device);
+        advance(START_TS + 2000);
+        Assert.assertEquals(1, expired.size());
+        advance(START_TS + 5000);
+        Assert.assertEquals(1, expired.size());
+    }
+
+    private void advance(long ts) {
+        wheel.advance(ts, expired::add);
+    }
+
+    private DeviceStateData addDevice(long lastActivityTime, long inactivityTimeout) {
+        DeviceState state = DeviceState.builder().active(true).lastActivityTime(lastActivityTime).inactivityTimeout(inactivityTimeout).build();
+        DeviceStateData stateData = DeviceStateData.builder()
+                .tenantId(new TenantId(UUID.randomUUID()))
+                .deviceId(new DeviceId(UUID.randomUUID()))
+                .state(state).build();
+        deviceStates.put(stateData.getDeviceId(), stateData);
+        wheel.schedule(stateData);
+        return stateData;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry.sub;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SubscriptionUpdateTest {
+
+    @Test
+    public void testMergeKeepsLatestValuesPerKey() {
+        SubscriptionUpdate pending = new SubscriptionUpdate(1, Arrays.asList(entry("temperature", 1, 10), entry("humidity", 1, 50)));
+        SubscriptionUpdate newer = new SubscriptionUpdate(1, Arrays.asList(entry("temperature", 3, 30), entry("temperature", 2, 20)));
+
+        SubscriptionUpdate latest = pending.merge(newer, 1);
+        assertEquals(1, latest.getSubscriptionId());
+        assertValues(latest.getData().get("temperature"), 3L);
+        assertValues(latest.getData().get("humidity"), 1L);
+
+        SubscriptionUpdate history = pending.merge(newer, 2);
+        assertValues(history.getData().get("temperature"), 2L, 3L);
+
+        SubscriptionUpdate all = pending.merge(newer, 0);
+        assertValues(all.getData().get("temperature"), 1L, 2L, 3L);
+        assertValues(pending.getData().get("temperature"), 1L);
+    }
+
+    @Test
+    public void testMergeOfEmptyUpdate() {
+        SubscriptionUpdate empty = new SubscriptionUpdate(1, Collections.emptyList());
+        SubscriptionUpdate merged = empty.merge(new SubscriptionUpdate(1, Collections.singletonList(entry("temperature", 1, 10))), 1);
+        assertEquals(1, merged.getData().size());
+        assertEquals("10", ((Object[]) merged.getData().get("temperature").get(0))[1]);
+    }
+
+    private static void assertValues(List<Object> values, Long... expectedTs) {
+        assertEquals(expectedTs.length, values.size());
+        for (int i = 0; i < expectedTs.length; i++) {
+            assertEquals(expectedTs[i], ((Object[]) values.get(i))[0]);
+        }
+    }
+
+    private static TsKvEntry entry(String key, long ts, long value) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(key, value));
+    }
+}
@@ -38,4 +38,6 @@ public interface AttributesService {
     ListenableFuture<List<Void>> save(TenantId tenantId, EntityId entityId, String scope, List<AttributeKvEntry> attributes);
 
     ListenableFuture<List<Void>> removeAll(TenantId tenantId, EntityId entityId, String scope, List<String> attributeKeys);
+
+    void evictFromCache(EntityId entityId, String scope, List<String> attributeKeys);
 }
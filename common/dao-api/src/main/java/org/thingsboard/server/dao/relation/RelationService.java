@@ -49,6 +49,8 @@ public interface RelationService {
 
     ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
 
+    void deleteAndSaveRelations(TenantId tenantId, List<EntityRelation> relationsToDelete, List<EntityRelation> relationsToSave);
+
     void deleteEntityRelations(TenantId tenantId, EntityId entity);
 
     ListenableFuture<Void> deleteEntityRelationsAsync(TenantId tenantId, EntityId entity);
@@ -18,10 +18,12 @@ package org.thingsboard.server.common.data;
 public class CacheConstants {
     public static final String DEVICE_CREDENTIALS_CACHE = "deviceCredentials";
     public static final String RELATIONS_CACHE = "relations";
+    public static final String RELATION_ANCESTORS_CACHE = "relationAncestors";
     public static final String DEVICE_CACHE = "devices";
     public static final String SESSIONS_CACHE = "sessions";
     public static final String ASSET_CACHE = "assets";
     public static final String ENTITY_VIEW_CACHE = "entityViews";
     public static final String CLAIM_DEVICES_CACHE = "claimDevices";
     public static final String SECURITY_SETTINGS_CACHE = "securitySettings";
+    public static final String ATTRIBUTES_CACHE = "attributes";
 }
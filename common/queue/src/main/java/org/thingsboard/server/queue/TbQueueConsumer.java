@@ -34,4 +34,20 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * Returns the position right after the messages returned by the last poll,
+     * or null if the consumer is only able to commit all polled messages at once.
+     */
+    default TbQueuePosition getPosition() {
+        return null;
+    }
+
+    /**
+     * Commits the position previously returned by {@link #getPosition()},
+     * so messages of the later polls may still be in progress.
+     */
+    default void commit(TbQueuePosition position) {
+        throw new UnsupportedOperationException("Commit of the position is not supported by " + getClass().getSimpleName());
+    }
+
 }
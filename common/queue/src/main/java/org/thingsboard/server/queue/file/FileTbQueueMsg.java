@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Message read back from a segment file.
+ * Record body layout: key (2 longs), headers count, headers (length-prefixed key and value), length-prefixed data.
+ */
+public class FileTbQueueMsg implements TbQueueMsg {
+    private final UUID key;
+    private final TbQueueMsgHeaders headers;
+    private final byte[] data;
+
+    public FileTbQueueMsg(ByteBuffer buffer) {
+        this.key = new UUID(buffer.getLong(), buffer.getLong());
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        int headersCount = buffer.getInt();
+        for (int i = 0; i < headersCount; i++) {
+            String headerKey = new String(readBytes(buffer), StandardCharsets.UTF_8);
+            headers.put(headerKey, readBytes(buffer));
+        }
+        this.headers = headers;
+        this.data = readBytes(buffer);
+    }
+
+    @Override
+    public UUID getKey() {
+        return key;
+    }
+
+    @Override
+    public TbQueueMsgHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public byte[] getData() {
+        return data;
+    }
+
+    public static byte[] encode(TbQueueMsg msg) {
+        int size = 8 + 8 + 4;
+        List<byte[]> headerKeys = new ArrayList<>();
+        List<byte[]> headerValues = new ArrayList<>();
+        if (msg.getHeaders() != null) {
+            for (Map.Entry<String, byte[]> header : msg.getHeaders().getData().entrySet()) {
+                byte[] headerKey = header.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] headerValue = header.getValue() != null ? header.getValue() : new byte[0];
+                headerKeys.add(headerKey);
+                headerValues.add(headerValue);
+                size += 4 + headerKey.length + 4 + headerValue.length;
+            }
+        }
+        byte[] data = msg.getData() != null ? msg.getData() : new byte[0];
+        size += 4 + data.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(msg.getKey().getMostSignificantBits());
+        buffer.putLong(msg.getKey().getLeastSignificantBits());
+        buffer.putInt(headerKeys.size());
+        for (int i = 0; i < headerKeys.size(); i++) {
+            writeBytes(buffer, headerKeys.get(i));
+            writeBytes(buffer, headerValues.get(i));
+        }
+        writeBytes(buffer, data);
+        return buffer.array();
+    }
+
+    private static void writeBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
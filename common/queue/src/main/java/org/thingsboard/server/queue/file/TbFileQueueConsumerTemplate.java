@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+import org.thingsboard.server.queue.TbQueuePosition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Follows the semantics of the Kafka consumer template: poll continues after the last polled message,
+ * commit stores the position of the last poll, and after a restart or re-subscription consumption
+ * resumes from the committed offsets, so messages that were polled but not committed are delivered again.
+ */
+@Slf4j
+public class TbFileQueueConsumerTemplate<T extends TbQueueMsg> implements TbQueueConsumer<T> {
+
+    private final TbFileQueueStorage storage;
+    private final TbQueueMsgDecoder<T> decoder;
+    private final int maxPollRecords;
+    private final Lock consumerLock = new ReentrantLock();
+    private volatile boolean subscribed;
+    private volatile boolean stopped;
+    private volatile Set<TopicPartitionInfo> partitions;
+    private List<TbFileQueueCursor> cursors = Collections.emptyList();
+    private int firstCursorIdx;
+
+    @Getter
+    private final String topic;
+
+    public TbFileQueueConsumerTemplate(TbFileQueueStorage storage, TbFileQueueSettings settings, String topic, TbQueueMsgDecoder<T> decoder) {
+        this.storage = storage;
+        this.decoder = decoder;
+        this.maxPollRecords = settings.getMaxPollRecords();
+        this.topic = topic;
+    }
+
+    @Override
+    public void subscribe() {
+        subscribe(Collections.singleton(new TopicPartitionInfo(topic, null, null, true)));
+    }
+
+    @Override
+    public void subscribe(Set<TopicPartitionInfo> partitions) {
+        consumerLock.lock();
+        try {
+            this.partitions = partitions;
+            subscribed = false;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> poll(long durationInMillis) {
+        if (!stopped && partitions != null) {
+            consumerLock.lock();
+            try {
+                if (!subscribed) {
+                    cursors = partitions.stream()
+                            .map(tpi -> storage.getLog(tpi.getFullTopicName()))
+                            .map(topicLog -> new TbFileQueueCursor(topicLog, topicLog.getCommittedOffset()))
+                            .collect(Collectors.toList());
+                    subscribed = true;
+                }
+                List<TbQueueMsg> records = new ArrayList<>();
+                // start from a different partition on each poll, so a busy partition can't starve the others
+                int cursorsCount = cursors.size();
+                for (int i = 0; i < cursorsCount && records.size() < maxPollRecords; i++) {
+                    TbFileQueueCursor cursor = cursors.get((firstCursorIdx + i) % cursorsCount);
+                    cursor.getLog().read(cursor, maxPollRecords - records.size(), records);
+                }
+                firstCursorIdx = cursorsCount > 0 ? (firstCursorIdx + 1) % cursorsCount : 0;
+                if (!records.isEmpty()) {
+                    List<T> result = new ArrayList<>(records.size());
+                    records.forEach(record -> {
+                        try {
+                            result.add(decoder.decode(record));
+                        } catch (IOException e) {
+                            log.error("[{}] Failed decode record: [{}]", topic, record.getKey());
+                        }
+                    });
+                    return result;
+                }
+            } finally {
+                consumerLock.unlock();
+            }
+        }
+        try {
+            Thread.sleep(durationInMillis);
+        } catch (InterruptedException e) {
+            if (!stopped) {
+                log.debug("Failed to await new messages", e);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void commit() {
+        consumerLock.lock();
+        try {
+            cursors.forEach(cursor -> cursor.getLog().commit(cursor.getOffset()));
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public TbQueuePosition getPosition() {
+        consumerLock.lock();
+        try {
+            Map<TbFileQueueLog, Long> offsets = new IdentityHashMap<>();
+            cursors.forEach(cursor -> offsets.put(cursor.getLog(), cursor.getOffset()));
+            return new FileTbQueuePosition(offsets);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public void commit(TbQueuePosition position) {
+        consumerLock.lock();
+        try {
+            ((FileTbQueuePosition) position).offsets.forEach(TbFileQueueLog::commit);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public void unsubscribe() {
+        consumerLock.lock();
+        try {
+            stopped = true;
+            cursors = Collections.emptyList();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private static class FileTbQueuePosition implements TbQueuePosition {
+        private final Map<TbFileQueueLog, Long> offsets;
+
+        FileTbQueuePosition(Map<TbFileQueueLog, Long> offsets) {
+            this.offsets = offsets;
+        }
+    }
+}
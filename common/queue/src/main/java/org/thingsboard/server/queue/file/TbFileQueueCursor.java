@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import lombok.Getter;
+
+/**
+ * Consumer position in a topic log: the offset of the next record and its location in the segment.
+ */
+@Getter
+class TbFileQueueCursor {
+
+    private final TbFileQueueLog log;
+    private long offset;
+    private TbFileQueueSegment segment;
+    private int position;
+
+    TbFileQueueCursor(TbFileQueueLog log, long offset) {
+        this.log = log;
+        this.offset = offset;
+    }
+
+    void advance(int nextPosition) {
+        position = nextPosition;
+        offset++;
+    }
+
+    void moveTo(TbFileQueueSegment segment, long offset, int position) {
+        this.segment = segment;
+        this.offset = offset;
+        this.position = position;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Log of a single topic (partition): an ordered set of segments and the committed offset of its consumer.
+ * Offsets are sequential record numbers, so the committed offset is the offset of the next record to consume.
+ */
+@Slf4j
+class TbFileQueueLog {
+
+    private static final String OFFSET_FILE = "consumer.offset";
+
+    @Getter
+    private final String topic;
+    private final Path dir;
+    private final TbFileQueueStorage storage;
+    private final int segmentSize;
+    private final ConcurrentNavigableMap<Long, TbFileQueueSegment> segments = new ConcurrentSkipListMap<>();
+    private final MappedByteBuffer committedOffsetBuffer;
+    private final Object cleanUpLock = new Object();
+    // Segments are read under the read lock and unmapped under the write lock, so readers never touch an unmapped buffer
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    // Removed segments that failed to unmap or delete, retried on the next clean up
+    private final List<TbFileQueueSegment> pendingDeletes = new ArrayList<>();
+
+    private volatile TbFileQueueSegment activeSegment;
+
+    TbFileQueueLog(String topic, Path dir, TbFileQueueStorage storage, int segmentSize) throws IOException {
+        this.topic = topic;
+        this.dir = Files.createDirectories(dir);
+        this.storage = storage;
+        this.segmentSize = segmentSize;
+        try (FileChannel channel = FileChannel.open(dir.resolve(OFFSET_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.committedOffsetBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + TbFileQueueSegment.FILE_SUFFIX)) {
+            for (Path file : files) {
+                TbFileQueueSegment segment = TbFileQueueSegment.open(file);
+                segments.put(segment.getBaseOffset(), segment);
+            }
+        }
+        for (TbFileQueueSegment segment : segments.values()) {
+            storage.reserve(segment.getLimit());
+        }
+        if (!segments.isEmpty()) {
+            activeSegment = segments.lastEntry().getValue();
+            segments.headMap(activeSegment.getBaseOffset()).values().forEach(TbFileQueueSegment::seal);
+        }
+    }
+
+    /**
+     * Appends the record and returns its offset.
+     * Blocks for up to max_block_ms when the disk usage limit is reached and fails if no space was released.
+     */
+    long append(byte[] body) throws IOException, InterruptedException {
+        int recordSize = body.length + TbFileQueueSegment.RECORD_HEADER_SIZE;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Message size " + body.length + " exceeds segment size " + segmentSize);
+        }
+        // acquired outside of the append lock, so a producer waiting for the disk space doesn't block other producers of the topic
+        storage.acquire(recordSize);
+        try {
+            return doAppend(body);
+        } catch (IOException | RuntimeException e) {
+            storage.release(recordSize);
+            throw e;
+        }
+    }
+
+    private synchronized long doAppend(byte[] body) throws IOException {
+        TbFileQueueSegment segment = activeSegment;
+        if (segment == null || !segment.hasRoomFor(body.length)) {
+            long baseOffset = segment != null ? segment.getNextOffset() : getCommittedOffset();
+            TbFileQueueSegment newSegment = TbFileQueueSegment.create(dir, baseOffset, segmentSize);
+            segments.put(baseOffset, newSegment);
+            if (segment != null) {
+                segment.seal();
+            }
+            activeSegment = newSegment;
+            segment = newSegment;
+        }
+        long offset = segment.getNextOffset();
+        segment.append(body);
+        return offset;
+    }
+
+    /**
+     * Reads up to maxRecords records starting from the cursor offset and moves the cursor past them.
+     * If the records at the cursor offset were already removed by retention, the cursor jumps to the earliest available offset.
+     */
+    void read(TbFileQueueCursor cursor, int maxRecords, List<TbQueueMsg> result) {
+        segmentsLock.readLock().lock();
+        try {
+            doRead(cursor, maxRecords, result);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    private void doRead(TbFileQueueCursor cursor, int maxRecords, List<TbQueueMsg> result) {
+        int read = 0;
+        while (read < maxRecords) {
+            TbFileQueueSegment segment = cursor.getSegment();
+            if (segment == null || segment.isDeleted()) {
+                segment = seek(cursor);
+                if (segment == null) {
+                    return;
+                }
+            }
+            boolean sealed = segment.isSealed();
+            int limit = segment.getLimit();
+            int position = cursor.getPosition();
+            if (position < limit) {
+                ByteBuffer body = segment.read(position);
+                result.add(new FileTbQueueMsg(body));
+                cursor.advance(segment.nextPosition(position));
+                read++;
+            } else if (sealed) {
+                Map.Entry<Long, TbFileQueueSegment> next = segments.higherEntry(segment.getBaseOffset());
+                if (next == null) {
+                    return;
+                }
+                cursor.moveTo(next.getValue(), next.getKey(), 0);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private TbFileQueueSegment seek(TbFileQueueCursor cursor) {
+        if (segments.isEmpty()) {
+            return null;
+        }
+        long offset = cursor.getOffset();
+        long startOffset = segments.firstKey();
+        if (offset < startOffset) {
+            log.warn("[{}] Offset {} was removed by retention, {} messages are skipped", topic, offset, startOffset - offset);
+            offset = startOffset;
+        }
+        Map.Entry<Long, TbFileQueueSegment> entry = segments.floorEntry(offset);
+        TbFileQueueSegment segment = entry.getValue();
+        int position = 0;
+        long current = segment.getBaseOffset();
+        int limit = segment.getLimit();
+        while (current < offset && position < limit) {
+            position = segment.nextPosition(position);
+            current++;
+        }
+        cursor.moveTo(segment, current, position);
+        return segment;
+    }
+
+    long getCommittedOffset() {
+        return committedOffsetBuffer.getLong(0);
+    }
+
+    void commit(long offset) {
+        committedOffsetBuffer.putLong(0, offset);
+    }
+
+    long getEndOffset() {
+        TbFileQueueSegment segment = activeSegment;
+        return segment != null ? segment.getNextOffset() : getCommittedOffset();
+    }
+
+    /**
+     * Deletes sealed segments that are fully committed or older than the retention period.
+     */
+    void cleanUp(long retentionTs) {
+        synchronized (cleanUpLock) {
+            long committedOffset = getCommittedOffset();
+            for (TbFileQueueSegment segment : segments.values()) {
+                if (!segment.isSealed()) {
+                    break;
+                }
+                boolean committed = segment.getNextOffset() <= committedOffset;
+                if (!committed && segment.getLastAppendTs() > retentionTs) {
+                    break;
+                }
+                if (!committed) {
+                    log.warn("[{}] Retention period expired for {} not consumed messages", topic,
+                            segment.getNextOffset() - Math.max(committedOffset, segment.getBaseOffset()));
+                }
+                segments.remove(segment.getBaseOffset());
+                pendingDeletes.add(segment);
+            }
+            if (!pendingDeletes.isEmpty()) {
+                deletePending();
+            }
+        }
+    }
+
+    /**
+     * Releases the disk space of the removed segments only after they are unmapped and deleted.
+     */
+    private void deletePending() {
+        List<TbFileQueueSegment> deleted = new ArrayList<>();
+        segmentsLock.writeLock().lock();
+        try {
+            for (TbFileQueueSegment segment : pendingDeletes) {
+                if (segment.delete()) {
+                    deleted.add(segment);
+                }
+            }
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+        pendingDeletes.removeAll(deleted);
+        deleted.forEach(segment -> storage.release(segment.getLimit()));
+    }
+
+    void flush() {
+        segmentsLock.readLock().lock();
+        try {
+            TbFileQueueSegment segment = activeSegment;
+            if (segment != null && !segment.isDeleted()) {
+                segment.flush();
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        committedOffsetBuffer.force();
+    }
+}
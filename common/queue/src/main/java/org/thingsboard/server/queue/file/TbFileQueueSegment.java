@@ -0,0 +1,226 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only memory-mapped file with the records of a single topic, starting from the base offset.
+ * Each record is stored as [body length][body crc32][body]; a zero length marks the end of written data.
+ * Appends are serialized by {@link TbFileQueueLog}; readers only see records below the volatile limit.
+ */
+@Slf4j
+class TbFileQueueSegment {
+
+    static final int RECORD_HEADER_SIZE = 8;
+    static final String FILE_SUFFIX = ".log";
+
+    @Getter
+    private final long baseOffset;
+    @Getter
+    private final Path file;
+    private final MappedByteBuffer buffer;
+
+    private volatile int limit;
+    private volatile int count;
+    private volatile boolean sealed;
+    private volatile boolean deleted;
+    private boolean unmapped;
+    @Getter
+    private volatile long lastAppendTs;
+
+    private TbFileQueueSegment(long baseOffset, Path file, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static TbFileQueueSegment create(Path dir, long baseOffset, int segmentSize) throws IOException {
+        Path file = dir.resolve(String.format("%020d%s", baseOffset, FILE_SUFFIX));
+        TbFileQueueSegment segment = new TbFileQueueSegment(baseOffset, file, map(file, segmentSize));
+        segment.lastAppendTs = System.currentTimeMillis();
+        return segment;
+    }
+
+    static TbFileQueueSegment open(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()));
+        TbFileQueueSegment segment = new TbFileQueueSegment(baseOffset, file, map(file, (int) Files.size(file)));
+        segment.recover();
+        segment.lastAppendTs = Files.getLastModifiedTime(file).toMillis();
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void recover() {
+        int position = 0;
+        int records = 0;
+        int capacity = buffer.capacity();
+        CRC32 crc = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int length = view.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > capacity) {
+                break;
+            }
+            view.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+            crc.reset();
+            crc.update(view);
+            view.clear();
+            if ((int) crc.getValue() != view.getInt(position + 4)) {
+                log.warn("[{}] Found corrupted record at position {}, truncating segment", file, position);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            records++;
+        }
+        if (position + 4 <= capacity && view.getInt(position) != 0) {
+            // wipe the tail left by an interrupted append, so it can't be mistaken for a record later
+            for (int i = position; i < capacity; i++) {
+                view.put(i, (byte) 0);
+            }
+        }
+        this.limit = position;
+        this.count = records;
+    }
+
+    boolean hasRoomFor(int bodyLength) {
+        return limit + RECORD_HEADER_SIZE + bodyLength <= buffer.capacity();
+    }
+
+    void append(byte[] body) {
+        int position = limit;
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + RECORD_HEADER_SIZE);
+        view.put(body);
+        view.putInt(position + 4, (int) crc.getValue());
+        view.putInt(position, body.length);
+        lastAppendTs = System.currentTimeMillis();
+        count = count + 1;
+        limit = position + RECORD_HEADER_SIZE + body.length;
+    }
+
+    /**
+     * Returns the body of the record at the position, or null if there is no published record there.
+     */
+    ByteBuffer read(int position) {
+        if (position + RECORD_HEADER_SIZE > limit) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        int length = view.getInt(position);
+        view.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        return view.slice();
+    }
+
+    int nextPosition(int position) {
+        return position + RECORD_HEADER_SIZE + buffer.getInt(position);
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getNextOffset() {
+        return baseOffset + count;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean isDeleted() {
+        return deleted;
+    }
+
+    void seal() {
+        flush();
+        sealed = true;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Unmaps and deletes the segment file. The disk space of a deleted file is not freed while it is still mapped.
+     * Must not be called concurrently with the reads of the segment.
+     *
+     * @return true if the file is unmapped and deleted, false if the delete should be retried later
+     */
+    boolean delete() {
+        deleted = true;
+        if (!unmapped) {
+            try {
+                unmap(buffer);
+                unmapped = true;
+            } catch (Exception e) {
+                log.warn("[{}] Failed to unmap segment", file, e);
+                return false;
+            }
+        }
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            log.warn("[{}] Failed to delete segment", file, e);
+            return false;
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) throws Exception {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Method invokeCleaner;
+        try {
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+            // Java 8: sun.nio.ch.DirectBuffer.cleaner().clean()
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+            return;
+        }
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), buffer);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the topic logs stored in the queue data directory.
+ * Keeps the total size of written records below max_disk_size: producers wait for committed segments to be
+ * removed and fail after max_block_ms, so a slow consumer slows down producers instead of filling the disk.
+ */
+@Slf4j
+@ConditionalOnExpression("'${queue.type:null}'=='file'")
+@Component
+public class TbFileQueueStorage {
+
+    private final TbFileQueueSettings settings;
+    private final ConcurrentMap<String, TbFileQueueLog> logs = new ConcurrentHashMap<>();
+    private final Object diskUsageLock = new Object();
+
+    private Path dataDir;
+    private long diskUsage;
+    private ScheduledExecutorService scheduler;
+
+    public TbFileQueueStorage(TbFileQueueSettings settings) {
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        dataDir = Files.createDirectories(Paths.get(settings.getDataDir()));
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(dataDir, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String topic = dir.getFileName().toString();
+                logs.put(topic, new TbFileQueueLog(topic, dir, this, settings.getSegmentSize()));
+            }
+        }
+        log.info("Loaded {} topics from [{}], disk usage {} bytes", logs.size(), dataDir.toAbsolutePath(), getDiskUsage());
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("file-queue-storage"));
+        scheduler.scheduleWithFixedDelay(this::flush, settings.getFlushIntervalMs(), settings.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::cleanUp, settings.getCleanupIntervalMs(), settings.getCleanupIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flush();
+    }
+
+    TbFileQueueLog getLog(String topic) {
+        return logs.computeIfAbsent(topic, t -> {
+            if (t.contains("/") || t.contains("\\") || t.startsWith(".")) {
+                throw new IllegalArgumentException("Invalid topic name: " + t);
+            }
+            try {
+                return new TbFileQueueLog(t, dataDir.resolve(t), this, settings.getSegmentSize());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open queue log for topic " + t, e);
+            }
+        });
+    }
+
+    void reserve(long bytes) {
+        synchronized (diskUsageLock) {
+            diskUsage += bytes;
+        }
+    }
+
+    void acquire(long bytes) throws InterruptedException {
+        synchronized (diskUsageLock) {
+            if (diskUsage + bytes <= settings.getMaxDiskSize()) {
+                diskUsage += bytes;
+                return;
+            }
+        }
+        cleanUp();
+        long maxBlockTs = System.currentTimeMillis() + settings.getMaxBlockMs();
+        synchronized (diskUsageLock) {
+            while (diskUsage + bytes > settings.getMaxDiskSize()) {
+                long waitMs = maxBlockTs - System.currentTimeMillis();
+                if (waitMs <= 0) {
+                    throw new IllegalStateException("Queue disk usage limit of " + settings.getMaxDiskSize() + " bytes is reached!");
+                }
+                diskUsageLock.wait(waitMs);
+            }
+            diskUsage += bytes;
+        }
+    }
+
+    void release(long bytes) {
+        synchronized (diskUsageLock) {
+            diskUsage -= bytes;
+            diskUsageLock.notifyAll();
+        }
+    }
+
+    long getDiskUsage() {
+        synchronized (diskUsageLock) {
+            return diskUsage;
+        }
+    }
+
+    void cleanUp() {
+        long retentionTs = System.currentTimeMillis() - settings.getRetentionMs();
+        logs.values().forEach(topicLog -> {
+            try {
+                topicLog.cleanUp(retentionTs);
+            } catch (Exception e) {
+                log.warn("[{}] Failed to clean up topic log", topicLog.getTopic(), e);
+            }
+        });
+    }
+
+    void flush() {
+        logs.values().forEach(topicLog -> {
+            try {
+                topicLog.flush();
+            } catch (Exception e) {
+                log.warn("[{}] Failed to flush topic log", topicLog.getTopic(), e);
+            }
+        });
+    }
+}
@@ -22,16 +22,21 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueuePosition;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -148,6 +153,38 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> implements TbQueueCon
         }
     }
 
+    @Override
+    public TbQueuePosition getPosition() {
+        consumerLock.lock();
+        try {
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            for (TopicPartition partition : consumer.assignment()) {
+                offsets.put(partition, new OffsetAndMetadata(consumer.position(partition)));
+            }
+            return new KafkaTbQueuePosition(offsets);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public void commit(TbQueuePosition position) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = ((KafkaTbQueuePosition) position).offsets;
+        if (offsets.isEmpty()) {
+            return;
+        }
+        consumerLock.lock();
+        try {
+            consumer.commitAsync(offsets, (committed, e) -> {
+                if (e != null) {
+                    log.debug("[{}] Failed to commit offsets: {}", topic, committed, e);
+                }
+            });
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public void unsubscribe() {
         consumerLock.lock();
@@ -165,4 +202,12 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> implements TbQueueCon
         return decoder.decode(new KafkaTbQueueMsg(record));
     }
 
+    private static class KafkaTbQueuePosition implements TbQueuePosition {
+        private final Map<TopicPartition, OffsetAndMetadata> offsets;
+
+        KafkaTbQueuePosition(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            this.offsets = offsets;
+        }
+    }
+
 }
@@ -52,24 +52,34 @@ public final class InMemoryStorage {
 
     public <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException {
         if (storage.containsKey(topic)) {
-            List<T> entities;
-            T first = (T) storage.get(topic).poll();
-            if (first != null) {
-                entities = new ArrayList<>();
-                entities.add(first);
-                List<TbQueueMsg> otherList = new ArrayList<>();
-                storage.get(topic).drainTo(otherList, 999);
-                for (TbQueueMsg other : otherList) {
-                    entities.add((T) other);
-                }
-            } else {
-                entities = Collections.emptyList();
-            }
-            return entities;
+            BlockingQueue<TbQueueMsg> queue = storage.get(topic);
+            return drain(queue, queue.poll());
         }
         return Collections.emptyList();
     }
 
+    /**
+     * Waits up to timeoutMs for the first message of the topic, so the consumer wakes up as soon as the message is put.
+     */
+    public <T extends TbQueueMsg> List<T> get(String topic, long timeoutMs) throws InterruptedException {
+        BlockingQueue<TbQueueMsg> queue = storage.computeIfAbsent(topic, (t) -> new LinkedBlockingQueue<>());
+        return drain(queue, queue.poll(timeoutMs, TimeUnit.MILLISECONDS));
+    }
+
+    private <T extends TbQueueMsg> List<T> drain(BlockingQueue<TbQueueMsg> queue, TbQueueMsg first) {
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<T> entities = new ArrayList<>();
+        entities.add((T) first);
+        List<TbQueueMsg> otherList = new ArrayList<>();
+        queue.drainTo(otherList, 999);
+        for (TbQueueMsg other : otherList) {
+            entities.add((T) other);
+        }
+        return entities;
+    }
+
     /**
      * Used primarily for testing.
      */
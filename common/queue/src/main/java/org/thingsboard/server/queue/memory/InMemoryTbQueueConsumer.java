@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueuePosition;
 
 import java.util.Collections;
 import java.util.List;
@@ -27,6 +28,9 @@ import java.util.stream.Collectors;
 
 @Slf4j
 public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueConsumer<T> {
+    private static final TbQueuePosition POSITION = new TbQueuePosition() {
+    };
+
     private final InMemoryStorage storage = InMemoryStorage.getInstance();
     private volatile Set<TopicPartitionInfo> partitions;
     private volatile boolean stopped;
@@ -63,6 +67,16 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
 
     @Override
     public List<T> poll(long durationInMillis) {
+        if (subscribed && partitions.size() == 1) {
+            try {
+                return storage.get(partitions.iterator().next().getFullTopicName(), durationInMillis);
+            } catch (InterruptedException e) {
+                if (!stopped) {
+                    log.error("Queue was interrupted.", e);
+                }
+                return Collections.emptyList();
+            }
+        }
         if (subscribed) {
             List<T> messages = partitions
                     .stream()
@@ -95,4 +109,13 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
     @Override
     public void commit() {
     }
+
+    @Override
+    public TbQueuePosition getPosition() {
+        return POSITION;
+    }
+
+    @Override
+    public void commit(TbQueuePosition position) {
+    }
 }
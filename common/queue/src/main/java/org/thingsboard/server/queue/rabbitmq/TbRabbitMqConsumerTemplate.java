@@ -17,8 +17,11 @@ package org.thingsboard.server.queue.rabbitmq;
 
 import com.google.gson.Gson;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.GetResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
@@ -29,10 +32,13 @@ import org.thingsboard.server.queue.TbQueueMsgDecoder;
 import org.thingsboard.server.queue.common.DefaultTbQueueMsg;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
@@ -46,11 +52,15 @@ public class TbRabbitMqConsumerTemplate<T extends TbQueueMsg> implements TbQueue
     private final TbRabbitMqSettings rabbitMqSettings;
     private final Channel channel;
     private final Connection connection;
+    private final BlockingQueue<GetResponse> deliveries = new LinkedBlockingQueue<>();
+    private final List<String> consumerTags = new ArrayList<>();
 
     private volatile Set<TopicPartitionInfo> partitions;
     private volatile boolean subscribed;
     private volatile Set<String> queues;
     private volatile boolean stopped;
+    private volatile long lastDeliveryTag;
+    private volatile long ackedDeliveryTag;
 
     public TbRabbitMqConsumerTemplate(TbQueueAdmin admin, TbRabbitMqSettings rabbitMqSettings, String topic, TbQueueMsgDecoder<T> decoder) {
         this.admin = admin;
@@ -66,6 +76,7 @@ public class TbRabbitMqConsumerTemplate<T extends TbQueueMsg> implements TbQueue
 
         try {
             channel = connection.createChannel();
+            channel.basicQos(rabbitMqSettings.getPrefetchCount());
         } catch (IOException e) {
             log.error("Failed to create chanel.", e);
             throw new RuntimeException("Failed to create chanel.", e);
@@ -117,50 +128,82 @@ public class TbRabbitMqConsumerTemplate<T extends TbQueueMsg> implements TbQueue
             } catch (InterruptedException e) {
                 log.debug("Failed to await subscription", e);
             }
-        } else {
-            if (!subscribed) {
-                queues = partitions.stream()
-                        .map(TopicPartitionInfo::getFullTopicName)
-                        .collect(Collectors.toSet());
-
-                queues.forEach(admin::createTopicIfNotExists);
-                subscribed = true;
-            }
-
-            List<T> result = queues.stream()
-                    .map(queue -> {
-                        try {
-                            return channel.basicGet(queue, false);
-                        } catch (IOException e) {
-                            log.error("Failed to get messages from queue: [{}]", queue);
-                            throw new RuntimeException("Failed to get messages from queue.", e);
-                        }
-                    }).filter(Objects::nonNull).map(message -> {
-                        try {
-                            return decode(message);
-                        } catch (InvalidProtocolBufferException e) {
-                            log.error("Failed to decode message: [{}].", message);
-                            throw new RuntimeException("Failed to decode message.", e);
-                        }
-                    }).collect(Collectors.toList());
-            if (result.size() > 0) {
-                return result;
-            }
+            return Collections.emptyList();
         }
+        if (!subscribed) {
+            doSubscribe();
+        }
+
+        GetResponse first;
         try {
-            Thread.sleep(durationInMillis);
+            first = deliveries.poll(durationInMillis, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             if (!stopped) {
                 log.error("Failed to wait.", e);
             }
+            return Collections.emptyList();
+        }
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        List<GetResponse> messages = new ArrayList<>();
+        messages.add(first);
+        deliveries.drainTo(messages);
+        lastDeliveryTag = messages.get(messages.size() - 1).getEnvelope().getDeliveryTag();
+
+        List<T> result = new ArrayList<>(messages.size());
+        for (GetResponse message : messages) {
+            try {
+                result.add(decode(message));
+            } catch (InvalidProtocolBufferException e) {
+                log.error("Failed to decode message: [{}].", message);
+                throw new RuntimeException("Failed to decode message.", e);
+            }
         }
-        return Collections.emptyList();
+        return result;
+    }
+
+    private void doSubscribe() {
+        for (String consumerTag : consumerTags) {
+            try {
+                channel.basicCancel(consumerTag);
+            } catch (IOException e) {
+                log.warn("Failed to cancel consumer: [{}]", consumerTag, e);
+            }
+        }
+        consumerTags.clear();
+
+        queues = partitions.stream()
+                .map(TopicPartitionInfo::getFullTopicName)
+                .collect(Collectors.toSet());
+
+        queues.forEach(admin::createTopicIfNotExists);
+        for (String queue : queues) {
+            try {
+                consumerTags.add(channel.basicConsume(queue, false, new DefaultConsumer(channel) {
+                    @Override
+                    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                        deliveries.add(new GetResponse(envelope, properties, body, 0));
+                    }
+                }));
+            } catch (IOException e) {
+                log.error("Failed to get messages from queue: [{}]", queue);
+                throw new RuntimeException("Failed to get messages from queue.", e);
+            }
+        }
+        subscribed = true;
     }
 
     @Override
     public void commit() {
+        long deliveryTag = lastDeliveryTag;
+        if (deliveryTag <= ackedDeliveryTag) {
+            return;
+        }
         try {
-            channel.basicAck(0, true);
+            // acknowledges every polled delivery up to the tag; messages still waiting in the local queue have higher tags
+            channel.basicAck(deliveryTag, true);
+            ackedDeliveryTag = deliveryTag;
         } catch (IOException e) {
             log.error("Failed to ack messages.", e);
         }
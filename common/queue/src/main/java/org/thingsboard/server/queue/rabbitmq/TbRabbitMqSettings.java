@@ -47,6 +47,8 @@ public class TbRabbitMqSettings {
     private int connectionTimeout;
     @Value("${queue.rabbitmq.handshake_timeout:}")
     private int handshakeTimeout;
+    @Value("${queue.rabbitmq.prefetch_count:1000}")
+    private int prefetchCount;
 
     private ConnectionFactory connectionFactory;
 
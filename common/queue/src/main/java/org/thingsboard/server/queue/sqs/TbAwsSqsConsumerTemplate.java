@@ -56,6 +56,7 @@ import java.util.stream.Stream;
 public class TbAwsSqsConsumerTemplate<T extends TbQueueMsg> implements TbQueueConsumer<T> {
 
     private static final int MAX_NUM_MSGS = 10;
+    private static final int MAX_WAIT_TIME_SECONDS = 20;
 
     private final Gson gson = new Gson();
     private final TbQueueAdmin admin;
@@ -138,7 +139,7 @@ public class TbAwsSqsConsumerTemplate<T extends TbQueueMsg> implements TbQueueCo
 
             List<ListenableFuture<List<Message>>> futureList = queueUrls
                     .stream()
-                    .map(url -> poll(url, (int) TimeUnit.MILLISECONDS.toSeconds(durationInMillis)))
+                    .map(url -> poll(url, getWaitTimeSeconds(durationInMillis)))
                     .collect(Collectors.toList());
             ListenableFuture<List<List<Message>>> futureResult = Futures.allAsList(futureList);
             try {
@@ -164,6 +165,13 @@ public class TbAwsSqsConsumerTemplate<T extends TbQueueMsg> implements TbQueueCo
         return Collections.emptyList();
     }
 
+    // SQS long polling is configured in whole seconds; rounding sub-second intervals down to 0 would make every
+    // receive a short poll that returns immediately, so the wait is rounded up and capped at the SQS maximum
+    private static int getWaitTimeSeconds(long durationInMillis) {
+        long seconds = (durationInMillis + TimeUnit.SECONDS.toMillis(1) - 1) / TimeUnit.SECONDS.toMillis(1);
+        return (int) Math.min(MAX_WAIT_TIME_SECONDS, Math.max(1, seconds));
+    }
+
     private ListenableFuture<List<Message>> poll(String url, int waitTimeSeconds) {
         List<ListenableFuture<List<Message>>> result = new ArrayList<>();
 
@@ -0,0 +1,248 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.file;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
+import org.thingsboard.server.queue.TbQueuePosition;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsg;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+public class TbFileQueueStorageTest {
+
+    private static final String TOPIC = "tb_rule_engine.main.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TbFileQueueSettings settings;
+    private TbFileQueueStorage storage;
+
+    @Before
+    public void before() throws Exception {
+        settings = new TbFileQueueSettings();
+        settings.setDataDir(folder.getRoot().getAbsolutePath());
+        settings.setSegmentSize(1024);
+        settings.setMaxDiskSize(1024 * 1024);
+        settings.setRetentionMs(60000);
+        settings.setMaxBlockMs(100);
+        settings.setMaxPollRecords(10);
+        settings.setFlushIntervalMs(1000);
+        settings.setCleanupIntervalMs(60000);
+        storage = newStorage();
+    }
+
+    @After
+    public void after() {
+        storage.destroy();
+    }
+
+    @Test
+    public void testPollContinuesAfterLastPolledAndRestartResumesFromCommitted() throws Exception {
+        TbFileQueueProducerTemplate<TbQueueMsg> producer = new TbFileQueueProducerTemplate<>(storage, TOPIC);
+        for (int i = 0; i < 25; i++) {
+            producer.send(tpi(), msg("msg-" + i), null);
+        }
+
+        TbFileQueueConsumerTemplate<TbQueueMsg> consumer = newConsumer(storage);
+        Assert.assertEquals(range(0, 10), payloads(consumer.poll(1)));
+        consumer.commit();
+        Assert.assertEquals(range(10, 20), payloads(consumer.poll(1)));
+
+        storage.destroy();
+        storage = newStorage();
+
+        consumer = newConsumer(storage);
+        Assert.assertEquals(range(10, 20), payloads(consumer.poll(1)));
+        Assert.assertEquals(range(20, 25), payloads(consumer.poll(1)));
+        Assert.assertTrue(consumer.poll(1).isEmpty());
+    }
+
+    @Test
+    public void testCommitOfPositionKeepsLaterPollsUncommitted() throws Exception {
+        TbFileQueueProducerTemplate<TbQueueMsg> producer = new TbFileQueueProducerTemplate<>(storage, TOPIC);
+        for (int i = 0; i < 25; i++) {
+            producer.send(tpi(), msg("msg-" + i), null);
+        }
+
+        TbFileQueueConsumerTemplate<TbQueueMsg> consumer = newConsumer(storage);
+        Assert.assertEquals(range(0, 10), payloads(consumer.poll(1)));
+        TbQueuePosition position = consumer.getPosition();
+        Assert.assertEquals(range(10, 20), payloads(consumer.poll(1)));
+        consumer.commit(position);
+
+        consumer = newConsumer(storage);
+        Assert.assertEquals(range(10, 20), payloads(consumer.poll(1)));
+    }
+
+    @Test
+    public void testHeadersAndKeyArePreserved() {
+        UUID key = UUID.randomUUID();
+        DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        headers.put("header", "value".getBytes(StandardCharsets.UTF_8));
+        new TbFileQueueProducerTemplate<>(storage, TOPIC).send(tpi(), new TestMsg(key, headers, new byte[]{1, 2, 3}), null);
+
+        TbQueueMsg msg = newConsumer(storage).poll(1).get(0);
+        Assert.assertEquals(key, msg.getKey());
+        Assert.assertEquals("value", new String(msg.getHeaders().get("header"), StandardCharsets.UTF_8));
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, msg.getData());
+    }
+
+    @Test
+    public void testCommittedSegmentsAreRemoved() throws Exception {
+        TbFileQueueProducerTemplate<TbQueueMsg> producer = new TbFileQueueProducerTemplate<>(storage, TOPIC);
+        for (int i = 0; i < 100; i++) {
+            producer.send(tpi(), msg("msg-" + i), null);
+        }
+        long segmentsCount = Files.list(folder.getRoot().toPath().resolve(TOPIC)).filter(p -> p.toString().endsWith(".log")).count();
+        Assert.assertTrue(segmentsCount > 1);
+
+        TbFileQueueConsumerTemplate<TbQueueMsg> consumer = newConsumer(storage);
+        List<String> consumed = new ArrayList<>();
+        List<TbQueueMsg> msgs;
+        while (!(msgs = consumer.poll(1)).isEmpty()) {
+            consumed.addAll(payloads(msgs));
+            consumer.commit();
+        }
+        Assert.assertEquals(range(0, 100), consumed);
+
+        long diskUsage = storage.getDiskUsage();
+        storage.cleanUp();
+        Assert.assertTrue(storage.getDiskUsage() < diskUsage);
+        Assert.assertEquals(1, Files.list(folder.getRoot().toPath().resolve(TOPIC)).filter(p -> p.toString().endsWith(".log")).count());
+    }
+
+    @Test
+    public void testConsumerSkipsSegmentsRemovedByRetention() throws Exception {
+        TbFileQueueProducerTemplate<TbQueueMsg> producer = new TbFileQueueProducerTemplate<>(storage, TOPIC);
+        for (int i = 0; i < 100; i++) {
+            producer.send(tpi(), msg("msg-" + i), null);
+        }
+        TbFileQueueConsumerTemplate<TbQueueMsg> consumer = newConsumer(storage);
+        Assert.assertEquals(range(0, 10), payloads(consumer.poll(1)));
+
+        settings.setRetentionMs(-60000);
+        long diskUsage = storage.getDiskUsage();
+        storage.cleanUp();
+        Assert.assertTrue(storage.getDiskUsage() < diskUsage);
+        Assert.assertEquals(1, Files.list(folder.getRoot().toPath().resolve(TOPIC)).filter(p -> p.toString().endsWith(".log")).count());
+
+        List<String> consumed = new ArrayList<>();
+        List<TbQueueMsg> msgs;
+        while (!(msgs = consumer.poll(1)).isEmpty()) {
+            consumed.addAll(payloads(msgs));
+        }
+        Assert.assertFalse(consumed.isEmpty());
+        Assert.assertEquals("msg-99", consumed.get(consumed.size() - 1));
+    }
+
+    @Test
+    public void testProducerFailsWhenDiskLimitIsReached() {
+        settings.setMaxDiskSize(2048);
+        TbFileQueueProducerTemplate<TbQueueMsg> producer = new TbFileQueueProducerTemplate<>(storage, TOPIC);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        TbQueueCallback callback = new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata metadata) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failure.set(t);
+            }
+        };
+        for (int i = 0; i < 100 && failure.get() == null; i++) {
+            producer.send(tpi(), msg("msg-" + i), callback);
+        }
+        Assert.assertTrue(failure.get() instanceof IllegalStateException);
+        Assert.assertTrue(storage.getDiskUsage() <= 2048);
+    }
+
+    private TbFileQueueStorage newStorage() throws Exception {
+        TbFileQueueStorage storage = new TbFileQueueStorage(settings);
+        storage.init();
+        return storage;
+    }
+
+    private TbFileQueueConsumerTemplate<TbQueueMsg> newConsumer(TbFileQueueStorage storage) {
+        TbFileQueueConsumerTemplate<TbQueueMsg> consumer = new TbFileQueueConsumerTemplate<>(storage, settings, TOPIC, DefaultTbQueueMsg::new);
+        consumer.subscribe();
+        return consumer;
+    }
+
+    private static TopicPartitionInfo tpi() {
+        return new TopicPartitionInfo(TOPIC, null, null, true);
+    }
+
+    private static TbQueueMsg msg(String payload) {
+        return new TestMsg(UUID.randomUUID(), new DefaultTbQueueMsgHeaders(), payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> payloads(List<TbQueueMsg> msgs) {
+        return msgs.stream().map(msg -> new String(msg.getData(), StandardCharsets.UTF_8)).collect(Collectors.toList());
+    }
+
+    private static List<String> range(int from, int to) {
+        List<String> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            result.add("msg-" + i);
+        }
+        return result;
+    }
+
+    private static class TestMsg implements TbQueueMsg {
+        private final UUID key;
+        private final DefaultTbQueueMsgHeaders headers;
+        private final byte[] data;
+
+        TestMsg(UUID key, DefaultTbQueueMsgHeaders headers, byte[] data) {
+            this.key = key;
+            this.headers = headers;
+            this.data = data;
+        }
+
+        @Override
+        public UUID getKey() {
+            return key;
+        }
+
+        @Override
+        public DefaultTbQueueMsgHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public byte[] getData() {
+            return data;
+        }
+    }
+}
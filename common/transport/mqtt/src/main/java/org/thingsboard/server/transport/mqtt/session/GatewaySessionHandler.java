@@ -198,36 +198,26 @@ public class GatewaySessionHandler {
     }
 
     public void onDeviceTelemetry(MqttPublishMessage mqttMsg) throws AdaptorException {
-        JsonElement json = JsonMqttAdaptor.validateJsonPayload(sessionId, mqttMsg.payload());
         int msgId = mqttMsg.variableHeader().packetId();
-        if (json.isJsonObject()) {
-            JsonObject jsonObj = json.getAsJsonObject();
-            for (Map.Entry<String, JsonElement> deviceEntry : jsonObj.entrySet()) {
-                String deviceName = deviceEntry.getKey();
-                Futures.addCallback(checkDeviceConnected(deviceName),
-                        new FutureCallback<GatewayDeviceSessionCtx>() {
-                            @Override
-                            public void onSuccess(@Nullable GatewayDeviceSessionCtx deviceCtx) {
-                                if (!deviceEntry.getValue().isJsonArray()) {
-                                    throw new JsonSyntaxException(CAN_T_PARSE_VALUE + json);
-                                }
-                                try {
-                                    TransportProtos.PostTelemetryMsg postTelemetryMsg = JsonConverter.convertToTelemetryProto(deviceEntry.getValue().getAsJsonArray());
-                                    transportService.process(deviceCtx.getSessionInfo(), postTelemetryMsg, getPubAckCallback(channel, deviceName, msgId, postTelemetryMsg));
-                                } catch (Throwable e) {
-                                    UUID gatewayId = new UUID(gateway.getDeviceIdMSB(), gateway.getDeviceIdLSB());
-                                    log.warn("[{}][{}] Failed to convert telemetry: {}", gatewayId, deviceName, deviceEntry.getValue(), e);
-                                }
-                            }
+        Map<String, TransportProtos.PostTelemetryMsg> telemetry = JsonMqttAdaptor.convertToGatewayTelemetry(mqttMsg.payload(), (deviceName, e) -> {
+            UUID gatewayId = new UUID(gateway.getDeviceIdMSB(), gateway.getDeviceIdLSB());
+            log.warn("[{}][{}] Failed to convert telemetry", gatewayId, deviceName, e);
+        });
+        for (Map.Entry<String, TransportProtos.PostTelemetryMsg> deviceEntry : telemetry.entrySet()) {
+            String deviceName = deviceEntry.getKey();
+            TransportProtos.PostTelemetryMsg postTelemetryMsg = deviceEntry.getValue();
+            Futures.addCallback(checkDeviceConnected(deviceName),
+                    new FutureCallback<GatewayDeviceSessionCtx>() {
+                        @Override
+                        public void onSuccess(@Nullable GatewayDeviceSessionCtx deviceCtx) {
+                            transportService.process(deviceCtx.getSessionInfo(), postTelemetryMsg, getPubAckCallback(channel, deviceName, msgId, postTelemetryMsg));
+                        }
 
-                            @Override
-                            public void onFailure(Throwable t) {
-                                log.debug("[{}] Failed to process device telemetry command: {}", sessionId, deviceName, t);
-                            }
-                        }, context.getExecutor());
-            }
-        } else {
-            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + json);
+                        @Override
+                        public void onFailure(Throwable t) {
+                            log.debug("[{}] Failed to process device telemetry command: {}", sessionId, deviceName, t);
+                        }
+                    }, context.getExecutor());
         }
     }
 
@@ -0,0 +1,383 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.adaptor;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueProto;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueType;
+import org.thingsboard.server.gen.transport.TransportProtos.PostAttributeMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Converts the telemetry and attributes payloads to the proto messages token by token,
+ * reading the payload bytes directly without building the payload string and the {@link com.google.gson.JsonElement} tree.
+ * Produces the same messages as the corresponding {@link JsonConverter} methods, including the type cast
+ * and the maximum string value length rules.
+ * Invalid values do not stop the parsing, so the gateway payloads are always consumed up to the end
+ * and only the telemetry of the device with invalid values is rejected.
+ */
+public class JsonStreamingConverter {
+
+    private static final String CAN_T_PARSE_VALUE = "Can't parse value: ";
+    private static final String TS = "ts";
+    private static final String VALUES = "values";
+
+    private final JsonReader reader;
+    private final long systemTs;
+    private JsonSyntaxException error;
+
+    private JsonStreamingConverter(Reader payload, long systemTs) {
+        this.reader = new JsonReader(payload);
+        this.reader.setLenient(true);
+        this.systemTs = systemTs;
+    }
+
+    public static PostTelemetryMsg convertToTelemetryProto(byte[] payload) throws JsonSyntaxException {
+        return convertToTelemetryProto(new Utf8Reader(payload));
+    }
+
+    public static PostTelemetryMsg convertToTelemetryProto(InputStream payload) throws JsonSyntaxException {
+        return convertToTelemetryProto(new Utf8Reader(payload));
+    }
+
+    public static PostAttributeMsg convertToAttributesProto(byte[] payload) throws JsonSyntaxException {
+        return convertToAttributesProto(new Utf8Reader(payload));
+    }
+
+    public static PostAttributeMsg convertToAttributesProto(InputStream payload) throws JsonSyntaxException {
+        return convertToAttributesProto(new Utf8Reader(payload));
+    }
+
+    /**
+     * Converts the gateway telemetry payload: {"Device A": [{"ts": 1, "values": {...}}], "Device B": [...]}.
+     * The telemetry of the devices with invalid values is passed to the error consumer instead of the result.
+     */
+    public static Map<String, PostTelemetryMsg> convertToGatewayTelemetryProto(InputStream payload, BiConsumer<String, JsonSyntaxException> errorConsumer) throws JsonSyntaxException {
+        JsonStreamingConverter converter = new JsonStreamingConverter(new Utf8Reader(payload), System.currentTimeMillis());
+        try {
+            return converter.parseGatewayTelemetry(errorConsumer);
+        } catch (IOException | NumberFormatException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static PostTelemetryMsg convertToTelemetryProto(Reader payload) throws JsonSyntaxException {
+        JsonStreamingConverter converter = new JsonStreamingConverter(payload, System.currentTimeMillis());
+        try {
+            PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+            converter.parseTelemetry(builder);
+            converter.endDocument();
+            return builder.build();
+        } catch (IOException | NumberFormatException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static PostAttributeMsg convertToAttributesProto(Reader payload) throws JsonSyntaxException {
+        JsonStreamingConverter converter = new JsonStreamingConverter(payload, System.currentTimeMillis());
+        try {
+            PostAttributeMsg.Builder builder = PostAttributeMsg.newBuilder();
+            if (converter.reader.peek() == JsonToken.BEGIN_OBJECT) {
+                List<KeyValueProto> keyValueList = new ArrayList<>();
+                converter.fail(converter.parseValues(keyValueList));
+                builder.addAllKv(keyValueList);
+            } else {
+                converter.skipInvalidValue();
+            }
+            converter.endDocument();
+            return builder.build();
+        } catch (IOException | NumberFormatException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private Map<String, PostTelemetryMsg> parseGatewayTelemetry(BiConsumer<String, JsonSyntaxException> errorConsumer) throws IOException {
+        Map<String, PostTelemetryMsg> result = new LinkedHashMap<>();
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            skipInvalidValue();
+            endDocument();
+            return result;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String deviceName = reader.nextName();
+            PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                parseTelemetry(builder);
+            } else {
+                skipInvalidValue();
+            }
+            if (error == null) {
+                result.put(deviceName, builder.build());
+            } else {
+                result.remove(deviceName);
+                errorConsumer.accept(deviceName, error);
+                error = null;
+            }
+        }
+        reader.endObject();
+        endDocument();
+        return result;
+    }
+
+    private void parseTelemetry(PostTelemetryMsg.Builder builder) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BEGIN_OBJECT) {
+            parseTelemetryObject(builder);
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    parseTelemetryObject(builder);
+                } else {
+                    skipInvalidValue();
+                }
+            }
+            reader.endArray();
+        } else {
+            skipInvalidValue();
+        }
+    }
+
+    /**
+     * The object is either {"ts": 1, "values": {...}} or the values themselves, which is known only at the end of the object,
+     * so the keys are parsed as values until both "ts" and "values" are found.
+     * The "values" object is parsed to the values only if it follows the "ts", which is the common case.
+     * Otherwise it is kept as a JSON string and parsed again only if the "ts" follows.
+     */
+    private void parseTelemetryObject(PostTelemetryMsg.Builder builder) throws IOException {
+        List<KeyValueProto> keyValueList = new ArrayList<>();
+        JsonSyntaxException keyValueError = null;
+        boolean hasTs = false;
+        String tsValue = null;
+        boolean hasValues = false;
+        List<KeyValueProto> values = null;
+        JsonSyntaxException valuesError = null;
+        String valuesJson = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            JsonToken token = reader.peek();
+            if (TS.equals(key)) {
+                hasTs = true;
+                tsValue = token == JsonToken.NUMBER || token == JsonToken.STRING ? reader.nextString() : null;
+                if (tsValue != null) {
+                    try {
+                        keyValueList.add(token == JsonToken.NUMBER ?
+                                JsonConverter.buildNumericKeyValueProto(key, tsValue) : JsonConverter.buildStringKeyValueProto(key, tsValue));
+                    } catch (JsonSyntaxException e) {
+                        keyValueError = keyValueError != null ? keyValueError : e;
+                    }
+                    continue;
+                }
+            } else if (VALUES.equals(key)) {
+                hasValues = true;
+                values = null;
+                valuesJson = null;
+                if (token == JsonToken.BEGIN_OBJECT) {
+                    if (hasTs) {
+                        values = new ArrayList<>();
+                        valuesError = parseValues(values);
+                    } else {
+                        valuesJson = readJson();
+                        keyValueList.add(KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.JSON_V).setJsonV(valuesJson).build());
+                    }
+                    continue;
+                }
+            }
+            try {
+                KeyValueProto keyValue = parseValue(key);
+                if (keyValue != null) {
+                    keyValueList.add(keyValue);
+                }
+            } catch (JsonSyntaxException e) {
+                keyValueError = keyValueError != null ? keyValueError : e;
+            }
+        }
+        reader.endObject();
+        if (hasTs && hasValues) {
+            if (tsValue == null) {
+                fail(new JsonSyntaxException(CAN_T_PARSE_VALUE + "ts at " + reader.getPath()));
+                return;
+            }
+            if (values == null) {
+                if (valuesJson == null) {
+                    fail(new JsonSyntaxException(CAN_T_PARSE_VALUE + "values at " + reader.getPath()));
+                    return;
+                }
+                values = new ArrayList<>();
+                valuesError = new JsonStreamingConverter(new StringReader(valuesJson), systemTs).parseValues(values);
+            }
+            Long ts = parseTs(tsValue);
+            if (ts != null && valuesError == null) {
+                builder.addTsKvList(TsKvListProto.newBuilder().setTs(ts).addAllKv(values).build());
+            }
+            fail(valuesError);
+        } else {
+            if (keyValueError == null) {
+                builder.addTsKvList(TsKvListProto.newBuilder().setTs(systemTs).addAllKv(keyValueList).build());
+            }
+            fail(keyValueError);
+        }
+    }
+
+    /**
+     * Returns the first invalid value error instead of throwing it, so the object is always consumed.
+     */
+    private JsonSyntaxException parseValues(List<KeyValueProto> result) throws IOException {
+        JsonSyntaxException valuesError = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            try {
+                KeyValueProto keyValue = parseValue(key);
+                if (keyValue != null) {
+                    result.add(keyValue);
+                }
+            } catch (JsonSyntaxException e) {
+                valuesError = valuesError != null ? valuesError : e;
+            }
+        }
+        reader.endObject();
+        return valuesError;
+    }
+
+    /**
+     * Consumes the whole value before throwing the {@link JsonSyntaxException}.
+     */
+    private KeyValueProto parseValue(String key) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+                return JsonConverter.buildStringKeyValueProto(key, reader.nextString());
+            case NUMBER:
+                return JsonConverter.buildNumericKeyValueProto(key, reader.nextString());
+            case BOOLEAN:
+                return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.BOOLEAN_V).setBoolV(reader.nextBoolean()).build();
+            case NULL:
+                reader.nextNull();
+                return null;
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.JSON_V).setJsonV(readJson()).build();
+            default:
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + reader.peek() + " at " + reader.getPath());
+        }
+    }
+
+    /**
+     * Copies the object or array to the compact JSON string, the same as {@link com.google.gson.JsonElement#toString()}.
+     */
+    private String readJson() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setLenient(true);
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    writer.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    writer.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    writer.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    writer.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    writer.name(reader.nextName());
+                    break;
+                case STRING:
+                    writer.value(reader.nextString());
+                    break;
+                case NUMBER:
+                    writer.jsonValue(reader.nextString());
+                    break;
+                case BOOLEAN:
+                    writer.value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    writer.nullValue();
+                    break;
+                default:
+                    throw new JsonSyntaxException(CAN_T_PARSE_VALUE + reader.peek() + " at " + reader.getPath());
+            }
+        } while (depth > 0);
+        return out.toString();
+    }
+
+    private Long parseTs(String tsValue) {
+        try {
+            return Long.parseLong(tsValue);
+        } catch (NumberFormatException e) {
+            try {
+                return new BigDecimal(tsValue).longValue();
+            } catch (NumberFormatException ex) {
+                fail(new JsonSyntaxException(CAN_T_PARSE_VALUE + tsValue, ex));
+                return null;
+            }
+        }
+    }
+
+    private void skipInvalidValue() throws IOException {
+        String path = reader.getPath();
+        JsonToken token = reader.peek();
+        reader.skipValue();
+        fail(new JsonSyntaxException(CAN_T_PARSE_VALUE + token + " at " + path));
+    }
+
+    private void fail(JsonSyntaxException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    private void endDocument() throws IOException {
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("Did not consume the entire document.");
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
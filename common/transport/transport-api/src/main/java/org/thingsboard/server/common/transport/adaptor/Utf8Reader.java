@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.adaptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Decodes UTF-8 bytes on the fly, without the intermediate byte buffer of {@link java.io.InputStreamReader}.
+ * Malformed sequences are replaced with U+FFFD. The underlying stream is not closed.
+ */
+class Utf8Reader extends Reader {
+
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    private final InputStream in;
+    private final byte[] bytes;
+    private final int limit;
+    private int pos;
+
+    private int pendingByte = -1;
+    private int pendingChar = -1;
+
+    Utf8Reader(InputStream in) {
+        this.in = in;
+        this.bytes = null;
+        this.limit = 0;
+    }
+
+    Utf8Reader(byte[] bytes) {
+        this.in = null;
+        this.bytes = bytes;
+        this.limit = bytes.length;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len) {
+            if (pendingChar >= 0) {
+                cbuf[off + n++] = (char) pendingChar;
+                pendingChar = -1;
+                continue;
+            }
+            int b = nextByte();
+            if (b < 0) {
+                break;
+            }
+            if (b < 0x80) {
+                cbuf[off + n++] = (char) b;
+            } else {
+                int codePoint = decode(b);
+                if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    cbuf[off + n++] = Character.highSurrogate(codePoint);
+                    pendingChar = Character.lowSurrogate(codePoint);
+                } else {
+                    cbuf[off + n++] = (char) codePoint;
+                }
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private int decode(int b) throws IOException {
+        int extraBytes;
+        int codePoint;
+        int minCodePoint;
+        if ((b & 0xE0) == 0xC0) {
+            extraBytes = 1;
+            codePoint = b & 0x1F;
+            minCodePoint = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+            extraBytes = 2;
+            codePoint = b & 0x0F;
+            minCodePoint = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+            extraBytes = 3;
+            codePoint = b & 0x07;
+            minCodePoint = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        } else {
+            return REPLACEMENT_CHAR;
+        }
+        for (int i = 0; i < extraBytes; i++) {
+            int next = nextByte();
+            if (next < 0 || (next & 0xC0) != 0x80) {
+                pendingByte = next;
+                return REPLACEMENT_CHAR;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        if (codePoint < minCodePoint || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return REPLACEMENT_CHAR;
+        }
+        return codePoint;
+    }
+
+    private int nextByte() throws IOException {
+        if (pendingByte >= 0) {
+            int b = pendingByte;
+            pendingByte = -1;
+            return b;
+        }
+        if (in != null) {
+            return in.read();
+        }
+        return pos < limit ? bytes[pos++] & 0xFF : -1;
+    }
+}
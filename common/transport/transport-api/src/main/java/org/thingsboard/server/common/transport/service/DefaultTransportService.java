@@ -95,6 +95,14 @@ public class DefaultTransportService implements TransportService {
     private long clientSideRpcTimeout;
     @Value("${queue.transport.poll_interval}")
     private int notificationsPollDuration;
+    @Value("${transport.credentials_cache.enabled:false}")
+    private boolean credentialsCacheEnabled;
+    @Value("${transport.credentials_cache.max_size:100000}")
+    private long credentialsCacheMaxSize;
+    @Value("${transport.credentials_cache.ttl:600000}")
+    private long credentialsCacheTtl;
+    @Value("${transport.credentials_cache.stats_print_interval_ms:60000}")
+    private long credentialsCacheStatsPrintInterval;
 
     private final Gson gson = new Gson();
     private final TbTransportQueueFactory queueProvider;
@@ -109,6 +117,7 @@ public class DefaultTransportService implements TransportService {
 
     protected ScheduledExecutorService schedulerExecutor;
     protected ExecutorService transportCallbackExecutor;
+    private TransportCredentialsCache credentialsCache;
 
     private final ConcurrentMap<UUID, SessionMetaData> sessions = new ConcurrentHashMap<>();
     private final Map<String, RpcRequestMetadata> toServerRpcPendingMap = new ConcurrentHashMap<>();
@@ -136,6 +145,10 @@ public class DefaultTransportService implements TransportService {
         this.schedulerExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("transport-scheduler"));
         this.transportCallbackExecutor = Executors.newWorkStealingPool(20);
         this.schedulerExecutor.scheduleAtFixedRate(this::checkInactivityAndReportActivity, new Random().nextInt((int) sessionReportTimeout), sessionReportTimeout, TimeUnit.MILLISECONDS);
+        if (credentialsCacheEnabled) {
+            credentialsCache = new TransportCredentialsCache(credentialsCacheMaxSize, credentialsCacheTtl);
+            this.schedulerExecutor.scheduleAtFixedRate(this::printCredentialsCacheStats, credentialsCacheStatsPrintInterval, credentialsCacheStatsPrintInterval, TimeUnit.MILLISECONDS);
+        }
         transportApiRequestTemplate = queueProvider.createTransportApiRequestTemplate();
         ruleEngineMsgProducer = producerProvider.getRuleEngineMsgProducer();
         tbCoreMsgProducer = producerProvider.getTbCoreMsgProducer();
@@ -217,17 +230,41 @@ public class DefaultTransportService implements TransportService {
     @Override
     public void process(TransportProtos.ValidateDeviceTokenRequestMsg msg, TransportServiceCallback<TransportProtos.ValidateDeviceCredentialsResponseMsg> callback) {
         log.trace("Processing msg: {}", msg);
-        TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(), TransportApiRequestMsg.newBuilder().setValidateTokenRequestMsg(msg).build());
-        AsyncCallbackTemplate.withCallback(transportApiRequestTemplate.send(protoMsg),
-                response -> callback.onSuccess(response.getValue().getValidateTokenResponseMsg()), callback::onError, transportCallbackExecutor);
+        validateCredentials("token:" + msg.getToken(), TransportApiRequestMsg.newBuilder().setValidateTokenRequestMsg(msg).build(), callback);
     }
 
     @Override
     public void process(TransportProtos.ValidateDeviceX509CertRequestMsg msg, TransportServiceCallback<TransportProtos.ValidateDeviceCredentialsResponseMsg> callback) {
         log.trace("Processing msg: {}", msg);
-        TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(), TransportApiRequestMsg.newBuilder().setValidateX509CertRequestMsg(msg).build());
+        validateCredentials("x509:" + msg.getHash(), TransportApiRequestMsg.newBuilder().setValidateX509CertRequestMsg(msg).build(), callback);
+    }
+
+    private void validateCredentials(String cacheKey, TransportApiRequestMsg requestMsg, TransportServiceCallback<TransportProtos.ValidateDeviceCredentialsResponseMsg> callback) {
+        TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(), requestMsg);
+        if (credentialsCache == null) {
+            AsyncCallbackTemplate.withCallback(transportApiRequestTemplate.send(protoMsg),
+                    response -> callback.onSuccess(response.getValue().getValidateTokenResponseMsg()), callback::onError, transportCallbackExecutor);
+            return;
+        }
+        TransportProtos.ValidateDeviceCredentialsResponseMsg cached = credentialsCache.get(cacheKey);
+        if (cached != null) {
+            transportCallbackExecutor.submit(() -> callback.onSuccess(cached));
+            return;
+        }
+        long cacheVersion = credentialsCache.getVersion();
         AsyncCallbackTemplate.withCallback(transportApiRequestTemplate.send(protoMsg),
-                response -> callback.onSuccess(response.getValue().getValidateTokenResponseMsg()), callback::onError, transportCallbackExecutor);
+                response -> {
+                    TransportProtos.ValidateDeviceCredentialsResponseMsg result = response.getValue().getValidateTokenResponseMsg();
+                    credentialsCache.put(cacheKey, cacheVersion, result);
+                    callback.onSuccess(result);
+                }, callback::onError, transportCallbackExecutor);
+    }
+
+    private void printCredentialsCacheStats() {
+        String stats = credentialsCache.getStatsAndReset();
+        if (stats != null) {
+            log.info("Credentials cache stats: {}", stats);
+        }
     }
 
     @Override
@@ -498,6 +535,13 @@ public class DefaultTransportService implements TransportService {
     }
 
     protected void processToTransportMsg(TransportProtos.ToTransportMsg toSessionMsg) {
+        if (toSessionMsg.hasDeviceCacheEvictMsg()) {
+            if (credentialsCache != null) {
+                TransportProtos.DeviceCacheEvictMsgProto evictMsg = toSessionMsg.getDeviceCacheEvictMsg();
+                credentialsCache.evict(new UUID(evictMsg.getDeviceIdMSB(), evictMsg.getDeviceIdLSB()));
+            }
+            return;
+        }
         UUID sessionId = new UUID(toSessionMsg.getSessionIdMSB(), toSessionMsg.getSessionIdLSB());
         SessionMetaData md = sessions.get(sessionId);
         if (md != null) {
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceCredentialsResponseMsg;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Successful credentials validation results of the transport, keyed by the access token or certificate hash.
+ * Results are evicted by the device id when the device or its credentials change.
+ * A result received while an eviction was in progress is not cached, since it may be already stale.
+ */
+class TransportCredentialsCache {
+
+    private final Cache<String, ValidateDeviceCredentialsResponseMsg> cache;
+    private final ConcurrentMap<UUID, Set<String>> deviceKeys = new ConcurrentHashMap<>();
+    private final AtomicLong evictionsCount = new AtomicLong();
+
+    private final AtomicInteger hits = new AtomicInteger(0);
+    private final AtomicInteger misses = new AtomicInteger(0);
+    private final AtomicInteger evictions = new AtomicInteger(0);
+
+    TransportCredentialsCache(long maxSize, long ttlMs) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .<String, ValidateDeviceCredentialsResponseMsg>removalListener(notification -> {
+                    if (notification.getCause() != RemovalCause.REPLACED && notification.getValue() != null) {
+                        removeDeviceKey(getDeviceId(notification.getValue()), notification.getKey());
+                    }
+                })
+                .build();
+    }
+
+    ValidateDeviceCredentialsResponseMsg get(String key) {
+        ValidateDeviceCredentialsResponseMsg result = cache.getIfPresent(key);
+        if (result != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the version of the cache to pass to {@link #put} when the validation result is received.
+     */
+    long getVersion() {
+        return evictionsCount.get();
+    }
+
+    void put(String key, long version, ValidateDeviceCredentialsResponseMsg result) {
+        if (!result.hasDeviceInfo()) {
+            return;
+        }
+        UUID deviceId = getDeviceId(result);
+        deviceKeys.computeIfAbsent(deviceId, id -> ConcurrentHashMap.newKeySet()).add(key);
+        cache.put(key, result);
+        if (evictionsCount.get() != version) {
+            cache.invalidate(key);
+        }
+    }
+
+    void evict(UUID deviceId) {
+        evictionsCount.incrementAndGet();
+        evictions.incrementAndGet();
+        Set<String> keys = deviceKeys.remove(deviceId);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    String getStatsAndReset() {
+        int hitsCnt = hits.getAndSet(0);
+        int missesCnt = misses.getAndSet(0);
+        int evictionsCnt = evictions.getAndSet(0);
+        int total = hitsCnt + missesCnt;
+        if (total == 0 && evictionsCnt == 0) {
+            return null;
+        }
+        long hitRate = total > 0 ? hitsCnt * 100L / total : 0;
+        return "hits (saved round trips) = [" + hitsCnt + "] misses = [" + missesCnt + "] hitRate = [" + hitRate + "%] " +
+                "evictions = [" + evictionsCnt + "] size = [" + size() + "]";
+    }
+
+    private void removeDeviceKey(UUID deviceId, String key) {
+        deviceKeys.computeIfPresent(deviceId, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static UUID getDeviceId(ValidateDeviceCredentialsResponseMsg result) {
+        DeviceInfoProto deviceInfo = result.getDeviceInfo();
+        return new UUID(deviceInfo.getDeviceIdMSB(), deviceInfo.getDeviceIdLSB());
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.adaptor;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueType;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonStreamingConverterTest {
+
+    private static final String[] TELEMETRY_PAYLOADS = {
+            "{\"temperature\":42.5,\"humidity\":73,\"active\":true,\"name\":\"boiler\",\"empty\":null}",
+            "{\"ts\":1451649600512,\"values\":{\"temperature\":42.5,\"humidity\":73}}",
+            "{\"values\":{\"temperature\":42.5,\"humidity\":73},\"ts\":1451649600512}",
+            "{\"values\":{\"temperature\":42.5,\"humidity\":73},\"other\":1}",
+            "{\"ts\":\"1451649600512\",\"values\":{\"a\":1}}",
+            "{\"ts\":1451649600512,\"other\":\"skip\",\"values\":{\"a\":1}}",
+            "[{\"ts\":1451649600512,\"values\":{\"a\":1}},{\"ts\":1451649600513,\"values\":{\"a\":2,\"b\":\"x\"}}]",
+            "{\"stringNumber\":\"42\",\"stringDouble\":\"42.5\",\"stringText\":\"4x2\",\"exp\":1.5e3}",
+            "{\"json\":{\"nested\":{\"a\":[1,2.50,\"x\",null,true]},\"n\":null},\"array\":[{\"a\":1},\"\\u00e9\\\"\"]}",
+            "{\"unicode\":\"é中😀\",\"escaped\":\"line\\nbreak\\t\\\"quoted\\\"\"}",
+            "{\"negative\":-15,\"zero\":0,\"double\":-0.001}",
+            "{}",
+            "[]"
+    };
+
+    private static final String[] INVALID_TELEMETRY_PAYLOADS = {
+            "",
+            "42",
+            "\"text\"",
+            "[1, 2]",
+            "{\"big\":123456789012345678901234567890}",
+            "{\"temperature\":42.5",
+            "{\"a\":1} {\"b\":2}",
+            "{\"ts\":{\"a\":1},\"values\":{\"a\":1}}",
+            "{\"ts\":1451649600512,\"values\":1}"
+    };
+
+    @After
+    public void after() {
+        JsonConverter.setTypeCastEnabled(true);
+        JsonConverter.setMaxStringValueLength(0);
+    }
+
+    @Test
+    public void testTelemetryIsTheSameAsTreeConversion() {
+        for (String payload : TELEMETRY_PAYLOADS) {
+            assertTelemetryEquals(payload);
+        }
+    }
+
+    @Test
+    public void testTelemetryWithoutTypeCastIsTheSameAsTreeConversion() {
+        JsonConverter.setTypeCastEnabled(false);
+        for (String payload : TELEMETRY_PAYLOADS) {
+            assertTelemetryEquals(payload);
+        }
+    }
+
+    @Test
+    public void testAttributesAreTheSameAsTreeConversion() {
+        String payload = "{\"firmware\":\"1.0.2\",\"count\":\"17\",\"enabled\":false,\"config\":{\"a\":[1,2]},\"removed\":null}";
+        Assert.assertEquals(JsonConverter.convertToAttributesProto(new JsonParser().parse(payload)),
+                JsonStreamingConverter.convertToAttributesProto(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testInvalidTelemetryIsRejected() {
+        for (String payload : INVALID_TELEMETRY_PAYLOADS) {
+            try {
+                JsonStreamingConverter.convertToTelemetryProto(payload.getBytes(StandardCharsets.UTF_8));
+                Assert.fail("Payload is accepted: " + payload);
+            } catch (JsonSyntaxException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testInvalidAttributesAreRejected() {
+        JsonStreamingConverter.convertToAttributesProto("[{\"a\":1}]".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMaxStringValueLength() {
+        JsonConverter.setMaxStringValueLength(5);
+        JsonStreamingConverter.convertToTelemetryProto("{\"a\":\"12345\"}".getBytes(StandardCharsets.UTF_8));
+        try {
+            JsonStreamingConverter.convertToTelemetryProto("{\"a\":\"123456\"}".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Too long string value is accepted");
+        } catch (JsonSyntaxException e) {
+            Assert.assertTrue(e.getMessage().contains("greater than maximum allowed"));
+        }
+    }
+
+    @Test
+    public void testTypeCast() {
+        byte[] payload = "{\"a\":\"42\"}".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(KeyValueType.LONG_V, JsonStreamingConverter.convertToTelemetryProto(payload).getTsKvList(0).getKv(0).getType());
+        JsonConverter.setTypeCastEnabled(false);
+        Assert.assertEquals(KeyValueType.STRING_V, JsonStreamingConverter.convertToTelemetryProto(payload).getTsKvList(0).getKv(0).getType());
+    }
+
+    @Test
+    public void testGatewayTelemetryRejectsOnlyInvalidDevices() {
+        String payload = "{\"Device A\":[{\"ts\":1451649600512,\"values\":{\"a\":1}}]," +
+                "\"Device B\":[{\"ts\":1451649600512,\"values\":{\"big\":123456789012345678901234567890,\"nested\":{\"a\":[1]}}}]," +
+                "\"Device C\":{\"a\":1}," +
+                "\"Device D\":[{\"b\":\"x\"},{\"ts\":1451649600513,\"values\":{\"c\":true}}]}";
+        Map<String, JsonSyntaxException> errors = new HashMap<>();
+        Map<String, PostTelemetryMsg> result = JsonStreamingConverter.convertToGatewayTelemetryProto(
+                new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), errors::put);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(2, errors.size());
+        Assert.assertTrue(errors.containsKey("Device B"));
+        Assert.assertTrue(errors.containsKey("Device C"));
+        Assert.assertEquals(1, result.get("Device A").getTsKvList(0).getKvCount());
+        Assert.assertEquals(2, result.get("Device D").getTsKvListCount());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testMalformedGatewayTelemetryIsRejected() {
+        JsonStreamingConverter.convertToGatewayTelemetryProto(
+                new ByteArrayInputStream("{\"Device A\":[{\"a\":1}],\"Device B\":[".getBytes(StandardCharsets.UTF_8)), (deviceName, e) -> {
+                });
+    }
+
+    private void assertTelemetryEquals(String payload) {
+        long startTs = System.currentTimeMillis();
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        PostTelemetryMsg expected = withoutSystemTs(JsonConverter.convertToTelemetryProto(new JsonParser().parse(payload)), startTs);
+        Assert.assertEquals(payload, expected, withoutSystemTs(JsonStreamingConverter.convertToTelemetryProto(bytes), startTs));
+        Assert.assertEquals(payload, expected, withoutSystemTs(JsonStreamingConverter.convertToTelemetryProto(new ByteArrayInputStream(bytes)), startTs));
+    }
+
+    private static PostTelemetryMsg withoutSystemTs(PostTelemetryMsg msg, long startTs) {
+        PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+        for (TsKvListProto tsKvList : msg.getTsKvListList()) {
+            builder.addTsKvList(tsKvList.getTs() >= startTs ? tsKvList.toBuilder().setTs(0).build() : tsKvList);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceCacheEvictMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToTransportMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TransportApiRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TransportApiResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceCredentialsResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+import org.thingsboard.server.queue.TbQueueRequestTemplate;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.queue.memory.InMemoryTbQueueConsumer;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+import org.thingsboard.server.queue.provider.TbTransportQueueFactory;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DefaultTransportServiceTest {
+
+    private static final int DEVICES = 200;
+    private static final int RECONNECTS = 3;
+    private static final long ROUND_TRIP_MS = 20;
+
+    private final ScheduledExecutorService coreExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private DefaultTransportService transportService;
+
+    @After
+    public void after() {
+        if (transportService != null) {
+            transportService.destroy();
+        }
+        coreExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testReconnectStormWithCacheHasLowerConnectLatency() throws Exception {
+        long noCacheLatency = runReconnectStorm(false);
+        int noCacheRoundTrips = roundTrips.getAndSet(0);
+        long cacheLatency = runReconnectStorm(true);
+        int cacheRoundTrips = roundTrips.getAndSet(0);
+
+        Assert.assertEquals(DEVICES * (RECONNECTS + 1), noCacheRoundTrips);
+        Assert.assertEquals(DEVICES, cacheRoundTrips);
+        Assert.assertTrue("Average reconnect latency with cache " + cacheLatency + "us, without cache " + noCacheLatency + "us",
+                cacheLatency * 2 < noCacheLatency);
+    }
+
+    @Test
+    public void testCredentialsAreEvictedByNotification() throws Exception {
+        transportService = createTransportService(true);
+        Assert.assertNotNull(validate(token(1)).getDeviceInfo());
+        validate(token(1));
+        validate(token(2));
+        Assert.assertEquals(2, roundTrips.get());
+
+        transportService.processToTransportMsg(ToTransportMsg.newBuilder().setDeviceCacheEvictMsg(DeviceCacheEvictMsgProto.newBuilder()
+                .setDeviceIdMSB(deviceId(1).getMostSignificantBits())
+                .setDeviceIdLSB(deviceId(1).getLeastSignificantBits())).build());
+        validate(token(1));
+        validate(token(2));
+        Assert.assertEquals(3, roundTrips.get());
+    }
+
+    @Test
+    public void testInvalidCredentialsAreNotCached() throws Exception {
+        transportService = createTransportService(true);
+        Assert.assertFalse(validate("unknown").hasDeviceInfo());
+        Assert.assertFalse(validate("unknown").hasDeviceInfo());
+        Assert.assertEquals(2, roundTrips.get());
+    }
+
+    private long runReconnectStorm(boolean cacheEnabled) throws Exception {
+        transportService = createTransportService(cacheEnabled);
+        try {
+            connectAll();
+            long totalLatencyUs = 0;
+            for (int i = 0; i < RECONNECTS; i++) {
+                totalLatencyUs += connectAll();
+            }
+            return totalLatencyUs / ((long) RECONNECTS * DEVICES);
+        } finally {
+            transportService.destroy();
+            transportService = null;
+        }
+    }
+
+    /**
+     * Connects all devices at once and returns the total connect latency in microseconds.
+     */
+    private long connectAll() throws InterruptedException {
+        CountDownLatch connected = new CountDownLatch(DEVICES);
+        AtomicLong totalLatencyNanos = new AtomicLong();
+        for (int i = 0; i < DEVICES; i++) {
+            long startTs = System.nanoTime();
+            transportService.process(ValidateDeviceTokenRequestMsg.newBuilder().setToken(token(i)).build(),
+                    new TransportServiceCallback<ValidateDeviceCredentialsResponseMsg>() {
+                        @Override
+                        public void onSuccess(ValidateDeviceCredentialsResponseMsg msg) {
+                            totalLatencyNanos.addAndGet(System.nanoTime() - startTs);
+                            connected.countDown();
+                        }
+
+                        @Override
+                        public void onError(Throwable e) {
+                        }
+                    });
+        }
+        Assert.assertTrue(connected.await(10, TimeUnit.SECONDS));
+        return TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get());
+    }
+
+    private ValidateDeviceCredentialsResponseMsg validate(String token) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<ValidateDeviceCredentialsResponseMsg> result = new AtomicReference<>();
+        transportService.process(ValidateDeviceTokenRequestMsg.newBuilder().setToken(token).build(),
+                new TransportServiceCallback<ValidateDeviceCredentialsResponseMsg>() {
+                    @Override
+                    public void onSuccess(ValidateDeviceCredentialsResponseMsg msg) {
+                        result.set(msg);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                    }
+                });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private DefaultTransportService createTransportService(boolean cacheEnabled) {
+        TbQueueRequestTemplate<TbProtoQueueMsg<TransportApiRequestMsg>, TbProtoQueueMsg<TransportApiResponseMsg>> requestTemplate = mock(TbQueueRequestTemplate.class);
+        when(requestTemplate.send(Matchers.any())).thenAnswer(invocation -> {
+            TbProtoQueueMsg<TransportApiRequestMsg> request = (TbProtoQueueMsg<TransportApiRequestMsg>) invocation.getArguments()[0];
+            roundTrips.incrementAndGet();
+            SettableFuture<TbProtoQueueMsg<TransportApiResponseMsg>> future = SettableFuture.create();
+            coreExecutor.schedule(() -> future.set(new TbProtoQueueMsg<>(request.getKey(), TransportApiResponseMsg.newBuilder()
+                    .setValidateTokenResponseMsg(validateToken(request.getValue().getValidateTokenRequestMsg().getToken())).build())),
+                    ROUND_TRIP_MS, TimeUnit.MILLISECONDS);
+            return future;
+        });
+        String notificationsTopic = "tb_transport.notifications." + UUID.randomUUID();
+        TbTransportQueueFactory queueFactory = mock(TbTransportQueueFactory.class);
+        when(queueFactory.createTransportApiRequestTemplate()).thenReturn(requestTemplate);
+        when(queueFactory.createTransportNotificationsConsumer()).thenReturn(new InMemoryTbQueueConsumer<>(notificationsTopic));
+        TbServiceInfoProvider serviceInfoProvider = mock(TbServiceInfoProvider.class);
+        when(serviceInfoProvider.getServiceId()).thenReturn("test");
+        PartitionService partitionService = mock(PartitionService.class);
+        when(partitionService.getNotificationsTopic(ServiceType.TB_TRANSPORT, "test"))
+                .thenReturn(new TopicPartitionInfo(notificationsTopic, null, null, true));
+
+        DefaultTransportService service = new DefaultTransportService(serviceInfoProvider, queueFactory, mock(TbQueueProducerProvider.class), partitionService);
+        ReflectionTestUtils.setField(service, "sessionReportTimeout", 30000L);
+        ReflectionTestUtils.setField(service, "notificationsPollDuration", 10);
+        ReflectionTestUtils.setField(service, "credentialsCacheEnabled", cacheEnabled);
+        ReflectionTestUtils.setField(service, "credentialsCacheMaxSize", 1000L);
+        ReflectionTestUtils.setField(service, "credentialsCacheTtl", 60000L);
+        ReflectionTestUtils.setField(service, "credentialsCacheStatsPrintInterval", 60000L);
+        service.init();
+        return service;
+    }
+
+    private static ValidateDeviceCredentialsResponseMsg validateToken(String token) {
+        if (!token.startsWith("token-")) {
+            return ValidateDeviceCredentialsResponseMsg.getDefaultInstance();
+        }
+        UUID deviceId = deviceId(Integer.parseInt(token.substring("token-".length())));
+        return ValidateDeviceCredentialsResponseMsg.newBuilder().setDeviceInfo(DeviceInfoProto.newBuilder()
+                .setDeviceIdMSB(deviceId.getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getLeastSignificantBits())
+                .setDeviceName("Device " + deviceId)
+                .setDeviceType("default")).build();
+    }
+
+    private static String token(int idx) {
+        return "token-" + idx;
+    }
+
+    private static UUID deviceId(int idx) {
+        return new UUID(0, idx + 1);
+    }
+}
@@ -23,6 +23,8 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
@@ -54,7 +56,9 @@ import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -63,6 +67,7 @@ import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.thingsboard.server.common.data.CacheConstants.RELATION_ANCESTORS_CACHE;
 import static org.thingsboard.server.dao.service.Validator.validateId;
 
 @Service
@@ -80,6 +85,9 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     @Autowired
     private EntityService entityService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     protected ExecutorService readResultsProcessingExecutor;
 
     @PostConstruct
@@ -146,25 +154,41 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     }
 
     private void createAlarmRelations(Alarm alarm) throws InterruptedException, ExecutionException {
+        List<EntityRelation> relations = new ArrayList<>();
         if (alarm.isPropagate()) {
             List<EntityId> parentEntities = getParentEntities(alarm);
             for (EntityId parentId : parentEntities) {
-                createAlarmRelation(alarm.getTenantId(), parentId, alarm.getId(), alarm.getStatus(), true);
+                relations.addAll(getAlarmRelations(parentId, alarm.getId(), alarm.getStatus(), true));
             }
         }
-        createAlarmRelation(alarm.getTenantId(), alarm.getOriginator(), alarm.getId(), alarm.getStatus(), true);
+        relations.addAll(getAlarmRelations(alarm.getOriginator(), alarm.getId(), alarm.getStatus(), true));
+        log.debug("Creating Alarm relations: {}", relations);
+        relationService.deleteAndSaveRelations(alarm.getTenantId(), Collections.emptyList(), relations);
     }
 
     private List<EntityId> getParentEntities(Alarm alarm) throws InterruptedException, ExecutionException {
-        EntityRelationsQuery query = new EntityRelationsQuery();
-        RelationsSearchParameters parameters = new RelationsSearchParameters(alarm.getOriginator(), EntitySearchDirection.TO, Integer.MAX_VALUE, false);
-        query.setParameters(parameters);
         List<String> propagateRelationTypes = alarm.getPropagateRelationTypes();
-        Stream<EntityRelation> relations = relationService.findByQuery(alarm.getTenantId(), query).get().stream();
+        Stream<EntityRelation> relations = getAncestorRelations(alarm.getTenantId(), alarm.getOriginator()).stream();
         if (!CollectionUtils.isEmpty(propagateRelationTypes)) {
             relations = relations.filter(entityRelation -> propagateRelationTypes.contains(entityRelation.getType()));
         }
-        return relations.map(EntityRelation::getFrom).collect(Collectors.toList());
+        return relations.map(EntityRelation::getFrom).distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * Returns all the common relations up the hierarchy from the originator.
+     * The cache is cleared by the relation service on every change of the common relations.
+     */
+    private List<EntityRelation> getAncestorRelations(TenantId tenantId, EntityId originator) throws InterruptedException, ExecutionException {
+        Cache cache = cacheManager.getCache(RELATION_ANCESTORS_CACHE);
+        List<EntityRelation> relations = cache.get(originator, List.class);
+        if (relations == null) {
+            EntityRelationsQuery query = new EntityRelationsQuery();
+            query.setParameters(new RelationsSearchParameters(originator, EntitySearchDirection.TO, Integer.MAX_VALUE, false));
+            relations = relationService.findByQuery(tenantId, query).get();
+            cache.putIfAbsent(originator, relations);
+        }
+        return relations;
     }
 
     private ListenableFuture<Alarm> updateAlarm(Alarm update) {
@@ -341,16 +365,6 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         }
     }
 
-    private void deleteRelation(TenantId tenantId, EntityRelation alarmRelation) {
-        log.debug("Deleting Alarm relation: {}", alarmRelation);
-        relationService.deleteRelation(tenantId, alarmRelation);
-    }
-
-    private void createRelation(TenantId tenantId, EntityRelation alarmRelation) {
-        log.debug("Creating Alarm relation: {}", alarmRelation);
-        relationService.saveRelation(tenantId, alarmRelation);
-    }
-
     private Alarm merge(Alarm existing, Alarm alarm) {
         if (alarm.getStartTs() > existing.getEndTs()) {
             existing.setEndTs(alarm.getStartTs());
@@ -386,33 +400,34 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         try {
             List<EntityRelation> relations = relationService.findByToAsync(alarm.getTenantId(), alarm.getId(), RelationTypeGroup.ALARM).get();
             Set<EntityId> parents = relations.stream().map(EntityRelation::getFrom).collect(Collectors.toSet());
+            List<EntityRelation> relationsToDelete = new ArrayList<>();
+            List<EntityRelation> relationsToSave = new ArrayList<>();
             for (EntityId parentId : parents) {
-                updateAlarmRelation(alarm.getTenantId(), parentId, alarm.getId(), oldStatus, newStatus);
+                relationsToDelete.addAll(getAlarmRelations(parentId, alarm.getId(), oldStatus, false));
+                relationsToSave.addAll(getAlarmRelations(parentId, alarm.getId(), newStatus, false));
             }
+            // Relations of the search statuses that are the same for both statuses are kept as is
+            Set<EntityRelation> unchanged = new HashSet<>(relationsToDelete);
+            unchanged.retainAll(relationsToSave);
+            relationsToDelete.removeAll(unchanged);
+            relationsToSave.removeAll(unchanged);
+            log.debug("Updating Alarm relations. Deleting: {}, Creating: {}", relationsToDelete, relationsToSave);
+            relationService.deleteAndSaveRelations(alarm.getTenantId(), relationsToDelete, relationsToSave);
         } catch (ExecutionException | InterruptedException e) {
             log.warn("[{}] Failed to update relations. Old status: [{}], New status: [{}]", alarm.getId(), oldStatus, newStatus);
             throw new RuntimeException(e);
         }
     }
 
-    private void createAlarmRelation(TenantId tenantId, EntityId entityId, EntityId alarmId, AlarmStatus status, boolean createAnyRelation) {
-        if (createAnyRelation) {
-            createRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM));
+    private List<EntityRelation> getAlarmRelations(EntityId entityId, EntityId alarmId, AlarmStatus status, boolean includeAnyRelation) {
+        List<EntityRelation> relations = new ArrayList<>(4);
+        if (includeAnyRelation) {
+            relations.add(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM));
         }
-        createRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.name(), RelationTypeGroup.ALARM));
-        createRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getClearSearchStatus().name(), RelationTypeGroup.ALARM));
-        createRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getAckSearchStatus().name(), RelationTypeGroup.ALARM));
-    }
-
-    private void deleteAlarmRelation(TenantId tenantId, EntityId entityId, EntityId alarmId, AlarmStatus status) {
-        deleteRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.name(), RelationTypeGroup.ALARM));
-        deleteRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getClearSearchStatus().name(), RelationTypeGroup.ALARM));
-        deleteRelation(tenantId, new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getAckSearchStatus().name(), RelationTypeGroup.ALARM));
-    }
-
-    private void updateAlarmRelation(TenantId tenantId, EntityId entityId, EntityId alarmId, AlarmStatus oldStatus, AlarmStatus newStatus) {
-        deleteAlarmRelation(tenantId, entityId, alarmId, oldStatus);
-        createAlarmRelation(tenantId, entityId, alarmId, newStatus, false);
+        relations.add(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.name(), RelationTypeGroup.ALARM));
+        relations.add(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getClearSearchStatus().name(), RelationTypeGroup.ALARM));
+        relations.add(new EntityRelation(entityId, alarmId, ALARM_RELATION_PREFIX + status.getAckSearchStatus().name(), RelationTypeGroup.ALARM));
+        return relations;
     }
 
     private <T> ListenableFuture<T> getAndUpdate(TenantId tenantId, AlarmId alarmId, Function<Alarm, T> function) {
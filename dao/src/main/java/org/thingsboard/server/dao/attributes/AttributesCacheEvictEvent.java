@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.attributes;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.List;
+
+/**
+ * Published after attributes were evicted from the local cache because of save or remove,
+ * so the other nodes of the cluster may evict them as well.
+ */
+public class AttributesCacheEvictEvent extends ApplicationEvent {
+
+    @Getter
+    private final TenantId tenantId;
+    @Getter
+    private final EntityId entityId;
+    @Getter
+    private final String scope;
+    @Getter
+    private final List<String> keys;
+
+    public AttributesCacheEvictEvent(Object source, TenantId tenantId, EntityId entityId, String scope, List<String> keys) {
+        super(source);
+        this.tenantId = tenantId;
+        this.entityId = entityId;
+        this.scope = scope;
+        this.keys = keys;
+    }
+}
@@ -17,8 +17,13 @@ package org.thingsboard.server.dao.attributes;
 
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -26,9 +31,20 @@ import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.service.Validator;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.thingsboard.server.common.data.CacheConstants.ATTRIBUTES_CACHE;
 
 /**
  * @author Andrew Shvayka
@@ -36,21 +52,68 @@ import java.util.Optional;
 @Service
 public class BaseAttributesService implements AttributesService {
 
+    private static final int CACHE_VERSION_STRIPES = 1024;
+
     @Autowired
     private AttributesDao attributesDao;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Eviction counters striped by cache key. A value loaded from the database is not kept in the cache
+    // if an eviction of its key happened during the load, since the value may be already stale
+    private final AtomicLongArray cacheVersions = new AtomicLongArray(CACHE_VERSION_STRIPES);
+
     @Override
     public ListenableFuture<Optional<AttributeKvEntry>> find(TenantId tenantId, EntityId entityId, String scope, String attributeKey) {
         validate(entityId, scope);
         Validator.validateString(attributeKey, "Incorrect attribute key " + attributeKey);
-        return attributesDao.find(tenantId, entityId, scope, attributeKey);
+        Cache cache = cacheManager.getCache(ATTRIBUTES_CACHE);
+        AttributeCacheKey cacheKey = new AttributeCacheKey(scope, entityId, attributeKey);
+        Cache.ValueWrapper cached = cache.get(cacheKey);
+        if (cached != null) {
+            return Futures.immediateFuture(Optional.ofNullable((AttributeKvEntry) cached.get()));
+        }
+        long version = getCacheVersion(cacheKey);
+        return Futures.transform(attributesDao.find(tenantId, entityId, scope, attributeKey), result -> {
+            putIfNotEvicted(cache, cacheKey, version, result.orElse(null));
+            return result;
+        }, MoreExecutors.directExecutor());
     }
 
     @Override
     public ListenableFuture<List<AttributeKvEntry>> find(TenantId tenantId, EntityId entityId, String scope, Collection<String> attributeKeys) {
         validate(entityId, scope);
         attributeKeys.forEach(attributeKey -> Validator.validateString(attributeKey, "Incorrect attribute key " + attributeKey));
-        return attributesDao.find(tenantId, entityId, scope, attributeKeys);
+        Cache cache = cacheManager.getCache(ATTRIBUTES_CACHE);
+        Set<String> requestedKeys = new LinkedHashSet<>(attributeKeys);
+        Map<String, AttributeKvEntry> foundAttributes = new HashMap<>();
+        Map<String, Long> notCachedKeys = new LinkedHashMap<>();
+        for (String attributeKey : requestedKeys) {
+            AttributeCacheKey cacheKey = new AttributeCacheKey(scope, entityId, attributeKey);
+            Cache.ValueWrapper cached = cache.get(cacheKey);
+            if (cached == null) {
+                notCachedKeys.put(attributeKey, getCacheVersion(cacheKey));
+            } else if (cached.get() != null) {
+                foundAttributes.put(attributeKey, (AttributeKvEntry) cached.get());
+            }
+        }
+        if (notCachedKeys.isEmpty()) {
+            return Futures.immediateFuture(toRequestedOrder(requestedKeys, foundAttributes));
+        }
+        return Futures.transform(attributesDao.find(tenantId, entityId, scope, notCachedKeys.keySet()), loadedAttributes -> {
+            Map<String, AttributeKvEntry> loaded = new HashMap<>();
+            for (AttributeKvEntry attribute : loadedAttributes) {
+                loaded.put(attribute.getKey(), attribute);
+            }
+            notCachedKeys.forEach((attributeKey, version) ->
+                    putIfNotEvicted(cache, new AttributeCacheKey(scope, entityId, attributeKey), version, loaded.get(attributeKey)));
+            foundAttributes.putAll(loaded);
+            return toRequestedOrder(requestedKeys, foundAttributes);
+        }, MoreExecutors.directExecutor());
     }
 
     @Override
@@ -67,13 +130,89 @@ public class BaseAttributesService implements AttributesService {
         for (AttributeKvEntry attribute : attributes) {
             futures.add(attributesDao.save(tenantId, entityId, scope, attribute));
         }
-        return Futures.allAsList(futures);
+        List<String> keys = attributes.stream().map(AttributeKvEntry::getKey).collect(Collectors.toList());
+        return updateCache(Futures.allAsList(futures), tenantId, entityId, scope, keys, cache -> {
+            for (AttributeKvEntry attribute : attributes) {
+                cache.put(new AttributeCacheKey(scope, entityId, attribute.getKey()), attribute);
+            }
+        });
     }
 
     @Override
     public ListenableFuture<List<Void>> removeAll(TenantId tenantId, EntityId entityId, String scope, List<String> keys) {
         validate(entityId, scope);
-        return attributesDao.removeAll(tenantId, entityId, scope, keys);
+        return updateCache(attributesDao.removeAll(tenantId, entityId, scope, keys), tenantId, entityId, scope, keys, cache -> {
+            for (String key : keys) {
+                cache.put(new AttributeCacheKey(scope, entityId, key), null);
+            }
+        });
+    }
+
+    @Override
+    public void evictFromCache(EntityId entityId, String scope, List<String> attributeKeys) {
+        Cache cache = cacheManager.getCache(ATTRIBUTES_CACHE);
+        for (String key : attributeKeys) {
+            AttributeCacheKey cacheKey = new AttributeCacheKey(scope, entityId, key);
+            cacheVersions.incrementAndGet(getCacheVersionIdx(cacheKey));
+            cache.evict(cacheKey);
+        }
+    }
+
+    private long getCacheVersion(AttributeCacheKey cacheKey) {
+        return cacheVersions.get(getCacheVersionIdx(cacheKey));
+    }
+
+    private static int getCacheVersionIdx(AttributeCacheKey cacheKey) {
+        return Math.floorMod(cacheKey.hashCode(), CACHE_VERSION_STRIPES);
+    }
+
+    /**
+     * Caches the loaded value unless the key was evicted after the load had started. The version is checked after the put,
+     * so an eviction that happens concurrently with the put either changes the version or removes the put value.
+     */
+    private void putIfNotEvicted(Cache cache, AttributeCacheKey cacheKey, long version, AttributeKvEntry value) {
+        cache.putIfAbsent(cacheKey, value);
+        if (getCacheVersion(cacheKey) != version) {
+            cache.evict(cacheKey);
+        }
+    }
+
+    private static List<AttributeKvEntry> toRequestedOrder(Set<String> requestedKeys, Map<String, AttributeKvEntry> attributes) {
+        List<AttributeKvEntry> result = new ArrayList<>(attributes.size());
+        for (String attributeKey : requestedKeys) {
+            AttributeKvEntry attribute = attributes.get(attributeKey);
+            if (attribute != null) {
+                result.add(attribute);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the new values through to the local cache once the database update is done, so a lookup that was
+     * started before the update can't put the old value back. Entries are evicted if the update failed.
+     * Other nodes are notified to evict the keys from their caches.
+     */
+    private <T> ListenableFuture<T> updateCache(ListenableFuture<T> future, TenantId tenantId, EntityId entityId, String scope,
+                                                List<String> keys, Consumer<Cache> onSuccess) {
+        Cache cache = cacheManager.getCache(ATTRIBUTES_CACHE);
+        ListenableFuture<T> result = Futures.transform(future, value -> {
+            onSuccess.accept(cache);
+            return value;
+        }, MoreExecutors.directExecutor());
+        Futures.addCallback(result, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                eventPublisher.publishEvent(new AttributesCacheEvictEvent(BaseAttributesService.this, tenantId, entityId, scope, keys));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                evictFromCache(entityId, scope, keys);
+                eventPublisher.publishEvent(new AttributesCacheEvictEvent(BaseAttributesService.this, tenantId, entityId, scope, keys));
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
     }
 
     private static void validate(EntityId id, String scope) {
@@ -28,15 +28,11 @@ import java.util.UUID;
 
 public interface AuditLogDao {
 
-    ListenableFuture<Void> saveByTenantId(AuditLog auditLog);
-
-    ListenableFuture<Void> saveByTenantIdAndEntityId(AuditLog auditLog);
-
-    ListenableFuture<Void> saveByTenantIdAndCustomerId(AuditLog auditLog);
-
-    ListenableFuture<Void> saveByTenantIdAndUserId(AuditLog auditLog);
-
-    ListenableFuture<Void> savePartitionsByTenantId(AuditLog auditLog);
+    /**
+     * Adds the audit log to the bounded write queue. The returned future fails with
+     * {@link org.thingsboard.server.dao.exception.BufferLimitException} if the queue is full.
+     */
+    ListenableFuture<Void> saveAsync(AuditLog auditLog);
 
     List<AuditLog> findAuditLogsByTenantIdAndEntityId(UUID tenantId, EntityId entityId, List<ActionType> actionTypes, TimePageLink pageLink);
 
@@ -20,8 +20,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,7 +64,6 @@ public class AuditLogServiceImpl implements AuditLogService {
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final String INCORRECT_TENANT_ID = "Incorrect tenantId ";
-    private static final int INSERTS_PER_ENTRY = 3;
 
     @Autowired
     private AuditLogLevelFilter auditLogLevelFilter;
@@ -116,7 +113,7 @@ public class AuditLogServiceImpl implements AuditLogService {
     }
 
     @Override
-    public <E extends HasName, I extends EntityId> ListenableFuture<List<Void>>
+    public <E extends HasName, I extends EntityId> ListenableFuture<Void>
         logEntityAction(TenantId tenantId, CustomerId customerId, UserId userId, String userName, I entityId, E entity,
                                ActionType actionType, Exception e, Object... additionalInfo) {
         if (canLog(entityId.getEntityType(), actionType)) {
@@ -314,30 +311,25 @@ public class AuditLogServiceImpl implements AuditLogService {
         return result;
     }
 
-    private ListenableFuture<List<Void>> logAction(TenantId tenantId,
-                                                   EntityId entityId,
-                                                   String entityName,
-                                                   CustomerId customerId,
-                                                   UserId userId,
-                                                   String userName,
-                                                   ActionType actionType,
-                                                   JsonNode actionData,
-                                                   ActionStatus actionStatus,
-                                                   String actionFailureDetails) {
+    private ListenableFuture<Void> logAction(TenantId tenantId,
+                                             EntityId entityId,
+                                             String entityName,
+                                             CustomerId customerId,
+                                             UserId userId,
+                                             String userName,
+                                             ActionType actionType,
+                                             JsonNode actionData,
+                                             ActionStatus actionStatus,
+                                             String actionFailureDetails) {
         AuditLog auditLogEntry = createAuditLogEntry(tenantId, entityId, entityName, customerId, userId, userName,
                 actionType, actionData, actionStatus, actionFailureDetails);
         log.trace("Executing logAction [{}]", auditLogEntry);
         auditLogValidator.validate(auditLogEntry, AuditLog::getTenantId);
-        List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(INSERTS_PER_ENTRY);
-        futures.add(auditLogDao.savePartitionsByTenantId(auditLogEntry));
-        futures.add(auditLogDao.saveByTenantId(auditLogEntry));
-        futures.add(auditLogDao.saveByTenantIdAndEntityId(auditLogEntry));
-        futures.add(auditLogDao.saveByTenantIdAndCustomerId(auditLogEntry));
-        futures.add(auditLogDao.saveByTenantIdAndUserId(auditLogEntry));
+        ListenableFuture<Void> future = auditLogDao.saveAsync(auditLogEntry);
 
         auditLogSink.logAction(auditLogEntry);
 
-        return Futures.allAsList(futures);
+        return future;
     }
 
     private DataValidator<AuditLog> auditLogValidator =
@@ -15,13 +15,14 @@
  */
 package org.thingsboard.server.dao.audit;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
-import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
@@ -29,7 +30,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
-import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.audit.ActionType;
 import org.thingsboard.server.common.data.audit.AuditLog;
 import org.thingsboard.server.common.data.id.CustomerId;
@@ -41,10 +41,12 @@ import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.nosql.AuditLogEntity;
 import org.thingsboard.server.dao.nosql.CassandraAbstractSearchTimeDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.timeseries.NoSqlTsPartitionDate;
 import org.thingsboard.server.dao.util.NoSqlDao;
 
-import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.time.Instant;
@@ -53,12 +55,15 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
@@ -75,6 +80,9 @@ public class CassandraAuditLogDao extends CassandraAbstractSearchTimeDao<AuditLo
 
     private static final String INSERT_INTO = "INSERT INTO ";
 
+    // Cassandra rejects the batches larger than batch_size_fail_threshold_in_kb, which is 50 KB by default
+    private static final int MAX_BATCH_BODY_SIZE = 40 * 1024;
+
     @Autowired
     private Environment environment;
 
@@ -88,8 +96,6 @@ public class CassandraAuditLogDao extends CassandraAbstractSearchTimeDao<AuditLo
         return AUDIT_LOG_COLUMN_FAMILY_NAME;
     }
 
-    protected ExecutorService readResultsProcessingExecutor;
-
     @Value("${audit-log.by_tenant_partitioning}")
     private String partitioning;
     private NoSqlTsPartitionDate tsFormat;
@@ -103,6 +109,26 @@ public class CassandraAuditLogDao extends CassandraAbstractSearchTimeDao<AuditLo
     private PreparedStatement saveByTenantIdAndEntityIdStmt;
     private PreparedStatement saveByTenantIdAndCustomerIdStmt;
 
+    @Value("${cassandra.query.audit_logs_batch.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${cassandra.query.audit_logs_batch.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${cassandra.query.audit_logs_batch.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${cassandra.query.audit_logs_batch.batch_threads:1}")
+    private int batchThreads;
+
+    @Value("${cassandra.query.audit_logs_batch.max_queue_size:100000}")
+    private int maxQueueSize;
+
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    private TbSqlBlockingQueueWrapper<AuditLog> queue;
+
     private boolean isInstall() {
         return environment.acceptsProfiles("install");
     }
@@ -118,67 +144,112 @@ public class CassandraAuditLogDao extends CassandraAbstractSearchTimeDao<AuditLo
                 throw new RuntimeException("Failed to parse partitioning property: " + partitioning + "!");
             }
         }
-        readResultsProcessingExecutor = Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName("audit-log"));
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Audit logs")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .maxQueueSize(maxQueueSize)
+                .build();
+        queue = new TbSqlBlockingQueueWrapper<>(params, v -> v.getTenantId().hashCode(), batchThreads);
+        queue.init(logExecutor, this::saveBatch);
     }
 
     @PreDestroy
-    public void stopExecutor() {
-        if (readResultsProcessingExecutor != null) {
-            readResultsProcessingExecutor.shutdownNow();
+    public void destroy() {
+        if (queue != null) {
+            queue.destroy();
         }
     }
 
-    private <T> ListenableFuture<T> getFuture(ResultSetFuture future, java.util.function.Function<ResultSet, T> transformer) {
-        return Futures.transform(future, new Function<ResultSet, T>() {
-            @Nullable
-            @Override
-            public T apply(@Nullable ResultSet input) {
-                return transformer.apply(input);
-            }
-        }, readResultsProcessingExecutor);
-    }
-
     @Override
-    public ListenableFuture<Void> saveByTenantId(AuditLog auditLog) {
-        log.debug("Save saveByTenantId [{}] ", auditLog);
+    public ListenableFuture<Void> saveAsync(AuditLog auditLog) {
+        log.debug("Save audit log [{}] ", auditLog);
+        return queue.add(auditLog);
+    }
 
+    /**
+     * Writes the audit logs of each partition of each audit log table with unlogged batches,
+     * which are applied by the replicas of the partition at once.
+     */
+    private void saveBatch(List<AuditLog> auditLogs) {
         long partition = toPartitionTs(LocalDate.now().atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli());
-        BoundStatement stmt = getSaveByTenantStmt().bind();
-        stmt = setSaveStmtVariables(stmt, auditLog, partition);
-        return getFuture(executeAsyncWrite(auditLog.getTenantId(), stmt), rs -> null);
+        Map<List<Object>, List<AuditLog>> partitions = new LinkedHashMap<>();
+        for (AuditLog auditLog : auditLogs) {
+            UUID tenantId = auditLog.getTenantId().getId();
+            addToPartition(partitions, auditLog, AUDIT_LOG_BY_TENANT_ID_CF, tenantId, partition);
+            addToPartition(partitions, auditLog, AUDIT_LOG_BY_ENTITY_ID_CF, tenantId, auditLog.getEntityId().getEntityType(), auditLog.getEntityId().getId());
+            if (auditLog.getCustomerId() != null) {
+                addToPartition(partitions, auditLog, AUDIT_LOG_BY_CUSTOMER_ID_CF, tenantId, auditLog.getCustomerId().getId());
+            }
+            addToPartition(partitions, auditLog, AUDIT_LOG_BY_USER_ID_CF, tenantId, auditLog.getUserId().getId());
+        }
+        List<ResultSetFuture> futures = new ArrayList<>();
+        Set<UUID> tenantIds = new HashSet<>();
+        for (Map.Entry<List<Object>, List<AuditLog>> entry : partitions.entrySet()) {
+            String cfName = (String) entry.getKey().get(0);
+            TenantId tenantId = entry.getValue().get(0).getTenantId();
+            tenantIds.add(tenantId.getId());
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            int batchBodySize = 0;
+            for (AuditLog auditLog : entry.getValue()) {
+                int bodySize = getBodySize(auditLog);
+                if (batch.size() > 0 && batchBodySize + bodySize > MAX_BATCH_BODY_SIZE) {
+                    futures.add(executeBatch(tenantId, batch));
+                    batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    batchBodySize = 0;
+                }
+                batch.add(getSaveStmt(cfName, auditLog, partition));
+                batchBodySize += bodySize;
+            }
+            futures.add(executeBatch(tenantId, batch));
+        }
+        for (UUID tenantId : tenantIds) {
+            BoundStatement stmt = getPartitionInsertStmt().bind()
+                    .setUUID(0, tenantId)
+                    .setLong(1, partition);
+            futures.add(executeAsyncWrite(new TenantId(tenantId), stmt));
+        }
+        try {
+            Futures.allAsList(futures).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Could not save AuditLog batch", e);
+        }
     }
 
-    @Override
-    public ListenableFuture<Void> saveByTenantIdAndEntityId(AuditLog auditLog) {
-        log.debug("Save saveByTenantIdAndEntityId [{}] ", auditLog);
-
-        BoundStatement stmt = getSaveByTenantIdAndEntityIdStmt().bind();
-        stmt = setSaveStmtVariables(stmt, auditLog, -1);
-        return getFuture(executeAsyncWrite(auditLog.getTenantId(), stmt), rs -> null);
+    private void addToPartition(Map<List<Object>, List<AuditLog>> partitions, AuditLog auditLog, Object... partitionKey) {
+        partitions.computeIfAbsent(Arrays.asList(partitionKey), k -> new ArrayList<>()).add(auditLog);
     }
 
-    @Override
-    public ListenableFuture<Void> saveByTenantIdAndCustomerId(AuditLog auditLog) {
-        log.debug("Save saveByTenantIdAndCustomerId [{}] ", auditLog);
-
-        BoundStatement stmt = getSaveByTenantIdAndCustomerIdStmt().bind();
-        stmt = setSaveStmtVariables(stmt, auditLog, -1);
-        return getFuture(executeAsyncWrite(auditLog.getTenantId(), stmt), rs -> null);
+    private int getBodySize(AuditLog auditLog) {
+        int size = auditLog.getActionData() != null ? auditLog.getActionData().toString().length() : 0;
+        return size + (auditLog.getActionFailureDetails() != null ? auditLog.getActionFailureDetails().length() : 0);
     }
 
-    @Override
-    public ListenableFuture<Void> saveByTenantIdAndUserId(AuditLog auditLog) {
-        log.debug("Save saveByTenantIdAndUserId [{}] ", auditLog);
+    private ResultSetFuture executeBatch(TenantId tenantId, BatchStatement batch) {
+        Statement statement = batch.size() == 1 ? batch.getStatements().iterator().next() : batch;
+        return executeAsyncWrite(tenantId, statement);
+    }
 
-        BoundStatement stmt = getSaveByTenantIdAndUserIdStmt().bind();
-        stmt = setSaveStmtVariables(stmt, auditLog, -1);
-        return getFuture(executeAsyncWrite(auditLog.getTenantId(), stmt), rs -> null);
+    private BoundStatement getSaveStmt(String cfName, AuditLog auditLog, long partition) {
+        switch (cfName) {
+            case AUDIT_LOG_BY_TENANT_ID_CF:
+                return setSaveStmtVariables(getSaveByTenantStmt().bind(), auditLog, partition);
+            case AUDIT_LOG_BY_ENTITY_ID_CF:
+                return setSaveStmtVariables(getSaveByTenantIdAndEntityIdStmt().bind(), auditLog, -1);
+            case AUDIT_LOG_BY_CUSTOMER_ID_CF:
+                return setSaveStmtVariables(getSaveByTenantIdAndCustomerIdStmt().bind(), auditLog, -1);
+            case AUDIT_LOG_BY_USER_ID_CF:
+                return setSaveStmtVariables(getSaveByTenantIdAndUserIdStmt().bind(), auditLog, -1);
+            default:
+                throw new IllegalArgumentException("Unsupported audit log table: " + cfName);
+        }
     }
 
     private BoundStatement setSaveStmtVariables(BoundStatement stmt, AuditLog auditLog, long partition) {
         stmt.setUUID(0, auditLog.getId().getId())
                 .setUUID(1, auditLog.getTenantId().getId())
-                .setUUID(2, auditLog.getCustomerId().getId())
+                .setUUID(2, auditLog.getCustomerId() != null ? auditLog.getCustomerId().getId() : null)
                 .setUUID(3, auditLog.getEntityId().getId())
                 .setString(4, auditLog.getEntityId().getEntityType().name())
                 .setString(5, auditLog.getEntityName())
@@ -194,18 +265,6 @@ public class CassandraAuditLogDao extends CassandraAbstractSearchTimeDao<AuditLo
         return stmt;
     }
 
-    @Override
-    public ListenableFuture<Void> savePartitionsByTenantId(AuditLog auditLog) {
-        log.debug("Save savePartitionsByTenantId [{}] ", auditLog);
-
-        long partition = toPartitionTs(LocalDate.now().atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli());
-
-        BoundStatement stmt = getPartitionInsertStmt().bind();
-        stmt = stmt.setUUID(0, auditLog.getTenantId().getId())
-                .setLong(1, partition);
-        return getFuture(executeAsyncWrite(auditLog.getTenantId(), stmt), rs -> null);
-    }
-
     private PreparedStatement getSaveByTenantStmt() {
         if (saveByTenantStmt == null) {
             saveByTenantStmt = getSaveByTenantIdAndCFName(ModelConstants.AUDIT_LOG_BY_TENANT_ID_CF, true);
@@ -34,6 +34,11 @@ import org.springframework.util.Assert;
 import org.thingsboard.server.common.data.id.EntityId;
 import redis.clients.jedis.JedisPoolConfig;
 
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.thingsboard.server.common.data.CacheConstants.ATTRIBUTES_CACHE;
+
 @Configuration
 @ConditionalOnProperty(prefix = "cache", value = "type", havingValue = "redis", matchIfMissing = false)
 @EnableCaching
@@ -73,6 +78,9 @@ public abstract class TBRedisCacheConfiguration {
     @Value("${redis.pool_config.blockWhenExhausted}")
     private boolean blockWhenExhausted;
 
+    @Value("${redis.ttl.attributes:5}")
+    private long attributesTtlMinutes;
+
     @Bean
     public RedisConnectionFactory redisConnectionFactory() {
         return loadFactory();
@@ -86,7 +94,9 @@ public abstract class TBRedisCacheConfiguration {
         RedisCacheConfiguration.registerDefaultConverters(redisConversionService);
         registerDefaultConverters(redisConversionService);
         RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig().withConversionService(redisConversionService);
-        return RedisCacheManager.builder(cf).cacheDefaults(configuration).build();
+        return RedisCacheManager.builder(cf).cacheDefaults(configuration)
+                .withInitialCacheConfigurations(Collections.singletonMap(ATTRIBUTES_CACHE, configuration.entryTtl(Duration.ofMinutes(attributesTtlMinutes))))
+                .build();
     }
 
     @Bean
@@ -15,7 +15,9 @@
  */
 package org.thingsboard.server.dao.event;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
@@ -25,6 +27,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.DataConstants;
@@ -37,10 +40,18 @@ import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.nosql.EventEntity;
 import org.thingsboard.server.dao.nosql.CassandraAbstractSearchTimeDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.util.NoSqlDao;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -58,6 +69,9 @@ import static org.thingsboard.server.dao.model.ModelConstants.NULL_UUID;
 @NoSqlDao
 public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventEntity, Event> implements EventDao {
 
+    // Cassandra rejects the batches larger than batch_size_fail_threshold_in_kb, which is 50 KB by default
+    private static final int MAX_BATCH_BODY_SIZE = 40 * 1024;
+
     private final TenantId systemTenantId = new TenantId(NULL_UUID);
 
     @Override
@@ -76,17 +90,60 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
     @Value("${cassandra.query.debug_events_ttl:0}")
     private int debugEventsTtl;
 
+    @Value("${cassandra.query.events_batch.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${cassandra.query.events_batch.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${cassandra.query.events_batch.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${cassandra.query.events_batch.batch_threads:3}")
+    private int batchThreads;
+
+    @Value("${cassandra.query.events_batch.max_queue_size:100000}")
+    private int maxQueueSize;
+
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    private TbSqlBlockingQueueWrapper<EventEntity> queue;
+
+    @PostConstruct
+    private void initQueue() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Events")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .maxQueueSize(maxQueueSize)
+                .build();
+        queue = new TbSqlBlockingQueueWrapper<>(params, v -> v.getEntityId().hashCode(), batchThreads);
+        queue.init(logExecutor, this::saveBatch);
+    }
+
+    @PreDestroy
+    private void destroyQueue() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
     @Override
     public Event save(TenantId tenantId, Event event) {
-        try {
-            return saveAsync(event).get();
-        } catch (InterruptedException | ExecutionException e) {
-            throw new IllegalStateException("Could not save EventEntity", e);
-        }
+        prepareEvent(event);
+        return save(event.getTenantId(), new EventEntity(event), false, eventsTtl).orElse(null);
     }
 
     @Override
     public ListenableFuture<Event> saveAsync(Event event) {
+        prepareEvent(event);
+        EventEntity entity = new EventEntity(event);
+        return Futures.transform(queue.add(entity), v -> DaoUtil.getData(entity), MoreExecutors.directExecutor());
+    }
+
+    private void prepareEvent(Event event) {
         log.debug("Save event [{}] ", event);
         if (event.getTenantId() == null) {
             log.trace("Save system event with predefined id {}", systemTenantId);
@@ -98,8 +155,6 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
         if (StringUtils.isEmpty(event.getUid())) {
             event.setUid(event.getId().toString());
         }
-        ListenableFuture<Optional<Event>> optionalSave = saveAsync(event.getTenantId(), new EventEntity(event), false, eventsTtl);
-        return Futures.transform(optionalSave, opt -> opt.orElse(null), MoreExecutors.directExecutor());
     }
 
     @Override
@@ -183,7 +238,57 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
         }
     }
 
+    /**
+     * Writes the events of each partition with unlogged batches, which are applied by the replicas of the partition at once.
+     */
+    private void saveBatch(List<EventEntity> entities) {
+        Map<List<Object>, List<EventEntity>> partitions = new LinkedHashMap<>();
+        for (EventEntity entity : entities) {
+            List<Object> partitionKey = Arrays.asList(entity.getTenantId(), entity.getEntityType(), entity.getEntityId());
+            partitions.computeIfAbsent(partitionKey, k -> new ArrayList<>()).add(entity);
+        }
+        List<ResultSetFuture> futures = new ArrayList<>();
+        for (List<EventEntity> partition : partitions.values()) {
+            TenantId tenantId = new TenantId(partition.get(0).getTenantId());
+            BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            int batchBodySize = 0;
+            for (EventEntity entity : partition) {
+                int bodySize = entity.getBody() != null ? entity.getBody().toString().length() : 0;
+                if (batch.size() > 0 && batchBodySize + bodySize > MAX_BATCH_BODY_SIZE) {
+                    futures.add(executeBatch(tenantId, batch));
+                    batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    batchBodySize = 0;
+                }
+                batch.add(getInsert(entity, false, eventsTtl));
+                batchBodySize += bodySize;
+            }
+            futures.add(executeBatch(tenantId, batch));
+        }
+        try {
+            Futures.allAsList(futures).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Could not save EventEntity batch", e);
+        }
+    }
+
+    private ResultSetFuture executeBatch(TenantId tenantId, BatchStatement batch) {
+        Statement statement = batch.size() == 1 ? batch.getStatements().iterator().next() : batch;
+        return executeAsyncWrite(tenantId, statement);
+    }
+
     private ListenableFuture<Optional<Event>> saveAsync(TenantId tenantId, EventEntity entity, boolean ifNotExists, int ttl) {
+        Insert insert = getInsert(entity, ifNotExists, ttl);
+        ResultSetFuture resultSetFuture = executeAsyncWrite(tenantId, insert);
+        return Futures.transform(resultSetFuture, rs -> {
+            if (rs.wasApplied()) {
+                return Optional.of(DaoUtil.getData(entity));
+            } else {
+                return Optional.empty();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private Insert getInsert(EventEntity entity, boolean ifNotExists, int ttl) {
         if (entity.getUuid() == null) {
             entity.setUuid(UUIDs.timeBased());
         }
@@ -206,13 +311,6 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
         if (selectedTtl > 0) {
             insert.using(ttl(selectedTtl));
         }
-        ResultSetFuture resultSetFuture = executeAsyncWrite(tenantId, insert);
-        return Futures.transform(resultSetFuture, rs -> {
-            if (rs.wasApplied()) {
-                return Optional.of(DaoUtil.getData(entity));
-            } else {
-                return Optional.empty();
-            }
-        }, MoreExecutors.directExecutor());
+        return insert;
     }
 }
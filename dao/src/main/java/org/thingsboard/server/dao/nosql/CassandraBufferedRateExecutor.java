@@ -28,6 +28,7 @@ import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.dao.util.AbstractBufferedRateExecutor;
 import org.thingsboard.server.dao.util.AsyncTaskContext;
 import org.thingsboard.server.dao.util.NoSqlAnyDao;
+import org.thingsboard.server.dao.util.TenantQueueStats;
 
 import javax.annotation.PreDestroy;
 import java.util.HashMap;
@@ -57,21 +58,26 @@ public class CassandraBufferedRateExecutor extends AbstractBufferedRateExecutor<
             @Value("${cassandra.query.tenant_rate_limits.enabled}") boolean tenantRateLimitsEnabled,
             @Value("${cassandra.query.tenant_rate_limits.configuration}") String tenantRateLimitsConfiguration,
             @Value("${cassandra.query.tenant_rate_limits.print_tenant_names}") boolean printTenantNames,
-            @Value("${cassandra.query.print_queries_freq:0}") int printQueriesFreq) {
-        super(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs, tenantRateLimitsEnabled, tenantRateLimitsConfiguration, printQueriesFreq);
+            @Value("${cassandra.query.print_queries_freq:0}") int printQueriesFreq,
+            @Value("${cassandra.query.dispatcher_mode:queue}") String dispatcherMode,
+            @Value("${cassandra.query.fair.tenant_buffer_size:20000}") int tenantQueueLimit,
+            @Value("${cassandra.query.fair.default_weight:1}") int defaultTenantWeight,
+            @Value("${cassandra.query.fair.weights:}") String tenantWeightsConfiguration) {
+        super(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs, tenantRateLimitsEnabled, tenantRateLimitsConfiguration, printQueriesFreq,
+                dispatcherMode, tenantQueueLimit, defaultTenantWeight, tenantWeightsConfiguration);
         this.printTenantNames = printTenantNames;
     }
 
     @Scheduled(fixedDelayString = "${cassandra.query.rate_limit_print_interval_ms}")
     public void printStats() {
         int queueSize = getQueueSize();
-        int totalAddedValue = totalAdded.getAndSet(0);
-        int totalLaunchedValue = totalLaunched.getAndSet(0);
-        int totalReleasedValue = totalReleased.getAndSet(0);
-        int totalFailedValue = totalFailed.getAndSet(0);
-        int totalExpiredValue = totalExpired.getAndSet(0);
-        int totalRejectedValue = totalRejected.getAndSet(0);
-        int totalRateLimitedValue = totalRateLimited.getAndSet(0);
+        long totalAddedValue = totalAdded.sumThenReset();
+        long totalLaunchedValue = totalLaunched.sumThenReset();
+        long totalReleasedValue = totalReleased.sumThenReset();
+        long totalFailedValue = totalFailed.sumThenReset();
+        long totalExpiredValue = totalExpired.sumThenReset();
+        long totalRejectedValue = totalRejected.sumThenReset();
+        long totalRateLimitedValue = totalRateLimited.sumThenReset();
         int rateLimitedTenantsValue = rateLimitedTenants.size();
         int concurrencyLevelValue = concurrencyLevel.get();
         if (queueSize > 0 || totalAddedValue > 0 || totalLaunchedValue > 0 || totalReleasedValue > 0 ||
@@ -85,20 +91,33 @@ public class CassandraBufferedRateExecutor extends AbstractBufferedRateExecutor<
 
         rateLimitedTenants.forEach(((tenantId, counter) -> {
             if (printTenantNames) {
-                String name = tenantNamesCache.computeIfAbsent(tenantId, tId -> {
-                    try {
-                        return entityService.fetchEntityNameAsync(TenantId.SYS_TENANT_ID, tenantId).get();
-                    } catch (Exception e) {
-                        log.error("[{}] Failed to get tenant name", tenantId, e);
-                        return "N/A";
-                    }
-                });
-                log.info("[{}][{}] Rate limited requests: {}", tenantId, name, counter);
+                log.info("[{}][{}] Rate limited requests: {}", tenantId, getTenantName(tenantId), counter);
             } else {
                 log.info("[{}] Rate limited requests: {}", tenantId, counter);
             }
         }));
         rateLimitedTenants.clear();
+
+        for (TenantQueueStats stats : getTenantQueueStats()) {
+            if (printTenantNames) {
+                log.info("[{}][{}] Tenant queueSize [{}] launched [{}] avgWaitTime [{}] maxWaitTime [{}]", stats.getTenantId(), getTenantName(stats.getTenantId()),
+                        stats.getQueueSize(), stats.getLaunched(), stats.getAvgWaitTime(), stats.getMaxWaitTime());
+            } else {
+                log.info("[{}] Tenant queueSize [{}] launched [{}] avgWaitTime [{}] maxWaitTime [{}]", stats.getTenantId(),
+                        stats.getQueueSize(), stats.getLaunched(), stats.getAvgWaitTime(), stats.getMaxWaitTime());
+            }
+        }
+    }
+
+    private String getTenantName(TenantId tenantId) {
+        return tenantNamesCache.computeIfAbsent(tenantId, tId -> {
+            try {
+                return entityService.fetchEntityNameAsync(TenantId.SYS_TENANT_ID, tenantId).get();
+            } catch (Exception e) {
+                log.error("[{}] Failed to get tenant name", tenantId, e);
+                return "N/A";
+            }
+        });
     }
 
     @PreDestroy
@@ -23,7 +23,9 @@ import com.datastax.driver.core.Row;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.EntityType;
@@ -32,6 +34,7 @@ import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.type.RelationTypeGroupCodec;
@@ -43,6 +46,8 @@ import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 
@@ -121,6 +126,36 @@ public class BaseRelationDao extends CassandraAbstractAsyncDao implements Relati
         return executeAsyncRead(tenantId, to, stmt);
     }
 
+    @Override
+    public ListenableFuture<List<EntityRelation>> findAllByFromIn(TenantId tenantId, List<EntityId> from, RelationTypeGroup typeGroup) {
+        return findAllByIds(from, entityId -> findAllByFrom(tenantId, entityId, typeGroup));
+    }
+
+    @Override
+    public ListenableFuture<List<EntityRelation>> findAllByToIn(TenantId tenantId, List<EntityId> to, RelationTypeGroup typeGroup) {
+        return findAllByIds(to, entityId -> findAllByTo(tenantId, entityId, typeGroup));
+    }
+
+    private ListenableFuture<List<EntityRelation>> findAllByIds(List<EntityId> entityIds, Function<EntityId, ListenableFuture<List<EntityRelation>>> query) {
+        List<ListenableFuture<List<EntityRelation>>> futures = new ArrayList<>(entityIds.size());
+        entityIds.forEach(entityId -> futures.add(query.apply(entityId)));
+        return Futures.transform(Futures.allAsList(futures), relationLists -> {
+            List<EntityRelation> relations = new ArrayList<>();
+            relationLists.forEach(relations::addAll);
+            return relations;
+        }, MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public boolean isRecursiveQuerySupported() {
+        return false;
+    }
+
+    @Override
+    public ListenableFuture<List<LeveledEntityRelation>> findRelationsRecursively(TenantId tenantId, EntityId root, EntitySearchDirection direction, RelationTypeGroup typeGroup, int maxLevel) {
+        return Futures.immediateFailedFuture(new UnsupportedOperationException("Recursive relations query is not supported by Cassandra!"));
+    }
+
     @Override
     public ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         BoundStatement stmt = getCheckRelationStmt().bind()
@@ -195,6 +230,25 @@ public class BaseRelationDao extends CassandraAbstractAsyncDao implements Relati
         return getBooleanListenableFuture(future);
     }
 
+    @Override
+    public void deleteAndSaveRelations(TenantId tenantId, List<EntityRelation> relationsToDelete, List<EntityRelation> relationsToSave) {
+        try {
+            List<ResultSetFuture> deleteFutures = new ArrayList<>(relationsToDelete.size());
+            for (EntityRelation relation : relationsToDelete) {
+                BoundStatement stmt = getDeleteRelationStatement(tenantId, relation.getFrom(), relation.getTo(), relation.getType(), relation.getTypeGroup());
+                deleteFutures.add(executeAsyncWrite(tenantId, stmt));
+            }
+            Futures.allAsList(deleteFutures).get();
+            List<ResultSetFuture> saveFutures = new ArrayList<>(relationsToSave.size());
+            for (EntityRelation relation : relationsToSave) {
+                saveFutures.add(executeAsyncWrite(tenantId, getSaveRelationStatement(tenantId, relation)));
+            }
+            Futures.allAsList(saveFutures).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private BoundStatement getDeleteRelationStatement(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         BoundStatement stmt = getDeleteStmt().bind()
                 .setUUID(0, from.getId())
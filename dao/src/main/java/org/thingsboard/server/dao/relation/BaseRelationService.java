@@ -22,6 +22,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
@@ -44,14 +45,16 @@ import org.thingsboard.server.dao.exception.DataValidationException;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
 
 import static org.thingsboard.server.common.data.CacheConstants.RELATIONS_CACHE;
+import static org.thingsboard.server.common.data.CacheConstants.RELATION_ANCESTORS_CACHE;
 
 /**
  * Created by ashvayka on 28.04.17.
@@ -69,6 +72,9 @@ public class BaseRelationService implements RelationService {
     @Autowired
     private CacheManager cacheManager;
 
+    @Value("${sql.relations.recursive_query_enabled:false}")
+    private boolean recursiveQueryEnabled;
+
     @Override
     public ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing checkRelation [{}][{}][{}][{}]", from, to, relationType, typeGroup);
@@ -98,7 +104,8 @@ public class BaseRelationService implements RelationService {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.type, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.typeGroup, 'TO'}"),
-            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}")
+            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}"),
+            @CacheEvict(cacheNames = RELATION_ANCESTORS_CACHE, allEntries = true, condition = "#relation.typeGroup.name() == 'COMMON'")
     })
     @Override
     public boolean saveRelation(TenantId tenantId, EntityRelation relation) {
@@ -112,7 +119,8 @@ public class BaseRelationService implements RelationService {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.type, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.typeGroup, 'TO'}"),
-            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}")
+            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}"),
+            @CacheEvict(cacheNames = RELATION_ANCESTORS_CACHE, allEntries = true, condition = "#relation.typeGroup.name() == 'COMMON'")
     })
     @Override
     public ListenableFuture<Boolean> saveRelationAsync(TenantId tenantId, EntityRelation relation) {
@@ -126,7 +134,8 @@ public class BaseRelationService implements RelationService {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.type, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.typeGroup, 'TO'}"),
-            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}")
+            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}"),
+            @CacheEvict(cacheNames = RELATION_ANCESTORS_CACHE, allEntries = true, condition = "#relation.typeGroup.name() == 'COMMON'")
     })
     @Override
     public boolean deleteRelation(TenantId tenantId, EntityRelation relation) {
@@ -140,7 +149,8 @@ public class BaseRelationService implements RelationService {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.type, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.typeGroup, 'TO'}"),
-            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}")
+            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.to, #relation.type, #relation.typeGroup, 'TO'}"),
+            @CacheEvict(cacheNames = RELATION_ANCESTORS_CACHE, allEntries = true, condition = "#relation.typeGroup.name() == 'COMMON'")
     })
     @Override
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation) {
@@ -154,7 +164,8 @@ public class BaseRelationService implements RelationService {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#from, #relationType, #typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#from, #typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#to, #typeGroup, 'TO'}"),
-            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#to, #relationType, #typeGroup, 'TO'}")
+            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#to, #relationType, #typeGroup, 'TO'}"),
+            @CacheEvict(cacheNames = RELATION_ANCESTORS_CACHE, allEntries = true, condition = "#typeGroup.name() == 'COMMON'")
     })
     @Override
     public boolean deleteRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
@@ -168,7 +179,8 @@ public class BaseRelationService implements RelationService {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#from, #relationType, #typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#from, #typeGroup, 'FROM'}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#to, #typeGroup, 'TO'}"),
-            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#to, #relationType, #typeGroup, 'TO'}")
+            @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#to, #relationType, #typeGroup, 'TO'}"),
+            @CacheEvict(cacheNames = RELATION_ANCESTORS_CACHE, allEntries = true, condition = "#typeGroup.name() == 'COMMON'")
     })
     @Override
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
@@ -177,6 +189,21 @@ public class BaseRelationService implements RelationService {
         return relationDao.deleteRelationAsync(tenantId, from, to, relationType, typeGroup);
     }
 
+    @Override
+    public void deleteAndSaveRelations(TenantId tenantId, List<EntityRelation> relationsToDelete, List<EntityRelation> relationsToSave) {
+        log.trace("Executing deleteAndSaveRelations [{}][{}]", relationsToDelete, relationsToSave);
+        for (EntityRelation relation : relationsToDelete) {
+            validate(relation);
+        }
+        for (EntityRelation relation : relationsToSave) {
+            validate(relation);
+        }
+        relationDao.deleteAndSaveRelations(tenantId, relationsToDelete, relationsToSave);
+        Cache cache = cacheManager.getCache(RELATIONS_CACHE);
+        relationsToDelete.forEach(relation -> cacheEviction(relation, cache));
+        relationsToSave.forEach(relation -> cacheEviction(relation, cache));
+    }
+
     @Override
     public void deleteEntityRelations(TenantId tenantId, EntityId entityId) {
         try {
@@ -275,6 +302,10 @@ public class BaseRelationService implements RelationService {
         toTypeAndTypeGroup.add(relation.getTypeGroup());
         toTypeAndTypeGroup.add(EntitySearchDirection.TO.name());
         cache.evict(toTypeAndTypeGroup);
+
+        if (relation.getTypeGroup() == RelationTypeGroup.COMMON) {
+            cacheManager.getCache(RELATION_ANCESTORS_CACHE).clear();
+        }
     }
 
     @Cacheable(cacheNames = RELATIONS_CACHE, key = "{#from, #typeGroup, 'FROM'}")
@@ -463,7 +494,7 @@ public class BaseRelationService implements RelationService {
         int maxLvl = params.getMaxLevel() > 0 ? params.getMaxLevel() : Integer.MAX_VALUE;
 
         try {
-            ListenableFuture<Set<EntityRelation>> relationSet = findRelationsRecursively(tenantId, params.getEntityId(), params.getDirection(), params.getRelationTypeGroup(), maxLvl, params.isFetchLastLevelOnly(), new ConcurrentHashMap<>());
+            ListenableFuture<Set<EntityRelation>> relationSet = findRelationsRecursively(tenantId, params.getEntityId(), params.getDirection(), params.getRelationTypeGroup(), maxLvl, params.isFetchLastLevelOnly());
             return Futures.transform(relationSet, input -> {
                 List<EntityRelation> relations = new ArrayList<>();
                 if (filters == null || filters.isEmpty()) {
@@ -580,53 +611,97 @@ public class BaseRelationService implements RelationService {
     }
 
     private ListenableFuture<Set<EntityRelation>> findRelationsRecursively(final TenantId tenantId, final EntityId rootId, final EntitySearchDirection direction,
-                                                                           RelationTypeGroup relationTypeGroup, int lvl, boolean fetchLastLevelOnly,
-                                                                           final ConcurrentHashMap<EntityId, Boolean> uniqueMap) throws Exception {
-        if (lvl == 0) {
-            return Futures.immediateFuture(Collections.emptySet());
-        }
-        lvl--;
-        //TODO: try to remove this blocking operation
-        Set<EntityRelation> children = new HashSet<>(findRelations(tenantId, rootId, direction, relationTypeGroup).get());
-        Set<EntityId> childrenIds = new HashSet<>();
-        for (EntityRelation childRelation : children) {
-            log.trace("Found Relation: {}", childRelation);
-            EntityId childId;
-            if (direction == EntitySearchDirection.FROM) {
-                childId = childRelation.getTo();
-            } else {
-                childId = childRelation.getFrom();
-            }
-            if (uniqueMap.putIfAbsent(childId, Boolean.TRUE) == null) {
-                log.trace("Adding Relation: {}", childId);
-                if (childrenIds.add(childId)) {
-                    log.trace("Added Relation: {}", childId);
+                                                                           RelationTypeGroup relationTypeGroup, int maxLvl, boolean fetchLastLevelOnly) {
+        final RelationTypeGroup typeGroup = relationTypeGroup != null ? relationTypeGroup : RelationTypeGroup.COMMON;
+        if (recursiveQueryEnabled && maxLvl != Integer.MAX_VALUE && relationDao.isRecursiveQuerySupported()) {
+            return Futures.transform(relationDao.findRelationsRecursively(tenantId, rootId, direction, typeGroup, maxLvl), leveledRelations -> {
+                Set<EntityRelation> relations = new HashSet<>();
+                for (LeveledEntityRelation leveledRelation : leveledRelations) {
+                    if (!fetchLastLevelOnly || leveledRelation.getLevel() == maxLvl) {
+                        relations.add(leveledRelation.getRelation());
+                    }
                 }
-            }
-        }
-        List<ListenableFuture<Set<EntityRelation>>> futures = new ArrayList<>();
-        for (EntityId entityId : childrenIds) {
-            futures.add(findRelationsRecursively(tenantId, entityId, direction, relationTypeGroup, lvl, fetchLastLevelOnly, uniqueMap));
+                return relations;
+            }, MoreExecutors.directExecutor());
         }
-        //TODO: try to remove this blocking operation
-        List<Set<EntityRelation>> relations = Futures.successfulAsList(futures).get();
-        if (fetchLastLevelOnly && lvl > 0) {
-            children.clear();
+        Set<EntityId> visitedIds = new HashSet<>();
+        visitedIds.add(rootId);
+        return findRelationsByLevel(tenantId, Collections.singletonList(rootId), direction, typeGroup, maxLvl, fetchLastLevelOnly, visitedIds, new HashSet<>());
+    }
+
+    /**
+     * Breadth-first traversal: the relations of all entities of the level are fetched together,
+     * and the next level consists of the related entities that were not visited yet.
+     * Levels are processed one after another, so the visited ids and the result are not shared between threads.
+     */
+    private ListenableFuture<Set<EntityRelation>> findRelationsByLevel(final TenantId tenantId, final List<EntityId> levelIds, final EntitySearchDirection direction,
+                                                                       final RelationTypeGroup typeGroup, int lvl, boolean fetchLastLevelOnly,
+                                                                       final Set<EntityId> visitedIds, final Set<EntityRelation> result) {
+        if (lvl == 0 || levelIds.isEmpty()) {
+            return Futures.immediateFuture(result);
         }
-        relations.forEach(r -> r.forEach(children::add));
-        return Futures.immediateFuture(children);
+        final int nextLvl = lvl - 1;
+        return Futures.transformAsync(findRelations(tenantId, levelIds, direction, typeGroup), relations -> {
+            List<EntityId> nextLevelIds = new ArrayList<>();
+            for (EntityRelation relation : relations) {
+                log.trace("Found Relation: {}", relation);
+                EntityId childId = direction == EntitySearchDirection.FROM ? relation.getTo() : relation.getFrom();
+                if (visitedIds.add(childId)) {
+                    nextLevelIds.add(childId);
+                }
+            }
+            if (!fetchLastLevelOnly || nextLvl == 0) {
+                result.addAll(relations);
+            }
+            return findRelationsByLevel(tenantId, nextLevelIds, direction, typeGroup, nextLvl, fetchLastLevelOnly, visitedIds, result);
+        }, MoreExecutors.directExecutor());
     }
 
-    private ListenableFuture<List<EntityRelation>> findRelations(final TenantId tenantId, final EntityId rootId, final EntitySearchDirection direction, RelationTypeGroup relationTypeGroup) {
-        ListenableFuture<List<EntityRelation>> relations;
-        if (relationTypeGroup == null) {
-            relationTypeGroup = RelationTypeGroup.COMMON;
+    /**
+     * Takes the relations of the cached entities from the cache and fetches the rest with a single query.
+     */
+    private ListenableFuture<List<EntityRelation>> findRelations(final TenantId tenantId, final List<EntityId> entityIds, final EntitySearchDirection direction,
+                                                                 final RelationTypeGroup typeGroup) {
+        Cache cache = cacheManager.getCache(RELATIONS_CACHE);
+        List<EntityRelation> relations = new ArrayList<>();
+        List<EntityId> notCachedIds = new ArrayList<>();
+        for (EntityId entityId : entityIds) {
+            List<EntityRelation> fromCache = cache.get(getRelationsCacheKey(entityId, typeGroup, direction), List.class);
+            if (fromCache != null) {
+                relations.addAll(fromCache);
+            } else {
+                notCachedIds.add(entityId);
+            }
+        }
+        if (notCachedIds.isEmpty()) {
+            return Futures.immediateFuture(relations);
         }
+        ListenableFuture<List<EntityRelation>> relationsFuture;
         if (direction == EntitySearchDirection.FROM) {
-            relations = findByFromAsync(tenantId, rootId, relationTypeGroup);
+            relationsFuture = relationDao.findAllByFromIn(tenantId, notCachedIds, typeGroup);
         } else {
-            relations = findByToAsync(tenantId, rootId, relationTypeGroup);
+            relationsFuture = relationDao.findAllByToIn(tenantId, notCachedIds, typeGroup);
         }
-        return relations;
+        return Futures.transform(relationsFuture, notCachedRelations -> {
+            Map<EntityId, List<EntityRelation>> relationsByEntity = new HashMap<>();
+            notCachedIds.forEach(entityId -> relationsByEntity.put(entityId, new ArrayList<>()));
+            for (EntityRelation relation : notCachedRelations) {
+                List<EntityRelation> entityRelations = relationsByEntity.get(direction == EntitySearchDirection.FROM ? relation.getFrom() : relation.getTo());
+                if (entityRelations != null) {
+                    entityRelations.add(relation);
+                }
+            }
+            relationsByEntity.forEach((entityId, entityRelations) -> cache.putIfAbsent(getRelationsCacheKey(entityId, typeGroup, direction), entityRelations));
+            relations.addAll(notCachedRelations);
+            return relations;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static List<Object> getRelationsCacheKey(EntityId entityId, RelationTypeGroup typeGroup, EntitySearchDirection direction) {
+        List<Object> key = new ArrayList<>();
+        key.add(entityId);
+        key.add(typeGroup);
+        key.add(direction.name());
+        return key;
     }
 }
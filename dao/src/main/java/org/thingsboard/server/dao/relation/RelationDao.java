@@ -21,6 +21,7 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 
 import java.util.List;
@@ -38,6 +39,18 @@ public interface RelationDao {
 
     ListenableFuture<List<EntityRelation>> findAllByToAndType(TenantId tenantId, EntityId to, String relationType, RelationTypeGroup typeGroup);
 
+    ListenableFuture<List<EntityRelation>> findAllByFromIn(TenantId tenantId, List<EntityId> from, RelationTypeGroup typeGroup);
+
+    ListenableFuture<List<EntityRelation>> findAllByToIn(TenantId tenantId, List<EntityId> to, RelationTypeGroup typeGroup);
+
+    boolean isRecursiveQuerySupported();
+
+    /**
+     * Finds the relations up to maxLevel levels from the root with a single query.
+     * Each relation is returned once with the minimal level it was found on.
+     */
+    ListenableFuture<List<LeveledEntityRelation>> findRelationsRecursively(TenantId tenantId, EntityId root, EntitySearchDirection direction, RelationTypeGroup typeGroup, int maxLevel);
+
     ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
 
     ListenableFuture<EntityRelation> getRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
@@ -52,6 +65,11 @@ public interface RelationDao {
 
     boolean deleteRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
 
+    /**
+     * Deletes the relationsToDelete and then saves the relationsToSave with a single batch write.
+     */
+    void deleteAndSaveRelations(TenantId tenantId, List<EntityRelation> relationsToDelete, List<EntityRelation> relationsToSave);
+
     ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
 
     boolean deleteOutboundRelations(TenantId tenantId, EntityId entity);
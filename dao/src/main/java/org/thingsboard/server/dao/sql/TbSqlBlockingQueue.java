@@ -19,32 +19,54 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.dao.exception.BufferLimitException;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
 
-    private final BlockingQueue<TbSqlQueueElement<E>> queue = new LinkedBlockingQueue<>();
+    private static final long SHUTDOWN_TIMEOUT_MS = 10000;
+
+    private final BlockingQueue<TbSqlQueueElement<E>> queue;
     private final AtomicInteger addedCount = new AtomicInteger();
+    private final AtomicInteger droppedCount = new AtomicInteger();
     private final AtomicInteger savedCount = new AtomicInteger();
     private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger batchCount = new AtomicInteger();
+    private final AtomicLong saveTimeMs = new AtomicLong();
     private final TbSqlBlockingQueueParams params;
+    private final Function<E, ?> deduplicationKeyFunction;
 
     private ExecutorService executor;
     private ScheduledLogExecutorComponent logExecutor;
+    private volatile boolean stopped;
 
     public TbSqlBlockingQueue(TbSqlBlockingQueueParams params) {
+        this(params, null);
+    }
+
+    /**
+     * @param deduplicationKeyFunction if not null, only the last added element with the same key is saved within a batch.
+     *                                 Futures of the dropped elements are completed together with the batch.
+     */
+    public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, Function<E, ?> deduplicationKeyFunction) {
         this.params = params;
+        this.deduplicationKeyFunction = deduplicationKeyFunction;
+        this.queue = params.getMaxQueueSize() > 0 ? new LinkedBlockingQueue<>(params.getMaxQueueSize()) : new LinkedBlockingQueue<>();
     }
 
     @Override
@@ -56,7 +78,7 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
             int batchSize = params.getBatchSize();
             long maxDelay = params.getMaxDelay();
             List<TbSqlQueueElement<E>> entities = new ArrayList<>(batchSize);
-            while (!Thread.interrupted()) {
+            while (!Thread.interrupted() && !(stopped && queue.isEmpty())) {
                 try {
                     long currentTs = System.currentTimeMillis();
                     TbSqlQueueElement<E> attr = queue.poll(maxDelay, TimeUnit.MILLISECONDS);
@@ -68,10 +90,13 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     queue.drainTo(entities, batchSize - 1);
                     boolean fullPack = entities.size() == batchSize;
                     log.debug("[{}] Going to save {} entities", logName, entities.size());
-                    saveFunction.accept(entities.stream().map(TbSqlQueueElement::getEntity).collect(Collectors.toList()));
+                    long saveStartTs = System.currentTimeMillis();
+                    saveFunction.accept(toBatch(entities));
+                    saveTimeMs.addAndGet(System.currentTimeMillis() - saveStartTs);
+                    batchCount.incrementAndGet();
                     entities.forEach(v -> v.getFuture().set(null));
                     savedCount.addAndGet(entities.size());
-                    if (!fullPack) {
+                    if (!fullPack && !stopped) {
                         long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
                         if (remainingDelay > 0) {
                             Thread.sleep(remainingDelay);
@@ -93,25 +118,72 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
         });
 
         logExecutor.scheduleAtFixedRate(() -> {
-            if (queue.size() > 0 || addedCount.get() > 0 || savedCount.get() > 0 || failedCount.get() > 0) {
-                log.info("[{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]",
-                        params.getLogName(), queue.size(), addedCount.getAndSet(0), savedCount.getAndSet(0), failedCount.getAndSet(0));
+            if (queue.size() > 0 || addedCount.get() > 0 || savedCount.get() > 0 || failedCount.get() > 0 || droppedCount.get() > 0) {
+                int batches = batchCount.getAndSet(0);
+                long avgSaveTimeMs = batches > 0 ? saveTimeMs.getAndSet(0) / batches : 0;
+                log.info("[{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}] totalDropped [{}] batches [{}] avgBatchSaveTimeMs [{}]",
+                        params.getLogName(), queue.size(), addedCount.getAndSet(0), savedCount.getAndSet(0), failedCount.getAndSet(0),
+                        droppedCount.getAndSet(0), batches, avgSaveTimeMs);
             }
         }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
     }
 
+    private List<E> toBatch(List<TbSqlQueueElement<E>> elements) {
+        if (deduplicationKeyFunction == null) {
+            return elements.stream().map(TbSqlQueueElement::getEntity).collect(Collectors.toList());
+        }
+        Map<Object, E> lastEntities = new LinkedHashMap<>();
+        for (TbSqlQueueElement<E> element : elements) {
+            E entity = element.getEntity();
+            Object key = deduplicationKeyFunction.apply(entity);
+            lastEntities.remove(key);
+            lastEntities.put(key, entity);
+        }
+        return new ArrayList<>(lastEntities.values());
+    }
+
+    /**
+     * Saves the elements that are already in the queue before the writer thread is stopped.
+     * Elements that are not saved within the shutdown timeout are failed.
+     */
     @Override
     public void destroy() {
+        stopped = true;
         if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    log.warn("[{}] Failed to save {} entities within {} ms on shutdown", params.getLogName(), queue.size(), SHUTDOWN_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             executor.shutdownNow();
         }
+        failRemaining();
+    }
+
+    private void failRemaining() {
+        List<TbSqlQueueElement<E>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(element -> element.getFuture().setException(new IllegalStateException("Queue is stopped")));
     }
 
     @Override
     public ListenableFuture<Void> add(E element) {
         SettableFuture<Void> future = SettableFuture.create();
-        queue.add(new TbSqlQueueElement<>(future, element));
-        addedCount.incrementAndGet();
+        if (stopped) {
+            future.setException(new IllegalStateException("Queue is stopped"));
+        } else if (queue.offer(new TbSqlQueueElement<>(future, element))) {
+            addedCount.incrementAndGet();
+            // destroy() may have drained the queue between the check above and the offer
+            if (stopped && (executor == null || executor.isTerminated())) {
+                failRemaining();
+            }
+        } else {
+            droppedCount.incrementAndGet();
+            future.setException(new BufferLimitException());
+        }
         return future;
     }
 }
@@ -28,4 +28,6 @@ public class TbSqlBlockingQueueParams {
     private final int batchSize;
     private final long maxDelay;
     private final long statsPrintIntervalMs;
+    // Elements added while the queue is full are rejected. 0 means that the queue is not bounded
+    private final int maxQueueSize;
 }
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spreads elements over several {@link TbSqlBlockingQueue} shards, each with its own writer thread.
+ * Elements with the same hash code are always routed to the same shard, so updates of one entity are saved in order.
+ */
+@Slf4j
+public class TbSqlBlockingQueueWrapper<E> implements TbSqlQueue<E> {
+
+    private final CopyOnWriteArrayList<TbSqlBlockingQueue<E>> queues = new CopyOnWriteArrayList<>();
+    private final TbSqlBlockingQueueParams params;
+    private final Function<E, Integer> hashCodeFunction;
+    private final Function<E, ?> deduplicationKeyFunction;
+    private final int maxThreads;
+
+    public TbSqlBlockingQueueWrapper(TbSqlBlockingQueueParams params, Function<E, Integer> hashCodeFunction, int maxThreads) {
+        this(params, hashCodeFunction, maxThreads, null);
+    }
+
+    public TbSqlBlockingQueueWrapper(TbSqlBlockingQueueParams params, Function<E, Integer> hashCodeFunction, int maxThreads,
+                                     Function<E, ?> deduplicationKeyFunction) {
+        this.params = params;
+        this.hashCodeFunction = hashCodeFunction;
+        this.maxThreads = Math.max(1, maxThreads);
+        this.deduplicationKeyFunction = deduplicationKeyFunction;
+    }
+
+    @Override
+    public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction) {
+        for (int i = 0; i < maxThreads; i++) {
+            TbSqlBlockingQueueParams queueParams = maxThreads == 1 ? params : TbSqlBlockingQueueParams.builder()
+                    .logName(params.getLogName() + " #" + i)
+                    .batchSize(params.getBatchSize())
+                    .maxDelay(params.getMaxDelay())
+                    .statsPrintIntervalMs(params.getStatsPrintIntervalMs())
+                    .maxQueueSize(params.getMaxQueueSize())
+                    .build();
+            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(queueParams, deduplicationKeyFunction);
+            queues.add(queue);
+            queue.init(logExecutor, saveFunction);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        queues.forEach(TbSqlBlockingQueue::destroy);
+    }
+
+    @Override
+    public ListenableFuture<Void> add(E element) {
+        int queueIndex = element != null ? (hashCodeFunction.apply(element) & 0x7FFFFFFF) % maxThreads : 0;
+        return queues.get(queueIndex).add(element);
+    }
+}
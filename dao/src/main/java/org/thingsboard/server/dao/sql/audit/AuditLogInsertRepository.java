@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.UUIDConverter;
+import org.thingsboard.server.dao.model.sql.AuditLogEntity;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Saves the audit logs with multi-row inserts, supported by both PostgreSQL and HSQLDB.
+ * Each statement is limited to MAX_ROWS_PER_INSERT rows to stay under the PostgreSQL limit of 32767 bind parameters.
+ * If a statement fails, its rows are inserted one by one, so a single bad row doesn't drop the others.
+ */
+@Slf4j
+@SqlDao
+@Repository
+public class AuditLogInsertRepository {
+
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+
+    private static final String INSERT = "INSERT INTO audit_log (id, tenant_id, customer_id, entity_id, entity_type, entity_name, " +
+            "user_id, user_name, action_type, action_data, action_status, action_failure_details) VALUES ";
+    private static final String ROW_VALUES = "(" + String.join(",", Collections.nCopies(12, "?")) + ")";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void save(List<AuditLogEntity> entities) {
+        for (int i = 0; i < entities.size(); i += MAX_ROWS_PER_INSERT) {
+            List<AuditLogEntity> rows = entities.subList(i, Math.min(i + MAX_ROWS_PER_INSERT, entities.size()));
+            List<Object> args = new ArrayList<>(rows.size() * 12);
+            rows.forEach(entity -> addArgs(args, entity));
+            try {
+                jdbcTemplate.update(INSERT + String.join(",", Collections.nCopies(rows.size(), ROW_VALUES)), args.toArray());
+            } catch (DataAccessException e) {
+                log.warn("Failed to insert {} audit logs with a single statement, inserting them one by one", rows.size(), e);
+                saveOneByOne(rows);
+            }
+        }
+    }
+
+    private void saveOneByOne(List<AuditLogEntity> rows) {
+        for (AuditLogEntity entity : rows) {
+            List<Object> args = new ArrayList<>(12);
+            addArgs(args, entity);
+            try {
+                jdbcTemplate.update(INSERT + ROW_VALUES, args.toArray());
+            } catch (DataAccessException e) {
+                log.error("Failed to insert audit log [{}]", entity, e);
+            }
+        }
+    }
+
+    private static void addArgs(List<Object> args, AuditLogEntity entity) {
+        args.add(UUIDConverter.fromTimeUUID(entity.getUuid()));
+        args.add(entity.getTenantId());
+        args.add(entity.getCustomerId());
+        args.add(entity.getEntityId());
+        args.add(entity.getEntityType() != null ? entity.getEntityType().name() : null);
+        args.add(entity.getEntityName());
+        args.add(entity.getUserId());
+        args.add(entity.getUserName());
+        args.add(entity.getActionType() != null ? entity.getActionType().name() : null);
+        args.add(entity.getActionData() != null ? entity.getActionData().toString() : null);
+        args.add(entity.getActionStatus() != null ? entity.getActionStatus().name() : null);
+        args.add(entity.getActionFailureDetails());
+    }
+}
@@ -17,6 +17,7 @@ package org.thingsboard.server.dao.sql.audit;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -35,8 +36,13 @@ import org.thingsboard.server.dao.audit.AuditLogDao;
 import org.thingsboard.server.dao.model.sql.AuditLogEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
 import org.thingsboard.server.dao.sql.JpaAbstractSearchTimeDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,42 +57,62 @@ public class JpaAuditLogDao extends JpaAbstractDao<AuditLogEntity, AuditLog> imp
     @Autowired
     private AuditLogRepository auditLogRepository;
 
-    @Override
-    protected Class<AuditLogEntity> getEntityClass() {
-        return AuditLogEntity.class;
-    }
+    @Autowired
+    private AuditLogInsertRepository auditLogInsertRepository;
 
-    @Override
-    protected CrudRepository<AuditLogEntity, String> getCrudRepository() {
-        return auditLogRepository;
-    }
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
 
-    @Override
-    public ListenableFuture<Void> saveByTenantId(AuditLog auditLog) {
-        return service.submit(() -> {
-            save(auditLog.getTenantId(), auditLog);
-            return null;
-        });
+    @Value("${sql.audit_logs.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.audit_logs.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${sql.audit_logs.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${sql.audit_logs.batch_threads:1}")
+    private int batchThreads;
+
+    @Value("${sql.audit_logs.max_queue_size:100000}")
+    private int maxQueueSize;
+
+    private TbSqlBlockingQueueWrapper<AuditLogEntity> queue;
+
+    @PostConstruct
+    private void init() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Audit logs")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .maxQueueSize(maxQueueSize)
+                .build();
+        queue = new TbSqlBlockingQueueWrapper<>(params, v -> v.getTenantId().hashCode(), batchThreads);
+        queue.init(logExecutor, v -> auditLogInsertRepository.save(v));
     }
 
-    @Override
-    public ListenableFuture<Void> saveByTenantIdAndEntityId(AuditLog auditLog) {
-        return service.submit(() -> null);
+    @PreDestroy
+    private void destroy() {
+        if (queue != null) {
+            queue.destroy();
+        }
     }
 
     @Override
-    public ListenableFuture<Void> saveByTenantIdAndCustomerId(AuditLog auditLog) {
-        return service.submit(() -> null);
+    protected Class<AuditLogEntity> getEntityClass() {
+        return AuditLogEntity.class;
     }
 
     @Override
-    public ListenableFuture<Void> saveByTenantIdAndUserId(AuditLog auditLog) {
-        return service.submit(() -> null);
+    protected CrudRepository<AuditLogEntity, String> getCrudRepository() {
+        return auditLogRepository;
     }
 
     @Override
-    public ListenableFuture<Void> savePartitionsByTenantId(AuditLog auditLog) {
-        return service.submit(() -> null);
+    public ListenableFuture<Void> saveAsync(AuditLog auditLog) {
+        return queue.add(new AuditLogEntity(auditLog));
     }
 
     @Override
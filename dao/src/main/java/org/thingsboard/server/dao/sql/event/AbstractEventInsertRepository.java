@@ -18,7 +18,10 @@ package org.thingsboard.server.dao.sql.event;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
@@ -29,6 +32,9 @@ import org.thingsboard.server.dao.model.sql.EventEntity;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
 
 @Slf4j
 public abstract class AbstractEventInsertRepository implements EventInsertRepository {
@@ -39,6 +45,60 @@ public abstract class AbstractEventInsertRepository implements EventInsertReposi
     @Autowired
     protected PlatformTransactionManager transactionManager;
 
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void save(List<EventEntity> entities) {
+        TransactionStatus transaction = getTransactionStatus(TransactionDefinition.PROPAGATION_REQUIRED);
+        try {
+            jdbcTemplate.batchUpdate(getBatchInsertOrUpdateQuery(), new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setBatchValues(ps, entities.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return entities.size();
+                }
+            });
+        } catch (DataAccessException e) {
+            transactionManager.rollback(transaction);
+            log.warn("Failed to save {} events with a single batch, saving them one by one", entities.size(), e);
+            saveOneByOne(entities);
+            return;
+        } catch (RuntimeException e) {
+            transactionManager.rollback(transaction);
+            throw e;
+        }
+        transactionManager.commit(transaction);
+    }
+
+    /**
+     * Saves each event with its own statement, so a single bad event doesn't drop the rest of the batch.
+     */
+    private void saveOneByOne(List<EventEntity> entities) {
+        for (EventEntity entity : entities) {
+            try {
+                jdbcTemplate.update(getBatchInsertOrUpdateQuery(), ps -> setBatchValues(ps, entity));
+            } catch (DataAccessException e) {
+                log.error("Failed to save event [{}] of entity [{}][{}]", entity.getEventUid(), entity.getEntityType(), entity.getEntityId(), e);
+            }
+        }
+    }
+
+    private static void setBatchValues(PreparedStatement ps, EventEntity entity) throws SQLException {
+        ps.setString(1, UUIDConverter.fromTimeUUID(entity.getUuid()));
+        ps.setString(2, entity.getBody() != null ? entity.getBody().toString() : null);
+        ps.setString(3, entity.getEntityId());
+        ps.setString(4, entity.getEntityType().name());
+        ps.setString(5, entity.getEventType());
+        ps.setString(6, entity.getEventUid());
+        ps.setString(7, entity.getTenantId());
+        ps.setLong(8, entity.getTs());
+    }
+
     protected EventEntity saveAndGet(EventEntity entity, String insertOrUpdateOnPrimaryKeyConflict, String insertOrUpdateOnUniqueKeyConflict) {
         EventEntity eventEntity = null;
         TransactionStatus insertTransaction = getTransactionStatus(TransactionDefinition.PROPAGATION_REQUIRED);
@@ -67,6 +127,12 @@ public abstract class AbstractEventInsertRepository implements EventInsertReposi
     @Modifying
     protected abstract EventEntity doProcessSaveOrUpdate(EventEntity entity, String query);
 
+    /**
+     * Returns the query that inserts the event or updates the event with the same unique key,
+     * with the parameters in the order: id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts.
+     */
+    protected abstract String getBatchInsertOrUpdateQuery();
+
     protected Query getQuery(EventEntity entity, String query) {
         return entityManager.createNativeQuery(query, EventEntity.class)
                 .setParameter("id", UUIDConverter.fromTimeUUID(entity.getUuid()))
@@ -17,8 +17,12 @@ package org.thingsboard.server.dao.sql.event;
 
 import org.thingsboard.server.dao.model.sql.EventEntity;
 
+import java.util.List;
+
 public interface EventInsertRepository {
 
     EventEntity saveOrUpdate(EventEntity entity);
 
+    void save(List<EventEntity> entities);
+
 }
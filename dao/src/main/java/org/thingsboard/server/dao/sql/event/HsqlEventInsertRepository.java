@@ -32,6 +32,10 @@ public class HsqlEventInsertRepository extends AbstractEventInsertRepository {
     private static final String INSERT_OR_UPDATE_ON_P_KEY_CONFLICT = getInsertString(P_KEY_CONFLICT_STATEMENT);
     private static final String INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT = getInsertString(UNQ_KEY_CONFLICT_STATEMENT);
 
+    private static final String BATCH_INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT = "MERGE INTO event USING (VALUES ?, ?, ?, ?, ?, ?, ?, ?) I (id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) ON " + UNQ_KEY_CONFLICT_STATEMENT +
+            " WHEN MATCHED THEN UPDATE SET event.id = I.id, event.body = I.body, event.ts = I.ts" +
+            " WHEN NOT MATCHED THEN INSERT (id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) VALUES (I.id, I.body, I.entity_id, I.entity_type, I.event_type, I.event_uid, I.tenant_id, I.ts)";
+
     @Override
     public EventEntity saveOrUpdate(EventEntity entity) {
         return saveAndGet(entity, INSERT_OR_UPDATE_ON_P_KEY_CONFLICT, INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT);
@@ -43,6 +47,11 @@ public class HsqlEventInsertRepository extends AbstractEventInsertRepository {
         return entityManager.find(EventEntity.class, UUIDConverter.fromTimeUUID(entity.getUuid()));
     }
 
+    @Override
+    protected String getBatchInsertOrUpdateQuery() {
+        return BATCH_INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT;
+    }
+
     private static String getInsertString(String conflictStatement) {
         return "MERGE INTO event USING (VALUES :id, :body, :entity_id, :entity_type, :event_type, :event_uid, :tenant_id, :ts) I (id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) ON " + conflictStatement + " WHEN MATCHED THEN UPDATE SET event.id = I.id, event.body = I.body, event.entity_id = I.entity_id, event.entity_type = I.entity_type, event.event_type = I.event_type, event.event_uid = I.event_uid, event.tenant_id = I.tenant_id, event.ts = I.ts" +
                 " WHEN NOT MATCHED THEN INSERT (id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) VALUES (I.id, I.body, I.entity_id, I.entity_type, I.event_type, I.event_uid, I.tenant_id, I.ts)";
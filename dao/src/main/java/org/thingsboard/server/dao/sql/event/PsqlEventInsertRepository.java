@@ -36,6 +36,9 @@ public class PsqlEventInsertRepository extends AbstractEventInsertRepository {
     private static final String INSERT_OR_UPDATE_ON_P_KEY_CONFLICT = getInsertOrUpdateString(P_KEY_CONFLICT_STATEMENT, UPDATE_UNQ_KEY_STATEMENT);
     private static final String INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT = getInsertOrUpdateString(UNQ_KEY_CONFLICT_STATEMENT, UPDATE_P_KEY_STATEMENT);
 
+    private static final String BATCH_INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT = "INSERT INTO event (id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT " + UNQ_KEY_CONFLICT_STATEMENT + " DO UPDATE SET id = EXCLUDED.id, body = EXCLUDED.body, ts = EXCLUDED.ts";
+
     @Override
     public EventEntity saveOrUpdate(EventEntity entity) {
         return saveAndGet(entity, INSERT_OR_UPDATE_ON_P_KEY_CONFLICT, INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT);
@@ -47,6 +50,11 @@ public class PsqlEventInsertRepository extends AbstractEventInsertRepository {
 
     }
 
+    @Override
+    protected String getBatchInsertOrUpdateQuery() {
+        return BATCH_INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT;
+    }
+
     private static String getInsertOrUpdateString(String eventKeyStatement, String updateKeyStatement) {
         return "INSERT INTO event (id, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) VALUES (:id, :body, :entity_id, :entity_type, :event_type, :event_uid, :tenant_id, :ts) ON CONFLICT " + eventKeyStatement + " DO UPDATE SET body = :body, ts = :ts," + updateKeyStatement + " returning *";
     }
@@ -16,19 +16,69 @@
 package org.thingsboard.server.dao.sql.relation;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.thingsboard.server.dao.model.sql.RelationEntity;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
 
 @Slf4j
 public abstract class AbstractRelationInsertRepository implements RelationInsertRepository {
 
+    private static final String BATCH_DELETE = "DELETE FROM relation WHERE from_id = ? AND from_type = ? AND to_id = ? AND to_type = ? AND relation_type_group = ? AND relation_type = ?";
+
     @PersistenceContext
     protected EntityManager entityManager;
 
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void deleteAndSaveOrUpdate(List<RelationEntity> entitiesToDelete, List<RelationEntity> entitiesToSave) {
+        if (!entitiesToDelete.isEmpty()) {
+            jdbcTemplate.batchUpdate(BATCH_DELETE, getBatchSetter(entitiesToDelete, false));
+        }
+        if (!entitiesToSave.isEmpty()) {
+            jdbcTemplate.batchUpdate(getBatchInsertOrUpdateQuery(), getBatchSetter(entitiesToSave, true));
+        }
+    }
+
+    /**
+     * Returns the query with the parameters in the order of the relation table columns:
+     * from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info.
+     */
+    protected abstract String getBatchInsertOrUpdateQuery();
+
+    private BatchPreparedStatementSetter getBatchSetter(List<RelationEntity> entities, boolean setAdditionalInfo) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                RelationEntity entity = entities.get(i);
+                ps.setString(1, entity.getFromId());
+                ps.setString(2, entity.getFromType());
+                ps.setString(3, entity.getToId());
+                ps.setString(4, entity.getToType());
+                ps.setString(5, entity.getRelationTypeGroup());
+                ps.setString(6, entity.getRelationType());
+                if (setAdditionalInfo) {
+                    ps.setString(7, entity.getAdditionalInfo() != null ? entity.getAdditionalInfo().toString() : null);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entities.size();
+            }
+        };
+    }
+
     protected Query getQuery(RelationEntity entity, String query) {
         Query nativeQuery = entityManager.createNativeQuery(query, RelationEntity.class);
         if (entity.getAdditionalInfo() == null) {
@@ -29,10 +29,12 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
 import org.thingsboard.server.dao.model.sql.RelationEntity;
+import org.thingsboard.server.dao.relation.LeveledEntityRelation;
 import org.thingsboard.server.dao.relation.RelationDao;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.sql.JpaAbstractSearchTimeDao;
@@ -40,7 +42,11 @@ import org.thingsboard.server.dao.util.SqlDao;
 
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 import static org.thingsboard.server.common.data.UUIDConverter.fromTimeUUID;
 
@@ -55,9 +61,14 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
     @Autowired
     private RelationRepository relationRepository;
 
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     @Autowired
     private RelationInsertRepository relationInsertRepository;
 
+    @Autowired
+    private RelationRecursiveRepository relationRecursiveRepository;
+
     @Override
     public ListenableFuture<List<EntityRelation>> findAllByFrom(TenantId tenantId, EntityId from, RelationTypeGroup typeGroup) {
         return service.submit(() -> DaoUtil.convertDataList(
@@ -96,6 +107,40 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
                         typeGroup.name())));
     }
 
+    @Override
+    public ListenableFuture<List<EntityRelation>> findAllByFromIn(TenantId tenantId, List<EntityId> from, RelationTypeGroup typeGroup) {
+        return service.submit(() -> findAllByIds(from, (fromType, fromIds) ->
+                relationRepository.findAllByRelationTypeGroupAndFromTypeAndFromIdIn(typeGroup.name(), fromType, fromIds)));
+    }
+
+    @Override
+    public ListenableFuture<List<EntityRelation>> findAllByToIn(TenantId tenantId, List<EntityId> to, RelationTypeGroup typeGroup) {
+        return service.submit(() -> findAllByIds(to, (toType, toIds) ->
+                relationRepository.findAllByRelationTypeGroupAndToTypeAndToIdIn(typeGroup.name(), toType, toIds)));
+    }
+
+    private List<EntityRelation> findAllByIds(List<EntityId> entityIds, BiFunction<String, Collection<String>, List<RelationEntity>> query) {
+        Map<String, List<String>> idsByType = entityIds.stream().collect(Collectors.groupingBy(entityId -> entityId.getEntityType().name(),
+                Collectors.mapping(entityId -> UUIDConverter.fromTimeUUID(entityId.getId()), Collectors.toList())));
+        List<EntityRelation> relations = new ArrayList<>();
+        idsByType.forEach((type, ids) -> {
+            for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+                relations.addAll(DaoUtil.convertDataList(query.apply(type, ids.subList(i, Math.min(i + MAX_IDS_PER_QUERY, ids.size())))));
+            }
+        });
+        return relations;
+    }
+
+    @Override
+    public boolean isRecursiveQuerySupported() {
+        return true;
+    }
+
+    @Override
+    public ListenableFuture<List<LeveledEntityRelation>> findRelationsRecursively(TenantId tenantId, EntityId root, EntitySearchDirection direction, RelationTypeGroup typeGroup, int maxLevel) {
+        return service.submit(() -> relationRecursiveRepository.findRelations(root, direction, typeGroup, maxLevel));
+    }
+
     @Override
     public ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         RelationCompositeKey key = getRelationCompositeKey(from, to, relationType, typeGroup);
@@ -153,6 +198,17 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
                 () -> deleteRelationIfExists(key));
     }
 
+    @Override
+    public void deleteAndSaveRelations(TenantId tenantId, List<EntityRelation> relationsToDelete, List<EntityRelation> relationsToSave) {
+        relationInsertRepository.deleteAndSaveOrUpdate(toEntities(relationsToDelete), toEntities(relationsToSave));
+    }
+
+    private List<RelationEntity> toEntities(List<EntityRelation> relations) {
+        List<RelationEntity> entities = new ArrayList<>(relations.size());
+        relations.forEach(relation -> entities.add(new RelationEntity(relation)));
+        return entities;
+    }
+
     private boolean deleteRelationIfExists(RelationCompositeKey key) {
         boolean relationExistsBeforeDelete = relationRepository.existsById(key);
         if (relationExistsBeforeDelete) {
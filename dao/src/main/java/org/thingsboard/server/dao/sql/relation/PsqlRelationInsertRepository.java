@@ -31,6 +31,10 @@ public class PsqlRelationInsertRepository extends AbstractRelationInsertReposito
             " VALUES (:fromId, :fromType, :toId, :toType, :relationTypeGroup, :relationType, :additionalInfo) " +
             "ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = :additionalInfo returning *";
 
+    private static final String BATCH_INSERT_ON_CONFLICT_DO_UPDATE = "INSERT INTO relation (from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = EXCLUDED.additional_info";
+
     @Override
     public RelationEntity saveOrUpdate(RelationEntity entity) {
         return processSaveOrUpdate(entity);
@@ -40,4 +44,9 @@ public class PsqlRelationInsertRepository extends AbstractRelationInsertReposito
     protected RelationEntity processSaveOrUpdate(RelationEntity entity) {
         return (RelationEntity) getQuery(entity, INSERT_ON_CONFLICT_DO_UPDATE).getSingleResult();
     }
+
+    @Override
+    protected String getBatchInsertOrUpdateQuery() {
+        return BATCH_INSERT_ON_CONFLICT_DO_UPDATE;
+    }
 }
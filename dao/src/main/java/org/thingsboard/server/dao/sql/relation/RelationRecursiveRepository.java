@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.UUIDConverter;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+import org.thingsboard.server.dao.model.sql.RelationEntity;
+import org.thingsboard.server.dao.relation.LeveledEntityRelation;
+import org.thingsboard.server.dao.util.SqlDao;
+import org.thingsboard.server.dao.util.mapping.JacksonUtil;
+
+import java.util.List;
+
+/**
+ * Walks the relations with the recursive common table expression, supported by both PostgreSQL and HSQLDB.
+ * UNION removes the rows that are found on the same level by different paths,
+ * and the level limit stops the walk over the cyclic relations.
+ */
+@SqlDao
+@Repository
+public class RelationRecursiveRepository {
+
+    private static final String COLUMNS = "from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info";
+
+    private static final String FROM_QUERY = buildQuery("from_id", "from_type", "to_id", "to_type");
+    private static final String TO_QUERY = buildQuery("to_id", "to_type", "from_id", "from_type");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public List<LeveledEntityRelation> findRelations(EntityId root, EntitySearchDirection direction, RelationTypeGroup typeGroup, int maxLevel) {
+        return jdbcTemplate.query(direction == EntitySearchDirection.FROM ? FROM_QUERY : TO_QUERY, (rs, rowNum) -> {
+            RelationEntity entity = new RelationEntity();
+            entity.setFromId(rs.getString("from_id"));
+            entity.setFromType(rs.getString("from_type"));
+            entity.setToId(rs.getString("to_id"));
+            entity.setToType(rs.getString("to_type"));
+            entity.setRelationTypeGroup(rs.getString("relation_type_group"));
+            entity.setRelationType(rs.getString("relation_type"));
+            String additionalInfo = rs.getString("additional_info");
+            if (additionalInfo != null) {
+                entity.setAdditionalInfo(JacksonUtil.toJsonNode(additionalInfo));
+            }
+            return new LeveledEntityRelation(entity.toData(), rs.getInt("lvl"));
+        }, UUIDConverter.fromTimeUUID(root.getId()), root.getEntityType().name(), typeGroup.name(), typeGroup.name(), maxLevel);
+    }
+
+    /**
+     * Builds the query that starts from the root in the rootId and rootType columns
+     * and continues from the entities in the childId and childType columns.
+     */
+    private static String buildQuery(String rootId, String rootType, String childId, String childType) {
+        return "WITH RECURSIVE related_relation(" + COLUMNS + ", lvl) AS (" +
+                "SELECT " + COLUMNS + ", CAST(1 AS INTEGER) FROM relation WHERE " + rootId + " = ? AND " + rootType + " = ? AND relation_type_group = ? " +
+                "UNION " +
+                "SELECT r.from_id, r.from_type, r.to_id, r.to_type, r.relation_type_group, r.relation_type, r.additional_info, CAST(rr.lvl + 1 AS INTEGER) " +
+                "FROM relation r INNER JOIN related_relation rr ON r." + rootId + " = rr." + childId + " AND r." + rootType + " = rr." + childType + " " +
+                "WHERE r.relation_type_group = ? AND rr.lvl < ?) " +
+                "SELECT " + COLUMNS + ", MIN(lvl) AS lvl FROM related_relation GROUP BY " + COLUMNS;
+    }
+}
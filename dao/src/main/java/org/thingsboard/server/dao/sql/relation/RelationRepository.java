@@ -22,6 +22,7 @@ import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
 import org.thingsboard.server.dao.model.sql.RelationEntity;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import java.util.Collection;
 import java.util.List;
 
 @SqlDao
@@ -49,6 +50,14 @@ public interface RelationRepository
     List<RelationEntity> findAllByFromIdAndFromType(String fromId,
                                                     String fromType);
 
+    List<RelationEntity> findAllByRelationTypeGroupAndFromTypeAndFromIdIn(String relationTypeGroup,
+                                                                         String fromType,
+                                                                         Collection<String> fromIds);
+
+    List<RelationEntity> findAllByRelationTypeGroupAndToTypeAndToIdIn(String relationTypeGroup,
+                                                                     String toType,
+                                                                     Collection<String> toIds);
+
     @Transactional
     RelationEntity save(RelationEntity entity);
 
@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -31,15 +32,17 @@ import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
-import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository;
 import org.thingsboard.server.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -54,7 +57,13 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     protected InsertTsRepository<TsKvEntity> insertRepository;
 
-    protected TbSqlBlockingQueue<TsKvEntity> tsQueue;
+    @Autowired
+    protected TsKvAggregationRepository aggregationRepository;
+
+    @Value("${sql.ts.single_query_aggregation:true}")
+    protected boolean singleQueryAggregation;
+
+    protected TbSqlBlockingQueueWrapper<TsKvEntity> tsQueue;
 
     @PostConstruct
     protected void init() {
@@ -65,7 +74,7 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .maxDelay(tsMaxDelay)
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .build();
-        tsQueue = new TbSqlBlockingQueue<>(tsParams);
+        tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, v -> v.getEntityId().hashCode(), tsBatchThreads);
         tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v));
     }
 
@@ -128,6 +137,8 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     protected ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, ReadTsKvQuery query) {
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
+        } else if (singleQueryAggregation) {
+            return getTskvEntriesFuture(findAllAndAggregateAsync(entityId, query));
         } else {
             long stepTs = query.getStartTs();
             List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
@@ -157,6 +168,29 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         return Futures.immediateFuture(DaoUtil.convertDataList(tsKvEntities));
     }
 
+    private ListenableFuture<List<Optional<TsKvEntry>>> findAllAndAggregateAsync(EntityId entityId, ReadTsKvQuery query) {
+        long startTs = query.getStartTs();
+        long interval = query.getInterval();
+        int bucketsCount = (int) ((query.getEndTs() - startTs + interval - 1) / interval);
+        if (bucketsCount <= 0) {
+            return Futures.immediateFuture(Collections.emptyList());
+        }
+        String key = query.getKey();
+        return service.submit(() -> {
+            List<Optional<TsKvEntry>> buckets = new ArrayList<>(Collections.nCopies(bucketsCount, Optional.empty()));
+            aggregationRepository.findAggregates(entityId.getId(), getOrSaveKeyId(key), query.getAggregation(), startTs, interval, bucketsCount,
+                    (bucket, entity) -> {
+                        if (entity.isNotEmpty()) {
+                            entity.setEntityId(entityId.getId());
+                            entity.setStrKey(key);
+                            entity.setTs(startTs + bucket * interval + interval / 2);
+                            buckets.set(bucket, Optional.of(DaoUtil.getData(entity)));
+                        }
+                    });
+            return buckets;
+        });
+    }
+
     private ListenableFuture<Optional<TsKvEntry>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
         List<CompletableFuture<TsKvEntity>> entitiesFutures = new ArrayList<>();
         switchAggregation(entityId, key, startTs, endTs, aggregation, entitiesFutures);
@@ -0,0 +1,243 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sqlts.insert.dictionary.InsertTsKvDictionaryRepository;
+import org.thingsboard.server.dao.util.SqlTsAnyDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps both directions of the ts_kv_dictionary mapping in memory.
+ * Lookups of known keys never take a lock. Unknown keys are handed over to a single writer thread
+ * that creates them in batches, so concurrent misses of the same key share one database round trip.
+ * A failed batch is retried key by key, so a single bad key does not fail the other keys of the batch.
+ */
+@Slf4j
+@Component
+@SqlTsAnyDao
+public class DefaultTsKvDictionaryService implements TsKvDictionaryService {
+
+    private static final String LOG_NAME = "TS Dictionary";
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final ConcurrentMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> keys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Integer>> pendingKeys = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> creationQueue = new LinkedBlockingQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchesTimeMs = new LongAdder();
+
+    @Autowired
+    private TsKvDictionaryRepository dictionaryRepository;
+
+    @Autowired
+    private InsertTsKvDictionaryRepository insertDictionaryRepository;
+
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    @Value("${sql.ts_dictionary.preload:true}")
+    private boolean preload;
+
+    @Value("${sql.ts_dictionary.batch_size:100}")
+    private int batchSize;
+
+    @Value("${sql.ts_dictionary.timeout_ms:30000}")
+    private long timeoutMs;
+
+    @Value("${sql.ts_dictionary.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        if (preload) {
+            preloadDictionary();
+        }
+        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("sql-ts-dictionary"));
+        executor.submit(this::processCreationQueue);
+        logExecutor.scheduleAtFixedRate(this::printStats, statsPrintIntervalMs, statsPrintIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        creationQueue.clear();
+        IllegalStateException e = new IllegalStateException("TsKvDictionary service is stopped");
+        pendingKeys.keySet().forEach(key -> failPendingKey(key, e));
+    }
+
+    @Override
+    public Integer getOrSaveKeyId(String strKey) {
+        Integer keyId = keyIds.get(strKey);
+        if (keyId != null) {
+            hits.increment();
+            return keyId;
+        }
+        misses.increment();
+        if (strKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Timeseries key length exceeds " + MAX_KEY_LENGTH + " characters: " + strKey);
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        CompletableFuture<Integer> existingFuture = pendingKeys.putIfAbsent(strKey, future);
+        if (existingFuture != null) {
+            future = existingFuture;
+        } else {
+            keyId = keyIds.get(strKey);
+            if (keyId != null) {
+                pendingKeys.remove(strKey, future);
+                future.complete(keyId);
+                return keyId;
+            }
+            creationQueue.add(strKey);
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Failed to get TsKvDictionary entity from DB!", e);
+        }
+    }
+
+    @Override
+    public String getKey(int keyId) {
+        String key = keys.get(keyId);
+        if (key == null) {
+            Optional<TsKvDictionary> dictionary = dictionaryRepository.findByKeyId(keyId);
+            if (dictionary.isPresent()) {
+                key = dictionary.get().getKey();
+                put(key, keyId);
+            }
+        }
+        return key;
+    }
+
+    private void preloadDictionary() {
+        try {
+            long startTs = System.currentTimeMillis();
+            dictionaryRepository.findAll().forEach(dictionary -> put(dictionary.getKey(), dictionary.getKeyId()));
+            log.info("[{}] Loaded {} keys in {} ms", LOG_NAME, keyIds.size(), System.currentTimeMillis() - startTs);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to preload timeseries key dictionary", LOG_NAME, e);
+        }
+    }
+
+    private void processCreationQueue() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (!Thread.interrupted()) {
+            try {
+                batch.add(creationQueue.take());
+                creationQueue.drainTo(batch, batchSize - 1);
+                try {
+                    saveBatch(batch);
+                } catch (Exception e) {
+                    if (batch.size() == 1) {
+                        throw e;
+                    }
+                    log.warn("[{}] Failed to save {} keys, retrying them one by one", LOG_NAME, batch.size(), e);
+                    for (String key : batch) {
+                        try {
+                            saveBatch(Collections.singletonList(key));
+                        } catch (Exception keyException) {
+                            log.error("[{}] Failed to save key [{}]", LOG_NAME, key, keyException);
+                            failPendingKey(key, keyException);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.info("[{}] Queue polling was interrupted", LOG_NAME);
+                batch.forEach(key -> failPendingKey(key, e));
+                break;
+            } catch (Exception e) {
+                log.error("[{}] Failed to save {} keys", LOG_NAME, batch.size(), e);
+                batch.forEach(key -> failPendingKey(key, e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void saveBatch(List<String> batch) {
+        long startTs = System.currentTimeMillis();
+        List<TsKvDictionary> saved = insertDictionaryRepository.saveOrGet(batch);
+        batchesTimeMs.add(System.currentTimeMillis() - startTs);
+        batches.increment();
+        resolved.add(saved.size());
+        for (TsKvDictionary dictionary : saved) {
+            put(dictionary.getKey(), dictionary.getKeyId());
+            CompletableFuture<Integer> future = pendingKeys.remove(dictionary.getKey());
+            if (future != null) {
+                future.complete(dictionary.getKeyId());
+            }
+        }
+        batch.forEach(key -> failPendingKey(key, new RuntimeException("Failed to get TsKvDictionary entity from DB!")));
+    }
+
+    private void failPendingKey(String key, Exception e) {
+        CompletableFuture<Integer> future = pendingKeys.remove(key);
+        if (future != null) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void put(String key, int keyId) {
+        keyIds.put(key, keyId);
+        keys.put(keyId, key);
+    }
+
+    private void printStats() {
+        long missesCount = misses.sumThenReset();
+        long batchesCount = batches.sumThenReset();
+        long batchesTime = batchesTimeMs.sumThenReset();
+        if (missesCount > 0 || batchesCount > 0) {
+            log.info("[{}] size [{}] hits [{}] misses [{}] resolved [{}] batches [{}] avgBatchTimeMs [{}]",
+                    LOG_NAME, keyIds.size(), hits.sumThenReset(), missesCount, resolved.sumThenReset(), batchesCount,
+                    batchesCount > 0 ? batchesTime / batchesCount : 0);
+        } else {
+            hits.reset();
+        }
+    }
+}
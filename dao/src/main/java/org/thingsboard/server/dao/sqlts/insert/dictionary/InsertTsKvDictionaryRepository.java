@@ -0,0 +1,29 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.dictionary;
+
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+
+import java.util.List;
+
+public interface InsertTsKvDictionaryRepository {
+
+    /**
+     * Inserts the keys that are not present in the dictionary yet and returns entries for all requested keys.
+     */
+    List<TsKvDictionary> saveOrGet(List<String> keys);
+
+}
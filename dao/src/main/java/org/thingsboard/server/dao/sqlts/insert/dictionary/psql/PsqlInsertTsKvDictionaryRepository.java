@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.dictionary.psql;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sqlts.insert.dictionary.AbstractInsertTsKvDictionaryRepository;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsAnyDao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@SqlTsAnyDao
+@PsqlDao
+@Repository
+@Transactional
+public class PsqlInsertTsKvDictionaryRepository extends AbstractInsertTsKvDictionaryRepository {
+
+    private static final String INSERT_ON_CONFLICT_DO_NOTHING = "INSERT INTO ts_kv_dictionary (key) VALUES %s ON CONFLICT (key) DO NOTHING RETURNING key, key_id;";
+
+    @Override
+    public List<TsKvDictionary> saveOrGet(List<String> keys) {
+        String query = String.format(INSERT_ON_CONFLICT_DO_NOTHING, String.join(", ", Collections.nCopies(keys.size(), "(?)")));
+        List<TsKvDictionary> result = new ArrayList<>(keys.size());
+        result.addAll(jdbcTemplate.query(query, keys.toArray(), (rs, rowNum) -> toDictionary(rs.getString(1), rs.getInt(2))));
+        if (result.size() < keys.size()) {
+            // keys that caused a conflict were created concurrently and are not returned by the insert
+            Set<String> existing = new LinkedHashSet<>(keys);
+            result.forEach(dictionary -> existing.remove(dictionary.getKey()));
+            result.addAll(findByKeys(existing));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.psql;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Optionally saves ts_kv batches with the PostgreSQL binary COPY protocol instead of a batch of upserts.
+ * Rows are streamed into a session-local staging table and merged into ts_kv with a single statement.
+ * The staging table is temporary, so it is never WAL-logged and parallel writers do not share it.
+ */
+public abstract class AbstractPsqlCopyInsertTsRepository<T extends AbstractTsKvEntity> extends AbstractInsertRepository implements InsertTsRepository<T> {
+
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS ts_kv_copy (seq int, entity_id uuid, key int, ts bigint, " +
+            "bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json) ON COMMIT DELETE ROWS;";
+
+    private static final String COPY_TO_STAGING_TABLE = "COPY ts_kv_copy (seq, entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) FROM STDIN WITH (FORMAT binary)";
+
+    private static final String MERGE_FROM_STAGING_TABLE = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "SELECT DISTINCT ON (entity_id, key, ts) entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v FROM ts_kv_copy " +
+            "ORDER BY entity_id, key, ts, seq DESC " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, long_v = EXCLUDED.long_v, " +
+            "dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v;";
+
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short COPY_FIELDS_COUNT = 9;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${sql.ts.copy_insert_enabled:false}")
+    private boolean copyInsertEnabled;
+
+    @Override
+    public void saveOrUpdate(List<T> entities) {
+        if (copyInsertEnabled) {
+            copyAndMerge(entities);
+        } else {
+            batchInsertOrUpdate(entities);
+        }
+    }
+
+    protected abstract void batchInsertOrUpdate(List<T> entities);
+
+    protected void copyAndMerge(List<T> entities) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            if (con.getAutoCommit()) {
+                throw new IllegalStateException("COPY insert requires an active transaction!");
+            }
+            try (Statement statement = con.createStatement()) {
+                statement.execute(CREATE_STAGING_TABLE);
+            }
+            copy(con, entities);
+            try (Statement statement = con.createStatement()) {
+                statement.executeUpdate(MERGE_FROM_STAGING_TABLE);
+            }
+            return null;
+        });
+    }
+
+    private void copy(Connection con, List<T> entities) throws SQLException {
+        PGConnection pgConnection = con.unwrap(PGConnection.class);
+        try (DataOutputStream out = new DataOutputStream(new PGCopyOutputStream(pgConnection, COPY_TO_STAGING_TABLE, COPY_BUFFER_SIZE))) {
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (int i = 0; i < entities.size(); i++) {
+                T entity = entities.get(i);
+                out.writeShort(COPY_FIELDS_COUNT);
+                writeInt(out, i);
+                writeUuid(out, entity.getEntityId());
+                writeInt(out, entity.getKey());
+                writeLong(out, entity.getTs());
+                writeBoolean(out, entity.getBooleanValue());
+                writeString(out, replaceNullChars(entity.getStrValue()));
+                writeLong(out, entity.getLongValue());
+                writeDouble(out, entity.getDoubleValue());
+                writeString(out, replaceNullChars(entity.getJsonValue()));
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to copy ts_kv batch", e);
+        }
+    }
+
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(8);
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(8);
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(1);
+            out.writeByte(value ? 1 : 0);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.ts;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Computes all aggregation buckets of a time range with a single grouped query on the ts_kv table.
+ * The bucket index is calculated on the database side, so the same statement works for PostgreSQL and HSQLDB.
+ */
+@SqlTsDao
+@Repository
+public class TsKvAggregationRepository {
+
+    private static final String BUCKET_FROM_WHERE_CLAUSE = "FROM (SELECT (tskv.ts - ?) / ? AS bucket, tskv.bool_v, tskv.str_v, tskv.long_v, tskv.dbl_v, tskv.json_v " +
+            "FROM ts_kv tskv WHERE tskv.entity_id = ? AND tskv.key = ? AND tskv.ts > ? AND tskv.ts <= ?) b GROUP BY b.bucket ORDER BY b.bucket";
+
+    private static final String FIND_SUM_OR_AVG_QUERY = "SELECT b.bucket, SUM(COALESCE(b.long_v, 0)) AS long_value, SUM(COALESCE(b.dbl_v, 0.0)) AS dbl_value, " +
+            "SUM(CASE WHEN b.long_v IS NULL THEN 0 ELSE 1 END) AS long_count, SUM(CASE WHEN b.dbl_v IS NULL THEN 0 ELSE 1 END) AS dbl_count, " +
+            "NULL AS str_value ";
+
+    private static final String FIND_MAX_QUERY = "SELECT b.bucket, MAX(COALESCE(b.long_v, -9223372036854775807)) AS long_value, MAX(COALESCE(b.dbl_v, -1.79769E+308)) AS dbl_value, " +
+            "SUM(CASE WHEN b.long_v IS NULL THEN 0 ELSE 1 END) AS long_count, SUM(CASE WHEN b.dbl_v IS NULL THEN 0 ELSE 1 END) AS dbl_count, " +
+            "MAX(b.str_v) AS str_value ";
+
+    private static final String FIND_MIN_QUERY = "SELECT b.bucket, MIN(COALESCE(b.long_v, 9223372036854775807)) AS long_value, MIN(COALESCE(b.dbl_v, 1.79769E+308)) AS dbl_value, " +
+            "SUM(CASE WHEN b.long_v IS NULL THEN 0 ELSE 1 END) AS long_count, SUM(CASE WHEN b.dbl_v IS NULL THEN 0 ELSE 1 END) AS dbl_count, " +
+            "MIN(b.str_v) AS str_value ";
+
+    private static final String FIND_COUNT_QUERY = "SELECT b.bucket, SUM(CASE WHEN b.bool_v IS NULL THEN 0 ELSE 1 END) AS bool_count, " +
+            "SUM(CASE WHEN b.str_v IS NULL THEN 0 ELSE 1 END) AS str_count, SUM(CASE WHEN b.long_v IS NULL THEN 0 ELSE 1 END) AS long_count, " +
+            "SUM(CASE WHEN b.dbl_v IS NULL THEN 0 ELSE 1 END) AS dbl_count, SUM(CASE WHEN b.json_v IS NULL THEN 0 ELSE 1 END) AS json_count ";
+
+    @Value("${sql.ts.aggregation_fetch_size:1000}")
+    private int fetchSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Streams aggregated rows of the (startTs, startTs + bucketsCount * interval] range to the consumer.
+     * Buckets without data are not returned by the database and are never passed to the consumer.
+     *
+     * @param consumer receives the bucket index and the aggregated entity for that bucket
+     */
+    public void findAggregates(UUID entityId, int entityKey, Aggregation aggregation, long startTs, long interval, int bucketsCount,
+                               BiConsumer<Integer, TsKvEntity> consumer) {
+        long endTs = startTs + interval * bucketsCount;
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(getQuery(aggregation));
+            ps.setFetchSize(fetchSize);
+            // (ts - startTs - 1) / interval maps the (start, end] bucket boundaries to a zero-based index
+            ps.setLong(1, startTs + 1);
+            ps.setLong(2, interval);
+            ps.setObject(3, entityId);
+            ps.setInt(4, entityKey);
+            ps.setLong(5, startTs);
+            ps.setLong(6, endTs);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            int bucket = (int) rs.getLong("bucket");
+            consumer.accept(bucket, toEntity(rs, aggregation));
+        });
+    }
+
+    private static String getQuery(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return FIND_SUM_OR_AVG_QUERY + BUCKET_FROM_WHERE_CLAUSE;
+            case MAX:
+                return FIND_MAX_QUERY + BUCKET_FROM_WHERE_CLAUSE;
+            case MIN:
+                return FIND_MIN_QUERY + BUCKET_FROM_WHERE_CLAUSE;
+            case COUNT:
+                return FIND_COUNT_QUERY + BUCKET_FROM_WHERE_CLAUSE;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static TsKvEntity toEntity(ResultSet rs, Aggregation aggregation) throws SQLException {
+        if (aggregation == Aggregation.COUNT) {
+            return new TsKvEntity(getLong(rs, "bool_count"), getLong(rs, "str_count"), getLong(rs, "long_count"),
+                    getLong(rs, "dbl_count"), getLong(rs, "json_count"));
+        }
+        String strValue = rs.getString("str_value");
+        if (strValue != null) {
+            return new TsKvEntity(strValue);
+        }
+        Double doubleValue = rs.getDouble("dbl_value");
+        if (rs.wasNull()) {
+            doubleValue = null;
+        }
+        return new TsKvEntity(getLong(rs, "long_value"), doubleValue, getLong(rs, "long_count"),
+                getLong(rs, "dbl_count"), aggregation.name());
+    }
+
+    private static Long getLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+}
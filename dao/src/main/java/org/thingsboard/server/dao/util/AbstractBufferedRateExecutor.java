@@ -27,9 +27,13 @@ import org.thingsboard.server.common.msg.tools.TbRateLimits;
 import org.thingsboard.server.dao.nosql.CassandraStatementTask;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 
 /**
@@ -38,9 +42,16 @@ import java.util.regex.Matcher;
 @Slf4j
 public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extends ListenableFuture<V>, V> implements BufferedRateExecutor<T, F> {
 
+    public static final String QUEUE_DISPATCHER_MODE = "queue";
+    public static final String LANES_DISPATCHER_MODE = "lanes";
+    public static final String FAIR_DISPATCHER_MODE = "fair";
+
     private final long maxWaitTime;
     private final long pollMs;
     private final BlockingQueue<AsyncTaskContext<T, V>> queue;
+    private final DispatcherLane<T, V>[] lanes;
+    private final TenantFairTaskQueue<T, V> fairQueue;
+    private final Semaphore permits;
     private final ExecutorService dispatcherExecutor;
     private final ExecutorService callbackExecutor;
     private final ScheduledExecutorService timeoutExecutor;
@@ -49,32 +60,74 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
     private final boolean perTenantLimitsEnabled;
     private final String perTenantLimitsConfiguration;
     private final ConcurrentMap<TenantId, TbRateLimits> perTenantLimits = new ConcurrentHashMap<>();
-    protected final ConcurrentMap<TenantId, AtomicInteger> rateLimitedTenants = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<TenantId, LongAdder> rateLimitedTenants = new ConcurrentHashMap<>();
 
     protected final AtomicInteger concurrencyLevel = new AtomicInteger();
-    protected final AtomicInteger totalAdded = new AtomicInteger();
-    protected final AtomicInteger totalLaunched = new AtomicInteger();
-    protected final AtomicInteger totalReleased = new AtomicInteger();
-    protected final AtomicInteger totalFailed = new AtomicInteger();
-    protected final AtomicInteger totalExpired = new AtomicInteger();
-    protected final AtomicInteger totalRejected = new AtomicInteger();
-    protected final AtomicInteger totalRateLimited = new AtomicInteger();
+    protected final LongAdder totalAdded = new LongAdder();
+    protected final LongAdder totalLaunched = new LongAdder();
+    protected final LongAdder totalReleased = new LongAdder();
+    protected final LongAdder totalFailed = new LongAdder();
+    protected final LongAdder totalExpired = new LongAdder();
+    protected final LongAdder totalRejected = new LongAdder();
+    protected final LongAdder totalRateLimited = new LongAdder();
     protected final AtomicInteger printQueriesIdx = new AtomicInteger();
 
     public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads, int callbackThreads, long pollMs,
                                         boolean perTenantLimitsEnabled, String perTenantLimitsConfiguration, int printQueriesFreq) {
+        this(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs,
+                perTenantLimitsEnabled, perTenantLimitsConfiguration, printQueriesFreq, QUEUE_DISPATCHER_MODE);
+    }
+
+    public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads, int callbackThreads, long pollMs,
+                                        boolean perTenantLimitsEnabled, String perTenantLimitsConfiguration, int printQueriesFreq, String dispatcherMode) {
+        this(queueLimit, concurrencyLimit, maxWaitTime, dispatcherThreads, callbackThreads, pollMs,
+                perTenantLimitsEnabled, perTenantLimitsConfiguration, printQueriesFreq, dispatcherMode, queueLimit, 1, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads, int callbackThreads, long pollMs,
+                                        boolean perTenantLimitsEnabled, String perTenantLimitsConfiguration, int printQueriesFreq, String dispatcherMode,
+                                        int tenantQueueLimit, int defaultTenantWeight, String tenantWeightsConfiguration) {
+        boolean lanesMode = LANES_DISPATCHER_MODE.equalsIgnoreCase(dispatcherMode);
+        boolean fairMode = FAIR_DISPATCHER_MODE.equalsIgnoreCase(dispatcherMode);
+        if (!lanesMode && !fairMode && !QUEUE_DISPATCHER_MODE.equalsIgnoreCase(dispatcherMode)) {
+            throw new IllegalArgumentException("Unsupported dispatcher mode: " + dispatcherMode);
+        }
         this.maxWaitTime = maxWaitTime;
         this.pollMs = pollMs;
         this.concurrencyLimit = concurrencyLimit;
         this.printQueriesFreq = printQueriesFreq;
-        this.queue = new LinkedBlockingDeque<>(queueLimit);
         this.dispatcherExecutor = Executors.newFixedThreadPool(dispatcherThreads, ThingsBoardThreadFactory.forName("nosql-dispatcher"));
         this.callbackExecutor = Executors.newWorkStealingPool(callbackThreads);
         this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("nosql-timeout"));
         this.perTenantLimitsEnabled = perTenantLimitsEnabled;
         this.perTenantLimitsConfiguration = perTenantLimitsConfiguration;
-        for (int i = 0; i < dispatcherThreads; i++) {
-            dispatcherExecutor.submit(this::dispatch);
+        if (fairMode) {
+            this.queue = null;
+            this.lanes = null;
+            this.permits = new Semaphore(concurrencyLimit);
+            this.fairQueue = new TenantFairTaskQueue<>(queueLimit, tenantQueueLimit, defaultTenantWeight, tenantWeightsConfiguration);
+            // deficit round robin state is confined to a single dispatcher thread
+            dispatcherExecutor.submit(this::dispatchFair);
+        } else if (lanesMode) {
+            this.queue = null;
+            this.fairQueue = null;
+            this.permits = new Semaphore(concurrencyLimit);
+            this.lanes = new DispatcherLane[dispatcherThreads];
+            int laneLimit = Math.max(1, queueLimit / dispatcherThreads);
+            for (int i = 0; i < dispatcherThreads; i++) {
+                DispatcherLane<T, V> lane = new DispatcherLane<>(laneLimit);
+                lanes[i] = lane;
+                dispatcherExecutor.submit(() -> dispatchLane(lane));
+            }
+        } else {
+            this.queue = new LinkedBlockingDeque<>(queueLimit);
+            this.permits = null;
+            this.lanes = null;
+            this.fairQueue = null;
+            for (int i = 0; i < dispatcherThreads; i++) {
+                dispatcherExecutor.submit(this::dispatch);
+            }
         }
     }
 
@@ -89,20 +142,34 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             } else if (!task.getTenantId().isNullUid()) {
                 TbRateLimits rateLimits = perTenantLimits.computeIfAbsent(task.getTenantId(), id -> new TbRateLimits(perTenantLimitsConfiguration));
                 if (!rateLimits.tryConsume()) {
-                    rateLimitedTenants.computeIfAbsent(task.getTenantId(), tId -> new AtomicInteger(0)).incrementAndGet();
-                    totalRateLimited.incrementAndGet();
+                    rateLimitedTenants.computeIfAbsent(task.getTenantId(), tId -> new LongAdder()).increment();
+                    totalRateLimited.increment();
                     settableFuture.setException(new TenantRateLimitException());
                     perTenantLimitReached = true;
                 }
             }
         }
         if (!perTenantLimitReached) {
-            try {
-                totalAdded.incrementAndGet();
-                queue.add(new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()));
-            } catch (IllegalStateException e) {
-                totalRejected.incrementAndGet();
-                settableFuture.setException(e);
+            totalAdded.increment();
+            AsyncTaskContext<T, V> taskCtx = new AsyncTaskContext<>(newTaskId(), task, settableFuture, System.currentTimeMillis());
+            if (fairQueue != null) {
+                if (!fairQueue.offer(taskCtx)) {
+                    totalRejected.increment();
+                    settableFuture.setException(new IllegalStateException("Queue full"));
+                }
+            } else if (lanes != null) {
+                int start = lanes.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(lanes.length);
+                if (!offer(lanes, start, taskCtx)) {
+                    totalRejected.increment();
+                    settableFuture.setException(new IllegalStateException("Queue full"));
+                }
+            } else {
+                try {
+                    queue.add(taskCtx);
+                } catch (IllegalStateException e) {
+                    totalRejected.increment();
+                    settableFuture.setException(e);
+                }
             }
         }
         return result;
@@ -134,49 +201,8 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             try {
                 if (curLvl <= concurrencyLimit) {
                     taskCtx = queue.take();
-                    final AsyncTaskContext<T, V> finalTaskCtx = taskCtx;
-                    if (printQueriesFreq > 0) {
-                        if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
-                            printQueriesIdx.set(0);
-                            String query = queryToString(finalTaskCtx);
-                            log.info("[{}] Cassandra query: {}", taskCtx.getId(), query);
-                        }
-                    }
-                    logTask("Processing", finalTaskCtx);
                     concurrencyLevel.incrementAndGet();
-                    long timeout = finalTaskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
-                    if (timeout > 0) {
-                        totalLaunched.incrementAndGet();
-                        ListenableFuture<V> result = execute(finalTaskCtx);
-                        result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
-                        Futures.addCallback(result, new FutureCallback<V>() {
-                            @Override
-                            public void onSuccess(@Nullable V result) {
-                                logTask("Releasing", finalTaskCtx);
-                                totalReleased.incrementAndGet();
-                                concurrencyLevel.decrementAndGet();
-                                finalTaskCtx.getFuture().set(result);
-                            }
-
-                            @Override
-                            public void onFailure(Throwable t) {
-                                if (t instanceof TimeoutException) {
-                                    logTask("Expired During Execution", finalTaskCtx);
-                                } else {
-                                    logTask("Failed", finalTaskCtx);
-                                }
-                                totalFailed.incrementAndGet();
-                                concurrencyLevel.decrementAndGet();
-                                finalTaskCtx.getFuture().setException(t);
-                                log.debug("[{}] Failed to execute task: {}", finalTaskCtx.getId(), finalTaskCtx.getTask(), t);
-                            }
-                        }, callbackExecutor);
-                    } else {
-                        logTask("Expired Before Execution", finalTaskCtx);
-                        totalExpired.incrementAndGet();
-                        concurrencyLevel.decrementAndGet();
-                        taskCtx.getFuture().setException(new TimeoutException());
-                    }
+                    launch(taskCtx, concurrencyLevel::decrementAndGet, true);
                 } else {
                     Thread.sleep(pollMs);
                 }
@@ -185,7 +211,7 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             } catch (Throwable e) {
                 if (taskCtx != null) {
                     log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx, e);
-                    totalFailed.incrementAndGet();
+                    totalFailed.increment();
                     concurrencyLevel.decrementAndGet();
                 } else {
                     log.debug("Failed to queue task:", e);
@@ -195,6 +221,140 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         log.info("Buffered rate executor thread stopped");
     }
 
+    /**
+     * Dispatches the tasks of a single lane. Waits for the permit released by a completed query
+     * instead of polling the concurrency level, so the next task is launched as soon as a permit is available.
+     */
+    private void dispatchLane(DispatcherLane<T, V> lane) {
+        log.info("Buffered rate executor lane thread started");
+        while (!Thread.interrupted()) {
+            AsyncTaskContext<T, V> taskCtx = null;
+            boolean permitAcquired = false;
+            try {
+                taskCtx = lane.take();
+                if (isExpired(taskCtx)) {
+                    // doesn't wait for a permit to fail a task that waited in the lane for too long
+                    expire(taskCtx, () -> {});
+                    continue;
+                }
+                permits.acquire();
+                permitAcquired = true;
+                concurrencyLevel.incrementAndGet();
+                launch(taskCtx, this::releasePermit, false);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                if (taskCtx != null) {
+                    log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx, e);
+                    totalFailed.increment();
+                    if (permitAcquired) {
+                        releasePermit();
+                    }
+                } else {
+                    log.debug("Failed to queue task:", e);
+                }
+            }
+        }
+        log.info("Buffered rate executor lane thread stopped");
+    }
+
+    private void dispatchFair() {
+        log.info("Buffered rate executor fair dispatcher thread started");
+        while (!Thread.interrupted()) {
+            AsyncTaskContext<T, V> taskCtx = null;
+            boolean permitAcquired = false;
+            try {
+                taskCtx = fairQueue.take();
+                permits.acquire();
+                permitAcquired = true;
+                concurrencyLevel.incrementAndGet();
+                fairQueue.onLaunch(taskCtx, System.currentTimeMillis());
+                launch(taskCtx, this::releasePermit, true);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                if (taskCtx != null) {
+                    log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx, e);
+                    totalFailed.increment();
+                    if (permitAcquired) {
+                        releasePermit();
+                    }
+                } else {
+                    log.debug("Failed to queue task:", e);
+                }
+            }
+        }
+        log.info("Buffered rate executor fair dispatcher thread stopped");
+    }
+
+    private void releasePermit() {
+        concurrencyLevel.decrementAndGet();
+        permits.release();
+    }
+
+    /**
+     * Launches the task unless it waited for longer than maxWaitTime. If timeoutExecution is false, the execution
+     * of the task is bounded by the timeouts of the driver only, so no timer is scheduled per task.
+     */
+    private void launch(AsyncTaskContext<T, V> taskCtx, Runnable release, boolean timeoutExecution) {
+        if (printQueriesFreq > 0) {
+            if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
+                printQueriesIdx.set(0);
+                String query = queryToString(taskCtx);
+                log.info("[{}] Cassandra query: {}", taskCtx.getId(), query);
+            }
+        }
+        logTask("Processing", taskCtx);
+        long timeout = taskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
+        if (timeout > 0) {
+            totalLaunched.increment();
+            ListenableFuture<V> result = execute(taskCtx);
+            if (timeoutExecution) {
+                result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
+            }
+            Futures.addCallback(result, new FutureCallback<V>() {
+                @Override
+                public void onSuccess(@Nullable V result) {
+                    logTask("Releasing", taskCtx);
+                    totalReleased.increment();
+                    release.run();
+                    taskCtx.getFuture().set(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (t instanceof TimeoutException) {
+                        logTask("Expired During Execution", taskCtx);
+                    } else {
+                        logTask("Failed", taskCtx);
+                    }
+                    totalFailed.increment();
+                    release.run();
+                    taskCtx.getFuture().setException(t);
+                    log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx.getTask(), t);
+                }
+            }, callbackExecutor);
+        } else {
+            expire(taskCtx, release);
+        }
+    }
+
+    private boolean isExpired(AsyncTaskContext<T, V> taskCtx) {
+        return taskCtx.getCreateTime() + maxWaitTime <= System.currentTimeMillis();
+    }
+
+    private void expire(AsyncTaskContext<T, V> taskCtx, Runnable release) {
+        logTask("Expired Before Execution", taskCtx);
+        totalExpired.increment();
+        release.run();
+        taskCtx.getFuture().setException(new TimeoutException());
+    }
+
+    private static UUID newTaskId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
     private void logTask(String action, AsyncTaskContext<T, V> taskCtx) {
         if (log.isTraceEnabled()) {
             if (taskCtx.getTask() instanceof CassandraStatementTask) {
@@ -243,7 +403,73 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         return query;
     }
 
+    /**
+     * Returns queue depth and wait time of the tenants that had queued or launched tasks since the previous call.
+     * Tenant queues are tracked in the fair dispatcher mode only.
+     */
+    protected List<TenantQueueStats> getTenantQueueStats() {
+        return fairQueue != null ? fairQueue.getStatsAndReset() : Collections.emptyList();
+    }
+
     protected int getQueueSize() {
-        return queue.size();
+        if (fairQueue != null) {
+            return fairQueue.size();
+        } else if (lanes != null) {
+            int size = 0;
+            for (DispatcherLane<T, V> lane : lanes) {
+                size += lane.size();
+            }
+            return size;
+        } else {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Offers the task to the lane at the start index and falls back to the next lanes when it is full,
+     * so the task is rejected only when every lane is full.
+     */
+    static <T extends AsyncTask, V> boolean offer(DispatcherLane<T, V>[] lanes, int start, AsyncTaskContext<T, V> taskCtx) {
+        for (int i = 0; i < lanes.length; i++) {
+            if (lanes[(start + i) % lanes.length].offer(taskCtx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bounded multi-producer single-consumer queue of a dispatcher thread.
+     */
+    static final class DispatcherLane<T extends AsyncTask, V> {
+
+        private final Queue<AsyncTaskContext<T, V>> tasks = new ConcurrentLinkedQueue<>();
+        private final Semaphore available = new Semaphore(0);
+        private final AtomicInteger size = new AtomicInteger();
+        private final int limit;
+
+        DispatcherLane(int limit) {
+            this.limit = limit;
+        }
+
+        boolean offer(AsyncTaskContext<T, V> taskCtx) {
+            if (size.incrementAndGet() > limit) {
+                size.decrementAndGet();
+                return false;
+            }
+            tasks.add(taskCtx);
+            available.release();
+            return true;
+        }
+
+        AsyncTaskContext<T, V> take() throws InterruptedException {
+            available.acquire();
+            size.decrementAndGet();
+            return tasks.poll();
+        }
+
+        int size() {
+            return size.get();
+        }
     }
 }
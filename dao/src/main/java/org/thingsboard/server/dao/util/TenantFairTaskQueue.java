@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded per-tenant task queues served with deficit round robin: each turn a tenant may dispatch as many tasks as its weight,
+ * so a tenant with a large backlog can't delay the tasks of other tenants for longer than one round.
+ * <p>
+ * {@link #offer(AsyncTaskContext)} may be called from any thread, {@link #take()} from a single dispatcher thread only.
+ * Queues of the tenants that stayed idle for a whole stats interval are removed by {@link #getStatsAndReset()}.
+ */
+class TenantFairTaskQueue<T extends AsyncTask, V> {
+
+    private final int tenantQueueLimit;
+    private final int defaultWeight;
+    private final Map<TenantId, Integer> weights;
+    private final ConcurrentMap<TenantId, TenantQueue<T, V>> tenantQueues = new ConcurrentHashMap<>();
+    private final Queue<TenantQueue<T, V>> activeTenants = new ConcurrentLinkedQueue<>();
+    private final Semaphore activated = new Semaphore(0);
+    private final AtomicInteger size = new AtomicInteger();
+    private final int queueLimit;
+
+    private TenantQueue<T, V> current;
+
+    TenantFairTaskQueue(int queueLimit, int tenantQueueLimit, int defaultWeight, String weightsConfiguration) {
+        this.queueLimit = queueLimit;
+        this.tenantQueueLimit = tenantQueueLimit;
+        this.defaultWeight = Math.max(1, defaultWeight);
+        this.weights = parseWeights(weightsConfiguration);
+    }
+
+    boolean offer(AsyncTaskContext<T, V> taskCtx) {
+        TenantId tenantId = taskCtx.getTask().getTenantId() != null ? taskCtx.getTask().getTenantId() : TenantId.SYS_TENANT_ID;
+        if (size.incrementAndGet() > queueLimit) {
+            size.decrementAndGet();
+            return false;
+        }
+        TenantQueue<T, V> tenantQueue = reserve(tenantId);
+        if (tenantQueue == null) {
+            size.decrementAndGet();
+            return false;
+        }
+        tenantQueue.tasks.add(taskCtx);
+        if (tenantQueue.active.compareAndSet(false, true)) {
+            activeTenants.add(tenantQueue);
+            activated.release();
+        }
+        return true;
+    }
+
+    /**
+     * Reserves a slot in the tenant queue, or returns null if the tenant queue is full.
+     * The size is reserved before the removed flag is checked, and {@link #removeIfIdle(TenantQueue)} sets the flag before it checks the size,
+     * so a task is never added to a queue that is no longer in the map.
+     */
+    private TenantQueue<T, V> reserve(TenantId tenantId) {
+        while (true) {
+            TenantQueue<T, V> tenantQueue = tenantQueues.computeIfAbsent(tenantId,
+                    id -> new TenantQueue<>(id, weights.getOrDefault(id, defaultWeight)));
+            if (tenantQueue.size.incrementAndGet() > tenantQueueLimit) {
+                tenantQueue.size.decrementAndGet();
+                return null;
+            }
+            if (!tenantQueue.removed) {
+                return tenantQueue;
+            }
+            tenantQueue.size.decrementAndGet();
+        }
+    }
+
+    AsyncTaskContext<T, V> take() throws InterruptedException {
+        while (true) {
+            if (current != null) {
+                if (current.deficit > 0) {
+                    AsyncTaskContext<T, V> taskCtx = current.tasks.poll();
+                    if (taskCtx != null) {
+                        current.deficit--;
+                        current.size.decrementAndGet();
+                        size.decrementAndGet();
+                        return taskCtx;
+                    }
+                }
+                endTurn(current);
+                current = null;
+            }
+            current = activeTenants.poll();
+            if (current == null) {
+                activated.acquire();
+                activated.drainPermits();
+            } else {
+                current.deficit += current.weight;
+            }
+        }
+    }
+
+    void onLaunch(AsyncTaskContext<T, V> taskCtx, long ts) {
+        TenantId tenantId = taskCtx.getTask().getTenantId() != null ? taskCtx.getTask().getTenantId() : TenantId.SYS_TENANT_ID;
+        TenantQueue<T, V> tenantQueue = tenantQueues.get(tenantId);
+        if (tenantQueue != null) {
+            long waitTime = ts - taskCtx.getCreateTime();
+            tenantQueue.launched.increment();
+            tenantQueue.waitTime.add(waitTime);
+            tenantQueue.maxWaitTime.accumulateAndGet(waitTime, Math::max);
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    List<TenantQueueStats> getStatsAndReset() {
+        List<TenantQueueStats> result = new ArrayList<>();
+        for (TenantQueue<T, V> tenantQueue : tenantQueues.values()) {
+            int queueSize = tenantQueue.size.get();
+            long launched = tenantQueue.launched.sumThenReset();
+            long waitTime = tenantQueue.waitTime.sumThenReset();
+            long maxWaitTime = tenantQueue.maxWaitTime.getAndSet(0);
+            if (queueSize > 0 || launched > 0) {
+                result.add(new TenantQueueStats(tenantQueue.tenantId, queueSize, launched, launched > 0 ? waitTime / launched : 0, maxWaitTime));
+            } else {
+                removeIfIdle(tenantQueue);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the queue if it is empty and not scheduled for dispatching. An inactive queue is neither the current queue of the dispatcher
+     * nor in the active tenants, so the round robin state does not refer to it.
+     */
+    private void removeIfIdle(TenantQueue<T, V> tenantQueue) {
+        tenantQueues.computeIfPresent(tenantQueue.tenantId, (id, existing) -> {
+            if (existing != tenantQueue || tenantQueue.active.get()) {
+                return existing;
+            }
+            tenantQueue.removed = true;
+            if (tenantQueue.size.get() == 0 && !tenantQueue.active.get()) {
+                return null;
+            }
+            tenantQueue.removed = false;
+            return existing;
+        });
+    }
+
+    int getTenantQueuesCount() {
+        return tenantQueues.size();
+    }
+
+    private void endTurn(TenantQueue<T, V> tenantQueue) {
+        if (tenantQueue.tasks.isEmpty()) {
+            tenantQueue.deficit = 0;
+            tenantQueue.active.set(false);
+            // the task might be added after the emptiness check but before the queue became inactive
+            if (!tenantQueue.tasks.isEmpty() && tenantQueue.active.compareAndSet(false, true)) {
+                activeTenants.add(tenantQueue);
+            }
+        } else {
+            activeTenants.add(tenantQueue);
+        }
+    }
+
+    private static Map<TenantId, Integer> parseWeights(String weightsConfiguration) {
+        Map<TenantId, Integer> result = new HashMap<>();
+        if (StringUtils.isNotBlank(weightsConfiguration)) {
+            for (String entry : weightsConfiguration.split(",")) {
+                String[] parts = entry.trim().split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid tenant weight configuration: " + entry);
+                }
+                result.put(new TenantId(UUID.fromString(parts[0].trim())), Math.max(1, Integer.parseInt(parts[1].trim())));
+            }
+        }
+        return result;
+    }
+
+    private static final class TenantQueue<T extends AsyncTask, V> {
+
+        private final TenantId tenantId;
+        private final int weight;
+        private final Queue<AsyncTaskContext<T, V>> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean active = new AtomicBoolean();
+        private final LongAdder launched = new LongAdder();
+        private final LongAdder waitTime = new LongAdder();
+        private final AtomicLong maxWaitTime = new AtomicLong();
+        private volatile boolean removed;
+        private long deficit;
+
+        TenantQueue(TenantId tenantId, int weight) {
+            this.tenantId = tenantId;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.attributes;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.thingsboard.server.common.data.CacheConstants.ATTRIBUTES_CACHE;
+
+public class BaseAttributesServiceCacheTest {
+
+    private static final TenantId TENANT_ID = new TenantId(UUID.randomUUID());
+    private static final DeviceId DEVICE_ID = new DeviceId(UUID.randomUUID());
+    private static final String SCOPE = DataConstants.SERVER_SCOPE;
+
+    private final AttributeKvEntry attrA = new BaseAttributeKvEntry(new StringDataEntry("A", "old"), 42L);
+    private final AttributeKvEntry attrB = new BaseAttributeKvEntry(new StringDataEntry("B", "value"), 42L);
+
+    private BaseAttributesService attributesService;
+    private AttributesDao attributesDao;
+
+    @Before
+    public void before() {
+        attributesDao = mock(AttributesDao.class);
+        CacheManager cacheManager = new ConcurrentMapCacheManager(ATTRIBUTES_CACHE);
+        attributesService = new BaseAttributesService();
+        ReflectionTestUtils.setField(attributesService, "attributesDao", attributesDao);
+        ReflectionTestUtils.setField(attributesService, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(attributesService, "eventPublisher", mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    public void testLoadedValueIsCached() throws Exception {
+        when(attributesDao.find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), eq("A")))
+                .thenReturn(immediate(Optional.of(attrA)));
+
+        Assert.assertEquals(attrA, attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, "A").get().get());
+        Assert.assertEquals(attrA, attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, "A").get().get());
+        verify(attributesDao, times(1)).find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), eq("A"));
+    }
+
+    @Test
+    public void testValueLoadedConcurrentlyWithEvictIsNotCached() throws Exception {
+        SettableFuture<Optional<AttributeKvEntry>> staleLoad = SettableFuture.create();
+        when(attributesDao.find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), eq("A")))
+                .thenReturn(staleLoad)
+                .thenReturn(immediate(Optional.empty()));
+
+        ListenableFuture<Optional<AttributeKvEntry>> first = attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, "A");
+        // the attribute is removed on another node while the old value is read from the database
+        attributesService.evictFromCache(DEVICE_ID, SCOPE, Arrays.asList("A"));
+        staleLoad.set(Optional.of(attrA));
+        Assert.assertEquals(attrA, first.get().get());
+
+        Assert.assertFalse(attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, "A").get().isPresent());
+        verify(attributesDao, times(2)).find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), eq("A"));
+    }
+
+    @Test
+    public void testValuesLoadedConcurrentlyWithEvictAreNotCached() throws Exception {
+        SettableFuture<List<AttributeKvEntry>> staleLoad = SettableFuture.create();
+        when(attributesDao.find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), anyCollectionOf(String.class)))
+                .thenReturn(staleLoad)
+                .thenReturn(immediate(Arrays.asList(attrB)));
+
+        ListenableFuture<List<AttributeKvEntry>> first = attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, Arrays.asList("A", "B"));
+        attributesService.evictFromCache(DEVICE_ID, SCOPE, Arrays.asList("A", "B"));
+        staleLoad.set(Arrays.asList(attrA, attrB));
+        Assert.assertEquals(Arrays.asList(attrA, attrB), first.get());
+
+        Assert.assertEquals(Arrays.asList(attrB), attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, Arrays.asList("A", "B")).get());
+        verify(attributesDao, times(2)).find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void testFoundAttributesAreInRequestedOrder() throws Exception {
+        AttributeKvEntry attrC = new BaseAttributeKvEntry(new StringDataEntry("C", "value"), 42L);
+        when(attributesDao.find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), eq("B")))
+                .thenReturn(immediate(Optional.of(attrB)));
+        when(attributesDao.find(any(TenantId.class), eq(DEVICE_ID), eq(SCOPE), anyCollectionOf(String.class)))
+                .thenReturn(immediate(Arrays.asList(attrC, attrA)));
+
+        // B is cached, A and C are loaded in a different order and D is missing
+        attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, "B").get();
+        Assert.assertEquals(Arrays.asList(attrA, attrB, attrC),
+                attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, Arrays.asList("A", "B", "D", "C")).get());
+        Assert.assertEquals(Arrays.asList(attrC, attrB, attrA),
+                attributesService.find(TENANT_ID, DEVICE_ID, SCOPE, Arrays.asList("C", "B", "A")).get());
+    }
+
+    private static <T> ListenableFuture<T> immediate(T value) {
+        SettableFuture<T> future = SettableFuture.create();
+        future.set(value);
+        return future;
+    }
+}
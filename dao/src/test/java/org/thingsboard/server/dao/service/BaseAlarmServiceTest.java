@@ -187,6 +187,56 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertEquals(created, alarms.getData().get(0));
     }
 
+    @Test
+    public void testPropagatedAlarmFollowsRelationChanges() throws ExecutionException, InterruptedException {
+        AssetId grandParentId = new AssetId(UUIDs.timeBased());
+        AssetId parentId = new AssetId(UUIDs.timeBased());
+        AssetId childId = new AssetId(UUIDs.timeBased());
+
+        EntityRelation parentRelation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+        Assert.assertTrue(relationService.saveRelationAsync(tenantId, parentRelation).get());
+
+        Alarm first = createPropagatedAlarm(childId, "FIRST_ALARM");
+        Assert.assertEquals(1, findActiveAlarms(parentId).size());
+        Assert.assertEquals(0, findActiveAlarms(grandParentId).size());
+
+        Assert.assertTrue(relationService.saveRelationAsync(tenantId, new EntityRelation(grandParentId, parentId, EntityRelation.CONTAINS_TYPE)).get());
+
+        Alarm second = createPropagatedAlarm(childId, "SECOND_ALARM");
+        Assert.assertEquals(2, findActiveAlarms(parentId).size());
+        List<AlarmInfo> grandParentAlarms = findActiveAlarms(grandParentId);
+        Assert.assertEquals(1, grandParentAlarms.size());
+        Assert.assertEquals(second, grandParentAlarms.get(0));
+
+        Assert.assertTrue(relationService.deleteRelationAsync(tenantId, parentRelation).get());
+
+        createPropagatedAlarm(childId, "THIRD_ALARM");
+        Assert.assertEquals(2, findActiveAlarms(parentId).size());
+        Assert.assertEquals(3, findActiveAlarms(childId).size());
+
+        alarmService.ackAlarm(tenantId, first.getId(), System.currentTimeMillis()).get();
+        Assert.assertEquals(1, findActiveAlarms(parentId).size());
+        List<EntityRelation> alarmRelations = relationService.findByTo(tenantId, first.getId(), RelationTypeGroup.ALARM);
+        Assert.assertEquals(8, alarmRelations.size());
+    }
+
+    private Alarm createPropagatedAlarm(AssetId originatorId, String type) {
+        Alarm alarm = Alarm.builder().tenantId(tenantId).originator(originatorId)
+                .type(type)
+                .propagate(true)
+                .severity(AlarmSeverity.CRITICAL).status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+        return alarmService.createOrUpdateAlarm(alarm);
+    }
+
+    private List<AlarmInfo> findActiveAlarms(AssetId affectedEntityId) throws ExecutionException, InterruptedException {
+        return alarmService.findAlarms(tenantId, AlarmQuery.builder()
+                .affectedEntityId(affectedEntityId)
+                .status(AlarmStatus.ACTIVE_UNACK).pageLink(
+                        new TimePageLink(10, 0L, System.currentTimeMillis(), false)
+                ).build()).get().getData();
+    }
+
     @Test
     public void testDeleteAlarm() throws ExecutionException, InterruptedException {
         AssetId parentId = new AssetId(UUIDs.timeBased());
@@ -20,9 +20,11 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.id.AssetId;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.relation.EntityRelationsQuery;
 import org.thingsboard.server.common.data.relation.EntitySearchDirection;
@@ -30,13 +32,21 @@ import org.thingsboard.server.common.data.relation.EntityTypeFilter;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.common.data.relation.RelationsSearchParameters;
 import org.thingsboard.server.dao.exception.DataValidationException;
+import org.thingsboard.server.dao.relation.LeveledEntityRelation;
+import org.thingsboard.server.dao.relation.RelationDao;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 public abstract class BaseRelationServiceTest extends AbstractServiceTest {
 
+    @Autowired
+    private RelationDao relationDao;
+
     @Before
     public void before() {
     }
@@ -269,6 +279,60 @@ public abstract class BaseRelationServiceTest extends AbstractServiceTest {
     }
 
 
+    @Test
+    public void testRecursiveRelationByLevels() throws ExecutionException, InterruptedException {
+        // A -> [B, C] -> D -> A
+        AssetId assetA = new AssetId(UUIDs.timeBased());
+        AssetId assetB = new AssetId(UUIDs.timeBased());
+        AssetId assetC = new AssetId(UUIDs.timeBased());
+        DeviceId deviceD = new DeviceId(UUIDs.timeBased());
+
+        EntityRelation relationAB = new EntityRelation(assetA, assetB, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationAC = new EntityRelation(assetA, assetC, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationBD = new EntityRelation(assetB, deviceD, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationCD = new EntityRelation(assetC, deviceD, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationDA = new EntityRelation(deviceD, assetA, EntityRelation.MANAGES_TYPE);
+
+        for (EntityRelation relation : Arrays.asList(relationAB, relationAC, relationBD, relationCD, relationDA)) {
+            saveRelation(relation);
+        }
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(relationAB, relationAC, relationBD, relationCD)),
+                findByQuery(assetA, EntitySearchDirection.FROM, 2, false));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(relationBD, relationCD)),
+                findByQuery(assetA, EntitySearchDirection.FROM, 2, true));
+        Assert.assertEquals(Collections.singleton(relationDA),
+                findByQuery(assetA, EntitySearchDirection.FROM, 3, true));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(relationAB, relationAC, relationBD, relationCD, relationDA)),
+                findByQuery(assetA, EntitySearchDirection.FROM, -1, false));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(relationBD, relationCD, relationAB, relationAC)),
+                findByQuery(deviceD, EntitySearchDirection.TO, 2, false));
+
+        if (relationDao.isRecursiveQuerySupported()) {
+            for (int maxLevel = 1; maxLevel <= 4; maxLevel++) {
+                for (EntitySearchDirection direction : EntitySearchDirection.values()) {
+                    List<LeveledEntityRelation> leveledRelations = relationDao.findRelationsRecursively(SYSTEM_TENANT_ID, assetB, direction, RelationTypeGroup.COMMON, maxLevel).get();
+                    Set<EntityRelation> all = new HashSet<>();
+                    Set<EntityRelation> lastLevel = new HashSet<>();
+                    for (LeveledEntityRelation leveledRelation : leveledRelations) {
+                        all.add(leveledRelation.getRelation());
+                        if (leveledRelation.getLevel() == maxLevel) {
+                            lastLevel.add(leveledRelation.getRelation());
+                        }
+                    }
+                    Assert.assertEquals(findByQuery(assetB, direction, maxLevel, false), all);
+                    Assert.assertEquals(findByQuery(assetB, direction, maxLevel, true), lastLevel);
+                }
+            }
+        }
+    }
+
+    private Set<EntityRelation> findByQuery(EntityId root, EntitySearchDirection direction, int maxLevel, boolean fetchLastLevelOnly) throws ExecutionException, InterruptedException {
+        EntityRelationsQuery query = new EntityRelationsQuery();
+        query.setParameters(new RelationsSearchParameters(root, direction, maxLevel, fetchLastLevelOnly));
+        return new HashSet<>(relationService.findByQuery(SYSTEM_TENANT_ID, query).get());
+    }
+
     @Test(expected = DataValidationException.class)
     public void testSaveRelationWithEmptyFrom() throws ExecutionException, InterruptedException {
         EntityRelation relation = new EntityRelation();
@@ -29,6 +29,7 @@ import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -100,4 +101,32 @@ public abstract class BaseAttributesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(attrBNew, saved.get(1));
     }
 
+    @Test
+    public void cachedLookupsReflectSaveAndRemove() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        AttributeKvEntry attrA = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        AttributeKvEntry attrB = new BaseAttributeKvEntry(new StringDataEntry("B", "value2"), 42L);
+
+        Assert.assertFalse(attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, "A").get().isPresent());
+        Assert.assertTrue(attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Arrays.asList("A", "B")).get().isEmpty());
+
+        attributesService.save(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrA)).get();
+        Assert.assertEquals(attrA, attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, "A").get().get());
+
+        attributesService.save(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrB)).get();
+        List<AttributeKvEntry> found = attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Arrays.asList("A", "B")).get();
+        Assert.assertEquals(2, found.size());
+        Assert.assertTrue(found.containsAll(Arrays.asList(attrA, attrB)));
+
+        attributesService.removeAll(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList("A")).get();
+        Assert.assertFalse(attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, "A").get().isPresent());
+        found = attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Arrays.asList("A", "B")).get();
+        Assert.assertEquals(Collections.singletonList(attrB), found);
+
+        attributesService.evictFromCache(deviceId, DataConstants.SERVER_SCOPE, Arrays.asList("A", "B"));
+        found = attributesService.find(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Arrays.asList("A", "B")).get();
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("B", found.get(0).getKey());
+    }
+
 }
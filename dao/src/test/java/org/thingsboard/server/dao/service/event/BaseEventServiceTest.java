@@ -16,6 +16,8 @@
 package org.thingsboard.server.dao.service.event;
 
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.junit.Assert;
 import org.junit.Test;
 import org.thingsboard.server.common.data.DataConstants;
@@ -33,7 +35,10 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public abstract class BaseEventServiceTest extends AbstractServiceTest {
 
@@ -48,6 +53,22 @@ public abstract class BaseEventServiceTest extends AbstractServiceTest {
         Assert.assertEquals(saved, loaded.get());
     }
 
+    @Test
+    public void saveEventsAsync() throws Exception {
+        DeviceId devId = new DeviceId(UUIDs.timeBased());
+        TenantId tenantId = new TenantId(UUIDs.timeBased());
+        List<ListenableFuture<Event>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(eventService.saveAsync(generateEvent(tenantId, devId, DataConstants.DEBUG_RULE_NODE, null)));
+        }
+        List<Event> saved = Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(100, saved.size());
+
+        TimePageData<Event> events = eventService.findEvents(tenantId, devId, DataConstants.DEBUG_RULE_NODE, new TimePageLink(200));
+        Assert.assertEquals(100, events.getData().size());
+        Assert.assertTrue(events.getData().containsAll(saved));
+    }
+
     @Test
     public void saveEventIfNotExists() throws Exception {
         DeviceId devId = new DeviceId(UUIDs.timeBased());
@@ -0,0 +1,200 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.dao.exception.BufferLimitException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TbSqlBlockingQueueWrapperTest {
+
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlBlockingQueueWrapper<String[]> queue;
+
+    @Before
+    public void before() {
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+    }
+
+    @After
+    public void after() {
+        if (queue != null) {
+            queue.destroy();
+        }
+        logExecutor.stop();
+    }
+
+    @Test
+    public void testElementsOfSameEntityAreSavedInOrderBySingleWriter() throws Exception {
+        Map<String, List<String>> savedByEntity = new ConcurrentHashMap<>();
+        Map<String, String> writerByEntity = new ConcurrentHashMap<>();
+        queue = new TbSqlBlockingQueueWrapper<>(params(), v -> v[0].hashCode(), 4);
+        queue.init(logExecutor, batch -> batch.forEach(v -> {
+            savedByEntity.computeIfAbsent(v[0], k -> Collections.synchronizedList(new ArrayList<>())).add(v[1]);
+            String writer = writerByEntity.putIfAbsent(v[0], Thread.currentThread().getName());
+            assertTrue(writer == null || writer.equals(Thread.currentThread().getName()));
+        }));
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            for (int entity = 0; entity < 10; entity++) {
+                futures.add(queue.add(new String[]{"entity" + entity, Integer.toString(i)}));
+            }
+        }
+        Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+
+        assertEquals(10, savedByEntity.size());
+        for (List<String> values : savedByEntity.values()) {
+            assertEquals(100, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(Integer.toString(i), values.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testLastWriteWinsWithinBatch() throws Exception {
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        queue = new TbSqlBlockingQueueWrapper<>(params(), v -> 0, 1, v -> v[0]);
+        queue.init(logExecutor, batch -> {
+            try {
+                blockLatch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            List<String> values = new ArrayList<>();
+            batch.forEach(v -> values.add(v[0] + "=" + v[1]));
+            batches.add(values);
+        });
+
+        ListenableFuture<Void> first = queue.add(new String[]{"first", "0"});
+        // wait until the writer takes the first element and blocks, so the rest form a single batch
+        Thread.sleep(200);
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        futures.add(queue.add(new String[]{"a", "1"}));
+        futures.add(queue.add(new String[]{"b", "1"}));
+        futures.add(queue.add(new String[]{"a", "2"}));
+        futures.add(queue.add(new String[]{"c", "1"}));
+        futures.add(queue.add(new String[]{"a", "3"}));
+        blockLatch.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList("b=1", "c=1", "a=3"), batches.get(1));
+    }
+
+    @Test
+    public void testElementsAreDroppedWhenQueueIsFull() throws Exception {
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        List<String> saved = Collections.synchronizedList(new ArrayList<>());
+        queue = new TbSqlBlockingQueueWrapper<>(TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(1000)
+                .maxDelay(10)
+                .statsPrintIntervalMs(60000)
+                .maxQueueSize(2)
+                .build(), v -> 0, 1);
+        queue.init(logExecutor, batch -> {
+            try {
+                blockLatch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            batch.forEach(v -> saved.add(v[0]));
+        });
+
+        ListenableFuture<Void> first = queue.add(new String[]{"first"});
+        // wait until the writer takes the first element and blocks
+        Thread.sleep(200);
+        ListenableFuture<Void> second = queue.add(new String[]{"second"});
+        ListenableFuture<Void> third = queue.add(new String[]{"third"});
+        ListenableFuture<Void> dropped = queue.add(new String[]{"dropped"});
+        try {
+            dropped.get(1, TimeUnit.SECONDS);
+            fail("Element is not dropped");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BufferLimitException);
+        }
+        blockLatch.countDown();
+
+        Futures.allAsList(first, second, third).get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("first", "second", "third"), saved);
+    }
+
+    @Test
+    public void testQueuedElementsAreSavedOnDestroy() throws Exception {
+        List<String> saved = Collections.synchronizedList(new ArrayList<>());
+        queue = new TbSqlBlockingQueueWrapper<>(TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(1)
+                .maxDelay(10)
+                .statsPrintIntervalMs(60000)
+                .build(), v -> 0, 1);
+        queue.init(logExecutor, batch -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            batch.forEach(v -> saved.add(v[0]));
+        });
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(queue.add(new String[]{Integer.toString(i)}));
+        }
+        queue.destroy();
+
+        Futures.allAsList(futures).get(1, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4"), saved);
+        try {
+            queue.add(new String[]{"late"}).get(1, TimeUnit.SECONDS);
+            fail("Element is added to the stopped queue");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static TbSqlBlockingQueueParams params() {
+        return TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(1000)
+                .maxDelay(10)
+                .statsPrintIntervalMs(60000)
+                .build();
+    }
+}
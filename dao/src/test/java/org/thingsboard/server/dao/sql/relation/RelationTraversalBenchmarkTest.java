@@ -0,0 +1,153 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import com.datastax.driver.core.utils.UUIDs;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.UUIDConverter;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the traversal of a 5 level asset tree with 111110 relations (10 children per asset)
+ * with one query per entity, with one IN query per level and with the single recursive query.
+ * Runs only against an empty PostgreSQL database passed with -Dtb.benchmark.psql.url=jdbc:postgresql://host:5432/db
+ * (credentials with -Dtb.benchmark.psql.username and -Dtb.benchmark.psql.password).
+ */
+@Slf4j
+public class RelationTraversalBenchmarkTest {
+
+    private static final int LEVELS = 5;
+    private static final int CHILDREN = 10;
+    private static final int MAX_IDS_PER_QUERY = 1000;
+    private static final int ITERATIONS = 5;
+
+    private static final String SELECT_BY_FROM = "SELECT to_id FROM relation WHERE relation_type_group = ? AND from_type = ? AND from_id = ?";
+    private static final String SELECT_BY_FROM_IN = "SELECT to_id FROM relation WHERE relation_type_group = ? AND from_type = ? AND from_id IN (%s)";
+
+    private JdbcTemplate jdbcTemplate;
+    private RelationRecursiveRepository recursiveRepository;
+    private AssetId rootId;
+    private int relationsCount;
+
+    @Before
+    public void before() {
+        String url = System.getProperty("tb.benchmark.psql.url");
+        Assume.assumeTrue("PostgreSQL benchmark is disabled", url != null);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                System.getProperty("tb.benchmark.psql.username", "postgres"),
+                System.getProperty("tb.benchmark.psql.password", "postgres"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS relation (from_id varchar(31), from_type varchar(255), to_id varchar(31), to_type varchar(255), " +
+                "relation_type_group varchar(255), relation_type varchar(255), additional_info varchar, " +
+                "CONSTRAINT relation_pkey PRIMARY KEY (from_id, from_type, relation_type_group, relation_type, to_id, to_type))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_relation_to_id ON relation(relation_type_group, to_type, to_id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_relation_from_id ON relation(relation_type_group, from_type, from_id)");
+        jdbcTemplate.execute("TRUNCATE relation");
+        recursiveRepository = new RelationRecursiveRepository();
+        ReflectionTestUtils.setField(recursiveRepository, "jdbcTemplate", jdbcTemplate);
+        createTree();
+    }
+
+    @Test
+    public void benchmarkTraversal() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            long perEntityNanos = measure(this::traversePerEntity);
+            long perLevelNanos = measure(this::traversePerLevel);
+            long recursiveNanos = measure(() -> recursiveRepository.findRelations(rootId, EntitySearchDirection.FROM, RelationTypeGroup.COMMON, LEVELS).size());
+            log.info("Traversal of {} relations: per entity {} ms, per level {} ms, recursive query {} ms",
+                    relationsCount, perEntityNanos / 1000000, perLevelNanos / 1000000, recursiveNanos / 1000000);
+        }
+    }
+
+    private long measure(TraversalTask task) {
+        long startTs = System.nanoTime();
+        assertEquals(relationsCount, task.traverse());
+        return System.nanoTime() - startTs;
+    }
+
+    private int traversePerEntity() {
+        int count = 0;
+        List<String> levelIds = Collections.singletonList(UUIDConverter.fromTimeUUID(rootId.getId()));
+        for (int level = 0; level < LEVELS; level++) {
+            List<String> nextLevelIds = new ArrayList<>();
+            for (String id : levelIds) {
+                nextLevelIds.addAll(jdbcTemplate.queryForList(SELECT_BY_FROM, String.class, RelationTypeGroup.COMMON.name(), EntityType.ASSET.name(), id));
+            }
+            count += nextLevelIds.size();
+            levelIds = nextLevelIds;
+        }
+        return count;
+    }
+
+    private int traversePerLevel() {
+        int count = 0;
+        List<String> levelIds = Collections.singletonList(UUIDConverter.fromTimeUUID(rootId.getId()));
+        for (int level = 0; level < LEVELS; level++) {
+            List<String> nextLevelIds = new ArrayList<>();
+            for (int i = 0; i < levelIds.size(); i += MAX_IDS_PER_QUERY) {
+                List<String> ids = levelIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, levelIds.size()));
+                List<Object> args = new ArrayList<>();
+                args.add(RelationTypeGroup.COMMON.name());
+                args.add(EntityType.ASSET.name());
+                args.addAll(ids);
+                String query = String.format(SELECT_BY_FROM_IN, String.join(",", Collections.nCopies(ids.size(), "?")));
+                nextLevelIds.addAll(jdbcTemplate.queryForList(query, String.class, args.toArray()));
+            }
+            count += nextLevelIds.size();
+            levelIds = nextLevelIds;
+        }
+        return count;
+    }
+
+    private void createTree() {
+        rootId = new AssetId(UUIDs.timeBased());
+        List<String> levelIds = Collections.singletonList(UUIDConverter.fromTimeUUID(rootId.getId()));
+        for (int level = 0; level < LEVELS; level++) {
+            List<String> nextLevelIds = new ArrayList<>();
+            List<Object[]> rows = new ArrayList<>();
+            for (String parentId : levelIds) {
+                for (int i = 0; i < CHILDREN; i++) {
+                    String childId = UUIDConverter.fromTimeUUID(UUIDs.timeBased());
+                    nextLevelIds.add(childId);
+                    rows.add(new Object[]{parentId, EntityType.ASSET.name(), childId, EntityType.ASSET.name(), RelationTypeGroup.COMMON.name(), "Contains"});
+                }
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO relation (from_id, from_type, to_id, to_type, relation_type_group, relation_type) VALUES (?, ?, ?, ?, ?, ?)", rows);
+            relationsCount += rows.size();
+            levelIds = nextLevelIds;
+        }
+        jdbcTemplate.execute("ANALYZE relation");
+    }
+
+    private interface TraversalTask {
+        int traverse();
+    }
+}
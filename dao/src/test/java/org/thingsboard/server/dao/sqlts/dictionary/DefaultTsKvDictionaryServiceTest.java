@@ -0,0 +1,199 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sqlts.insert.dictionary.InsertTsKvDictionaryRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultTsKvDictionaryServiceTest {
+
+    private static final String BAD_KEY = "bad";
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(10);
+    private final TestInsertRepository repository = new TestInsertRepository();
+    private final TsKvDictionaryRepository dictionaryRepository = mock(TsKvDictionaryRepository.class);
+    private DefaultTsKvDictionaryService service;
+
+    @Before
+    public void before() {
+        service = new DefaultTsKvDictionaryService();
+        ReflectionTestUtils.setField(service, "insertDictionaryRepository", repository);
+        ReflectionTestUtils.setField(service, "dictionaryRepository", dictionaryRepository);
+        ReflectionTestUtils.setField(service, "logExecutor", mock(ScheduledLogExecutorComponent.class));
+        ReflectionTestUtils.setField(service, "preload", false);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "timeoutMs", 10000L);
+        ReflectionTestUtils.setField(service, "statsPrintIntervalMs", 10000L);
+        service.init();
+    }
+
+    @After
+    public void after() {
+        service.destroy();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLookupsOfSameKeyCreateItOnce() throws Exception {
+        repository.blockNextSave();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(callers.submit(() -> service.getOrSaveKeyId("temperature")));
+        }
+        Assert.assertTrue(repository.saveStarted.await(10, TimeUnit.SECONDS));
+        repository.releaseSave();
+
+        Integer keyId = results.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<Integer> result : results) {
+            Assert.assertEquals(keyId, result.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, repository.savedCount("temperature"));
+        Assert.assertEquals(keyId, service.getOrSaveKeyId("temperature"));
+        Assert.assertEquals(1, repository.savedCount("temperature"));
+    }
+
+    @Test
+    public void testBadKeyDoesNotFailOtherKeysOfBatch() throws Exception {
+        repository.blockNextSave();
+        Future<Integer> first = callers.submit(() -> service.getOrSaveKeyId("first"));
+        Assert.assertTrue(repository.saveStarted.await(10, TimeUnit.SECONDS));
+
+        Future<Integer> good = callers.submit(() -> service.getOrSaveKeyId("good"));
+        Future<Integer> bad = callers.submit(() -> service.getOrSaveKeyId(BAD_KEY));
+        BlockingQueue<?> creationQueue = (BlockingQueue<?>) ReflectionTestUtils.getField(service, "creationQueue");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (creationQueue.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, creationQueue.size());
+        repository.releaseSave();
+
+        Assert.assertNotNull(first.get(10, TimeUnit.SECONDS));
+        Assert.assertNotNull(good.get(10, TimeUnit.SECONDS));
+        try {
+            bad.get(10, TimeUnit.SECONDS);
+            Assert.fail("Bad key should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RuntimeException);
+        }
+        Assert.assertTrue(repository.batches.stream().anyMatch(batch -> batch.size() == 2));
+        Assert.assertTrue(repository.batches.contains(Collections.singletonList("good")));
+        Assert.assertTrue(repository.batches.contains(Collections.singletonList(BAD_KEY)));
+    }
+
+    @Test
+    public void testKeyIsResolvedById() {
+        Integer keyId = service.getOrSaveKeyId("temperature");
+        Assert.assertEquals("temperature", service.getKey(keyId));
+        verify(dictionaryRepository, never()).findByKeyId(keyId);
+
+        TsKvDictionary dictionary = new TsKvDictionary();
+        dictionary.setKey("humidity");
+        dictionary.setKeyId(100);
+        when(dictionaryRepository.findByKeyId(100)).thenReturn(Optional.of(dictionary));
+        Assert.assertEquals("humidity", service.getKey(100));
+        Assert.assertEquals("humidity", service.getKey(100));
+        verify(dictionaryRepository, times(1)).findByKeyId(100);
+        Assert.assertEquals(Integer.valueOf(100), service.getOrSaveKeyId("humidity"));
+
+        when(dictionaryRepository.findByKeyId(101)).thenReturn(Optional.empty());
+        Assert.assertNull(service.getKey(101));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooLongKeyIsRejected() {
+        char[] key = new char[DefaultTsKvDictionaryService.MAX_KEY_LENGTH + 1];
+        Arrays.fill(key, 'k');
+        try {
+            service.getOrSaveKeyId(new String(key));
+        } finally {
+            Assert.assertTrue(repository.batches.isEmpty());
+        }
+    }
+
+    private static class TestInsertRepository implements InsertTsKvDictionaryRepository {
+
+        private final ConcurrentMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+        private final AtomicInteger sequence = new AtomicInteger();
+        private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch saveStarted = new CountDownLatch(0);
+        private volatile CountDownLatch saveReleased = new CountDownLatch(0);
+
+        void blockNextSave() {
+            saveStarted = new CountDownLatch(1);
+            saveReleased = new CountDownLatch(1);
+        }
+
+        void releaseSave() {
+            saveReleased.countDown();
+        }
+
+        long savedCount(String key) {
+            return batches.stream().filter(batch -> batch.contains(key)).count();
+        }
+
+        @Override
+        public List<TsKvDictionary> saveOrGet(List<String> keys) {
+            batches.add(new ArrayList<>(keys));
+            saveStarted.countDown();
+            try {
+                saveReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (keys.contains(BAD_KEY)) {
+                throw new RuntimeException("value too long for type character varying(255)");
+            }
+            List<TsKvDictionary> result = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                TsKvDictionary dictionary = new TsKvDictionary();
+                dictionary.setKey(key);
+                dictionary.setKeyId(keyIds.computeIfAbsent(key, k -> sequence.incrementAndGet()));
+                result.add(dictionary);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.psql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the batch upsert and the COPY based ingest of ts_kv rows.
+ * Runs only against an empty PostgreSQL database passed with -Dtb.benchmark.psql.url=jdbc:postgresql://host:5432/db
+ * (credentials with -Dtb.benchmark.psql.username and -Dtb.benchmark.psql.password).
+ */
+@Slf4j
+public class PsqlInsertTsRepositoryBenchmarkTest {
+
+    private static final int ENTITIES = 100;
+    private static final int KEYS = 10;
+    private static final int BATCH_SIZE = 10000;
+    private static final int BATCHES = 50;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void before() {
+        String url = System.getProperty("tb.benchmark.psql.url");
+        Assume.assumeTrue("PostgreSQL benchmark is disabled", url != null);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                System.getProperty("tb.benchmark.psql.username", "postgres"),
+                System.getProperty("tb.benchmark.psql.password", "postgres"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS ts_kv (entity_id uuid NOT NULL, key int NOT NULL, ts bigint NOT NULL, bool_v boolean, " +
+                "str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json, CONSTRAINT ts_kv_pkey PRIMARY KEY (entity_id, key, ts))");
+    }
+
+    @Test
+    public void benchmarkBatchInsertAndCopy() {
+        List<UUID> entityIds = new ArrayList<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            entityIds.add(UUID.randomUUID());
+        }
+        long batchRowsPerSecond = run(entityIds, false);
+        long copyRowsPerSecond = run(entityIds, true);
+        log.info("Batch insert: {} rows/sec, COPY insert: {} rows/sec", batchRowsPerSecond, copyRowsPerSecond);
+    }
+
+    private long run(List<UUID> entityIds, boolean copyInsertEnabled) {
+        jdbcTemplate.execute("TRUNCATE ts_kv");
+        PsqlInsertTsRepository repository = new PsqlInsertTsRepository();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(repository, "removeNullChars", true);
+        ReflectionTestUtils.setField(repository, "copyInsertEnabled", copyInsertEnabled);
+
+        long ts = System.currentTimeMillis();
+        long startTs = System.nanoTime();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            List<TsKvEntity> entities = new ArrayList<>(BATCH_SIZE);
+            while (entities.size() < BATCH_SIZE) {
+                ts++;
+                for (UUID entityId : entityIds) {
+                    for (int key = 0; key < KEYS && entities.size() < BATCH_SIZE; key++) {
+                        entities.add(createEntity(entityId, key, ts));
+                    }
+                }
+            }
+            transactionTemplate.execute(status -> {
+                repository.saveOrUpdate(entities);
+                return null;
+            });
+        }
+        long elapsedNanos = System.nanoTime() - startTs;
+        long rows = (long) BATCHES * BATCH_SIZE;
+        assertEquals(rows, jdbcTemplate.queryForObject("SELECT count(*) FROM ts_kv", Long.class).longValue());
+        return rows * 1000000000L / elapsedNanos;
+    }
+
+    private static TsKvEntity createEntity(UUID entityId, int key, long ts) {
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(entityId);
+        entity.setKey(key);
+        entity.setTs(ts);
+        if (key % 2 == 0) {
+            entity.setDoubleValue(ts / 3.0);
+        } else {
+            entity.setLongValue(ts);
+        }
+        return entity;
+    }
+}
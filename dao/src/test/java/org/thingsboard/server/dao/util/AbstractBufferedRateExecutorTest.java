@@ -0,0 +1,219 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.thingsboard.server.dao.util.AbstractBufferedRateExecutor.FAIR_DISPATCHER_MODE;
+import static org.thingsboard.server.dao.util.AbstractBufferedRateExecutor.LANES_DISPATCHER_MODE;
+import static org.thingsboard.server.dao.util.AbstractBufferedRateExecutor.QUEUE_DISPATCHER_MODE;
+
+public class AbstractBufferedRateExecutorTest {
+
+    private final ScheduledExecutorService queryExecutor = Executors.newScheduledThreadPool(4);
+    private TestExecutor executor;
+
+    @After
+    public void after() {
+        if (executor != null) {
+            executor.stop();
+        }
+        queryExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testAllTasksCompleteInQueueMode() throws Exception {
+        executor = new TestExecutor(1000, 4, 60000, QUEUE_DISPATCHER_MODE, 5);
+        assertAllTasksComplete(200);
+    }
+
+    @Test
+    public void testAllTasksCompleteInLanesMode() throws Exception {
+        executor = new TestExecutor(1000, 4, 60000, LANES_DISPATCHER_MODE, 5);
+        assertAllTasksComplete(200);
+        Assert.assertTrue(executor.maxConcurrency.get() <= 4);
+        Assert.assertEquals(0, executor.concurrencyLevel.get());
+        Assert.assertEquals(200, executor.totalReleased.sum());
+    }
+
+    @Test
+    public void testAllTasksCompleteInFairMode() throws Exception {
+        executor = new TestExecutor(1000, 4, 60000, FAIR_DISPATCHER_MODE, 5);
+        assertAllTasksComplete(200);
+        Assert.assertTrue(executor.maxConcurrency.get() <= 4);
+        Assert.assertEquals(200, executor.totalReleased.sum());
+        List<TenantQueueStats> stats = executor.getTenantQueueStats();
+        Assert.assertEquals(1, stats.size());
+        Assert.assertEquals(200, stats.get(0).getLaunched());
+    }
+
+    @Test
+    public void testTasksAreRejectedWhenLanesAreFull() throws Exception {
+        executor = new TestExecutor(4, 1, 60000, LANES_DISPATCHER_MODE, 200);
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(new TestTask()));
+        }
+        int rejected = 0;
+        for (ListenableFuture<String> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+                rejected++;
+            }
+        }
+        Assert.assertTrue(rejected > 0);
+        Assert.assertEquals(rejected, executor.totalRejected.sum());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTaskIsOfferedToOtherLanesWhenLaneIsFull() {
+        AbstractBufferedRateExecutor.DispatcherLane<TestTask, String>[] lanes = new AbstractBufferedRateExecutor.DispatcherLane[3];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new AbstractBufferedRateExecutor.DispatcherLane<>(1);
+        }
+        Assert.assertTrue(AbstractBufferedRateExecutor.offer(lanes, 0, newTaskCtx()));
+        Assert.assertEquals(1, lanes[0].size());
+
+        Assert.assertTrue(AbstractBufferedRateExecutor.offer(lanes, 0, newTaskCtx()));
+        Assert.assertEquals(1, lanes[1].size());
+        Assert.assertTrue(AbstractBufferedRateExecutor.offer(lanes, 1, newTaskCtx()));
+        Assert.assertEquals(1, lanes[2].size());
+
+        Assert.assertFalse(AbstractBufferedRateExecutor.offer(lanes, 2, newTaskCtx()));
+        for (AbstractBufferedRateExecutor.DispatcherLane<TestTask, String> lane : lanes) {
+            Assert.assertEquals(1, lane.size());
+        }
+    }
+
+    @Test
+    public void testTasksExpireAfterMaxWaitTime() throws Exception {
+        executor = new TestExecutor(100, 1, 100, QUEUE_DISPATCHER_MODE, 300);
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(executor.submit(new TestTask()));
+        }
+        for (ListenableFuture<String> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("Task should expire");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        }
+        Assert.assertTrue(executor.totalExpired.sum() > 0);
+    }
+
+    @Test
+    public void testTasksExpireInLaneInLanesMode() throws Exception {
+        executor = new TestExecutor(100, 1, 100, LANES_DISPATCHER_MODE, 300);
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(executor.submit(new TestTask()));
+        }
+        int completed = 0;
+        for (ListenableFuture<String> future : futures) {
+            try {
+                Assert.assertEquals("done", future.get(10, TimeUnit.SECONDS));
+                completed++;
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        }
+        // the launched task is not timed out by the executor, the tasks that waited for too long are never launched
+        Assert.assertEquals(1, completed);
+        Assert.assertEquals(1, executor.totalLaunched.sum());
+        Assert.assertEquals(2, executor.totalExpired.sum());
+        Assert.assertEquals(0, executor.concurrencyLevel.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDispatcherMode() {
+        new TestExecutor(100, 1, 100, "unknown", 0);
+    }
+
+    private static AsyncTaskContext<TestTask, String> newTaskCtx() {
+        return new AsyncTaskContext<>(UUID.randomUUID(), new TestTask(), SettableFuture.create(), System.currentTimeMillis());
+    }
+
+    private void assertAllTasksComplete(int count) throws Exception {
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(new TestTask()));
+        }
+        for (ListenableFuture<String> future : futures) {
+            Assert.assertEquals("done", future.get(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private static class TestTask implements AsyncTask {
+        @Override
+        public TenantId getTenantId() {
+            return TenantId.SYS_TENANT_ID;
+        }
+    }
+
+    private class TestExecutor extends AbstractBufferedRateExecutor<TestTask, ListenableFuture<String>, String> {
+
+        private final long queryDurationMs;
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrency = new AtomicInteger();
+
+        TestExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, String dispatcherMode, long queryDurationMs) {
+            super(queueLimit, concurrencyLimit, maxWaitTime, 2, 2, 10, false, null, 0, dispatcherMode);
+            this.queryDurationMs = queryDurationMs;
+        }
+
+        @Override
+        protected SettableFuture<String> create() {
+            return SettableFuture.create();
+        }
+
+        @Override
+        protected ListenableFuture<String> wrap(TestTask task, SettableFuture<String> future) {
+            return future;
+        }
+
+        @Override
+        protected ListenableFuture<String> execute(AsyncTaskContext<TestTask, String> taskCtx) {
+            int current = running.incrementAndGet();
+            maxConcurrency.accumulateAndGet(current, Math::max);
+            SettableFuture<String> result = SettableFuture.create();
+            queryExecutor.schedule(() -> {
+                running.decrementAndGet();
+                result.set("done");
+            }, queryDurationMs, TimeUnit.MILLISECONDS);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+public class TenantFairTaskQueueTest {
+
+    private static final TenantId TENANT_A = new TenantId(UUID.fromString("0e0f2f00-1dd2-11b2-8080-808080808080"));
+    private static final TenantId TENANT_B = new TenantId(UUID.fromString("1e0f2f00-1dd2-11b2-8080-808080808080"));
+
+    @Test
+    public void testTenantsAreServedInRoundRobin() throws Exception {
+        TenantFairTaskQueue<TestTask, Void> queue = new TenantFairTaskQueue<>(100, 100, 1, null);
+        offer(queue, TENANT_A, 5);
+        offer(queue, TENANT_B, 2);
+        Assert.assertEquals(Arrays.asList(TENANT_A, TENANT_B, TENANT_A, TENANT_B, TENANT_A, TENANT_A, TENANT_A), take(queue, 7));
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testTenantsAreServedAccordingToWeights() throws Exception {
+        TenantFairTaskQueue<TestTask, Void> queue = new TenantFairTaskQueue<>(100, 100, 1, TENANT_A.getId() + ":3");
+        offer(queue, TENANT_A, 6);
+        offer(queue, TENANT_B, 6);
+        Assert.assertEquals(Arrays.asList(TENANT_A, TENANT_A, TENANT_A, TENANT_B, TENANT_A, TENANT_A, TENANT_A, TENANT_B), take(queue, 8));
+    }
+
+    @Test
+    public void testTenantQueueIsBounded() {
+        TenantFairTaskQueue<TestTask, Void> queue = new TenantFairTaskQueue<>(100, 3, 1, null);
+        Assert.assertEquals(3, offer(queue, TENANT_A, 5));
+        Assert.assertEquals(3, offer(queue, TENANT_B, 5));
+        Assert.assertEquals(6, queue.size());
+    }
+
+    @Test
+    public void testStatsAreReportedPerTenant() throws Exception {
+        TenantFairTaskQueue<TestTask, Void> queue = new TenantFairTaskQueue<>(100, 100, 1, null);
+        offer(queue, TENANT_A, 2);
+        offer(queue, TENANT_B, 1);
+        AsyncTaskContext<TestTask, Void> taskCtx = queue.take();
+        queue.onLaunch(taskCtx, taskCtx.getCreateTime() + 10);
+        List<TenantQueueStats> stats = queue.getStatsAndReset();
+        Assert.assertEquals(2, stats.size());
+        for (TenantQueueStats tenantStats : stats) {
+            if (tenantStats.getTenantId().equals(TENANT_A)) {
+                Assert.assertEquals(1, tenantStats.getQueueSize());
+                Assert.assertEquals(1, tenantStats.getLaunched());
+                Assert.assertEquals(10, tenantStats.getMaxWaitTime());
+            } else {
+                Assert.assertEquals(1, tenantStats.getQueueSize());
+                Assert.assertEquals(0, tenantStats.getLaunched());
+            }
+        }
+    }
+
+    @Test
+    public void testIdleTenantQueuesAreRemoved() throws Exception {
+        TenantFairTaskQueue<TestTask, Void> queue = new TenantFairTaskQueue<>(100, 100, 1, null);
+        offer(queue, TENANT_A, 1);
+        offer(queue, TENANT_B, 2);
+        for (int i = 0; i < 2; i++) {
+            AsyncTaskContext<TestTask, Void> taskCtx = queue.take();
+            queue.onLaunch(taskCtx, taskCtx.getCreateTime());
+        }
+        Assert.assertEquals(2, queue.getStatsAndReset().size());
+        Assert.assertEquals(2, queue.getTenantQueuesCount());
+
+        // tenant A stayed idle for the whole interval, tenant B still has queued tasks
+        Assert.assertEquals(1, queue.getStatsAndReset().size());
+        Assert.assertEquals(1, queue.getTenantQueuesCount());
+
+        offer(queue, TENANT_A, 1);
+        Assert.assertEquals(2, queue.getTenantQueuesCount());
+        Assert.assertEquals(Arrays.asList(TENANT_A, TENANT_B), take(queue, 2));
+        Assert.assertEquals(0, queue.size());
+    }
+
+    private static int offer(TenantFairTaskQueue<TestTask, Void> queue, TenantId tenantId, int count) {
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            if (queue.offer(new AsyncTaskContext<>(UUID.randomUUID(), new TestTask(tenantId), SettableFuture.create(), System.currentTimeMillis()))) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    private static List<TenantId> take(TenantFairTaskQueue<TestTask, Void> queue, int count) throws InterruptedException {
+        List<TenantId> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(queue.take().getTask().getTenantId());
+        }
+        return result;
+    }
+
+    private static class TestTask implements AsyncTask {
+
+        private final TenantId tenantId;
+
+        TestTask(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        @Override
+        public TenantId getTenantId() {
+            return tenantId;
+        }
+    }
+}
@@ -58,6 +58,8 @@ JsInvokeMessageProcessor.prototype.onJsInvokeMessage = function(message) {
             this.processInvokeRequest(requestId, responseTopic, headers, request.invokeRequest);
         } else if (request.releaseRequest) {
             this.processReleaseRequest(requestId, responseTopic, headers, request.releaseRequest);
+        } else if (request.invokeBatchRequest) {
+            this.processInvokeBatchRequest(requestId, responseTopic, headers, request.invokeBatchRequest);
         } else {
             logger.error('[%s] Unknown request received!', requestId);
         }
@@ -88,6 +90,29 @@ JsInvokeMessageProcessor.prototype.processCompileRequest = function(requestId, r
 }
 
 JsInvokeMessageProcessor.prototype.processInvokeRequest = function(requestId, responseTopic, headers, invokeRequest) {
+    var scriptId = getScriptId(invokeRequest);
+    this.invokeScript(requestId, invokeRequest).then(
+        (invokeResponse) => {
+            this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
+        }
+    );
+}
+
+JsInvokeMessageProcessor.prototype.processInvokeBatchRequest = function(requestId, responseTopic, headers, invokeBatchRequest) {
+    var invokeRequests = invokeBatchRequest.invokeRequests || [];
+    logger.debug('[%s] Processing invoke batch request, size: [%s]', requestId, invokeRequests.length);
+    Promise.all(invokeRequests.map((invokeRequest) => this.invokeScript(requestId, invokeRequest))).then(
+        (invokeResponses) => {
+            var invokeBatchResponse = {
+                invokeResponses: invokeResponses
+            };
+            logger.debug('[%s] Sending invoke batch response, size: [%s]', requestId, invokeResponses.length);
+            this.sendResponse(requestId, responseTopic, headers, requestId, null, null, null, invokeBatchResponse);
+        }
+    );
+}
+
+JsInvokeMessageProcessor.prototype.invokeScript = function(requestId, invokeRequest) {
     var scriptId = getScriptId(invokeRequest);
     logger.debug('[%s] Processing invoke request, scriptId: [%s]', requestId, scriptId);
     this.executedScriptsCounter++;
@@ -97,13 +122,12 @@ JsInvokeMessageProcessor.prototype.processInvokeRequest = function(requestId, re
             logger.debug('[%s] Executing script body: [%s]', scriptId, invokeRequest.scriptBody);
         }
     }
-    this.getOrCompileScript(scriptId, invokeRequest.scriptBody).then(
+    return this.getOrCompileScript(scriptId, invokeRequest.scriptBody).then(
         (script) => {
-            this.executor.executeScript(script, invokeRequest.args, invokeRequest.timeout).then(
+            return this.executor.executeScript(script, invokeRequest.args, invokeRequest.timeout).then(
                 (result) => {
-                    var invokeResponse = createInvokeResponse(result, true);
-                    logger.debug('[%s] Sending success invoke response, scriptId: [%s]', requestId, scriptId);
-                    this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
+                    logger.debug('[%s] Success invoke response, scriptId: [%s]', requestId, scriptId);
+                    return createInvokeResponse(result, true);
                 },
                 (err) => {
                     var errorCode;
@@ -112,16 +136,14 @@ JsInvokeMessageProcessor.prototype.processInvokeRequest = function(requestId, re
                     } else {
                         errorCode = RUNTIME_ERROR;
                     }
-                    var invokeResponse = createInvokeResponse("", false, errorCode, err);
-                    logger.debug('[%s] Sending failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, errorCode);
-                    this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
+                    logger.debug('[%s] Failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, errorCode);
+                    return createInvokeResponse("", false, errorCode, err);
                 }
             )
         },
         (err) => {
-            var invokeResponse = createInvokeResponse("", false, COMPILATION_ERROR, err);
-            logger.debug('[%s] Sending failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, COMPILATION_ERROR);
-            this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
+            logger.debug('[%s] Failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, COMPILATION_ERROR);
+            return createInvokeResponse("", false, COMPILATION_ERROR, err);
         }
     );
 }
@@ -141,8 +163,8 @@ JsInvokeMessageProcessor.prototype.processReleaseRequest = function(requestId, r
     this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, releaseResponse);
 }
 
-JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse) {
-    var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse);
+JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse) {
+    var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse);
     var rawResponse = Buffer.from(JSON.stringify(remoteResponse), 'utf8');
     this.producer.send(responseTopic, scriptId, rawResponse, headers).then(
         () => {},
@@ -187,14 +209,15 @@ JsInvokeMessageProcessor.prototype.cacheScript = function(scriptId, script) {
     this.scriptMap[scriptId] = script;
 }
 
-function createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse) {
+function createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse) {
     const requestIdBits = Utils.UUIDToBits(requestId);
     return {
             requestIdMSB: requestIdBits[0],
             requestIdLSB: requestIdBits[1],
             compileResponse: compileResponse,
             invokeResponse: invokeResponse,
-            releaseResponse: releaseResponse
+            releaseResponse: releaseResponse,
+            invokeBatchResponse: invokeBatchResponse
     };
 }
 
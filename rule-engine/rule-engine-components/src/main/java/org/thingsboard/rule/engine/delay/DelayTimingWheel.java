@@ -0,0 +1,168 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.delay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hierarchical timing wheel. Each level has wheelSize buckets of tickMs,
+ * and the values that do not fit into the level are kept in the next level with the ticks of the whole level.
+ * The values of the higher level bucket are moved to the lower levels when its time comes.
+ * Values are never released before their expiration time, and at most tickMs after it.
+ * Not thread safe: it is used from the rule node actor only.
+ */
+class DelayTimingWheel<T> {
+
+    private final DelayTimingWheel<T> root;
+    private final ToLongFunction<T> expirationFunction;
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final List<T>[] buckets;
+
+    // Start of the first bucket that is not released yet
+    private long currentTime;
+    private DelayTimingWheel<T> overflowWheel;
+    private int size;
+
+    DelayTimingWheel(long tickMs, int wheelSize, long startMs, ToLongFunction<T> expirationFunction) {
+        this(null, tickMs, wheelSize, startMs - (startMs % tickMs), expirationFunction);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DelayTimingWheel(DelayTimingWheel<T> root, long tickMs, int wheelSize, long currentTime, ToLongFunction<T> expirationFunction) {
+        this.root = root != null ? root : this;
+        this.expirationFunction = expirationFunction;
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.buckets = new List[wheelSize];
+        this.currentTime = currentTime;
+    }
+
+    /**
+     * Returns false if the value is already expired and was not added.
+     */
+    boolean add(T value) {
+        long expiration = expirationFunction.applyAsLong(value);
+        if (expiration < currentTime) {
+            return false;
+        }
+        if (size == 0 && root == this) {
+            overflowWheel = null;
+        }
+        addToLevel(value, expiration);
+        root.size++;
+        return true;
+    }
+
+    /**
+     * Releases the values that expired up to the given time.
+     */
+    void advance(long timeMs, Consumer<T> consumer) {
+        if (size == 0) {
+            if (timeMs - tickMs >= currentTime) {
+                currentTime = timeMs - (timeMs % tickMs);
+                overflowWheel = null;
+            }
+            return;
+        }
+        while (currentTime + tickMs <= timeMs) {
+            List<T> bucket = takeBucket();
+            if (bucket != null) {
+                size -= bucket.size();
+                bucket.forEach(consumer);
+            }
+            tick();
+        }
+    }
+
+    void removeIf(Predicate<T> filter) {
+        for (DelayTimingWheel<T> wheel = this; wheel != null; wheel = wheel.overflowWheel) {
+            for (List<T> bucket : wheel.buckets) {
+                if (bucket != null) {
+                    int sizeBefore = bucket.size();
+                    bucket.removeIf(filter);
+                    size -= sizeBefore - bucket.size();
+                }
+            }
+        }
+    }
+
+    void forEach(Consumer<T> consumer) {
+        for (DelayTimingWheel<T> wheel = this; wheel != null; wheel = wheel.overflowWheel) {
+            for (List<T> bucket : wheel.buckets) {
+                if (bucket != null) {
+                    bucket.forEach(consumer);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int levels() {
+        return overflowWheel == null ? 1 : overflowWheel.levels() + 1;
+    }
+
+    private void addToLevel(T value, long expiration) {
+        if (expiration < currentTime + interval) {
+            int idx = (int) ((expiration / tickMs) % wheelSize);
+            List<T> bucket = buckets[idx];
+            if (bucket == null) {
+                bucket = new ArrayList<>(4);
+                buckets[idx] = bucket;
+            }
+            bucket.add(value);
+        } else {
+            if (overflowWheel == null) {
+                long windowStart = currentTime - (currentTime % interval);
+                overflowWheel = new DelayTimingWheel<>(root, interval, wheelSize, windowStart + interval, expirationFunction);
+            }
+            overflowWheel.addToLevel(value, expiration);
+        }
+    }
+
+    private List<T> takeBucket() {
+        int idx = (int) ((currentTime / tickMs) % wheelSize);
+        List<T> bucket = buckets[idx];
+        buckets[idx] = null;
+        return bucket;
+    }
+
+    /**
+     * Moves to the next bucket. When the whole level is passed, the next bucket of the overflow wheel
+     * is distributed over the lower levels.
+     */
+    private void tick() {
+        currentTime += tickMs;
+        if (overflowWheel != null && currentTime % interval == 0) {
+            List<T> bucket = overflowWheel.takeBucket();
+            overflowWheel.tick();
+            if (bucket != null) {
+                for (T value : bucket) {
+                    root.addToLevel(value, expirationFunction.applyAsLong(value));
+                }
+            }
+        }
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.thingsboard.rule.engine.delay;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.thingsboard.rule.engine.api.RuleNode;
@@ -23,16 +26,33 @@ import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
-import static org.thingsboard.rule.engine.api.TbRelationTypes.FAILURE;
+import static org.thingsboard.common.util.DonAsynchron.withCallback;
 import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
 
 @Slf4j
@@ -50,23 +70,58 @@ import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
 public class TbMsgDelayNode implements TbNode {
 
     private static final String TB_MSG_DELAY_NODE_MSG = "TbMsgDelayNodeMsg";
+    private static final String TB_MSG_DELAY_NODE_TICK_MSG = "TbMsgDelayNodeTickMsg";
+    private static final String TB_MSG_DELAY_NODE_RESTORE_MSG = "TbMsgDelayNodeRestoreMsg";
+    private static final String PENDING_MSG_KEY_PREFIX = "delayedMsg_";
+    // Pending messages are kept apart from the other attributes of the rule node, so they are restored without reading the other attributes
+    static final String PENDING_MSGS_SCOPE = "DELAY_NODE_PENDING_MSGS";
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 512;
+
+    private final Queue<PendingMsg> restoredMsgs = new ConcurrentLinkedQueue<>();
+    private final Set<UUID> releasingMsgIds = ConcurrentHashMap.newKeySet();
+    // Messages to be saved with the next tick, and released messages to be removed with the next tick
+    private final Map<PendingMsg, TbMsg> unsavedMsgs = new LinkedHashMap<>();
+    private final Queue<PendingMsg> releasedMsgs = new ConcurrentLinkedQueue<>();
 
     private TbMsgDelayNodeConfiguration config;
     private Map<UUID, TbMsg> pendingMsgs;
+    private DelayTimingWheel<PendingMsg> wheel;
+    private UUID nextTickId;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbMsgDelayNodeConfiguration.class);
-        this.pendingMsgs = new HashMap<>();
+        if (config.isUseTimingWheel()) {
+            this.wheel = new DelayTimingWheel<>(TICK_MS, WHEEL_SIZE, System.currentTimeMillis(), PendingMsg::getExpirationTs);
+            if (config.isPersistPendingMsgs()) {
+                restorePendingMsgs(ctx);
+            }
+        } else {
+            this.pendingMsgs = new HashMap<>();
+        }
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
         if (msg.getType().equals(TB_MSG_DELAY_NODE_MSG)) {
-            TbMsg pendingMsg = pendingMsgs.remove(UUID.fromString(msg.getData()));
+            TbMsg pendingMsg = pendingMsgs != null ? pendingMsgs.remove(UUID.fromString(msg.getData())) : null;
             if (pendingMsg != null) {
                 ctx.enqueueForTellNext(pendingMsg, SUCCESS);
             }
+        } else if (msg.getType().equals(TB_MSG_DELAY_NODE_TICK_MSG)) {
+            if (nextTickId != null && nextTickId.toString().equals(msg.getData())) {
+                nextTickId = null;
+                wheel.advance(System.currentTimeMillis(), pendingMsg -> release(ctx, pendingMsg));
+                flushPendingMsgs(ctx);
+                scheduleTickMsg(ctx);
+            }
+        } else if (msg.getType().equals(TB_MSG_DELAY_NODE_RESTORE_MSG)) {
+            if (wheel != null) {
+                addRestoredMsgs(ctx);
+            }
+        } else if (wheel != null) {
+            delay(ctx, msg);
         } else {
             if (pendingMsgs.size() < config.getMaxPendingMsgs()) {
                 pendingMsgs.put(msg.getId(), msg);
@@ -79,6 +134,144 @@ public class TbMsgDelayNode implements TbNode {
         }
     }
 
+    @Override
+    public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
+        if (wheel != null && config.isPersistPendingMsgs()) {
+            // Messages of the originators that moved to other servers are restored there from the attributes of the rule node
+            flushPendingMsgs(ctx);
+            wheel.removeIf(pendingMsg -> !ctx.isLocalEntity(pendingMsg.toTbMsg().getOriginator()));
+            restorePendingMsgs(ctx);
+        }
+    }
+
+    private void delay(TbContext ctx, TbMsg msg) {
+        if (wheel.size() >= config.getMaxPendingMsgs()) {
+            ctx.tellFailure(msg, new RuntimeException("Max limit of pending messages reached!"));
+            return;
+        }
+        long ts = System.currentTimeMillis();
+        PendingMsg pendingMsg = new PendingMsg(msg.getId(), ts + getDelay(msg), TbMsg.toByteArray(msg));
+        wheel.advance(ts, expiredMsg -> release(ctx, expiredMsg));
+        if (config.isPersistPendingMsgs()) {
+            // the message is acknowledged once it is saved with the next tick, or once it is pushed if released before that
+            unsavedMsgs.put(pendingMsg, msg);
+        } else {
+            ctx.ack(msg);
+        }
+        if (!wheel.add(pendingMsg)) {
+            release(ctx, pendingMsg);
+        }
+        scheduleTickMsg(ctx);
+    }
+
+    private void release(TbContext ctx, PendingMsg pendingMsg) {
+        if (!pendingMsg.release()) {
+            return;
+        }
+        TbMsg msg = pendingMsg.toTbMsg();
+        if (config.isPersistPendingMsgs()) {
+            TbMsg unsavedMsg = unsavedMsgs.remove(pendingMsg);
+            if (unsavedMsg != null) {
+                // released before it was saved, so there is nothing to save or remove
+                ctx.enqueueForTellNext(msg, SUCCESS, () -> ctx.ack(unsavedMsg), t -> ctx.tellFailure(unsavedMsg, t));
+                return;
+            }
+            UUID msgId = msg.getId();
+            releasingMsgIds.add(msgId);
+            ctx.enqueueForTellNext(msg, SUCCESS, () -> releasedMsgs.add(pendingMsg), t -> {
+                releasingMsgIds.remove(msgId);
+                log.warn("[{}] Failed to push delayed message [{}]", ctx.getSelfId(), msgId, t);
+            });
+        } else {
+            ctx.enqueueForTellNext(msg, SUCCESS);
+        }
+    }
+
+    /**
+     * Saves the messages delayed since the previous tick with a single attributes update and removes the released messages
+     * with a single attributes removal. A message is removed only after its save is completed, so the removal can't be
+     * overtaken by the save and leave the message to be restored and delivered again.
+     */
+    private void flushPendingMsgs(TbContext ctx) {
+        if (!unsavedMsgs.isEmpty()) {
+            Map<PendingMsg, TbMsg> batch = new LinkedHashMap<>(unsavedMsgs);
+            unsavedMsgs.clear();
+            long ts = System.currentTimeMillis();
+            List<AttributeKvEntry> entries = new ArrayList<>(batch.size());
+            for (PendingMsg pendingMsg : batch.keySet()) {
+                entries.add(new BaseAttributeKvEntry(new StringDataEntry(PENDING_MSG_KEY_PREFIX + pendingMsg.getId(), pendingMsg.encode()), ts));
+            }
+            ListenableFuture<List<Void>> saveFuture = ctx.getAttributesService().save(ctx.getTenantId(), ctx.getSelfId(), PENDING_MSGS_SCOPE, entries);
+            batch.keySet().forEach(pendingMsg -> pendingMsg.saveFuture = saveFuture);
+            withCallback(saveFuture, result -> batch.values().forEach(ctx::ack), t -> batch.forEach((pendingMsg, msg) -> {
+                if (pendingMsg.cancel()) {
+                    ctx.tellFailure(msg, t);
+                } else {
+                    // already delivered
+                    ctx.ack(msg);
+                }
+            }), ctx.getDbCallbackExecutor());
+        }
+        if (!releasedMsgs.isEmpty()) {
+            List<String> keys = new ArrayList<>();
+            List<UUID> msgIds = new ArrayList<>();
+            Set<ListenableFuture<List<Void>>> saveFutures = Collections.newSetFromMap(new IdentityHashMap<>());
+            PendingMsg pendingMsg;
+            while ((pendingMsg = releasedMsgs.poll()) != null) {
+                msgIds.add(pendingMsg.getId());
+                keys.add(PENDING_MSG_KEY_PREFIX + pendingMsg.getId());
+                if (pendingMsg.saveFuture != null) {
+                    saveFutures.add(pendingMsg.saveFuture);
+                }
+            }
+            ListenableFuture<List<Void>> removeFuture = Futures.transformAsync(Futures.successfulAsList(saveFutures),
+                    saved -> ctx.getAttributesService().removeAll(ctx.getTenantId(), ctx.getSelfId(), PENDING_MSGS_SCOPE, keys),
+                    MoreExecutors.directExecutor());
+            withCallback(removeFuture, result -> msgIds.forEach(releasingMsgIds::remove), t -> {
+                msgIds.forEach(releasingMsgIds::remove);
+                log.warn("[{}] Failed to remove {} delayed messages", ctx.getSelfId(), msgIds.size(), t);
+            }, ctx.getDbCallbackExecutor());
+        }
+    }
+
+    private void restorePendingMsgs(TbContext ctx) {
+        ListenableFuture<List<AttributeKvEntry>> future = ctx.getAttributesService().findAll(ctx.getTenantId(), ctx.getSelfId(), PENDING_MSGS_SCOPE);
+        withCallback(future, attributes -> {
+            for (AttributeKvEntry attribute : attributes) {
+                if (attribute.getKey().startsWith(PENDING_MSG_KEY_PREFIX)) {
+                    try {
+                        restoredMsgs.add(PendingMsg.decode(attribute.getValueAsString()));
+                    } catch (RuntimeException e) {
+                        log.warn("[{}] Failed to restore delayed message [{}]", ctx.getSelfId(), attribute.getKey(), e);
+                    }
+                }
+            }
+            ctx.tellSelf(ctx.newMsg(TB_MSG_DELAY_NODE_RESTORE_MSG, ctx.getSelfId(), new TbMsgMetaData(), ""), 0);
+        }, t -> log.warn("[{}] Failed to restore delayed messages", ctx.getSelfId(), t), ctx.getDbCallbackExecutor());
+    }
+
+    private void addRestoredMsgs(TbContext ctx) {
+        Set<UUID> pendingMsgIds = new HashSet<>();
+        wheel.forEach(pendingMsg -> pendingMsgIds.add(pendingMsg.getId()));
+        wheel.advance(System.currentTimeMillis(), expiredMsg -> release(ctx, expiredMsg));
+        PendingMsg pendingMsg;
+        while ((pendingMsg = restoredMsgs.poll()) != null) {
+            UUID msgId = pendingMsg.getId();
+            if (!pendingMsgIds.contains(msgId) && !releasingMsgIds.contains(msgId)
+                    && ctx.isLocalEntity(pendingMsg.toTbMsg().getOriginator()) && !wheel.add(pendingMsg)) {
+                release(ctx, pendingMsg);
+            }
+        }
+        scheduleTickMsg(ctx);
+    }
+
+    private void scheduleTickMsg(TbContext ctx) {
+        if (nextTickId == null && (wheel.size() > 0 || !unsavedMsgs.isEmpty() || !releasingMsgIds.isEmpty())) {
+            nextTickId = UUID.randomUUID();
+            ctx.tellSelf(ctx.newMsg(TB_MSG_DELAY_NODE_TICK_MSG, ctx.getSelfId(), new TbMsgMetaData(), nextTickId.toString()), TICK_MS);
+        }
+    }
+
     private long getDelay(TbMsg msg) {
         int periodInSeconds;
         if (config.isUseMetadataPeriodInSecondsPatterns()) {
@@ -99,6 +292,76 @@ public class TbMsgDelayNode implements TbNode {
 
     @Override
     public void destroy() {
-        pendingMsgs.clear();
+        if (pendingMsgs != null) {
+            pendingMsgs.clear();
+        }
+        if (wheel != null) {
+            wheel.removeIf(pendingMsg -> true);
+        }
+        restoredMsgs.clear();
+        unsavedMsgs.clear();
+        nextTickId = null;
+    }
+
+    /**
+     * Delayed message in the serialized form, so the pending message takes about the size of its data and metadata.
+     */
+    static class PendingMsg {
+
+        private static final int PENDING = 0;
+        private static final int RELEASED = 1;
+        private static final int CANCELLED = 2;
+        private static final AtomicIntegerFieldUpdater<PendingMsg> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(PendingMsg.class, "state");
+
+        private final long idMostSigBits;
+        private final long idLeastSigBits;
+        private final long expirationTs;
+        private final byte[] data;
+        private volatile int state = PENDING;
+        private volatile ListenableFuture<List<Void>> saveFuture;
+
+        PendingMsg(UUID id, long expirationTs, byte[] data) {
+            this.idMostSigBits = id.getMostSignificantBits();
+            this.idLeastSigBits = id.getLeastSignificantBits();
+            this.expirationTs = expirationTs;
+            this.data = data;
+        }
+
+        static PendingMsg decode(String value) {
+            int separatorIdx = value.indexOf(':');
+            long expirationTs = Long.parseLong(value.substring(0, separatorIdx));
+            byte[] data = Base64.getDecoder().decode(value.substring(separatorIdx + 1));
+            return new PendingMsg(TbMsg.fromBytes(data, TbMsgCallback.EMPTY).getId(), expirationTs, data);
+        }
+
+        String encode() {
+            return expirationTs + ":" + Base64.getEncoder().encodeToString(data);
+        }
+
+        UUID getId() {
+            return new UUID(idMostSigBits, idLeastSigBits);
+        }
+
+        long getExpirationTs() {
+            return expirationTs;
+        }
+
+        TbMsg toTbMsg() {
+            return TbMsg.fromBytes(data, TbMsgCallback.EMPTY);
+        }
+
+        /**
+         * Returns false if the message is cancelled or already released.
+         */
+        boolean release() {
+            return STATE_UPDATER.compareAndSet(this, PENDING, RELEASED);
+        }
+
+        /**
+         * Returns false if the message is already released.
+         */
+        boolean cancel() {
+            return STATE_UPDATER.compareAndSet(this, PENDING, CANCELLED) || state == CANCELLED;
+        }
     }
 }
@@ -26,6 +26,8 @@ public class TbMsgDelayNodeConfiguration implements NodeConfiguration<TbMsgDelay
     private int maxPendingMsgs;
     private String periodInSecondsPattern;
     private boolean useMetadataPeriodInSecondsPatterns;
+    private boolean useTimingWheel;
+    private boolean persistPendingMsgs;
 
     @Override
     public TbMsgDelayNodeConfiguration defaultConfiguration() {
@@ -33,6 +35,8 @@ public class TbMsgDelayNodeConfiguration implements NodeConfiguration<TbMsgDelay
         configuration.setPeriodInSeconds(60);
         configuration.setMaxPendingMsgs(1000);
         configuration.setUseMetadataPeriodInSecondsPatterns(false);
+        configuration.setUseTimingWheel(false);
+        configuration.setPersistPendingMsgs(false);
         return configuration;
     }
 }
@@ -35,6 +35,7 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
 
     protected T config;
     protected JtsSpatialContext jtsCtx;
+    private List<Perimeter> configPerimeters;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
@@ -42,6 +43,9 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
         jtsCtx = factory.newSpatialContext();
+        if (!config.isFetchPerimeterInfoFromMessageMetadata()) {
+            configPerimeters = Collections.singletonList(getConfigPerimeter());
+        }
     }
 
     abstract protected Class<T> getConfigClazz();
@@ -54,6 +58,9 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
         JsonObject msgDataObj = msgDataElement.getAsJsonObject();
         double latitude = getValueFromMessageByName(msg, msgDataObj, config.getLatitudeKeyName());
         double longitude = getValueFromMessageByName(msg, msgDataObj, config.getLongitudeKeyName());
+        if (!StringUtils.isEmpty(config.getPerimetersKeyName())) {
+            return getPerimeterIndex(msg).contains(new Coordinates(latitude, longitude));
+        }
         List<Perimeter> perimeters = getPerimeters(msg, msgDataObj);
         boolean matches = false;
         for (Perimeter perimeter : perimeters) {
@@ -97,14 +104,30 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
                 throw new TbNodeException("Missing perimeter definition!");
             }
         } else {
-            Perimeter perimeter = new Perimeter();
-            perimeter.setPerimeterType(config.getPerimeterType());
-            perimeter.setCenterLatitude(config.getCenterLatitude());
-            perimeter.setCenterLongitude(config.getCenterLongitude());
-            perimeter.setRange(config.getRange());
-            perimeter.setRangeUnit(config.getRangeUnit());
-            perimeter.setPolygonsDefinition(config.getPolygonsDefinition());
-            return Collections.singletonList(perimeter);
+            return configPerimeters;
+        }
+    }
+
+    private Perimeter getConfigPerimeter() {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(config.getPerimeterType());
+        perimeter.setCenterLatitude(config.getCenterLatitude());
+        perimeter.setCenterLongitude(config.getCenterLongitude());
+        perimeter.setRange(config.getRange());
+        perimeter.setRangeUnit(config.getRangeUnit());
+        perimeter.setPolygonsDefinition(config.getPolygonsDefinition());
+        return perimeter;
+    }
+
+    protected PerimeterIndex getPerimeterIndex(TbMsg msg) throws TbNodeException {
+        String perimeters = msg.getMetaData().getValue(config.getPerimetersKeyName());
+        if (StringUtils.isEmpty(perimeters)) {
+            throw new TbNodeException("Missing perimeters definition!");
+        }
+        try {
+            return GeoUtil.getPerimeterIndex(perimeters);
+        } catch (RuntimeException e) {
+            throw new TbNodeException(e);
         }
     }
 
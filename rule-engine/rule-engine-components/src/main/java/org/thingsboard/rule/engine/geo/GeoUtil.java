@@ -15,6 +15,9 @@
  */
 package org.thingsboard.rule.engine.geo;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -27,24 +30,67 @@ import org.locationtech.spatial4j.shape.Shape;
 import org.locationtech.spatial4j.shape.ShapeFactory;
 import org.locationtech.spatial4j.shape.SpatialRelation;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
 public class GeoUtil {
 
+    private static final int MAX_CACHED_POLYGONS = 10000;
+    private static final int MAX_CACHED_PERIMETER_INDEXES = 1000;
+
     private static final SpatialContext distCtx = SpatialContext.GEO;
     private static final JtsSpatialContext jtsCtx;
 
+    // Compiled perimeters, keyed by the perimeter definition. The polygons are prepared for the repeated point checks.
+    private static final Cache<String, Shape> polygons = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_POLYGONS).build();
+    private static final Cache<String, PerimeterIndex> perimeterIndexes = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PERIMETER_INDEXES).build();
+
     static {
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
+        factory.autoIndex = true;
         jtsCtx = factory.newSpatialContext();
     }
 
-    public static synchronized double distance(Coordinates x, Coordinates y, RangeUnit unit) {
+    public static double distance(Coordinates x, Coordinates y, RangeUnit unit) {
         Point xLL = distCtx.getShapeFactory().pointXY(x.getLongitude(), x.getLatitude());
         Point yLL = distCtx.getShapeFactory().pointXY(y.getLongitude(), y.getLatitude());
         return unit.fromKm(distCtx.getDistCalc().distance(xLL, yLL) * DistanceUtils.DEG_TO_KM);
     }
 
-    public static synchronized boolean contains(String polygon, Coordinates coordinates) {
+    public static boolean contains(String polygon, Coordinates coordinates) {
+        return contains(getPolygon(polygon), coordinates);
+    }
+
+    static boolean contains(Shape polygon, Coordinates coordinates) {
+        Point point = jtsCtx.makePoint(coordinates.getLongitude(), coordinates.getLatitude());
+        return polygon.relate(point).equals(SpatialRelation.CONTAINS);
+    }
+
+    static Shape getPolygon(String polygon) {
+        return getCached(polygons, polygon, () -> buildPolygon(polygon));
+    }
+
+    /**
+     * Returns the spatial index of the perimeters defined as the JSON array of {@link Perimeter} objects.
+     */
+    public static PerimeterIndex getPerimeterIndex(String perimeters) {
+        return getCached(perimeterIndexes, perimeters, () -> PerimeterIndex.parse(perimeters));
+    }
+
+    private static <T> T getCached(Cache<String, T> cache, String key, Callable<T> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    static synchronized Shape buildPolygon(String polygon) {
         ShapeFactory.PolygonBuilder polygonBuilder = jtsCtx.getShapeFactory().polygon();
         JsonArray polygonArray = new JsonParser().parse(polygon).getAsJsonArray();
         boolean first = true;
@@ -61,8 +107,6 @@ public class GeoUtil {
             polygonBuilder.pointXY(jtsCtx.getShapeFactory().normX(lng), jtsCtx.getShapeFactory().normY(lat));
         }
         polygonBuilder.pointXY(jtsCtx.getShapeFactory().normX(firstLng), jtsCtx.getShapeFactory().normY(firstLat));
-        Shape shape = polygonBuilder.buildOrRect();
-        Point point = jtsCtx.makePoint(coordinates.getLongitude(), coordinates.getLatitude());
-        return shape.relate(point).equals(SpatialRelation.CONTAINS);
+        return polygonBuilder.buildOrRect();
     }
 }
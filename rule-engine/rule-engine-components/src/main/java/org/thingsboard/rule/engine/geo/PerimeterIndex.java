@@ -0,0 +1,116 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.geo;
+
+import com.google.gson.Gson;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.spatial4j.context.SpatialContext;
+import org.locationtech.spatial4j.distance.DistanceUtils;
+import org.locationtech.spatial4j.shape.Rectangle;
+import org.locationtech.spatial4j.shape.Shape;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Perimeters indexed by their bounding boxes in the STR-tree,
+ * so the point is checked precisely only against the perimeters with the bounding box that contains the point.
+ */
+public class PerimeterIndex {
+
+    private static final Gson GSON = new Gson();
+
+    private final STRtree tree = new STRtree();
+    private final int size;
+
+    PerimeterIndex(List<Perimeter> perimeters) {
+        for (Perimeter perimeter : perimeters) {
+            IndexedPerimeter indexedPerimeter = new IndexedPerimeter(perimeter);
+            Rectangle boundingBox = indexedPerimeter.getBoundingBox();
+            if (boundingBox.getCrossesDateLine()) {
+                tree.insert(new Envelope(boundingBox.getMinX(), 180, boundingBox.getMinY(), boundingBox.getMaxY()), indexedPerimeter);
+                tree.insert(new Envelope(-180, boundingBox.getMaxX(), boundingBox.getMinY(), boundingBox.getMaxY()), indexedPerimeter);
+            } else {
+                tree.insert(new Envelope(boundingBox.getMinX(), boundingBox.getMaxX(), boundingBox.getMinY(), boundingBox.getMaxY()), indexedPerimeter);
+            }
+        }
+        tree.build();
+        this.size = perimeters.size();
+    }
+
+    static PerimeterIndex parse(String perimeters) {
+        Perimeter[] perimetersArray = GSON.fromJson(perimeters, Perimeter[].class);
+        if (perimetersArray == null) {
+            throw new IllegalArgumentException("Missing perimeters definition!");
+        }
+        return new PerimeterIndex(Arrays.asList(perimetersArray));
+    }
+
+    public boolean contains(Coordinates coordinates) {
+        double longitude = DistanceUtils.normLonDEG(coordinates.getLongitude());
+        List<?> candidates = tree.query(new Envelope(longitude, longitude, coordinates.getLatitude(), coordinates.getLatitude()));
+        for (Object candidate : candidates) {
+            if (((IndexedPerimeter) candidate).contains(coordinates)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static class IndexedPerimeter {
+
+        private final Shape polygon;
+        private final Coordinates center;
+        private final double range;
+        private final RangeUnit rangeUnit;
+
+        IndexedPerimeter(Perimeter perimeter) {
+            if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
+                this.polygon = GeoUtil.buildPolygon(perimeter.getPolygonsDefinition());
+                this.center = null;
+                this.range = 0;
+                this.rangeUnit = null;
+            } else if (perimeter.getPerimeterType() == PerimeterType.CIRCLE) {
+                this.polygon = null;
+                this.center = new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude());
+                this.range = perimeter.getRange();
+                this.rangeUnit = perimeter.getRangeUnit();
+            } else {
+                throw new IllegalArgumentException("Unsupported perimeter type: " + perimeter.getPerimeterType());
+            }
+        }
+
+        Rectangle getBoundingBox() {
+            if (polygon != null) {
+                return polygon.getBoundingBox();
+            }
+            double rangeDegrees = DistanceUtils.dist2Degrees(rangeUnit.toKm(range), DistanceUtils.EARTH_MEAN_RADIUS_KM);
+            return SpatialContext.GEO.getShapeFactory().circle(center.getLongitude(), center.getLatitude(), rangeDegrees).getBoundingBox();
+        }
+
+        boolean contains(Coordinates coordinates) {
+            if (polygon != null) {
+                return GeoUtil.contains(polygon, coordinates);
+            }
+            return range > GeoUtil.distance(coordinates, center, rangeUnit);
+        }
+    }
+}
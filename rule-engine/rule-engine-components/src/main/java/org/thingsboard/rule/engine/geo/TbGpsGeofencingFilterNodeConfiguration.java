@@ -45,6 +45,9 @@ public class TbGpsGeofencingFilterNodeConfiguration implements NodeConfiguration
     private Double range;
     private RangeUnit rangeUnit;
 
+    //Name of the metadata key with the JSON array of perimeters, checked through the spatial index
+    private String perimetersKeyName;
+
     @Override
     public TbGpsGeofencingFilterNodeConfiguration defaultConfiguration() {
         TbGpsGeofencingFilterNodeConfiguration configuration = new TbGpsGeofencingFilterNodeConfiguration();
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.delay;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DelayTimingWheelTest {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    public void testValuesAreReleasedNotBeforeExpiration() {
+        long startTs = 1_000_000;
+        DelayTimingWheel<Long> wheel = new DelayTimingWheel<>(TICK_MS, WHEEL_SIZE, startTs, Long::longValue);
+        Random random = new Random(42);
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            long value = startTs + random.nextInt(1_000_000);
+            values.add(value);
+            assertTrue(wheel.add(value));
+        }
+        assertEquals(values.size(), wheel.size());
+        assertTrue(wheel.levels() > 2);
+
+        List<Long> released = new ArrayList<>();
+        for (long ts = startTs; ts <= startTs + 1_000_000 + TICK_MS; ts += 37) {
+            long now = ts;
+            wheel.advance(now, value -> {
+                assertTrue(value <= now);
+                assertTrue(value > now - TICK_MS - 37);
+                released.add(value);
+            });
+        }
+        assertEquals(values.size(), released.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testValuesAddedWhileTicking() {
+        long startTs = 0;
+        DelayTimingWheel<Long> wheel = new DelayTimingWheel<>(TICK_MS, WHEEL_SIZE, startTs, Long::longValue);
+        List<Long> released = new ArrayList<>();
+        for (long ts = 0; ts < 100_000; ts += TICK_MS) {
+            long now = ts;
+            wheel.advance(now, value -> {
+                assertTrue(value <= now);
+                assertTrue(value >= now - TICK_MS);
+                released.add(value);
+            });
+            assertTrue(wheel.add(now + (now * 7919) % 5000));
+        }
+        wheel.advance(200_000, released::add);
+        assertEquals(1000, released.size());
+    }
+
+    @Test
+    public void testExpiredValueIsNotAdded() {
+        DelayTimingWheel<Long> wheel = new DelayTimingWheel<>(TICK_MS, WHEEL_SIZE, 1000, Long::longValue);
+        assertTrue(wheel.add(1000L));
+        wheel.advance(1100, value -> {
+        });
+        assertFalse(wheel.add(1099L));
+        assertTrue(wheel.add(1100L));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        DelayTimingWheel<Long> wheel = new DelayTimingWheel<>(TICK_MS, WHEEL_SIZE, 0, Long::longValue);
+        for (long value = 0; value < 10000; value += 10) {
+            wheel.add(value);
+        }
+        wheel.removeIf(value -> value % 20 == 0);
+        assertEquals(500, wheel.size());
+        List<Long> released = new ArrayList<>();
+        wheel.advance(20000, released::add);
+        assertEquals(500, released.size());
+        assertTrue(released.stream().allMatch(value -> value % 20 != 0));
+    }
+
+    @Test
+    public void testIdleWheelIsMovedToCurrentTime() {
+        DelayTimingWheel<Long> wheel = new DelayTimingWheel<>(TICK_MS, WHEEL_SIZE, 0, Long::longValue);
+        wheel.advance(10_000_050, value -> {
+        });
+        assertFalse(wheel.add(9_999_999L));
+        assertTrue(wheel.add(10_000_000L));
+        List<Long> released = new ArrayList<>();
+        wheel.advance(10_000_100, released::add);
+        assertEquals(1, released.size());
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.geo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PerimeterIndexTest {
+
+    private static final String KYIV_POLYGON = "[[50.40,30.40],[50.40,30.70],[50.55,30.70],[50.55,30.40]]";
+    private static final String TRIANGLE_POLYGON = "[[10.0,10.0],[10.0,20.0],[20.0,10.0]]";
+    private static final String DATE_LINE_POLYGON = "[[-10.0,170.0],[-10.0,-170.0],[10.0,-170.0],[10.0,170.0]]";
+
+    @Test
+    public void testPolygonIsCachedAndContainsPoint() {
+        assertSame(GeoUtil.getPolygon(TRIANGLE_POLYGON), GeoUtil.getPolygon(TRIANGLE_POLYGON));
+        assertTrue(GeoUtil.contains(TRIANGLE_POLYGON, new Coordinates(12.0, 12.0)));
+        assertFalse(GeoUtil.contains(TRIANGLE_POLYGON, new Coordinates(18.0, 18.0)));
+    }
+
+    @Test
+    public void testIndexMatchesPolygonsAndCircles() {
+        String perimeters = "[{\"perimeterType\":\"POLYGON\",\"polygonsDefinition\":\"" + KYIV_POLYGON + "\"}," +
+                "{\"perimeterType\":\"POLYGON\",\"polygonsDefinition\":\"" + TRIANGLE_POLYGON + "\"}," +
+                "{\"perimeterType\":\"CIRCLE\",\"centerLatitude\":48.85,\"centerLongitude\":2.35,\"range\":5,\"rangeUnit\":\"KILOMETER\"}]";
+        PerimeterIndex index = GeoUtil.getPerimeterIndex(perimeters);
+        assertSame(index, GeoUtil.getPerimeterIndex(perimeters));
+        assertEquals(3, index.size());
+        assertTrue(index.contains(new Coordinates(50.45, 30.52)));
+        assertTrue(index.contains(new Coordinates(12.0, 12.0)));
+        assertTrue(index.contains(new Coordinates(48.86, 2.36)));
+        assertFalse(index.contains(new Coordinates(18.0, 18.0)));
+        assertFalse(index.contains(new Coordinates(48.95, 2.35)));
+        assertFalse(index.contains(new Coordinates(0.0, 0.0)));
+    }
+
+    @Test
+    public void testIndexMatchesPerimetersAcrossDateLine() {
+        PerimeterIndex circleIndex = new PerimeterIndex(Collections.singletonList(circle(0.0, 179.9, 50, RangeUnit.KILOMETER)));
+        assertTrue(circleIndex.contains(new Coordinates(0.0, 179.8)));
+        assertTrue(circleIndex.contains(new Coordinates(0.0, -179.9)));
+        assertFalse(circleIndex.contains(new Coordinates(0.0, -179.0)));
+
+        PerimeterIndex polygonIndex = new PerimeterIndex(Collections.singletonList(polygon(DATE_LINE_POLYGON)));
+        for (double lng = 160; lng < 200; lng += 2.5) {
+            Coordinates coordinates = new Coordinates(0.0, lng > 180 ? lng - 360 : lng);
+            assertEquals(coordinates.toString(), GeoUtil.contains(DATE_LINE_POLYGON, coordinates), polygonIndex.contains(coordinates));
+        }
+    }
+
+    @Test
+    public void testIndexIsTheSameAsLinearCheck() {
+        List<Perimeter> perimeters = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                double lat = -50 + i * 5;
+                double lng = -100 + j * 10;
+                if ((i + j) % 2 == 0) {
+                    perimeters.add(polygon("[[" + lat + "," + lng + "],[" + lat + "," + (lng + 3) + "],[" + (lat + 2) + "," + lng + "]]"));
+                } else {
+                    perimeters.add(circle(lat, lng, 100, RangeUnit.KILOMETER));
+                }
+            }
+        }
+        PerimeterIndex index = new PerimeterIndex(perimeters);
+        for (double lat = -52; lat < 52; lat += 0.7) {
+            for (double lng = -102; lng < 102; lng += 0.9) {
+                Coordinates coordinates = new Coordinates(lat, lng);
+                assertEquals(coordinates.toString(), containsAny(perimeters, coordinates), index.contains(coordinates));
+            }
+        }
+    }
+
+    private static boolean containsAny(List<Perimeter> perimeters, Coordinates coordinates) {
+        for (Perimeter perimeter : perimeters) {
+            if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
+                if (GeoUtil.contains(perimeter.getPolygonsDefinition(), coordinates)) {
+                    return true;
+                }
+            } else if (perimeter.getRange() > GeoUtil.distance(coordinates,
+                    new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude()), perimeter.getRangeUnit())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Perimeter polygon(String polygonsDefinition) {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(PerimeterType.POLYGON);
+        perimeter.setPolygonsDefinition(polygonsDefinition);
+        return perimeter;
+    }
+
+    private static Perimeter circle(double latitude, double longitude, double range, RangeUnit rangeUnit) {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(PerimeterType.CIRCLE);
+        perimeter.setCenterLatitude(latitude);
+        perimeter.setCenterLongitude(longitude);
+        perimeter.setRange(range);
+        perimeter.setRangeUnit(rangeUnit);
+        return perimeter;
+    }
+}